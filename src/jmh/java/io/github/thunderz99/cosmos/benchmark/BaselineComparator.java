@@ -0,0 +1,142 @@
+package io.github.thunderz99.cosmos.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+
+/**
+ * Compare a JMH json result with the baseline json report, and exit with 1 if any benchmark regresses more than the threshold.
+ *
+ * <p>
+ * {@code
+ * // args: resultFile baselineFile [threshold(default 0.10)] [recordBaseline(default false)]
+ * java -cp ... io.github.thunderz99.cosmos.benchmark.BaselineComparator target/jmh-result.json src/jmh/resources/jmh-baseline.json 0.10
+ * }
+ * </p>
+ *
+ * <p>
+ * A missing baseline fails(exit 2) instead of being recorded silently. The result is recorded as the new baseline only when recordBaseline is true.
+ * A benchmark missing in the baseline is reported as a warning, and the comparison fails if no benchmark is in the baseline.
+ * </p>
+ */
+public class BaselineComparator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparator resultFile baselineFile [threshold] [recordBaseline]");
+            System.exit(2);
+        }
+
+        var resultFile = new File(args[0]);
+        var baselineFile = new File(args[1]);
+        var threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        var recordBaseline = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        if (!resultFile.exists()) {
+            System.err.println("JMH result not found: " + resultFile);
+            System.exit(2);
+        }
+
+        if (recordBaseline) {
+            baselineFile.getParentFile().mkdirs();
+            Files.copy(resultFile.toPath(), baselineFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Recorded the current result as the baseline: " + baselineFile + ". Review and commit it.");
+            return;
+        }
+
+        if (!baselineFile.exists()) {
+            System.err.println("ERROR: Baseline not found: " + baselineFile + ". Nothing to compare against.");
+            System.err.println("ERROR: Record a baseline on the measuring machine by -Dbenchmark.recordBaseline=true, and commit it.");
+            System.exit(2);
+        }
+
+        var current = readScores(resultFile);
+        var baseline = readScores(baselineFile);
+        if (current.keySet().stream().noneMatch(baseline::containsKey)) {
+            System.err.println("ERROR: None of the benchmarks is in the baseline: " + baselineFile + ". Record a new baseline by -Dbenchmark.recordBaseline=true.");
+            System.exit(2);
+        }
+
+        var regressions = compare(current, baseline, threshold);
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compare scores and print a report
+     *
+     * @param current   scores of current result
+     * @param baseline  scores of baseline
+     * @param threshold allowed ratio of regression. e.g. 0.10 means 10%
+     * @return names of benchmarks regressed
+     */
+    static List<String> compare(Map<String, Score> current, Map<String, Score> baseline, double threshold) {
+
+        var regressions = new ArrayList<String>();
+
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (var entry : current.entrySet()) {
+            var name = entry.getKey();
+            var score = entry.getValue();
+            var base = baseline.get(name);
+            if (base == null) {
+                System.out.printf("%-80s %14s %14.3f %9s%n", name, "-", score.value, "new");
+                System.err.println("WARN: not in the baseline, not compared: " + name);
+                continue;
+            }
+
+            // the ratio of getting worse. for throughput higher is better, otherwise lower is better
+            var worse = score.higherIsBetter() ? (base.value - score.value) / base.value : (score.value - base.value) / base.value;
+            var regressed = worse > threshold;
+            if (regressed) {
+                regressions.add(name);
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%%s%n", name, base.value, score.value, -worse * 100, regressed ? "  REGRESSED" : "");
+        }
+
+        if (regressions.isEmpty()) {
+            System.out.printf("No regression over %.0f%% compared to the baseline.%n", threshold * 100);
+        } else {
+            System.out.printf("%d benchmark(s) regressed over %.0f%%: %s%n", regressions.size(), threshold * 100, regressions);
+        }
+        return regressions;
+    }
+
+    /**
+     * Read scores from a JMH json report. Benchmarks with params are distinguished by their params.
+     *
+     * @param file JMH json report
+     * @return map of benchmark name and score
+     * @throws Exception if failed to read the file
+     */
+    static Map<String, Score> readScores(File file) throws Exception {
+        List<Map<String, Object>> results = JsonUtil.getObjectMapper().readValue(file, new TypeReference<>() {
+        });
+
+        var ret = new LinkedHashMap<String, Score>();
+        for (var result : results) {
+            var name = result.get("benchmark").toString();
+            if (result.get("params") instanceof Map<?, ?> params && !params.isEmpty()) {
+                name = name + params;
+            }
+            var mode = result.get("mode").toString();
+            var metric = (Map<?, ?>) result.get("primaryMetric");
+            ret.put(name, new Score(mode, ((Number) metric.get("score")).doubleValue(), String.valueOf(metric.get("scoreUnit"))));
+        }
+        return ret;
+    }
+
+    record Score(String mode, double value, String unit) {
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.thunderz99.cosmos.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.condition.SubConditionType;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+
+/**
+ * Realistic fixtures shared by benchmarks: nested documents and conditions with joins, ORs and large IN lists.
+ */
+public class BenchmarkData {
+
+    public static final String COLL = "BenchmarkDatabase";
+
+    public static final String PARTITION = "Users";
+
+    /**
+     * size of the IN list used in conditions
+     */
+    public static final int IN_LIST_SIZE = 1000;
+
+    /**
+     * A nested document similar to the ones stored by applications(form contents, arrays of objects, nested addresses).
+     * Nested maps are mutable, the same as documents read from db.
+     *
+     * @param index used to make the values different
+     * @return document map
+     */
+    public static Map<String, Object> newDocument(int index) {
+        var doc = new LinkedHashMap<String, Object>();
+        doc.put("id", "user_%06d".formatted(index));
+        doc.put("_partition", PARTITION);
+        doc.put("name", "Tom Banks " + index);
+        doc.put("age", 20 + index % 50);
+        doc.put("score", 85.5 + index % 10);
+        doc.put("active", index % 2 == 0);
+        doc.put("_ts", 1714546148L + index);
+
+        var address = new LinkedHashMap<String, Object>();
+        address.put("country", "Japan");
+        address.put("city", "Tokyo");
+        address.put("street", "1-2-3 Shibuya " + index);
+        address.put("geo", Map.of("lat", 35.6580, "lng", 139.7016));
+        doc.put("address", address);
+
+        var tags = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 5; i++) {
+            tags.add(Map.of("id", "t%03d".formatted(i), "name", "tag" + i, "level", i));
+        }
+        doc.put("tags", tags);
+
+        var form = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < 30; i++) {
+            form.put("field%02d".formatted(i), i % 3 == 0 ? "value" + i : i % 3 == 1 ? i : Map.of("nested", "value" + i, "flag", true));
+        }
+        doc.put("829cc727-2d49-4d60-8f91-b30f50560af7", form);
+
+        doc.put("children", List.of(
+                Map.of("name", "Jane", "grade", 3, "hobbies", List.of("piano", "tennis")),
+                Map.of("name", "Jim", "grade", 5, "hobbies", List.of("soccer"))));
+        return JsonUtil.toMap(doc);
+    }
+
+    /**
+     * A document as a json string
+     *
+     * @param index used to make the values different
+     * @return json string
+     */
+    public static String newDocumentJson(int index) {
+        return JsonUtil.toJsonNoIndent(newDocument(index));
+    }
+
+    /**
+     * A partial update map containing nested fields
+     *
+     * @return partial map
+     */
+    public static Map<String, Object> newPartialMap() {
+        var partial = new LinkedHashMap<String, Object>();
+        partial.put("name", "Jim");
+        partial.put("age", 30);
+        partial.put("address", new LinkedHashMap<>(Map.of("city", "Osaka", "geo", new LinkedHashMap<>(Map.of("lat", 34.6937)))));
+        partial.put("829cc727-2d49-4d60-8f91-b30f50560af7", new LinkedHashMap<>(Map.of("field01", 100, "field02", new LinkedHashMap<>(Map.of("flag", false)))));
+        return partial;
+    }
+
+    /**
+     * ids used in IN lists
+     *
+     * @return list of ids
+     */
+    public static List<String> newIdList() {
+        return IntStream.range(0, IN_LIST_SIZE).mapToObj(i -> "user_%06d".formatted(i)).collect(Collectors.toList());
+    }
+
+    /**
+     * A simple condition with a few filters, sort and paging
+     *
+     * @return condition
+     */
+    public static Condition newSimpleCondition() {
+        return Condition.filter("name", "Tom", "age >=", 20, "address.city", "Tokyo")
+                .sort("_ts", "DESC")
+                .offset(0)
+                .limit(100);
+    }
+
+    /**
+     * A complex condition containing an IN list of 1k values, nested ORs and a join
+     *
+     * @return condition
+     */
+    public static Condition newComplexCondition() {
+        return Condition.filter(
+                        "id", newIdList(),
+                        "age >=", 20,
+                        "address.city STARTSWITH", "Tok",
+                        "tags ARRAY_CONTAINS_ANY", List.of("tag1", "tag3"),
+                        SubConditionType.OR, List.of(
+                                Condition.filter("name LIKE", "%Tom%"),
+                                Condition.filter("score >", 90, "active", true),
+                                Condition.filter("829cc727-2d49-4d60-8f91-b30f50560af7.field01 IS_DEFINED", true)
+                        ),
+                        "children.grade >=", 3)
+                .join(new LinkedHashSet<>(List.of("children")))
+                .returnAllSubArray(false)
+                .sort("name", "ASC", "_ts", "DESC")
+                .offset(100)
+                .limit(100);
+    }
+
+    /**
+     * Patch operations with set, add, remove and increment
+     *
+     * @return patch operations
+     */
+    public static PatchOperations newPatchOperations() {
+        return PatchOperations.create()
+                .set("/name", "Jim")
+                .set("/address/city", "Osaka")
+                .add("/tags/0", Map.of("id", "t999", "name", "new tag"))
+                .remove("/829cc727-2d49-4d60-8f91-b30f50560af7/field03")
+                .increment("/age", 1)
+                .increment("/score", 0.5);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.thunderz99.cosmos.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGConditionUtil;
+import io.github.thunderz99.cosmos.util.ConditionUtil;
+import io.github.thunderz99.cosmos.util.NamedParameterUtil;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the query builders of cosmosdb / postgres / mongodb, which are called on every find / count / aggregate request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionBenchmark {
+
+    Condition simpleCond;
+    Condition complexCond;
+
+    CosmosSqlQuerySpec pgQuerySpec;
+
+    @Setup
+    public void setup() {
+        simpleCond = BenchmarkData.newSimpleCondition();
+        complexCond = BenchmarkData.newComplexCondition();
+        pgQuerySpec = PGConditionUtil.toQuerySpec(BenchmarkData.COLL, complexCond, BenchmarkData.PARTITION);
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec cosmosToQuerySpec_simple() {
+        return simpleCond.toQuerySpec();
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec cosmosToQuerySpec_complex() {
+        return complexCond.toQuerySpec();
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec pgToQuerySpec_simple() {
+        return PGConditionUtil.toQuerySpec(BenchmarkData.COLL, simpleCond, BenchmarkData.PARTITION);
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec pgToQuerySpec_complex() {
+        return PGConditionUtil.toQuerySpec(BenchmarkData.COLL, complexCond, BenchmarkData.PARTITION);
+    }
+
+    @Benchmark
+    public Bson mongoToBsonFilter_simple() {
+        return ConditionUtil.toBsonFilter(simpleCond);
+    }
+
+    @Benchmark
+    public Bson mongoToBsonFilter_complex() {
+        return ConditionUtil.toBsonFilter(complexCond);
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec namedParameterConvert_complex() {
+        return NamedParameterUtil.convert(pgQuerySpec);
+    }
+}
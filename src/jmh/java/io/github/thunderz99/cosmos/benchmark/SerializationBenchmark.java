@@ -0,0 +1,104 @@
+package io.github.thunderz99.cosmos.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.util.JsonPatchUtil;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.util.MapUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for json serialization and map utilities, which are called on every read / write request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    /**
+     * bean used by fromMap. unknown fields are ignored
+     */
+    public static class UserDocument {
+        public String id;
+        public String name;
+        public int age;
+        public double score;
+        public boolean active;
+        public Map<String, Object> address;
+        public List<Map<String, Object>> tags;
+    }
+
+    Map<String, Object> doc;
+    String json;
+    PatchOperations operations;
+
+    @Setup
+    public void setup() {
+        doc = BenchmarkData.newDocument(1);
+        json = BenchmarkData.newDocumentJson(1);
+        operations = BenchmarkData.newPatchOperations();
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(doc);
+    }
+
+    @Benchmark
+    public String toJsonNoIndent() {
+        return JsonUtil.toJsonNoIndent(doc);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMap_fromString() {
+        return JsonUtil.toMap(json);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMap_fromObject() {
+        return JsonUtil.toMap((Object) doc);
+    }
+
+    @Benchmark
+    public UserDocument fromMap() {
+        return JsonUtil.fromMap(doc, UserDocument.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> toFlatMap() {
+        return MapUtil.toFlatMap(doc);
+    }
+
+    @Benchmark
+    public CosmosSqlQuerySpec toPostgresPatchData() {
+        return JsonPatchUtil.toPostgresPatchData(operations);
+    }
+
+    /**
+     * MapUtil.merge modifies both maps, so fresh maps are prepared for each invocation
+     */
+    @State(Scope.Thread)
+    public static class MergeState {
+
+        Map<String, Object> target;
+        Map<String, Object> partial;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            target = BenchmarkData.newDocument(1);
+            partial = BenchmarkData.newPartialMap();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> merge(MergeState state) {
+        return MapUtil.merge(state.target, state.partial);
+    }
+}
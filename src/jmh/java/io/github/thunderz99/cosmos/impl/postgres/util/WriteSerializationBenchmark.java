@@ -0,0 +1,42 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.github.thunderz99.cosmos.benchmark.BenchmarkData;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresRecord;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compare the serialization used on postgres write paths: copying the record into a HashMap and pretty-printing it(the former path),
+ * against TableUtil.toRecordJson(compact json over a view of the record).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteSerializationBenchmark {
+
+    PostgresRecord record;
+
+    @Setup
+    public void setup() {
+        var doc = BenchmarkData.newDocument(1);
+        record = new PostgresRecord(doc.get("id").toString(), doc);
+    }
+
+    @Benchmark
+    public String copyAndIndent() {
+        var map = new HashMap<>(record.data);
+        map.put(TableUtil.ID, record.id);
+        return JsonUtil.toJson(map);
+    }
+
+    @Benchmark
+    public String toRecordJson() {
+        return TableUtil.toRecordJson(record);
+    }
+}
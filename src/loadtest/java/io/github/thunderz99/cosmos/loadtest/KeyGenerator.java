@@ -0,0 +1,82 @@
+package io.github.thunderz99.cosmos.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.github.thunderz99.cosmos.util.Checker;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Chooses the index(0 ~ n-1) of the document an operation targets. Thread-safe.
+ */
+public interface KeyGenerator {
+
+    /**
+     * get the next index
+     *
+     * @return index in [0, n)
+     */
+    int next();
+
+    /**
+     * create a key generator by name
+     *
+     * @param distribution "uniform" or "zipfian"
+     * @param n            number of keys
+     * @param theta        skew of zipfian
+     * @return key generator
+     */
+    static KeyGenerator of(String distribution, int n, double theta) {
+        Checker.check(n > 0, "n should be > 0");
+        if (StringUtils.equalsIgnoreCase(distribution, "uniform")) {
+            return () -> ThreadLocalRandom.current().nextInt(n);
+        }
+        if (StringUtils.equalsIgnoreCase(distribution, "zipfian")) {
+            return new Zipfian(n, theta);
+        }
+        throw new IllegalArgumentException("Not supported keyDistribution: %s. Use uniform or zipfian.".formatted(distribution));
+    }
+
+    /**
+     * Zipfian distribution(Gray et al. "Quickly Generating Billion-Record Synthetic Databases", the same algorithm as YCSB).
+     * index 0 is the hottest key.
+     */
+    class Zipfian implements KeyGenerator {
+
+        final int n;
+        final double theta;
+        final double alpha;
+        final double zetan;
+        final double eta;
+
+        Zipfian(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetan = zeta(n, theta);
+            var zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        static double zeta(int n, double theta) {
+            var sum = 0.0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        @Override
+        public int next() {
+            var u = ThreadLocalRandom.current().nextDouble();
+            var uz = u * zetan;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return Math.min(1, n - 1);
+            }
+            var index = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(index, n - 1);
+        }
+    }
+}
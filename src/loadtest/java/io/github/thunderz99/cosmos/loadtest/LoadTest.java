@@ -0,0 +1,232 @@
+package io.github.thunderz99.cosmos.loadtest;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosBuilder;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
+import io.github.thunderz99.cosmos.loadtest.LoadTestOption.Operation;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.apache.commons.lang3.RandomStringUtils;
+
+/**
+ * A load test driving a mixed workload(read / find / upsert / patch / bulk) against any Cosmos built by CosmosBuilder,
+ * and reporting the throughput and p50 / p99 / p999 latency of each operation.
+ *
+ * <p>
+ * {@code
+ * // see src/loadtest/README.md
+ * mvn -P loadtest -DskipTests integration-test -Dloadtest.dbType=postgres -Dloadtest.ratios=read=80,upsert=20
+ * }
+ * </p>
+ */
+public class LoadTest {
+
+    /**
+     * number of distinct values of the "group" field, which the FIND operation filters on
+     */
+    static final int GROUP_COUNT = 100;
+
+    final LoadTestOption option;
+
+    final KeyGenerator keyGenerator;
+
+    /**
+     * cumulative weights of the operations, used to choose an operation
+     */
+    final Operation[] operations;
+    final int[] cumulativeWeights;
+
+    final String payload;
+
+    public LoadTest(LoadTestOption option) {
+        this.option = option.check();
+        this.keyGenerator = KeyGenerator.of(option.keyDistribution, option.recordCount, option.zipfianTheta);
+
+        var ops = new ArrayList<Operation>();
+        var weights = new ArrayList<Integer>();
+        var sum = 0;
+        for (var entry : option.ratios.entrySet()) {
+            if (entry.getValue() > 0) {
+                sum += entry.getValue();
+                ops.add(entry.getKey());
+                weights.add(sum);
+            }
+        }
+        this.operations = ops.toArray(Operation[]::new);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+
+        // the other fields take about 100 bytes
+        this.payload = RandomStringUtils.randomAlphanumeric(Math.max(0, option.docSizeBytes - 100));
+    }
+
+    public static void main(String[] args) throws Exception {
+        var option = LoadTestOption.fromSystemProperties();
+        var cosmos = new CosmosBuilder().withDatabaseType(option.dbType).withConnectionString(option.connectionString).build();
+        try {
+            var result = new LoadTest(option).run(cosmos);
+            var file = new File(option.resultFile);
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            Files.writeString(file.toPath(), JsonUtil.toJson(result), StandardCharsets.UTF_8);
+            System.out.println("Result is written to: " + file);
+        } finally {
+            cosmos.closeClient();
+        }
+    }
+
+    /**
+     * load the documents, run the warmup and the measured phase, and return the result
+     *
+     * @param cosmos the cosmos instance under test
+     * @return result including the option and the summary of each operation
+     * @throws Exception if loading fails
+     */
+    public Map<String, Object> run(Cosmos cosmos) throws Exception {
+        var db = cosmos.createIfNotExist(option.db, option.coll);
+        try {
+            if (db instanceof PostgresDatabaseImpl postgresDb) {
+                postgresDb.createTableIfNotExists(option.coll, option.partition);
+            }
+            load(db);
+
+            System.out.printf("Running %s(%s) with %d threads. warmup:%ds, duration:%ds, ratios:%s, keyDistribution:%s%n",
+                    option.label, option.dbType, option.threads, option.warmupSeconds, option.durationSeconds, option.ratios, option.keyDistribution);
+
+            var report = new LoadTestReport();
+            var start = System.nanoTime();
+            var measureFrom = start + TimeUnit.SECONDS.toNanos(option.warmupSeconds);
+            var measureTo = measureFrom + TimeUnit.SECONDS.toNanos(option.durationSeconds);
+
+            ExecutorService executor = Executors.newFixedThreadPool(option.threads);
+            try {
+                for (int i = 0; i < option.threads; i++) {
+                    executor.submit(() -> work(db, report, measureFrom, measureTo));
+                }
+                executor.shutdown();
+                executor.awaitTermination(option.warmupSeconds + option.durationSeconds + 60, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            var summary = report.summarize(option.durationSeconds);
+            System.out.print(LoadTestReport.format(summary));
+
+            var result = new LinkedHashMap<String, Object>();
+            result.put("label", option.label);
+            result.put("dbType", option.dbType);
+            result.put("threads", option.threads);
+            result.put("durationSeconds", option.durationSeconds);
+            result.put("recordCount", option.recordCount);
+            result.put("docSizeBytes", option.docSizeBytes);
+            result.put("keyDistribution", option.keyDistribution);
+            result.put("ratios", option.ratios);
+            result.put("bulkSize", option.bulkSize);
+            result.put("summary", summary);
+            return result;
+        } finally {
+            if (!option.keepData) {
+                cosmos.deleteCollection(option.db, option.coll);
+            }
+        }
+    }
+
+    /**
+     * load recordCount documents by bulkUpsert
+     */
+    void load(CosmosDatabase db) throws Exception {
+        System.out.printf("Loading %d documents into %s.%s(%s)...%n", option.recordCount, option.coll, option.partition, option.dbType);
+        for (int from = 0; from < option.recordCount; from += option.bulkSize) {
+            var docs = new ArrayList<Map<String, Object>>();
+            for (int i = from; i < Math.min(from + option.bulkSize, option.recordCount); i++) {
+                docs.add(newDocument(i));
+            }
+            var ret = db.bulkUpsert(option.coll, docs, option.partition);
+            if (!ret.fatalList.isEmpty()) {
+                throw ret.fatalList.get(0);
+            }
+        }
+    }
+
+    /**
+     * a worker loop. operations before measureFrom are not recorded
+     */
+    void work(CosmosDatabase db, LoadTestReport report, long measureFrom, long measureTo) {
+        while (true) {
+            var begin = System.nanoTime();
+            if (begin >= measureTo || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            var op = nextOperation();
+            try {
+                execute(db, op);
+                if (begin >= measureFrom) {
+                    report.record(op, System.nanoTime() - begin);
+                }
+            } catch (Exception e) {
+                if (begin >= measureFrom) {
+                    report.recordError(op);
+                }
+            }
+        }
+    }
+
+    Operation nextOperation() {
+        var r = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    void execute(CosmosDatabase db, Operation op) throws Exception {
+        var index = keyGenerator.next();
+        switch (op) {
+            case READ -> db.read(option.coll, getId(index), option.partition);
+            case FIND -> db.find(option.coll, Condition.filter("group", index % GROUP_COUNT).limit(10), option.partition);
+            case UPSERT -> db.upsert(option.coll, newDocument(index), option.partition);
+            case PATCH -> db.patch(option.coll, getId(index), PatchOperations.create().increment("/counter", 1), option.partition);
+            case BULK -> {
+                // distinct ids, because a hot key may be chosen more than once
+                var docs = new LinkedHashMap<Integer, Map<String, Object>>();
+                for (int i = 0; i < option.bulkSize; i++) {
+                    var key = keyGenerator.next();
+                    docs.put(key, newDocument(key));
+                }
+                var ret = db.bulkUpsert(option.coll, new ArrayList<>(docs.values()), option.partition);
+                if (!ret.fatalList.isEmpty()) {
+                    throw ret.fatalList.get(0);
+                }
+            }
+        }
+    }
+
+    static String getId(int index) {
+        return "doc_%09d".formatted(index);
+    }
+
+    Map<String, Object> newDocument(int index) {
+        var doc = new LinkedHashMap<String, Object>();
+        doc.put("id", getId(index));
+        doc.put("group", index % GROUP_COUNT);
+        doc.put("counter", 0);
+        doc.put("updatedAt", System.currentTimeMillis());
+        doc.put("payload", payload);
+        return doc;
+    }
+}
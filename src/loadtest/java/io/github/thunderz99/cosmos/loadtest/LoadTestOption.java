@@ -0,0 +1,208 @@
+package io.github.thunderz99.cosmos.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+import io.github.thunderz99.cosmos.CosmosBuilder;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Options of a load test run. Read from system properties prefixed with "loadtest."(e.g. -Dloadtest.threads=32)
+ */
+public class LoadTestOption {
+
+    /**
+     * operations of the workload
+     */
+    public enum Operation {
+        /**
+         * read a document by id
+         */
+        READ,
+        /**
+         * find documents by a filter on an indexed-like field, limit 10
+         */
+        FIND,
+        /**
+         * upsert a document
+         */
+        UPSERT,
+        /**
+         * patch(increment) a field of a document
+         */
+        PATCH,
+        /**
+         * bulkUpsert bulkSize documents
+         */
+        BULK
+    }
+
+    /**
+     * default connection strings for the docker-compose environments in postgres/ and mongo/
+     */
+    static final String LOCAL_POSTGRES_CONNECTION_STRING = "jdbc:postgresql://localhost:5432/postgres?user=postgres&password=postgres&sslmode=disable";
+    static final String LOCAL_MONGODB_CONNECTION_STRING = "mongodb://localhost:27017/?replicaSet=rs0";
+
+    /**
+     * postgres or mongodb(or cosmosdb). default is postgres
+     */
+    public String dbType = CosmosBuilder.POSTGRES;
+
+    /**
+     * connection string. default is read from POSTGRES_CONNECTION_STRING / MONGODB_CONNECTION_STRING / COSMOSDB_CONNECTION_STRING
+     */
+    public String connectionString;
+
+    /**
+     * database / collection / partition used by the test. the collection is deleted after the test unless keepData is true
+     */
+    public String db = "java_cosmos";
+    public String coll = "load_test";
+    public String partition = "Docs";
+
+    /**
+     * number of concurrent workers. default is 16
+     */
+    public int threads = 16;
+
+    /**
+     * warmup seconds, whose latencies are not recorded. default is 10
+     */
+    public int warmupSeconds = 10;
+
+    /**
+     * measured seconds. default is 60
+     */
+    public int durationSeconds = 60;
+
+    /**
+     * number of documents loaded before the test. keys are chosen from them. default is 100000
+     */
+    public int recordCount = 100_000;
+
+    /**
+     * approximate size of a document in bytes. default is 1024
+     */
+    public int docSizeBytes = 1024;
+
+    /**
+     * key distribution. "uniform" or "zipfian". default is "zipfian"
+     */
+    public String keyDistribution = "zipfian";
+
+    /**
+     * skew of the zipfian distribution(0 &lt; theta &lt; 1). default is 0.99, the same as YCSB
+     */
+    public double zipfianTheta = 0.99;
+
+    /**
+     * ratio of each operation. e.g. "read=50,find=20,upsert=20,patch=5,bulk=5"(the weights need not sum to 100)
+     */
+    public Map<Operation, Integer> ratios = parseRatios("read=50,find=20,upsert=20,patch=5,bulk=5");
+
+    /**
+     * number of documents per bulk operation. default is 100
+     */
+    public int bulkSize = 100;
+
+    /**
+     * label of this run written to the result, such as the library version or backend. default is dbType
+     */
+    public String label;
+
+    /**
+     * json result file. default is target/loadtest-result-&lt;label&gt;.json
+     */
+    public String resultFile;
+
+    /**
+     * do not delete the collection after the test
+     */
+    public boolean keepData = false;
+
+    /**
+     * read options from system properties
+     *
+     * @return option
+     */
+    public static LoadTestOption fromSystemProperties() {
+        return fromProperties(System.getProperties());
+    }
+
+    /**
+     * read options from properties prefixed with "loadtest."
+     *
+     * @param props properties
+     * @return option
+     */
+    public static LoadTestOption fromProperties(Properties props) {
+        var option = new LoadTestOption();
+        option.dbType = props.getProperty("loadtest.dbType", option.dbType);
+        option.connectionString = props.getProperty("loadtest.connectionString", getDefaultConnectionString(option.dbType));
+        option.db = props.getProperty("loadtest.db", option.db);
+        option.coll = props.getProperty("loadtest.coll", option.coll);
+        option.partition = props.getProperty("loadtest.partition", option.partition);
+        option.threads = Integer.parseInt(props.getProperty("loadtest.threads", String.valueOf(option.threads)));
+        option.warmupSeconds = Integer.parseInt(props.getProperty("loadtest.warmupSeconds", String.valueOf(option.warmupSeconds)));
+        option.durationSeconds = Integer.parseInt(props.getProperty("loadtest.durationSeconds", String.valueOf(option.durationSeconds)));
+        option.recordCount = Integer.parseInt(props.getProperty("loadtest.recordCount", String.valueOf(option.recordCount)));
+        option.docSizeBytes = Integer.parseInt(props.getProperty("loadtest.docSizeBytes", String.valueOf(option.docSizeBytes)));
+        option.keyDistribution = props.getProperty("loadtest.keyDistribution", option.keyDistribution);
+        option.zipfianTheta = Double.parseDouble(props.getProperty("loadtest.zipfianTheta", String.valueOf(option.zipfianTheta)));
+        if (props.containsKey("loadtest.ratios")) {
+            option.ratios = parseRatios(props.getProperty("loadtest.ratios"));
+        }
+        option.bulkSize = Integer.parseInt(props.getProperty("loadtest.bulkSize", String.valueOf(option.bulkSize)));
+        option.label = props.getProperty("loadtest.label", option.dbType);
+        option.resultFile = props.getProperty("loadtest.resultFile", "target/loadtest-result-%s.json".formatted(option.label));
+        option.keepData = Boolean.parseBoolean(props.getProperty("loadtest.keepData", String.valueOf(option.keepData)));
+        return option.check();
+    }
+
+    /**
+     * parse ratios like "read=50,find=20,upsert=20,patch=5,bulk=5". operations not specified are 0
+     *
+     * @param ratios ratios text
+     * @return weight of each operation
+     */
+    static Map<Operation, Integer> parseRatios(String ratios) {
+        Checker.checkNotBlank(ratios, "ratios");
+        var ret = new EnumMap<Operation, Integer>(Operation.class);
+        for (var pair : StringUtils.split(ratios, ",")) {
+            var kv = StringUtils.split(pair, "=");
+            Checker.check(kv.length == 2, "ratio should be like 'read=50'. %s".formatted(pair));
+            var weight = Integer.parseInt(kv[1].trim());
+            Checker.check(weight >= 0, "ratio should be >= 0. %s".formatted(pair));
+            ret.put(Operation.valueOf(kv[0].trim().toUpperCase()), weight);
+        }
+        Checker.check(ret.values().stream().mapToInt(Integer::intValue).sum() > 0, "sum of ratios should be > 0. %s".formatted(ratios));
+        return ret;
+    }
+
+    static String getDefaultConnectionString(String dbType) {
+        if (StringUtils.equals(dbType, CosmosBuilder.MONGODB)) {
+            return EnvUtil.getOrDefault("MONGODB_CONNECTION_STRING", LOCAL_MONGODB_CONNECTION_STRING);
+        }
+        if (StringUtils.equals(dbType, CosmosBuilder.COSMOSDB)) {
+            return EnvUtil.get("COSMOSDB_CONNECTION_STRING");
+        }
+        return EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", LOCAL_POSTGRES_CONNECTION_STRING);
+    }
+
+    LoadTestOption check() {
+        Checker.checkNotBlank(dbType, "dbType");
+        Checker.checkNotBlank(connectionString, "connectionString");
+        Checker.check(threads > 0, "threads should be > 0");
+        Checker.check(warmupSeconds >= 0, "warmupSeconds should be >= 0");
+        Checker.check(durationSeconds > 0, "durationSeconds should be > 0");
+        Checker.check(recordCount > 0, "recordCount should be > 0");
+        Checker.check(docSizeBytes > 0, "docSizeBytes should be > 0");
+        Checker.check(bulkSize > 0, "bulkSize should be > 0");
+        Checker.check(zipfianTheta > 0 && zipfianTheta < 1, "zipfianTheta should be in (0, 1)");
+        KeyGenerator.of(keyDistribution, 1, zipfianTheta);
+        return this;
+    }
+}
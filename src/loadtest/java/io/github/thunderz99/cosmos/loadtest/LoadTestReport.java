@@ -0,0 +1,109 @@
+package io.github.thunderz99.cosmos.loadtest;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.thunderz99.cosmos.loadtest.LoadTestOption.Operation;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms(microseconds, 3 significant digits) and error counts of each operation, and the report of them.
+ */
+public class LoadTestReport {
+
+    final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+
+    final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    public LoadTestReport() {
+        for (var op : Operation.values()) {
+            // auto-resizing, so that a long stall does not throw
+            histograms.put(op, new ConcurrentHistogram(3));
+            errors.put(op, new LongAdder());
+        }
+    }
+
+    /**
+     * record the latency of a succeeded operation
+     *
+     * @param op          operation
+     * @param latencyNanos latency in nanoseconds
+     */
+    public void record(Operation op, long latencyNanos) {
+        histograms.get(op).recordValue(Math.max(1, latencyNanos / 1000));
+    }
+
+    /**
+     * record a failed operation
+     *
+     * @param op operation
+     */
+    public void recordError(Operation op) {
+        errors.get(op).increment();
+    }
+
+    /**
+     * summarize the result of each operation, and a total
+     *
+     * @param elapsedSeconds measured seconds
+     * @return operation name -> {count, errors, throughput, p50Millis, p99Millis, p999Millis, maxMillis}
+     */
+    public Map<String, Map<String, Object>> summarize(double elapsedSeconds) {
+        var ret = new LinkedHashMap<String, Map<String, Object>>();
+        var total = new Histogram(3);
+        var totalErrors = 0L;
+        for (var op : Operation.values()) {
+            var histogram = histograms.get(op);
+            var errorCount = errors.get(op).sum();
+            if (histogram.getTotalCount() == 0 && errorCount == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalErrors += errorCount;
+            ret.put(op.name(), summarize(histogram, errorCount, elapsedSeconds));
+        }
+        ret.put("TOTAL", summarize(total, totalErrors, elapsedSeconds));
+        return ret;
+    }
+
+    static Map<String, Object> summarize(Histogram histogram, long errorCount, double elapsedSeconds) {
+        var ret = new LinkedHashMap<String, Object>();
+        ret.put("count", histogram.getTotalCount());
+        ret.put("errors", errorCount);
+        ret.put("throughput", round(histogram.getTotalCount() / elapsedSeconds));
+        ret.put("p50Millis", toMillis(histogram.getValueAtPercentile(50)));
+        ret.put("p99Millis", toMillis(histogram.getValueAtPercentile(99)));
+        ret.put("p999Millis", toMillis(histogram.getValueAtPercentile(99.9)));
+        ret.put("maxMillis", toMillis(histogram.getMaxValue()));
+        return ret;
+    }
+
+    static double toMillis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * format the summary as a table
+     *
+     * @param summary result of summarize
+     * @return table text
+     */
+    public static String format(Map<String, Map<String, Object>> summary) {
+        var sb = new StringBuilder();
+        sb.append("%-8s %10s %8s %12s %10s %10s %10s %10s%n".formatted("op", "count", "errors", "ops/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)"));
+        for (var entry : summary.entrySet()) {
+            var s = entry.getValue();
+            sb.append("%-8s %10d %8d %12.2f %10.2f %10.2f %10.2f %10.2f%n".formatted(entry.getKey(),
+                    s.get("count"), s.get("errors"), s.get("throughput"),
+                    s.get("p50Millis"), s.get("p99Millis"), s.get("p999Millis"), s.get("maxMillis")));
+        }
+        return sb.toString();
+    }
+}
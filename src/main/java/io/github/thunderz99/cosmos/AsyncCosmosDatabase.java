@@ -0,0 +1,345 @@
+package io.github.thunderz99.cosmos;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import io.github.thunderz99.cosmos.condition.Aggregate;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
+import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
+import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+
+/**
+ * Asynchronous view of a CosmosDatabase. Every method returns a CompletableFuture instead of blocking the caller.
+ *
+ * <p>
+ * Get an instance by Cosmos.getAsyncDatabase(db). Operations are executed by the bounded executor of the Cosmos instance,
+ * so issuing many reads at once(e.g. reading 50 documents for one request) does not need a thread pool in the application.
+ * If an operation fails, the future completes exceptionally with a CompletionException whose cause is the CosmosException.
+ * </p>
+ *
+ * <pre>
+ * var asyncDb = cosmos.getAsyncDatabase("Database1");
+ * var futures = ids.stream().map(id -&gt; asyncDb.readAsync("Collection1", id, "Users")).toList();
+ * var docs = futures.stream().map(CompletableFuture::join).toList();
+ * </pre>
+ */
+public interface AsyncCosmosDatabase {
+
+    /**
+     * A blocking operation against CosmosDatabase
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    interface DatabaseFunction<T> {
+        T apply(CosmosDatabase db) throws Exception;
+    }
+
+    /**
+     * Execute any blocking operation of CosmosDatabase asynchronously
+     *
+     * @param func operation to execute
+     * @param <T>  result type
+     * @return future of the result
+     */
+    <T> CompletableFuture<T> executeAsync(DatabaseFunction<T> func);
+
+    /**
+     * Get the underlying blocking CosmosDatabase
+     *
+     * @return CosmosDatabase instance
+     */
+    CosmosDatabase getDatabase();
+
+    /**
+     * Create a document asynchronously. see CosmosDatabase.create
+     *
+     * @param coll      collection name
+     * @param data      data object
+     * @param partition partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> createAsync(String coll, Object data, String partition) {
+        return executeAsync(db -> db.create(coll, data, partition));
+    }
+
+    /**
+     * Read a document asynchronously. see CosmosDatabase.read
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param partition partition name
+     * @return future of CosmosDocument. completes exceptionally with 404 if not exist
+     */
+    default CompletableFuture<CosmosDocument> readAsync(String coll, String id, String partition) {
+        return executeAsync(db -> db.read(coll, id, partition));
+    }
+
+    /**
+     * Read a document asynchronously, null if not exist. see CosmosDatabase.readSuppressing404
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param partition partition name
+     * @return future of CosmosDocument or null
+     */
+    default CompletableFuture<CosmosDocument> readSuppressing404Async(String coll, String id, String partition) {
+        return executeAsync(db -> db.readSuppressing404(coll, id, partition));
+    }
+
+    /**
+     * Read multiple documents asynchronously. see CosmosDatabase.readMany
+     *
+     * @param coll   collection name
+     * @param items  (id, partition) pairs to read
+     * @param fields fields to return
+     * @return future of ReadManyResult
+     */
+    default CompletableFuture<ReadManyResult> readManyAsync(String coll, List<ReadManyItem> items, String... fields) {
+        return executeAsync(db -> db.readMany(coll, items, fields));
+    }
+
+    /**
+     * Read multiple documents in one partition asynchronously. see CosmosDatabase.readMany
+     *
+     * @param coll      collection name
+     * @param ids       ids of documents
+     * @param partition partition name
+     * @param fields    fields to return
+     * @return future of ReadManyResult
+     */
+    default CompletableFuture<ReadManyResult> readManyAsync(String coll, List<String> ids, String partition, String... fields) {
+        return executeAsync(db -> db.readMany(coll, ids, partition, fields));
+    }
+
+    /**
+     * Update a document asynchronously. see CosmosDatabase.update
+     *
+     * @param coll      collection name
+     * @param data      data object
+     * @param partition partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> updateAsync(String coll, Object data, String partition) {
+        return executeAsync(db -> db.update(coll, data, partition));
+    }
+
+    /**
+     * Partial update a document asynchronously. see CosmosDatabase.updatePartial
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param data      data object
+     * @param partition partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> updatePartialAsync(String coll, String id, Object data, String partition) {
+        return executeAsync(db -> db.updatePartial(coll, id, data, partition));
+    }
+
+    /**
+     * Partial update a document asynchronously with option. see CosmosDatabase.updatePartial
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param data      data object
+     * @param partition partition name
+     * @param option    partial update option
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> updatePartialAsync(String coll, String id, Object data, String partition, PartialUpdateOption option) {
+        return executeAsync(db -> db.updatePartial(coll, id, data, partition, option));
+    }
+
+    /**
+     * Upsert a document asynchronously. see CosmosDatabase.upsert
+     *
+     * @param coll      collection name
+     * @param data      data object
+     * @param partition partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> upsertAsync(String coll, Object data, String partition) {
+        return executeAsync(db -> db.upsert(coll, data, partition));
+    }
+
+    /**
+     * Delete a document asynchronously. see CosmosDatabase.delete
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param partition partition name
+     * @return future completed when deleted
+     */
+    default CompletableFuture<Void> deleteAsync(String coll, String id, String partition) {
+        return executeAsync(db -> {
+            db.delete(coll, id, partition);
+            return null;
+        });
+    }
+
+    /**
+     * Find documents asynchronously. see CosmosDatabase.find
+     *
+     * @param coll      collection name
+     * @param cond      condition to find
+     * @param partition partition name
+     * @return future of CosmosDocumentList
+     */
+    default CompletableFuture<CosmosDocumentList> findAsync(String coll, Condition cond, String partition) {
+        return executeAsync(db -> db.find(coll, cond, partition));
+    }
+
+    /**
+     * Aggregate asynchronously. see CosmosDatabase.aggregate
+     *
+     * @param coll      collection name
+     * @param aggregate aggregate settings
+     * @param cond      condition to find
+     * @param partition partition name
+     * @return future of CosmosDocumentList
+     */
+    default CompletableFuture<CosmosDocumentList> aggregateAsync(String coll, Aggregate aggregate, Condition cond, String partition) {
+        return executeAsync(db -> db.aggregate(coll, aggregate, cond, partition));
+    }
+
+    /**
+     * Count documents asynchronously. see CosmosDatabase.count
+     *
+     * @param coll      collection name
+     * @param cond      condition to count
+     * @param partition partition name
+     * @return future of the count
+     */
+    default CompletableFuture<Integer> countAsync(String coll, Condition cond, String partition) {
+        return executeAsync(db -> db.count(coll, cond, partition));
+    }
+
+    /**
+     * Increment a number field asynchronously. see CosmosDatabase.increment
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param path      json path. e.g. "/count"
+     * @param value     value to increment
+     * @param partition partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> incrementAsync(String coll, String id, String path, int value, String partition) {
+        return executeAsync(db -> db.increment(coll, id, path, value, partition));
+    }
+
+    /**
+     * Patch a document asynchronously. see CosmosDatabase.patch
+     *
+     * @param coll       collection name
+     * @param id         id of document
+     * @param operations patch operations
+     * @param partition  partition name
+     * @return future of CosmosDocument
+     */
+    default CompletableFuture<CosmosDocument> patchAsync(String coll, String id, PatchOperations operations, String partition) {
+        return executeAsync(db -> db.patch(coll, id, operations, partition));
+    }
+
+    /**
+     * Batch create documents asynchronously. see CosmosDatabase.batchCreate
+     *
+     * @param coll      collection name
+     * @param data      list of data
+     * @param partition partition name
+     * @return future of created documents
+     */
+    default CompletableFuture<List<CosmosDocument>> batchCreateAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.batchCreate(coll, data, partition));
+    }
+
+    /**
+     * Batch upsert documents asynchronously. see CosmosDatabase.batchUpsert
+     *
+     * @param coll      collection name
+     * @param data      list of data
+     * @param partition partition name
+     * @return future of upserted documents
+     */
+    default CompletableFuture<List<CosmosDocument>> batchUpsertAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.batchUpsert(coll, data, partition));
+    }
+
+    /**
+     * Batch delete documents asynchronously. see CosmosDatabase.batchDelete
+     *
+     * @param coll      collection name
+     * @param data      list of data or ids
+     * @param partition partition name
+     * @return future of deleted documents
+     */
+    default CompletableFuture<List<CosmosDocument>> batchDeleteAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.batchDelete(coll, data, partition));
+    }
+
+    /**
+     * Bulk create documents asynchronously. see CosmosDatabase.bulkCreate
+     *
+     * @param coll      collection name
+     * @param data      list of data
+     * @param partition partition name
+     * @return future of CosmosBulkResult
+     */
+    default CompletableFuture<CosmosBulkResult> bulkCreateAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.bulkCreate(coll, data, partition));
+    }
+
+    /**
+     * Bulk upsert documents asynchronously. see CosmosDatabase.bulkUpsert
+     *
+     * @param coll      collection name
+     * @param data      list of data
+     * @param partition partition name
+     * @return future of CosmosBulkResult
+     */
+    default CompletableFuture<CosmosBulkResult> bulkUpsertAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.bulkUpsert(coll, data, partition));
+    }
+
+    /**
+     * Bulk delete documents asynchronously. see CosmosDatabase.bulkDelete
+     *
+     * @param coll      collection name
+     * @param data      list of data or ids
+     * @param partition partition name
+     * @return future of CosmosBulkResult
+     */
+    default CompletableFuture<CosmosBulkResult> bulkDeleteAsync(String coll, List<?> data, String partition) {
+        return executeAsync(db -> db.bulkDelete(coll, data, partition));
+    }
+
+    /**
+     * Bulk patch documents by the same operations asynchronously. see CosmosDatabase.bulkPatch
+     *
+     * @param coll       collection name
+     * @param ids        ids of documents
+     * @param operations patch operations
+     * @param partition  partition name
+     * @return future of CosmosBulkResult
+     */
+    default CompletableFuture<CosmosBulkResult> bulkPatchAsync(String coll, List<String> ids, PatchOperations operations, String partition) {
+        return executeAsync(db -> db.bulkPatch(coll, ids, operations, partition));
+    }
+
+    /**
+     * Bulk patch documents by different operations asynchronously. see CosmosDatabase.bulkPatch
+     *
+     * @param coll      collection name
+     * @param data      list of id and operations
+     * @param partition partition name
+     * @return future of CosmosBulkResult
+     */
+    default CompletableFuture<CosmosBulkResult> bulkPatchAsync(String coll, List<BulkPatchOperation> data, String partition) {
+        return executeAsync(db -> db.bulkPatch(coll, data, partition));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.thunderz99.cosmos;
+
+import java.util.LinkedHashMap;
+
+import io.github.thunderz99.cosmos.util.Checker;
+
+/**
+ * Stores the checkpoints of change feed consumers durably, as documents of a collection in any backend.
+ *
+ * <p>
+ * {@code
+ * var store = new ChangeFeedCheckpointStore(db, "Collection1", "ChangeFeedCheckpoints");
+ * try (var changes = db.changeFeed("Collection1", "Users", store.load("search-indexer"))) {
+ *     while (changes.hasNext()) {
+ *         index(changes.next());
+ *     }
+ *     store.save("search-indexer", changes.getCheckpoint());
+ * }
+ * }
+ * </p>
+ */
+public class ChangeFeedCheckpointStore {
+
+    /**
+     * field of the checkpoint in the stored document
+     */
+    public static final String CHECKPOINT = "checkpoint";
+
+    final CosmosDatabase db;
+
+    final String coll;
+
+    final String partition;
+
+    /**
+     * @param db        database storing the checkpoints
+     * @param coll      collection name
+     * @param partition partition name
+     */
+    public ChangeFeedCheckpointStore(CosmosDatabase db, String coll, String partition) {
+        Checker.checkNotNull(db, "db");
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+        this.db = db;
+        this.coll = coll;
+        this.partition = partition;
+    }
+
+    /**
+     * Load the checkpoint of a consumer
+     *
+     * @param consumer name of the consumer
+     * @return checkpoint. null if not saved yet
+     * @throws Exception Cosmos client exception
+     */
+    public String load(String consumer) throws Exception {
+        Checker.checkNotBlank(consumer, "consumer");
+        var doc = db.readSuppressing404(coll, consumer, partition);
+        if (doc == null) {
+            return null;
+        }
+        var checkpoint = doc.toMap().get(CHECKPOINT);
+        return checkpoint == null ? null : checkpoint.toString();
+    }
+
+    /**
+     * Save the checkpoint of a consumer
+     *
+     * @param consumer   name of the consumer
+     * @param checkpoint checkpoint got by ChangeFeedIterator.getCheckpoint
+     * @throws Exception Cosmos client exception
+     */
+    public void save(String consumer, String checkpoint) throws Exception {
+        Checker.checkNotBlank(consumer, "consumer");
+        var doc = new LinkedHashMap<String, Object>();
+        doc.put("id", consumer);
+        doc.put(CHECKPOINT, checkpoint);
+        db.upsert(coll, doc, partition);
+    }
+}
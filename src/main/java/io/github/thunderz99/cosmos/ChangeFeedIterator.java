@@ -0,0 +1,38 @@
+package io.github.thunderz99.cosmos;
+
+import java.util.Iterator;
+
+/**
+ * Represent a resumable iterator of the documents changed in a partition, in commit order. See {@link CosmosDatabase#changeFeed(String, String, String)}.
+ *
+ * <p>
+ * hasNext() returns false when no more changes are available at the moment. It can be called again later to receive newer changes.
+ * getCheckpoint() returns the position after the last document returned by next(). Store it(e.g. by {@link ChangeFeedCheckpointStore}) after processing,
+ * and pass it to changeFeed to resume. A document is delivered at least once, and the latest state of the document is returned
+ * (so several changes of a document may be delivered as the same state).
+ * </p>
+ *
+ * <p>
+ * A deleted document is returned as {"id": id, "_deleted": true}(not supported by cosmosdb, whose change feed does not include deletes).
+ * </p>
+ */
+public interface ChangeFeedIterator extends Iterator<CosmosDocument>, AutoCloseable {
+
+    /**
+     * field set to true in a document representing a deletion
+     */
+    String DELETED = "_deleted";
+
+    /**
+     * Get the checkpoint after the last document returned by next()
+     *
+     * @return checkpoint. pass it to changeFeed to resume
+     */
+    String getCheckpoint();
+
+    /**
+     * Release the resources(e.g. the cursor of a change stream)
+     */
+    @Override
+    void close();
+}
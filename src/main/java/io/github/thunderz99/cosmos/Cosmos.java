@@ -2,6 +2,7 @@ package io.github.thunderz99.cosmos;
 
 import io.github.thunderz99.cosmos.dto.CosmosContainerResponse;
 import io.github.thunderz99.cosmos.dto.UniqueKeyPolicy;
+import io.github.thunderz99.cosmos.impl.AsyncCosmosDatabaseImpl;
 
 /***
  * class that represent a cosmos account
@@ -26,6 +27,20 @@ public interface Cosmos {
      */
     public CosmosDatabase getDatabase(String db);
 
+    /**
+     * Get an AsyncCosmosDatabase object by name, whose operations return CompletableFuture and are executed by the async executor of this instance
+     *
+     * <p>
+     * The default implementation wraps getDatabase on the default async executor.
+     * </p>
+     *
+     * @param db database name
+     * @return AsyncCosmosDatabase instance
+     */
+    default public AsyncCosmosDatabase getAsyncDatabase(String db) {
+        return new AsyncCosmosDatabaseImpl(getDatabase(db), AsyncCosmosDatabaseImpl.getDefaultExecutor());
+    }
+
 
     /**
      * Create the db and coll if not exist. Coll creation will be skipped if empty. uniqueKeyPolicy can be specified.
@@ -1,20 +1,38 @@
 package io.github.thunderz99.cosmos;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import com.mongodb.ConnectionString;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import io.github.thunderz99.cosmos.dto.RateLimitOption;
+import io.github.thunderz99.cosmos.impl.AsyncCosmosDatabaseImpl;
 import io.github.thunderz99.cosmos.impl.cosmosdb.CosmosImpl;
 import io.github.thunderz99.cosmos.impl.mongo.MongoImpl;
+import io.github.thunderz99.cosmos.impl.postgres.PGReplicaRouter;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresImpl;
 import io.github.thunderz99.cosmos.impl.postgres.dto.PostgresHikariOptions;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGIndexAdvisor;
 import io.github.thunderz99.cosmos.impl.postgres.util.PGSortUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.metrics.OperationListener;
 import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.CompiledQueryCache;
+import io.github.thunderz99.cosmos.util.ConcurrencyLimitedExecutor;
+import io.github.thunderz99.cosmos.util.CrossPartitionUtil;
+import io.github.thunderz99.cosmos.util.VirtualThreadUtil;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Builder class to build a cosmos instance (for azure cosmosdb or mongodb)
  */
 public class CosmosBuilder {
 
+    private static final Logger log = LoggerFactory.getLogger(CosmosBuilder.class);
+
     /**
      * Constant for dbType: cosmosdb
      */
@@ -55,6 +73,101 @@ public class CosmosBuilder {
      */
     PostgresHikariOptions postgresHikariOptions;
 
+    /**
+     * rows fetched per round trip by findToIterator. only affects postgres.
+     */
+    int fetchSize = TableUtil.DEFAULT_FETCH_SIZE;
+
+    /**
+     * whether bulkCreate / bulkUpsert use COPY. only affects postgres.
+     */
+    boolean bulkCopyEnabled = false;
+
+    /**
+     * whether the GIN index on data is created with jsonb_path_ops. only affects postgres.
+     */
+    boolean jsonbPathOpsIndexEnabled = false;
+
+    /**
+     * whether equality / IN / ARRAY_CONTAINS filters are translated to jsonb containment predicates. only affects postgres.
+     */
+    boolean containmentQueryEnabled = false;
+
+    /**
+     * max number of query shapes whose templates are cached for find / count. only affects postgres.
+     */
+    int queryCacheMaximumSize = 0;
+
+    /**
+     * advisor recording the expressions of queries to recommend indexes. only affects postgres.
+     */
+    PGIndexAdvisor indexAdvisor = null;
+
+    /**
+     * max partitions queried at the same time by a crossPartition find / count. only affects mongodb / postgres.
+     */
+    int crossPartitionConcurrency = CrossPartitionUtil.DEFAULT_CONCURRENCY;
+
+    /**
+     * connection strings of the read replicas. only affects postgres.
+     */
+    List<String> readReplicas = List.of();
+
+    /**
+     * max replication lag of a healthy read replica. only affects postgres.
+     */
+    long replicaMaxLagMillis = PGReplicaRouter.DEFAULT_MAX_LAG_MILLIS;
+
+    /**
+     * retention of the change log backing changeFeed in minutes. 0 to keep the changes until purged. only affects postgres.
+     */
+    int changeLogRetentionMinutes = 0;
+
+    /**
+     * listener receiving the metrics of every CosmosDatabase operation.
+     */
+    OperationListener operationListener = OperationListener.NOOP;
+
+    /**
+     * executor running the operations of AsyncCosmosDatabase. null to use the shared default executor.
+     */
+    Executor asyncExecutor;
+
+    /**
+     * whether AsyncCosmosDatabase runs operations on virtual threads. requires JDK 21 or later.
+     */
+    boolean virtualThreadsEnabled = false;
+
+    /**
+     * max in-flight operations when virtual threads are enabled. 0 means the connection pool size of the backend.
+     */
+    int maxConcurrency = 0;
+
+    /**
+     * option of the in-process read-through document cache. null to disable.
+     */
+    DocumentCacheOption documentCacheOption = null;
+
+    /**
+     * option of the cross-node cache invalidation. null to disable.
+     */
+    CacheInvalidationOption cacheInvalidationOption = null;
+
+    /**
+     * option of the adaptive client-side rate limiter(cosmosdb only). null to disable.
+     */
+    RateLimitOption rateLimitOption = null;
+
+    /**
+     * Default max in-flight operations for cosmosdb when virtual threads are enabled
+     */
+    public static final int DEFAULT_COSMOSDB_MAX_CONCURRENCY = 256;
+
+    /**
+     * Default connection pool size of mongodb driver. used when maxPoolSize is not specified in the connection string
+     */
+    public static final int DEFAULT_MONGODB_MAX_POOL_SIZE = 100;
+
     /**
      * Specify the dbType( "cosmosdb" or "mongodb" or "postgres")
      *
@@ -173,6 +286,297 @@ public class CosmosBuilder {
         return this;
     }
 
+    /**
+     * Specify the number of rows fetched per round trip when using findToIterator. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * findToIterator for postgres is backed by a server-side cursor, so only fetchSize rows are held in memory at a time.
+     * default is 1000.
+     * </p>
+     *
+     * @param fetchSize rows per round trip. should be &gt; 0
+     * @return this
+     */
+    public CosmosBuilder withFetchSize(int fetchSize) {
+        Checker.check(fetchSize > 0, "fetchSize should be > 0");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Specify whether bulkCreate / bulkUpsert use COPY instead of multi-row INSERT. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * When enabled, records are streamed by COPY into a session-local staging table and merged into the target table by one statement,
+     * which is much faster for large batches. default is false.
+     * </p>
+     *
+     * @param bulkCopyEnabled true to use COPY
+     * @return this
+     */
+    public CosmosBuilder withBulkCopyEnabled(boolean bulkCopyEnabled) {
+        this.bulkCopyEnabled = bulkCopyEnabled;
+        return this;
+    }
+
+    /**
+     * Specify whether the GIN index on data is created with jsonb_path_ops when creating a table. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * When containmentQueryEnabled, equality / IN / ARRAY_CONTAINS filters are translated to containment predicates(data @&gt; '{"status":"A"}'),
+     * for which a jsonb_path_ops index is smaller and faster than the default jsonb_ops one. default is false.
+     * </p>
+     *
+     * @param jsonbPathOpsIndexEnabled true to use jsonb_path_ops
+     * @return this
+     */
+    public CosmosBuilder withJsonbPathOpsIndexEnabled(boolean jsonbPathOpsIndexEnabled) {
+        this.jsonbPathOpsIndexEnabled = jsonbPathOpsIndexEnabled;
+        return this;
+    }
+
+    /**
+     * Specify whether equality / IN / ARRAY_CONTAINS filters on scalar values are translated to containment predicates(data @&gt; '{"status":"A"}'),
+     * so that the GIN index on data can be used. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * default is false, because the results differ from the default translation in some cases:
+     * json types are compared strictly({"age": 123} does not match "123"),
+     * and ARRAY_CONTAINS does not match a scalar field. Filters under NOT are never translated.
+     * </p>
+     *
+     * @param containmentQueryEnabled true to use containment predicates
+     * @return this
+     */
+    public CosmosBuilder withContainmentQueryEnabled(boolean containmentQueryEnabled) {
+        this.containmentQueryEnabled = containmentQueryEnabled;
+        return this;
+    }
+
+    /**
+     * Specify the max number of query shapes whose templates are cached for find / count. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * Queries with the same shape(keys, operators, value types, sort, limit, etc.) share the generated query text, and only the param values are bound.
+     * The template is shared by all the partitions of a collection.
+     * default is 0(disabled). e.g. {@link CompiledQueryCache#DEFAULT_MAXIMUM_SIZE} to enable.
+     * </p>
+     *
+     * <p>
+     * How each param is bound is inferred from the generated query and verified against normal generations before the template is used.
+     * Enable it when the generation of query text is a measured bottleneck.
+     * </p>
+     *
+     * @param queryCacheMaximumSize max number of query shapes. should be &gt;= 0
+     * @return this
+     */
+    public CosmosBuilder withQueryCacheMaximumSize(int queryCacheMaximumSize) {
+        Checker.check(queryCacheMaximumSize >= 0, "queryCacheMaximumSize should be >= 0");
+        this.queryCacheMaximumSize = queryCacheMaximumSize;
+        return this;
+    }
+
+    /**
+     * Specify an advisor recording the filter and sort expressions of find / count, to recommend the matching expression indexes. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * The advisor only records the workload. Use {@link PGIndexAdvisor#getRecommendations(int)} to get the CREATE INDEX statements,
+     * and {@link PGIndexAdvisor#apply} to create them. default is null(disabled).
+     * </p>
+     *
+     * @param indexAdvisor advisor
+     * @return this
+     */
+    public CosmosBuilder withIndexAdvisor(PGIndexAdvisor indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+        return this;
+    }
+
+    /**
+     * Specify the max number of partitions queried at the same time by a crossPartition find / count. Note there is no effect to cosmosdb.
+     *
+     * <p>
+     * In mongodb / postgres each partition is a separate collection / table, so a query with Condition.crossPartition(true) is fanned out to every partition in parallel,
+     * and the sorted results are merged with the global offset / limit applied. Each running query holds a connection of the pool. default is 8.
+     * </p>
+     *
+     * @param crossPartitionConcurrency should be &gt; 0
+     * @return this
+     */
+    public CosmosBuilder withCrossPartitionConcurrency(int crossPartitionConcurrency) {
+        Checker.check(crossPartitionConcurrency > 0, "crossPartitionConcurrency should be > 0");
+        this.crossPartitionConcurrency = crossPartitionConcurrency;
+        return this;
+    }
+
+    /**
+     * Specify the connection strings of the read replicas. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * Each replica has its own connection pool. find / findToIterator / count / aggregate are load-balanced across the healthy replicas,
+     * and read is also served by a replica when ReadOption.eventualConsistency(true) is specified. Writes always use the primary.
+     * A replica is skipped when it is unreachable or its replication lag is over replicaMaxLagMillis. default is empty(primary only).
+     * </p>
+     *
+     * @param readReplicas connection strings of the replicas
+     * @return this
+     */
+    public CosmosBuilder withReadReplicas(List<String> readReplicas) {
+        Checker.checkNotNull(readReplicas, "readReplicas");
+        this.readReplicas = readReplicas;
+        return this;
+    }
+
+    /**
+     * Specify the max replication lag(pg_last_xact_replay_timestamp) of a healthy read replica. Note there is no effect to cosmosdb/mongodb.
+     *
+     * @param replicaMaxLagMillis should be &gt;= 0. default is 5000
+     * @return this
+     */
+    public CosmosBuilder withReplicaMaxLagMillis(long replicaMaxLagMillis) {
+        Checker.check(replicaMaxLagMillis >= 0, "replicaMaxLagMillis should be >= 0");
+        this.replicaMaxLagMillis = replicaMaxLagMillis;
+        return this;
+    }
+
+    /**
+     * Specify the retention of the change log backing changeFeed. Note there is no effect to cosmosdb/mongodb.
+     *
+     * <p>
+     * postgres appends a row to the change log table of the schema for every write once changeFeed is called, and the table grows without bound until purged.
+     * With a retention, a pg_cron job purging the older changes is scheduled for the schema at the first changeFeed call. default is 0(no purge job).
+     * </p>
+     *
+     * @param changeLogRetentionMinutes retention in minutes. should be &gt;= 0
+     * @return this
+     */
+    public CosmosBuilder withChangeLogRetentionMinutes(int changeLogRetentionMinutes) {
+        Checker.check(changeLogRetentionMinutes >= 0, "changeLogRetentionMinutes should be >= 0");
+        this.changeLogRetentionMinutes = changeLogRetentionMinutes;
+        return this;
+    }
+
+    /**
+     * Specify a listener receiving the metrics of every CosmosDatabase operation(latency, request charge, rows, serialized bytes, retries).
+     *
+     * <p>
+     * Metrics are tagged by backend, collection, partition and operation. default is OperationListener.NOOP, which does not instrument databases at all.
+     * Use InMemoryOperationListener for tests, or implement a listener bridging to the metrics system of the application.
+     * </p>
+     *
+     * @param operationListener listener to register
+     * @return this
+     */
+    public CosmosBuilder withOperationListener(OperationListener operationListener) {
+        Checker.checkNotNull(operationListener, "operationListener");
+        this.operationListener = operationListener;
+        return this;
+    }
+
+    /**
+     * Specify the executor running the operations of AsyncCosmosDatabase(cosmos.getAsyncDatabase).
+     *
+     * <p>
+     * The blocking operations are executed by this executor, so its size bounds the in-flight async operations.
+     * default is a shared pool of 32 daemon threads. Use AsyncCosmosDatabaseImpl.newFixedDaemonExecutor(n) to create a dedicated pool.
+     * The executor is not shut down by closeClient.
+     * </p>
+     *
+     * @param asyncExecutor executor
+     * @return this
+     */
+    public CosmosBuilder withAsyncExecutor(Executor asyncExecutor) {
+        Checker.checkNotNull(asyncExecutor, "asyncExecutor");
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Specify whether AsyncCosmosDatabase runs operations on virtual threads(requires JDK 21 or later).
+     *
+     * <p>
+     * When enabled, each async operation gets its own virtual thread, and the number of in-flight operations is capped by a semaphore,
+     * sized to the hikari pool for postgres, the connection pool for mongodb, or 256 for cosmosdb(see withMaxConcurrency).
+     * So thousands of concurrent callers can share one Cosmos instance without a platform thread pool per service.
+     * Falls back to a platform thread pool of the same size when running on JDK 17. Ignored if withAsyncExecutor is specified.
+     * default is false.
+     * </p>
+     *
+     * @param virtualThreadsEnabled true to use virtual threads
+     * @return this
+     */
+    public CosmosBuilder withVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+        return this;
+    }
+
+    /**
+     * Specify the max in-flight operations of AsyncCosmosDatabase when virtual threads are enabled.
+     *
+     * @param maxConcurrency should be &gt; 0. default is the connection pool size of the backend
+     * @return this
+     */
+    public CosmosBuilder withMaxConcurrency(int maxConcurrency) {
+        Checker.check(maxConcurrency > 0, "maxConcurrency should be > 0");
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Enable an in-process read-through cache of documents read by read / readSuppressing404.
+     *
+     * <p>
+     * A cached document is returned without a round trip until its ttl expires, and then revalidated by its "_etag"(If-None-Match) if it has one.
+     * Writes through the same Cosmos instance invalidate the documents written, but writes by other processes are visible only after the ttl.
+     * So enable it for read-heavy collections tolerating that staleness, and set the ttl to 0 by collectionTtlMillis for the others.
+     * default is disabled.
+     * </p>
+     *
+     * @param documentCacheOption cache option. null to disable
+     * @return this
+     */
+    public CosmosBuilder withDocumentCache(DocumentCacheOption documentCacheOption) {
+        this.documentCacheOption = documentCacheOption;
+        return this;
+    }
+
+    /**
+     * Enable the cross-node cache invalidation, so that documents changed by other processes are invalidated in the document cache within about a second.
+     *
+     * <p>
+     * postgres: a trigger sending a NOTIFY is installed on the tables created by createTableIfNotExists, and the changes are received by LISTEN.
+     * mongodb: change streams(requires a replica set).
+     * cosmosdb: the change feed of the collections specified by option.watch(db, coll) is polled. deletes are not included in the change feed.
+     * Listeners can be registered to the bus too, e.g. ((PostgresImpl) cosmos).invalidationBus.addListener(listener).
+     * default is disabled.
+     * </p>
+     *
+     * @param cacheInvalidationOption invalidation option. null to disable
+     * @return this
+     */
+    public CosmosBuilder withCacheInvalidation(CacheInvalidationOption cacheInvalidationOption) {
+        this.cacheInvalidationOption = cacheInvalidationOption;
+        return this;
+    }
+
+    /**
+     * Enable the adaptive client-side rate limiter per container(cosmosdb only).
+     *
+     * <p>
+     * Requests are admitted by a token bucket before being sent. The permitted rate is decreased on 429 and increased while no 429 occurs(AIMD),
+     * and no request is sent until the retryAfter of a 429. So containers can run close to the provisioned RU without retry storms.
+     * Monitor the limiters by ((CosmosImpl) cosmos).getRateLimiters(). default is disabled.
+     * postgres / mongodb have no RU based throttling, so this option is ignored.
+     * </p>
+     *
+     * @param rateLimitOption rate limit option. null to disable
+     * @return this
+     */
+    public CosmosBuilder withAdaptiveRateLimit(RateLimitOption rateLimitOption) {
+        this.rateLimitOption = rateLimitOption;
+        return this;
+    }
+
     /**
      * Build the instance representing a Cosmos instance.
      *
@@ -183,20 +587,67 @@ public class CosmosBuilder {
         Checker.checkNotBlank(connectionString, "connectionString");
 
         if (StringUtils.equals(dbType, COSMOSDB)) {
-            return new CosmosImpl(connectionString, preferredRegions);
+            return new CosmosImpl(connectionString, preferredRegions)
+                    .withOperationListener(operationListener)
+                    .withDocumentCache(documentCacheOption)
+                    .withCacheInvalidation(cacheInvalidationOption)
+                    .withAdaptiveRateLimit(rateLimitOption)
+                    .withAsyncExecutor(buildAsyncExecutor(DEFAULT_COSMOSDB_MAX_CONCURRENCY));
         }
 
         if (StringUtils.equals(dbType, MONGODB)) {
-            return new MongoImpl(connectionString, expireAtEnabled, etagEnabled);
+            var maxPoolSize = new ConnectionString(connectionString).getMaxConnectionPoolSize();
+            return new MongoImpl(connectionString, expireAtEnabled, etagEnabled)
+                    .withCrossPartitionConcurrency(crossPartitionConcurrency)
+                    .withOperationListener(operationListener)
+                    .withDocumentCache(documentCacheOption)
+                    .withCacheInvalidation(cacheInvalidationOption)
+                    .withAsyncExecutor(buildAsyncExecutor(maxPoolSize != null ? maxPoolSize : DEFAULT_MONGODB_MAX_POOL_SIZE));
         }
 
         if (StringUtils.equals(dbType, POSTGRES)) {
-            return new PostgresImpl(connectionString, expireAtEnabled, etagEnabled, collate, postgresHikariOptions);
+            var postgres = new PostgresImpl(connectionString, expireAtEnabled, etagEnabled, collate, postgresHikariOptions)
+                    .withFetchSize(fetchSize)
+                    .withBulkCopyEnabled(bulkCopyEnabled)
+                    .withJsonbPathOpsIndexEnabled(jsonbPathOpsIndexEnabled)
+                    .withContainmentQueryEnabled(containmentQueryEnabled)
+                    .withQueryCacheMaximumSize(queryCacheMaximumSize)
+                    .withIndexAdvisor(indexAdvisor)
+                    .withCrossPartitionConcurrency(crossPartitionConcurrency)
+                    .withReadReplicas(readReplicas, replicaMaxLagMillis)
+                    .withChangeLogRetentionMinutes(changeLogRetentionMinutes)
+                    .withOperationListener(operationListener)
+                    .withDocumentCache(documentCacheOption)
+                    .withCacheInvalidation(cacheInvalidationOption);
+            return postgres.withAsyncExecutor(buildAsyncExecutor(postgres.getDataSource().getMaximumPoolSize()));
         }
 
         throw new IllegalArgumentException("Not supported dbType: " + dbType);
 
     }
 
+    /**
+     * Build the executor for AsyncCosmosDatabase
+     *
+     * @param poolSize connection pool size of the backend, used as the default max concurrency
+     * @return executor
+     */
+    Executor buildAsyncExecutor(int poolSize) {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        if (!virtualThreadsEnabled) {
+            return AsyncCosmosDatabaseImpl.getDefaultExecutor();
+        }
+
+        var permits = maxConcurrency > 0 ? maxConcurrency : poolSize;
+        if (VirtualThreadUtil.isSupported()) {
+            return new ConcurrencyLimitedExecutor(VirtualThreadUtil.newVirtualThreadPerTaskExecutor("java-cosmos-vt-"), permits);
+        }
+
+        log.warn("virtual threads are not supported in java.version:{}. Use a platform thread pool of size {} instead.", System.getProperty("java.version"), permits);
+        return AsyncCosmosDatabaseImpl.newFixedDaemonExecutor(permits);
+    }
+
 
 }
@@ -1,6 +1,9 @@
 package io.github.thunderz99.cosmos;
 
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import io.github.thunderz99.cosmos.condition.Aggregate;
 import io.github.thunderz99.cosmos.condition.Condition;
@@ -8,6 +11,12 @@ import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
 import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.ConditionUtil;
+import io.github.thunderz99.cosmos.util.MapUtil;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
 
 /**
@@ -65,6 +74,25 @@ public interface CosmosDatabase {
         return read(coll, id, coll);
     }
 
+    /**
+     * Read a document by coll and id, with a consistency hint
+     *
+     * <p>
+     * The option only affects postgres with read replicas configured, where ReadOption.eventualConsistency(true) allows the read to be served by a replica.
+     * Other implementations read in the same way as read(coll, id, partition).
+     * </p>
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param option    read option
+     * @return CosmosDocument instance
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    default public CosmosDocument read(String coll, String id, String partition, ReadOption option) throws Exception {
+        return read(coll, id, partition);
+    }
+
     /**
      * Read a document by coll and id. Return null if object not exist
      *
@@ -88,6 +116,105 @@ public interface CosmosDatabase {
         return readSuppressing404(coll, id, coll);
     }
 
+    /**
+     * Read a document by coll and id, with a consistency hint. Return null if object not exist
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param partition partition name
+     * @param option    read option. see read(coll, id, partition, option)
+     * @return CosmosDocument instance
+     * @throws Exception Cosmos client exception
+     */
+    default public CosmosDocument readSuppressing404(String coll, String id, String partition, ReadOption option) throws Exception {
+        return readSuppressing404(coll, id, partition);
+    }
+
+    /**
+     * Read a document only if its "_etag" does not match etag(If-None-Match). Used to revalidate a cached document cheaply.
+     *
+     * <p>
+     * Cosmos DB uses the If-None-Match header, postgres returns the data column only when the etag differs, and mongodb reads the "_etag" field only before a full read.
+     * The default implementation does a full read and compares the etag on the client side.
+     * </p>
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param etag      etag of the document already held. a full read is done if null
+     * @return CosmosDocument instance if modified, or null if not modified
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    default public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+        var doc = read(coll, id, partition);
+        if (etag != null && etag.equals(doc.toMap().get("_etag"))) {
+            return null;
+        }
+        return doc;
+    }
+
+    /**
+     * Read multiple documents by (id, partition) pairs in as few round trips as possible.
+     *
+     * <p>
+     * Documents are returned in the order of the input items, and items not found are reported in missingList instead of throwing 404.
+     * Items can be in different partitions. Duplicated items are read only once.
+     * </p>
+     *
+     * <p>
+     * {@code
+     * var result = db.readMany("Collection1", List.of(ReadManyItem.of("id001", "Users"), ReadManyItem.of("id002", "Users")), "id", "name");
+     * result.documents.forEach(doc -> log.info(doc.toObject(User.class).name));
+     * log.info("missing ids:{}", result.getMissingIds());
+     * }
+     * </p>
+     *
+     * <p>
+     * The default implementation reads the items one by one by readSuppressing404. Implementations override it to read in fewer round trips.
+     * </p>
+     *
+     * @param coll   collection name
+     * @param items  (id, partition) pairs to read
+     * @param fields fields to return, like Condition.fields. "id" is always returned. all fields are returned if empty
+     * @return documents found and items missing
+     * @throws Exception Cosmos client exception
+     */
+    default public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+        Checker.checkNotBlank(coll, "coll");
+        ReadManyItem.checkValid(items);
+
+        var projectionFields = ConditionUtil.processFields(fields == null ? Set.of() : new LinkedHashSet<>(List.of(fields)));
+        var found = new HashMap<ReadManyItem, CosmosDocument>();
+        for (var item : new LinkedHashSet<>(items)) {
+            var doc = readSuppressing404(coll, item.id, item.partition);
+            if (doc == null) {
+                continue;
+            }
+            if (!projectionFields.isEmpty()) {
+                var includes = new LinkedHashSet<>(projectionFields);
+                includes.add("id");
+                doc = new CosmosDocument(MapUtil.project(doc.toMap(), includes));
+            }
+            found.put(item, doc);
+        }
+        return ReadManyResult.of(items, found);
+    }
+
+    /**
+     * Read multiple documents in one partition by ids in one round trip.
+     *
+     * @param coll      collection name
+     * @param ids       ids of documents
+     * @param partition partition name
+     * @param fields    fields to return, like Condition.fields. "id" is always returned. all fields are returned if empty
+     * @return documents found and items missing
+     * @throws Exception Cosmos client exception
+     */
+    default public ReadManyResult readMany(String coll, List<String> ids, String partition, String... fields) throws Exception {
+        Checker.checkNotNull(ids, "ids");
+        return readMany(coll, ids.stream().map(id -> ReadManyItem.of(id, partition)).toList(), fields);
+    }
+
     /**
      * Update existing data. if not exist, throw Not Found Exception.
      *
@@ -310,6 +437,34 @@ public interface CosmosDatabase {
      */
     public CosmosDocumentIterator findToIterator(String coll, Condition cond, String partition) throws Exception;
 
+    /**
+     * Read the documents changed in a partition incrementally, in commit order, resuming from a checkpoint.
+     *
+     * <p>
+     * {@code
+     *   var changes = db.changeFeed("Collection1", "Users", checkpoint);
+     *   while(changes.hasNext()){
+     *     process(changes.next());
+     *   }
+     *   checkpoint = changes.getCheckpoint(); // store it durably, e.g. by ChangeFeedCheckpointStore
+     * }
+     * </p>
+     *
+     * <p>
+     * Backed by the change feed for cosmosdb, change streams with resume tokens for mongodb(requires a replica set),
+     * and a trigger-maintained change log table for postgres(installed on the first call).
+     * </p>
+     *
+     * @param coll           collection name
+     * @param partition      partition name
+     * @param fromCheckpoint checkpoint got by ChangeFeedIterator.getCheckpoint. null to start from now
+     * @return ChangeFeedIterator, which should be closed after use
+     * @throws Exception Cosmos client exception. 501 if the implementation does not support the change feed
+     */
+    default public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+        throw new CosmosException(501, "NotImplemented", "changeFeed is not supported by " + getClass().getName());
+    }
+
 
         /**
          * do an aggregate query by Aggregate and Condition
@@ -21,6 +21,11 @@ public class CosmosDocumentList {
 
     List<Map<String, Object>> maps;
 
+    /**
+     * token to fetch the next page when using Condition.after(continuationToken). null if there is no more page.
+     */
+    String continuationToken;
+
     public CosmosDocumentList() {
     }
 
@@ -61,6 +66,26 @@ public class CosmosDocumentList {
         return 0;
     }
 
+    /**
+     * Get the continuation token to fetch the next page, using Condition.after(continuationToken)
+     *
+     * @return continuation token. null if there is no more page or keyset pagination is not used.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Set the continuation token to fetch the next page
+     *
+     * @param continuationToken continuation token
+     * @return this
+     */
+    public CosmosDocumentList setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     public String toJson() {
         if (maps != null) {
             return JsonUtil.toJson(maps);
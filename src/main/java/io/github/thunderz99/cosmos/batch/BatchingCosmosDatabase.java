@@ -0,0 +1,701 @@
+package io.github.thunderz99.cosmos.batch;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosDocumentIterator;
+import io.github.thunderz99.cosmos.CosmosDocumentList;
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.condition.Aggregate;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
+import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.dto.WriteBatchOption;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A CosmosDatabase decorator coalescing single create / upsert calls into bulkCreate / bulkUpsert.
+ *
+ * <p>
+ * Documents are buffered by (coll, partition, operation), and flushed when maxBatchSize documents are buffered or maxDelayMillis has passed.
+ * Each caller gets its own document, or its own exception: a document not reported as succeeded by the bulk call(or all the documents, if the bulk call fails as a whole)
+ * is written again individually. A document without "id" is given a random uuid before buffered, so that the retry is idempotent for upsert.
+ * For create, a document partially applied by a bulk call failing as a whole may complete with 409 Conflict.
+ * </p>
+ *
+ * <p>
+ * Batches of the same (coll, partition, operation) are flushed in order, and a batch contains at most one write of an id
+ * (a second write of a buffered id flushes the buffer first). Writes are not ordered with other operations, so wait for the futures before reading.
+ * When maxPendingDocuments documents are pending, callers are blocked up to maxBlockMillis, and then fail with 429.
+ * </p>
+ *
+ * <pre>
+ * try (var batching = new BatchingCosmosDatabase(cosmos.getDatabase("Database1"), new WriteBatchOption().maxDelayMillis(20))) {
+ *     var futures = events.stream().map(e -&gt; batching.createAsync("Collection1", e, "Events")).toList();
+ *     CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+ * }
+ * </pre>
+ */
+public class BatchingCosmosDatabase implements CosmosDatabase, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingCosmosDatabase.class);
+
+    /**
+     * statistics of the batcher
+     */
+    public static class Stats {
+
+        /**
+         * documents submitted
+         */
+        public long submittedCount;
+
+        /**
+         * bulk calls executed
+         */
+        public long batchCount;
+
+        /**
+         * documents flushed by bulk calls
+         */
+        public long batchedDocumentCount;
+
+        /**
+         * documents written again individually after a bulk call
+         */
+        public long fallbackCount;
+
+        /**
+         * callers failed with 429 because the buffer is full
+         */
+        public long rejectedCount;
+
+        /**
+         * current number of documents buffered or being flushed
+         */
+        public long pendingCount;
+
+        @Override
+        public String toString() {
+            return "Stats{submittedCount=%d, batchCount=%d, batchedDocumentCount=%d, fallbackCount=%d, rejectedCount=%d, pendingCount=%d}"
+                    .formatted(submittedCount, batchCount, batchedDocumentCount, fallbackCount, rejectedCount, pendingCount);
+        }
+    }
+
+    enum Operation {
+        CREATE, UPSERT
+    }
+
+    record Key(String coll, String partition, Operation operation) {
+    }
+
+    /**
+     * a buffered document and the future of its caller
+     */
+    static class Item {
+        final String id;
+        final Map<String, Object> data;
+        final CompletableFuture<CosmosDocument> future = new CompletableFuture<>();
+
+        Item(String id, Map<String, Object> data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    /**
+     * documents of a bulk call, by id
+     */
+    static class Batch {
+        final LinkedHashMap<String, Item> items = new LinkedHashMap<>();
+    }
+
+    /**
+     * the open batch and the sealed batches waiting to be flushed, of a key
+     */
+    static class Lane {
+
+        /**
+         * batch accepting documents, guarded by this
+         */
+        Batch open;
+
+        /**
+         * batches to flush in order, guarded by this
+         */
+        final ArrayDeque<Batch> sealed = new ArrayDeque<>();
+
+        /**
+         * held while flushing, so that the batches of a lane are flushed one by one
+         */
+        final Object flushLock = new Object();
+
+        void seal() {
+            sealed.add(open);
+            open = null;
+        }
+    }
+
+    final CosmosDatabase delegate;
+
+    final WriteBatchOption option;
+
+    final Map<Key, Lane> lanes = new ConcurrentHashMap<>();
+
+    final Semaphore permits;
+
+    final ScheduledExecutorService scheduler;
+
+    final ExecutorService flusher;
+
+    volatile boolean closed = false;
+
+    final LongAdder submitted = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder batchedDocuments = new LongAdder();
+    final LongAdder fallbacks = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    /**
+     * Wrap a database with a write batcher, starting its daemon threads. Close it to flush the pending documents and stop the threads.
+     *
+     * @param delegate database to write to
+     * @param option   batch option
+     */
+    public BatchingCosmosDatabase(CosmosDatabase delegate, WriteBatchOption option) {
+        Checker.checkNotNull(delegate, "delegate");
+        Checker.checkNotNull(option, "option");
+        Checker.check(option.maxBatchSize > 0, "maxBatchSize should be > 0");
+        Checker.check(option.maxDelayMillis >= 0, "maxDelayMillis should be >= 0");
+        Checker.check(option.maxPendingDocuments >= option.maxBatchSize, "maxPendingDocuments should be >= maxBatchSize");
+        Checker.check(option.flushThreads > 0, "flushThreads should be > 0");
+
+        this.delegate = delegate;
+        this.option = option;
+        this.permits = new Semaphore(option.maxPendingDocuments);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "java-cosmos-write-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var count = new AtomicInteger();
+        this.flusher = Executors.newFixedThreadPool(option.flushThreads, r -> {
+            var thread = new Thread(r, "java-cosmos-write-batch-flusher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the database written to
+     *
+     * @return delegate database
+     */
+    public CosmosDatabase getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Create a document asynchronously, batched with other creates of the same coll and partition.
+     * The caller is blocked only while the buffer is full.
+     *
+     * @param coll      collection name
+     * @param data      data object
+     * @param partition partition name
+     * @return future of the created document, or completed exceptionally with the exception of this document
+     */
+    public CompletableFuture<CosmosDocument> createAsync(String coll, Object data, String partition) {
+        return submit(Operation.CREATE, coll, data, partition);
+    }
+
+    /**
+     * Upsert a document asynchronously, batched with other upserts of the same coll and partition.
+     * The caller is blocked only while the buffer is full.
+     *
+     * @param coll      collection name
+     * @param data      data object
+     * @param partition partition name
+     * @return future of the upserted document, or completed exceptionally with the exception of this document
+     */
+    public CompletableFuture<CosmosDocument> upsertAsync(String coll, Object data, String partition) {
+        return submit(Operation.UPSERT, coll, data, partition);
+    }
+
+    /**
+     * buffer a document, and flush the batch if it is full
+     */
+    CompletableFuture<CosmosDocument> submit(Operation operation, String coll, Object data, String partition) {
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+        Checker.checkNotNull(data, "data");
+        Checker.check(!closed, "BatchingCosmosDatabase is already closed");
+
+        var map = JsonUtil.toMap(data);
+        var id = map.get("id");
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            map.put("id", id);
+        }
+        var item = new Item(id.toString(), map);
+
+        acquire();
+        submitted.increment();
+
+        var key = new Key(coll, partition, operation);
+        var lane = lanes.computeIfAbsent(key, k -> new Lane());
+
+        Batch opened = null;
+        var sealed = false;
+        synchronized (lane) {
+            if (lane.open != null && lane.open.items.containsKey(item.id)) {
+                // a batch contains at most one write of an id
+                lane.seal();
+                sealed = true;
+            }
+            if (lane.open == null) {
+                lane.open = new Batch();
+                opened = lane.open;
+            }
+            lane.open.items.put(item.id, item);
+            if (lane.open.items.size() >= option.maxBatchSize) {
+                lane.seal();
+                sealed = true;
+            }
+        }
+
+        if (opened != null) {
+            final var batch = opened;
+            schedule(() -> sealIfOpen(key, lane, batch));
+        }
+        if (sealed) {
+            execute(() -> drain(key, lane));
+        }
+        if (closed) {
+            // closed concurrently, after close() has flushed the buffer
+            flush();
+        }
+        return item.future;
+    }
+
+    /**
+     * acquire a permit of a pending document. blocks up to maxBlockMillis
+     */
+    void acquire() {
+        try {
+            if (!permits.tryAcquire(option.maxBlockMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new CosmosException(429, "TooManyRequests",
+                        "Write batch buffer is full. maxPendingDocuments:%d, maxBlockMillis:%d".formatted(option.maxPendingDocuments, option.maxBlockMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CosmosException(500, "Interrupted", "Interrupted while waiting for the write batch buffer", e);
+        }
+    }
+
+    void schedule(Runnable task) {
+        try {
+            scheduler.schedule(task, option.maxDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed. the open batch is flushed by close()
+        }
+    }
+
+    void execute(Runnable task) {
+        try {
+            flusher.execute(task);
+        } catch (RejectedExecutionException e) {
+            // closed. flush in the caller thread
+            task.run();
+        }
+    }
+
+    /**
+     * seal the batch if it is still open after maxDelayMillis, and flush it
+     */
+    void sealIfOpen(Key key, Lane lane, Batch batch) {
+        synchronized (lane) {
+            if (lane.open != batch) {
+                return;
+            }
+            lane.seal();
+        }
+        execute(() -> drain(key, lane));
+    }
+
+    /**
+     * flush the sealed batches of a lane in order
+     */
+    void drain(Key key, Lane lane) {
+        synchronized (lane.flushLock) {
+            while (true) {
+                Batch batch;
+                synchronized (lane) {
+                    batch = lane.sealed.poll();
+                }
+                if (batch == null) {
+                    return;
+                }
+                flush(key, batch);
+            }
+        }
+    }
+
+    /**
+     * write a batch by a bulk call, and complete the future of each document
+     */
+    void flush(Key key, Batch batch) {
+        var items = List.copyOf(batch.items.values());
+        var data = items.stream().map(item -> item.data).toList();
+
+        CosmosBulkResult result = null;
+        try {
+            result = key.operation() == Operation.CREATE
+                    ? delegate.bulkCreate(key.coll(), data, key.partition())
+                    : delegate.bulkUpsert(key.coll(), data, key.partition());
+        } catch (Exception e) {
+            log.warn("bulk {} failed. write documents individually. coll:{}, partition:{}, size:{}", key.operation(), key.coll(), key.partition(), items.size(), e);
+        }
+        batches.increment();
+        batchedDocuments.add(items.size());
+
+        var succeeded = new HashMap<String, CosmosDocument>();
+        if (result != null) {
+            for (var doc : result.successList) {
+                var id = doc.toMap().get("id");
+                if (id != null) {
+                    succeeded.put(id.toString(), doc);
+                }
+            }
+        }
+
+        for (var item : items) {
+            var doc = succeeded.get(item.id);
+            if (doc == null) {
+                // failed, skipped or throttled in the bulk call. write it individually to get its own result
+                fallbacks.increment();
+                try {
+                    doc = key.operation() == Operation.CREATE
+                            ? delegate.create(key.coll(), item.data, key.partition())
+                            : delegate.upsert(key.coll(), item.data, key.partition());
+                } catch (Exception e) {
+                    permits.release();
+                    item.future.completeExceptionally(e);
+                    continue;
+                }
+            }
+            // release the permit before completing, so that it is available when the caller wakes up
+            permits.release();
+            item.future.complete(doc);
+        }
+    }
+
+    /**
+     * Flush all the buffered documents now, in the caller thread
+     */
+    public void flush() {
+        for (var entry : lanes.entrySet()) {
+            var lane = entry.getValue();
+            synchronized (lane) {
+                if (lane.open != null) {
+                    lane.seal();
+                }
+            }
+            drain(entry.getKey(), lane);
+        }
+    }
+
+    /**
+     * get the statistics
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.submittedCount = submitted.sum();
+        stats.batchCount = batches.sum();
+        stats.batchedDocumentCount = batchedDocuments.sum();
+        stats.fallbackCount = fallbacks.sum();
+        stats.rejectedCount = rejected.sum();
+        stats.pendingCount = option.maxPendingDocuments - permits.availablePermits();
+        return stats;
+    }
+
+    /**
+     * Flush the buffered documents and stop the threads. New writes are rejected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        flush();
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(option.maxBlockMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("write batch flusher did not terminate in {}ms", option.maxBlockMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * wait for the future of a document, and throw its own exception
+     */
+    static CosmosDocument await(CompletableFuture<CosmosDocument> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data, String partition) throws Exception {
+        return await(createAsync(coll, data, partition));
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data) throws Exception {
+        return create(coll, data, coll);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition) throws Exception {
+        return delegate.read(coll, id, partition);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition, ReadOption option) throws Exception {
+        return delegate.read(coll, id, partition, option);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id) throws Exception {
+        return delegate.read(coll, id);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition) throws Exception {
+        return delegate.readSuppressing404(coll, id, partition);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id) throws Exception {
+        return delegate.readSuppressing404(coll, id);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition, ReadOption option) throws Exception {
+        return delegate.readSuppressing404(coll, id, partition, option);
+    }
+
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+        return delegate.readIfNoneMatch(coll, id, partition, etag);
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+        return delegate.readMany(coll, items, fields);
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<String> ids, String partition, String... fields) throws Exception {
+        return delegate.readMany(coll, ids, partition, fields);
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data, String partition) throws Exception {
+        return delegate.update(coll, data, partition);
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data) throws Exception {
+        return delegate.update(coll, data);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition) throws Exception {
+        return delegate.updatePartial(coll, id, data, partition);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition, PartialUpdateOption option) throws Exception {
+        return delegate.updatePartial(coll, id, data, partition, option);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data) throws Exception {
+        return delegate.updatePartial(coll, id, data);
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data, String partition) throws Exception {
+        return await(upsertAsync(coll, data, partition));
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data) throws Exception {
+        return upsert(coll, data, coll);
+    }
+
+    @Override
+    public CosmosDatabase delete(String coll, String id, String partition) throws Exception {
+        delegate.delete(coll, id, partition);
+        return this;
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond, String partition) throws Exception {
+        return delegate.find(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond) throws Exception {
+        return delegate.find(coll, cond);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForFind(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForFind(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentIterator findToIterator(String coll, Condition cond, String partition) throws Exception {
+        return delegate.findToIterator(coll, cond, partition);
+    }
+
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+        return delegate.changeFeed(coll, partition, fromCheckpoint);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond, String partition) throws Exception {
+        return delegate.aggregate(coll, aggregate, cond, partition);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForAggregate(String coll, Aggregate aggregate, Condition cond, String partition) {
+        return delegate.toQuerySpecForAggregate(coll, aggregate, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, String partition) throws Exception {
+        return delegate.aggregate(coll, aggregate, partition);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond) throws Exception {
+        return delegate.aggregate(coll, aggregate, cond);
+    }
+
+    @Override
+    public int count(String coll, Condition cond, String partition) throws Exception {
+        return delegate.count(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForCount(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForCount(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocument increment(String coll, String id, String path, int value, String partition) throws Exception {
+        return delegate.increment(coll, id, path, value, partition);
+    }
+
+    @Override
+    public CosmosDocument patch(String coll, String id, PatchOperations operations, String partition) throws Exception {
+        return delegate.patch(coll, id, operations, partition);
+    }
+
+    @Override
+    public Cosmos getCosmosAccount() {
+        return delegate.getCosmosAccount();
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return delegate.getDatabaseName();
+    }
+
+    @Override
+    public List<CosmosDocument> batchCreate(String coll, List<?> data, String partition) throws Exception {
+        return delegate.batchCreate(coll, data, partition);
+    }
+
+    @Override
+    public List<CosmosDocument> batchUpsert(String coll, List<?> data, String partition) throws Exception {
+        return delegate.batchUpsert(coll, data, partition);
+    }
+
+    @Override
+    public List<CosmosDocument> batchDelete(String coll, List<?> data, String partition) throws Exception {
+        return delegate.batchDelete(coll, data, partition);
+    }
+
+    @Override
+    public CosmosBulkResult bulkCreate(String coll, List<?> data, String partition) throws Exception {
+        return delegate.bulkCreate(coll, data, partition);
+    }
+
+    @Override
+    public CosmosBulkResult bulkUpsert(String coll, List<?> data, String partition) throws Exception {
+        return delegate.bulkUpsert(coll, data, partition);
+    }
+
+    @Override
+    public CosmosBulkResult bulkDelete(String coll, List<?> data, String partition) throws Exception {
+        return delegate.bulkDelete(coll, data, partition);
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<String> ids, PatchOperations operations, String partition) throws Exception {
+        return delegate.bulkPatch(coll, ids, operations, partition);
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<BulkPatchOperation> data, String partition) throws Exception {
+        return delegate.bulkPatch(coll, data, partition);
+    }
+
+    @Override
+    public boolean ping(String coll) throws Exception {
+        return delegate.ping(coll);
+    }
+}
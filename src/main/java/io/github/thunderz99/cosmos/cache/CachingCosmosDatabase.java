@@ -0,0 +1,387 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosDocumentIterator;
+import io.github.thunderz99.cosmos.CosmosDocumentList;
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.condition.Aggregate;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
+import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+
+/**
+ * A CosmosDatabase decorator serving read / readSuppressing404 from a DocumentCache.
+ *
+ * <p>
+ * A cached document is returned without a round trip until its ttl expires. After that, it is revalidated by readIfNoneMatch(etag) if it has an "_etag",
+ * otherwise read again. Every write through this instance invalidates the documents written, even if the write fails(it may be partially applied).
+ * Queries(find / count / aggregate / readMany) are not cached.
+ * </p>
+ *
+ * <p>
+ * Writes by other clients are not visible until the ttl expires.
+ * </p>
+ */
+public class CachingCosmosDatabase implements CosmosDatabase {
+
+    final CosmosDatabase delegate;
+
+    final DocumentCache cache;
+
+    final String db;
+
+    CachingCosmosDatabase(CosmosDatabase delegate, DocumentCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.db = delegate.getDatabaseName();
+    }
+
+    /**
+     * Wrap a database with a document cache. Returns the database itself if cache is null.
+     *
+     * @param db    database to wrap
+     * @param cache document cache shared by the account. null to disable
+     * @return caching database
+     */
+    public static CosmosDatabase wrap(CosmosDatabase db, DocumentCache cache) {
+        Checker.checkNotNull(db, "db");
+        if (cache == null) {
+            return db;
+        }
+        return new CachingCosmosDatabase(db, cache);
+    }
+
+    /**
+     * Get the database being cached
+     *
+     * @return delegate database
+     */
+    public CosmosDatabase getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the document cache
+     *
+     * @return document cache
+     */
+    public DocumentCache getCache() {
+        return cache;
+    }
+
+    /**
+     * read through the cache
+     */
+    CosmosDocument readThrough(String coll, String id, String partition) throws Exception {
+        var ttlMillis = cache.option.getTtlMillis(coll);
+        if (ttlMillis <= 0) {
+            return delegate.read(coll, id, partition);
+        }
+
+        var key = new DocumentCache.Key(db, coll, partition, id);
+        var entry = cache.get(key);
+        var now = System.currentTimeMillis();
+
+        if (entry != null && entry.expiresAt > now) {
+            cache.hits.increment();
+            return new CosmosDocument(DocumentCache.deepCopy(entry.data));
+        }
+
+        var version = cache.version(key);
+
+        if (entry != null && entry.etag != null && cache.option.revalidateByEtag) {
+            CosmosDocument doc;
+            try {
+                doc = delegate.readIfNoneMatch(coll, id, partition, entry.etag);
+            } catch (CosmosException e) {
+                if (e.getStatusCode() == 404) {
+                    cache.invalidate(key);
+                }
+                throw e;
+            }
+            if (doc == null) {
+                cache.notModified.increment();
+                entry.expiresAt = now + ttlMillis;
+                return new CosmosDocument(DocumentCache.deepCopy(entry.data));
+            }
+            cache.modified.increment();
+            cache.put(key, doc.toMap(), version, ttlMillis);
+            return doc;
+        }
+
+        cache.misses.increment();
+        var doc = delegate.read(coll, id, partition);
+        cache.put(key, doc.toMap(), version, ttlMillis);
+        return doc;
+    }
+
+    /**
+     * execute a write and invalidate the documents written
+     */
+    <T> T write(String coll, String partition, List<String> ids, Callable<T> func) throws Exception {
+        try {
+            return func.call();
+        } finally {
+            cache.invalidate(db, coll, partition, ids);
+        }
+    }
+
+    static List<String> getIds(List<?> data) {
+        if (data == null) {
+            return List.of();
+        }
+        return data.stream().map(CachingCosmosDatabase::getId).filter(id -> id != null).toList();
+    }
+
+    static String getId(Object object) {
+        if (object == null) {
+            return null;
+        }
+        if (object instanceof String id) {
+            return id;
+        }
+        var map = object instanceof Map<?, ?> m ? m : JsonUtil.toMap(object);
+        var id = map.get("id");
+        return id == null ? null : id.toString();
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data, String partition) throws Exception {
+        return write(coll, partition, getIds(List.of(data)), () -> delegate.create(coll, data, partition));
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data) throws Exception {
+        return create(coll, data, coll);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition) throws Exception {
+        return readThrough(coll, id, partition);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition, ReadOption option) throws Exception {
+        // a cached document is at most ttl stale, which is acceptable for both consistency levels in the same way as read
+        return readThrough(coll, id, partition);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id) throws Exception {
+        return read(coll, id, coll);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition) throws Exception {
+        try {
+            return readThrough(coll, id, partition);
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id) throws Exception {
+        return readSuppressing404(coll, id, coll);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition, ReadOption option) throws Exception {
+        return readSuppressing404(coll, id, partition);
+    }
+
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+        return delegate.readIfNoneMatch(coll, id, partition, etag);
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+        return delegate.readMany(coll, items, fields);
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<String> ids, String partition, String... fields) throws Exception {
+        return delegate.readMany(coll, ids, partition, fields);
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data, String partition) throws Exception {
+        return write(coll, partition, getIds(List.of(data)), () -> delegate.update(coll, data, partition));
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data) throws Exception {
+        return update(coll, data, coll);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition) throws Exception {
+        return write(coll, partition, List.of(id), () -> delegate.updatePartial(coll, id, data, partition));
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition, PartialUpdateOption option) throws Exception {
+        return write(coll, partition, List.of(id), () -> delegate.updatePartial(coll, id, data, partition, option));
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data) throws Exception {
+        return updatePartial(coll, id, data, coll);
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data, String partition) throws Exception {
+        return write(coll, partition, getIds(List.of(data)), () -> delegate.upsert(coll, data, partition));
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data) throws Exception {
+        return upsert(coll, data, coll);
+    }
+
+    @Override
+    public CosmosDatabase delete(String coll, String id, String partition) throws Exception {
+        write(coll, partition, List.of(id), () -> delegate.delete(coll, id, partition));
+        return this;
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond, String partition) throws Exception {
+        return delegate.find(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond) throws Exception {
+        return delegate.find(coll, cond);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForFind(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForFind(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentIterator findToIterator(String coll, Condition cond, String partition) throws Exception {
+        return delegate.findToIterator(coll, cond, partition);
+    }
+
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+        return delegate.changeFeed(coll, partition, fromCheckpoint);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond, String partition) throws Exception {
+        return delegate.aggregate(coll, aggregate, cond, partition);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForAggregate(String coll, Aggregate aggregate, Condition cond, String partition) {
+        return delegate.toQuerySpecForAggregate(coll, aggregate, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, String partition) throws Exception {
+        return delegate.aggregate(coll, aggregate, partition);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond) throws Exception {
+        return delegate.aggregate(coll, aggregate, cond);
+    }
+
+    @Override
+    public int count(String coll, Condition cond, String partition) throws Exception {
+        return delegate.count(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForCount(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForCount(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocument increment(String coll, String id, String path, int value, String partition) throws Exception {
+        return write(coll, partition, List.of(id), () -> delegate.increment(coll, id, path, value, partition));
+    }
+
+    @Override
+    public CosmosDocument patch(String coll, String id, PatchOperations operations, String partition) throws Exception {
+        return write(coll, partition, List.of(id), () -> delegate.patch(coll, id, operations, partition));
+    }
+
+    @Override
+    public Cosmos getCosmosAccount() {
+        return delegate.getCosmosAccount();
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return delegate.getDatabaseName();
+    }
+
+    @Override
+    public List<CosmosDocument> batchCreate(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.batchCreate(coll, data, partition));
+    }
+
+    @Override
+    public List<CosmosDocument> batchUpsert(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.batchUpsert(coll, data, partition));
+    }
+
+    @Override
+    public List<CosmosDocument> batchDelete(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.batchDelete(coll, data, partition));
+    }
+
+    @Override
+    public CosmosBulkResult bulkCreate(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.bulkCreate(coll, data, partition));
+    }
+
+    @Override
+    public CosmosBulkResult bulkUpsert(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.bulkUpsert(coll, data, partition));
+    }
+
+    @Override
+    public CosmosBulkResult bulkDelete(String coll, List<?> data, String partition) throws Exception {
+        return write(coll, partition, getIds(data), () -> delegate.bulkDelete(coll, data, partition));
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<String> ids, PatchOperations operations, String partition) throws Exception {
+        return write(coll, partition, getIds(ids), () -> delegate.bulkPatch(coll, ids, operations, partition));
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<BulkPatchOperation> data, String partition) throws Exception {
+        var ids = data == null ? List.<String>of() : data.stream().filter(op -> op != null && op.id != null).map(op -> op.id).toList();
+        return write(coll, partition, ids, () -> delegate.bulkPatch(coll, data, partition));
+    }
+
+    @Override
+    public boolean ping(String coll) throws Exception {
+        return delegate.ping(coll);
+    }
+}
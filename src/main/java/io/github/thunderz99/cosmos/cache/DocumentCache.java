@@ -0,0 +1,338 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import io.github.thunderz99.cosmos.util.Checker;
+
+/**
+ * A bounded in-process cache of documents, shared by the CosmosDatabase instances of a Cosmos account.
+ *
+ * <p>
+ * Bounded by both entries and bytes: an entry weighs max(estimated bytes, maxBytes / maxEntries), and the total weight is bounded by maxBytes.
+ * Eviction is the LRU-like policy of guava's cache, the same as CompiledQueryCache.
+ * </p>
+ *
+ * <p>
+ * Cached maps are copied deeply when put and when got, so that callers modifying a document do not affect the cache.
+ * </p>
+ */
+public class DocumentCache {
+
+    /**
+     * number of stripes of the invalidation versions
+     */
+    static final int VERSION_STRIPES = 64;
+
+    /**
+     * estimated bytes of an object header / a reference
+     */
+    static final int OBJECT_OVERHEAD = 16;
+
+    /**
+     * key of a cached document
+     */
+    public record Key(String db, String coll, String partition, String id) {
+    }
+
+    /**
+     * a cached document. data is never exposed to callers without a copy
+     */
+    static class Entry {
+
+        final Map<String, Object> data;
+
+        final String etag;
+
+        /**
+         * extended when revalidated as not modified
+         */
+        volatile long expiresAt;
+
+        Entry(Map<String, Object> data, String etag, long expiresAt) {
+            this.data = data;
+            this.etag = etag;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * statistics of the cache
+     */
+    public static class Stats {
+
+        /**
+         * reads served from the cache without a round trip
+         */
+        public long hitCount;
+
+        /**
+         * reads done by a full read
+         */
+        public long missCount;
+
+        /**
+         * expired documents revalidated by etag and found not modified
+         */
+        public long notModifiedCount;
+
+        /**
+         * expired documents revalidated by etag and found modified
+         */
+        public long modifiedCount;
+
+        /**
+         * documents invalidated by writes
+         */
+        public long invalidationCount;
+
+        /**
+         * documents evicted by size
+         */
+        public long evictionCount;
+
+        /**
+         * current number of documents
+         */
+        public long size;
+
+        @Override
+        public String toString() {
+            return "Stats{hitCount=%d, missCount=%d, notModifiedCount=%d, modifiedCount=%d, invalidationCount=%d, evictionCount=%d, size=%d}"
+                    .formatted(hitCount, missCount, notModifiedCount, modifiedCount, invalidationCount, evictionCount, size);
+        }
+    }
+
+    final DocumentCacheOption option;
+
+    final Cache<Key, Entry> cache;
+
+    /**
+     * incremented when a key of the stripe is invalidated. A document read before an invalidation is not put into the cache after it
+     */
+    final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    /**
+     * database names of the cached documents, to match the events of backends not knowing the database name
+     */
+    final Set<String> dbs = ConcurrentHashMap.newKeySet();
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder notModified = new LongAdder();
+    final LongAdder modified = new LongAdder();
+    final LongAdder invalidations = new LongAdder();
+
+    public DocumentCache(DocumentCacheOption option) {
+        Checker.checkNotNull(option, "option");
+        Checker.check(option.maxEntries > 0, "maxEntries should be > 0");
+        Checker.check(option.maxBytes > 0, "maxBytes should be > 0");
+        Checker.check(option.ttlMillis >= 0, "ttlMillis should be >= 0");
+
+        this.option = option;
+        var minWeight = (int) Math.max(1, Math.min(Integer.MAX_VALUE, option.maxBytes / option.maxEntries));
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(option.maxBytes)
+                .weigher((Key key, Entry entry) -> Math.max(minWeight, estimateBytes(entry.data)))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * get the option
+     *
+     * @return option
+     */
+    public DocumentCacheOption getOption() {
+        return option;
+    }
+
+    Entry get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * get the current version of the key's stripe. read it before reading from db, and pass it to put
+     */
+    long version(Key key) {
+        return versions.get(stripe(key));
+    }
+
+    /**
+     * put a document, unless the key is invalidated after version is read
+     */
+    void put(Key key, Map<String, Object> data, long version, long ttlMillis) {
+        var etag = data.get("_etag");
+        var entry = new Entry(deepCopy(data), etag == null ? null : etag.toString(), System.currentTimeMillis() + ttlMillis);
+        if (versions.get(stripe(key)) == version) {
+            dbs.add(key.db);
+            cache.put(key, entry);
+            // re-check, in case an invalidation happened between the check and the put
+            if (versions.get(stripe(key)) != version) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * invalidate a document
+     *
+     * @param key key of the document
+     */
+    public void invalidate(Key key) {
+        versions.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+        invalidations.increment();
+    }
+
+    /**
+     * invalidate documents
+     *
+     * @param db        database name
+     * @param coll      collection name
+     * @param partition partition name
+     * @param ids       ids of the documents
+     */
+    public void invalidate(String db, String coll, String partition, Collection<String> ids) {
+        for (var id : ids) {
+            invalidate(new Key(db, coll, partition, id));
+        }
+    }
+
+    /**
+     * invalidate the documents changed by any client, delivered by the InvalidationBus.
+     *
+     * <p>
+     * A cached document having the same etag as the event is kept, because it is already the changed one(e.g. read after its own write).
+     * </p>
+     *
+     * @param events changed documents
+     */
+    public void invalidate(List<InvalidationEvent> events) {
+        for (var event : events) {
+            var targetDbs = event.db != null ? List.of(event.db) : List.copyOf(dbs);
+            for (var db : targetDbs) {
+                if (event.id == null) {
+                    invalidateAll(db, event.coll);
+                    continue;
+                }
+                var key = new Key(db, event.coll, event.partition, event.id);
+                var entry = cache.getIfPresent(key);
+                if (entry != null && event.etag != null && event.etag.equals(entry.etag)) {
+                    // reject the puts of reads started before the change, but keep the entry
+                    versions.incrementAndGet(stripe(key));
+                    continue;
+                }
+                invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * invalidate all the documents of a collection(e.g. when the collection is deleted)
+     *
+     * @param db   database name
+     * @param coll collection name. all collections if null
+     */
+    public void invalidateAll(String db, String coll) {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.db, db) && (coll == null || Objects.equals(key.coll, coll)));
+    }
+
+    /**
+     * invalidate all the documents
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    /**
+     * get the statistics
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.hitCount = hits.sum();
+        stats.missCount = misses.sum();
+        stats.notModifiedCount = notModified.sum();
+        stats.modifiedCount = modified.sum();
+        stats.invalidationCount = invalidations.sum();
+        stats.evictionCount = cache.stats().evictionCount();
+        stats.size = cache.size();
+        return stats;
+    }
+
+    static int stripe(Key key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+
+    /**
+     * estimate the memory size of a json-like object
+     *
+     * @param obj map / list / scalar
+     * @return estimated bytes
+     */
+    static int estimateBytes(Object obj) {
+        long size;
+        if (obj == null) {
+            size = 0;
+        } else if (obj instanceof Map<?, ?> map) {
+            size = OBJECT_OVERHEAD;
+            for (var entry : map.entrySet()) {
+                size += OBJECT_OVERHEAD + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+        } else if (obj instanceof Collection<?> collection) {
+            size = OBJECT_OVERHEAD;
+            for (var element : collection) {
+                size += estimateBytes(element);
+            }
+        } else if (obj instanceof CharSequence str) {
+            size = OBJECT_OVERHEAD + 2L * str.length();
+        } else {
+            size = OBJECT_OVERHEAD;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /**
+     * copy maps and lists deeply. other values are shared
+     *
+     * @param obj map / list / scalar
+     * @return copied object
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T deepCopy(T obj) {
+        if (obj instanceof Map<?, ?> map) {
+            var ret = new LinkedHashMap<Object, Object>();
+            for (var entry : map.entrySet()) {
+                ret.put(entry.getKey(), deepCopy(entry.getValue()));
+            }
+            return (T) ret;
+        }
+        if (obj instanceof List<?> list) {
+            var ret = new ArrayList<Object>(list.size());
+            for (var element : list) {
+                ret.add(deepCopy(element));
+            }
+            return (T) ret;
+        }
+        return obj;
+    }
+}
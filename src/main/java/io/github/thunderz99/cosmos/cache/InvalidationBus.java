@@ -0,0 +1,290 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.thunderz99.cosmos.util.Checker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the documents changed by any client(published by a backend subscriber) to the registered DocumentCaches and InvalidationListeners.
+ *
+ * <p>
+ * Publishing never blocks the subscriber. Pending events are coalesced by document, so only the latest event of a hot document is delivered,
+ * and bounded by queueCapacity. When the queue overflows, the pending events are dropped and a resync(invalidate everything) is delivered instead.
+ * Events are delivered in batches by a daemon dispatcher thread.
+ * </p>
+ */
+public class InvalidationBus implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    /**
+     * statistics of the bus
+     */
+    public static class Stats {
+
+        /**
+         * events published
+         */
+        public long publishedCount;
+
+        /**
+         * events merged into a pending event of the same document
+         */
+        public long coalescedCount;
+
+        /**
+         * events dropped by overflow
+         */
+        public long droppedCount;
+
+        /**
+         * events delivered
+         */
+        public long dispatchedCount;
+
+        /**
+         * resyncs delivered
+         */
+        public long resyncCount;
+
+        /**
+         * current number of pending events
+         */
+        public long queueDepth;
+
+        @Override
+        public String toString() {
+            return "Stats{publishedCount=%d, coalescedCount=%d, droppedCount=%d, dispatchedCount=%d, resyncCount=%d, queueDepth=%d}"
+                    .formatted(publishedCount, coalescedCount, droppedCount, dispatchedCount, resyncCount, queueDepth);
+        }
+    }
+
+    final int queueCapacity;
+
+    /**
+     * pending events by document, guarded by this
+     */
+    LinkedHashMap<DocumentCache.Key, InvalidationEvent> pending = new LinkedHashMap<>();
+
+    /**
+     * whether a resync is pending, guarded by this
+     */
+    boolean resyncPending = false;
+
+    boolean closed = false;
+
+    final List<DocumentCache> caches = new CopyOnWriteArrayList<>();
+
+    final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    final LongAdder published = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder dispatched = new LongAdder();
+    final LongAdder resyncs = new LongAdder();
+
+    final Thread dispatcher;
+
+    /**
+     * Create a bus and start its dispatcher thread
+     *
+     * @param queueCapacity max number of pending documents
+     */
+    public InvalidationBus(int queueCapacity) {
+        Checker.check(queueCapacity > 0, "queueCapacity should be > 0");
+        this.queueCapacity = queueCapacity;
+        this.dispatcher = new Thread(this::dispatchLoop, "java-cosmos-invalidation-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Register a document cache to invalidate
+     *
+     * @param cache document cache
+     * @return this
+     */
+    public InvalidationBus addCache(DocumentCache cache) {
+        Checker.checkNotNull(cache, "cache");
+        caches.add(cache);
+        return this;
+    }
+
+    /**
+     * Unregister a document cache
+     *
+     * @param cache document cache
+     * @return this
+     */
+    public InvalidationBus removeCache(DocumentCache cache) {
+        caches.remove(cache);
+        return this;
+    }
+
+    /**
+     * Register a listener
+     *
+     * @param listener listener
+     * @return this
+     */
+    public InvalidationBus addListener(InvalidationListener listener) {
+        Checker.checkNotNull(listener, "listener");
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Unregister a listener
+     *
+     * @param listener listener
+     * @return this
+     */
+    public InvalidationBus removeListener(InvalidationListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Publish a changed document. Never blocks.
+     *
+     * @param event changed document
+     */
+    public void publish(InvalidationEvent event) {
+        Checker.checkNotNull(event, "event");
+        published.increment();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (resyncPending) {
+                // everything will be invalidated anyway
+                dropped.increment();
+                return;
+            }
+            var key = event.key();
+            if (pending.containsKey(key)) {
+                // keep the latest one, in the order of the first one
+                pending.put(key, event);
+                coalesced.increment();
+                return;
+            }
+            if (pending.size() >= queueCapacity) {
+                log.warn("invalidation queue overflowed. capacity:{}. everything cached will be invalidated.", queueCapacity);
+                dropped.add(pending.size() + 1);
+                pending.clear();
+                resyncPending = true;
+            } else {
+                pending.put(key, event);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Publish a resync, when events may have been lost(e.g. a subscriber reconnected). Pending events are dropped.
+     */
+    public void publishResync() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            dropped.add(pending.size());
+            pending.clear();
+            resyncPending = true;
+            notifyAll();
+        }
+    }
+
+    void dispatchLoop() {
+        while (true) {
+            List<InvalidationEvent> events;
+            boolean resync;
+            synchronized (this) {
+                while (!closed && pending.isEmpty() && !resyncPending) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                events = new ArrayList<>(pending.values());
+                pending = new LinkedHashMap<>();
+                resync = resyncPending;
+                resyncPending = false;
+            }
+            dispatch(events, resync);
+        }
+    }
+
+    /**
+     * deliver a batch to the caches and the listeners. exceptions of a listener do not affect the others
+     */
+    void dispatch(List<InvalidationEvent> events, boolean resync) {
+        if (resync) {
+            resyncs.increment();
+            for (var cache : caches) {
+                cache.invalidateAll();
+            }
+            for (var listener : listeners) {
+                try {
+                    listener.onResync();
+                } catch (Exception e) {
+                    log.warn("invalidation listener failed on resync. listener:{}", listener, e);
+                }
+            }
+            return;
+        }
+
+        for (var cache : caches) {
+            cache.invalidate(events);
+        }
+        for (var listener : listeners) {
+            try {
+                listener.onEvents(events);
+            } catch (Exception e) {
+                log.warn("invalidation listener failed. listener:{}, events:{}", listener, events.size(), e);
+            }
+        }
+        dispatched.add(events.size());
+    }
+
+    /**
+     * get the statistics
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.publishedCount = published.sum();
+        stats.coalescedCount = coalesced.sum();
+        stats.droppedCount = dropped.sum();
+        stats.dispatchedCount = dispatched.sum();
+        stats.resyncCount = resyncs.sum();
+        synchronized (this) {
+            stats.queueDepth = pending.size();
+        }
+        return stats;
+    }
+
+    /**
+     * Stop the dispatcher. Pending events are discarded.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+            notifyAll();
+        }
+    }
+}
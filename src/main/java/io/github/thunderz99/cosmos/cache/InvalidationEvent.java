@@ -0,0 +1,57 @@
+package io.github.thunderz99.cosmos.cache;
+
+/**
+ * A document changed by any client, published by a backend subscriber to the InvalidationBus.
+ *
+ * <p>
+ * db is null when the backend does not know it(postgres / mongodb, where the CosmosDatabase's db name is not stored), and matches any db.
+ * id is null when the whole partition is changed(e.g. dropped).
+ * </p>
+ */
+public class InvalidationEvent {
+
+    /**
+     * database name. null to match any database
+     */
+    public final String db;
+
+    /**
+     * collection name
+     */
+    public final String coll;
+
+    /**
+     * partition name
+     */
+    public final String partition;
+
+    /**
+     * id of the document. null if the whole partition is changed
+     */
+    public final String id;
+
+    /**
+     * "_etag" of the document after the change. null if unknown or deleted
+     */
+    public final String etag;
+
+    public InvalidationEvent(String db, String coll, String partition, String id, String etag) {
+        this.db = db;
+        this.coll = coll;
+        this.partition = partition;
+        this.id = id;
+        this.etag = etag;
+    }
+
+    /**
+     * key used to coalesce events of the same document
+     */
+    DocumentCache.Key key() {
+        return new DocumentCache.Key(db, coll, partition, id);
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationEvent{db=%s, coll=%s, partition=%s, id=%s, etag=%s}".formatted(db, coll, partition, id, etag);
+    }
+}
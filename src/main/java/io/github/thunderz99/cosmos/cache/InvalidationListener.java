@@ -0,0 +1,22 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.List;
+
+/**
+ * Receives the documents changed by any client, from the InvalidationBus. Called by the dispatcher thread of the bus, so should not block.
+ */
+public interface InvalidationListener {
+
+    /**
+     * Called with coalesced events. Only the latest event of each document is included.
+     *
+     * @param events changed documents
+     */
+    void onEvents(List<InvalidationEvent> events);
+
+    /**
+     * Called when events may have been lost(the queue overflowed, or a subscriber reconnected). Everything cached should be dropped.
+     */
+    default void onResync() {
+    }
+}
@@ -88,6 +88,16 @@ public class Condition {
      */
     public CosmosSqlQuerySpec rawQuerySpec = null;
 
+    /**
+     * whether to use keyset(seek) pagination instead of offset. set by after(continuationToken)
+     */
+    public boolean keysetPagination = false;
+
+    /**
+     * continuation token returned by the previous page(CosmosDocumentList.getContinuationToken()). null for the first page.
+     */
+    public String continuationToken;
+
     public static final String COND_SQL_TRUE = "1=1";
     public static final String COND_SQL_FALSE = "1=0";
 
@@ -214,6 +224,31 @@ public class Condition {
 		return this;
 	}
 
+    /**
+     * Use keyset(seek) pagination, and fetch the page after the continuationToken.
+     *
+     * <p>
+     * Instead of OFFSET, the next page is fetched by a seek predicate like {@code (sortKey, id) > (?, ?)} for postgres / mongodb,
+     * and by the native continuation token for cosmosdb. So a deep page costs the same as the first page.
+     * offset is ignored when using keyset pagination. The sort keys should exist in all documents, and "id" is always used as the last tie-breaker.
+     * </p>
+     *
+     * {@code
+     * var cond = Condition.filter("status", "active").sort("createdAt", "DESC").limit(100).after(null); // first page
+     * var page = db.find("Collection1", cond, "AuditLogs");
+     * // next page
+     * var next = db.find("Collection1", cond.after(page.getContinuationToken()), "AuditLogs");
+     * }
+     *
+     * @param continuationToken token returned by CosmosDocumentList.getContinuationToken(). null for the first page.
+     * @return condition
+     */
+    public Condition after(String continuationToken) {
+        this.keysetPagination = true;
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
     /**
      * set the join
      *
@@ -311,7 +346,10 @@ public class Condition {
         }
 
         // offset and limit
-        queryText.append(String.format(" OFFSET %d LIMIT %d", offset, limit));
+        // when using keyset pagination, the page size is controlled by the continuation token of cosmosdb
+        if (!keysetPagination) {
+            queryText.append(String.format(" OFFSET %d LIMIT %d", offset, limit));
+        }
 
         if(log.isInfoEnabled()) {
             log.info("queryText:{}", queryText);
@@ -982,6 +1020,8 @@ public class Condition {
         cond.join = this.join;
         cond.returnAllSubArray = this.returnAllSubArray;
         cond.collate = this.collate;
+        cond.keysetPagination = this.keysetPagination;
+        cond.continuationToken = this.continuationToken;
 
         if (this.rawQuerySpec != null) {
             cond.rawQuerySpec = this.rawQuerySpec.copy();
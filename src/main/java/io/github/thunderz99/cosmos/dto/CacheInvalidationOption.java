@@ -0,0 +1,91 @@
+package io.github.thunderz99.cosmos.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options of the cross-node cache invalidation. see CosmosBuilder.withCacheInvalidation
+ *
+ * <p>
+ * Documents changed by any client are published to the InvalidationBus of the Cosmos instance, which invalidates the document cache and notifies the listeners.
+ * postgres uses a trigger and NOTIFY on the tables created by createTableIfNotExists, mongodb uses change streams(requires a replica set),
+ * and cosmosdb polls the change feed of the collections specified by watch(db, coll).
+ * </p>
+ */
+public class CacheInvalidationOption {
+
+    /**
+     * a collection to follow
+     */
+    public record Target(String db, String coll) {
+    }
+
+    /**
+     * max number of pending(not yet dispatched) documents. when overflowed, the pending events are dropped and everything cached is invalidated. default is 10000
+     */
+    public int queueCapacity = 10_000;
+
+    /**
+     * interval of polling the change feed(cosmosdb), or max wait of receiving notifications(postgres / mongodb). default is 500ms
+     */
+    public long pollIntervalMillis = 500;
+
+    /**
+     * wait before reconnecting after the subscription failed. default is 5s
+     */
+    public long reconnectIntervalMillis = 5_000;
+
+    /**
+     * collections to follow. required for cosmosdb. for postgres / mongodb all collections are followed if empty, and db is ignored
+     */
+    public List<Target> targets = new ArrayList<>();
+
+    /**
+     * set the max number of pending documents. default is 10000
+     * @param queueCapacity
+     * @return option
+     */
+    public CacheInvalidationOption queueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * set the polling interval in milliseconds. default is 500ms
+     * @param pollIntervalMillis
+     * @return option
+     */
+    public CacheInvalidationOption pollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * set the wait before reconnecting in milliseconds. default is 5s
+     * @param reconnectIntervalMillis
+     * @return option
+     */
+    public CacheInvalidationOption reconnectIntervalMillis(long reconnectIntervalMillis) {
+        this.reconnectIntervalMillis = reconnectIntervalMillis;
+        return this;
+    }
+
+    /**
+     * follow a collection
+     * @param db database name. ignored for postgres / mongodb
+     * @param coll collection name
+     * @return option
+     */
+    public CacheInvalidationOption watch(String db, String coll) {
+        this.targets.add(new Target(db, coll));
+        return this;
+    }
+
+    /**
+     * get the collection names to follow
+     * @return collection names. empty for all
+     */
+    public List<String> getColls() {
+        return targets.stream().map(Target::coll).distinct().toList();
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.thunderz99.cosmos.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of the in-process read-through document cache. see CosmosBuilder.withDocumentCache
+ *
+ * <p>
+ * Documents read by read / readSuppressing404 are cached by (database, coll, partition, id).
+ * Writes through the same client(create / update / upsert / updatePartial / patch / increment / delete / batch* / bulk*) invalidate the documents written.
+ * When a cached document expires, it is revalidated by its "_etag"(If-None-Match) instead of a full read, if the document has an etag.
+ * </p>
+ */
+public class DocumentCacheOption {
+
+    /**
+     * max number of cached documents. default is 10000
+     */
+    public int maxEntries = 10_000;
+
+    /**
+     * max total size of cached documents in bytes(estimated). default is 64MB
+     */
+    public long maxBytes = 64L * 1024 * 1024;
+
+    /**
+     * time to live of a cached document in milliseconds, for collections not in collectionTtlMillis. default is 60s. 0 to disable caching
+     */
+    public long ttlMillis = 60_000;
+
+    /**
+     * time to live by collection in milliseconds. 0 to disable caching for the collection
+     */
+    public Map<String, Long> collectionTtlMillis = new LinkedHashMap<>();
+
+    /**
+     * revalidate an expired document by its "_etag" instead of a full read. default is true
+     */
+    public boolean revalidateByEtag = true;
+
+    /**
+     * set the max number of cached documents. default is 10000
+     * @param maxEntries
+     * @return option
+     */
+    public DocumentCacheOption maxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * set the max total size of cached documents in bytes. default is 64MB
+     * @param maxBytes
+     * @return option
+     */
+    public DocumentCacheOption maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * set the default time to live in milliseconds. default is 60s
+     * @param ttlMillis
+     * @return option
+     */
+    public DocumentCacheOption ttlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * set the time to live of a collection in milliseconds. 0 to disable caching for the collection
+     * @param coll
+     * @param ttlMillis
+     * @return option
+     */
+    public DocumentCacheOption collectionTtlMillis(String coll, long ttlMillis) {
+        this.collectionTtlMillis.put(coll, ttlMillis);
+        return this;
+    }
+
+    /**
+     * whether to revalidate an expired document by its "_etag". default is true
+     * @param revalidateByEtag
+     * @return option
+     */
+    public DocumentCacheOption revalidateByEtag(boolean revalidateByEtag) {
+        this.revalidateByEtag = revalidateByEtag;
+        return this;
+    }
+
+    /**
+     * get the time to live of a collection
+     * @param coll
+     * @return ttl in milliseconds
+     */
+    public long getTtlMillis(String coll) {
+        return collectionTtlMillis.getOrDefault(coll, ttlMillis);
+    }
+}
@@ -7,10 +7,32 @@ public class PartialUpdateOption {
 
     public boolean checkETag = false;
 
+    /**
+     * Whether merge the partial data in the database server by one UPDATE statement, instead of SELECT FOR UPDATE + merge in java + UPDATE.
+     * Only affects postgres.
+     */
+    public boolean serverSideMerge = false;
+
     public static PartialUpdateOption checkETag(boolean checkETag){
         var option = new PartialUpdateOption();
         option.checkETag = checkETag;
         return option;
     }
 
+    public static PartialUpdateOption serverSideMerge(boolean serverSideMerge){
+        var option = new PartialUpdateOption();
+        option.serverSideMerge = serverSideMerge;
+        return option;
+    }
+
+    public PartialUpdateOption withCheckETag(boolean checkETag){
+        this.checkETag = checkETag;
+        return this;
+    }
+
+    public PartialUpdateOption withServerSideMerge(boolean serverSideMerge){
+        this.serverSideMerge = serverSideMerge;
+        return this;
+    }
+
 }
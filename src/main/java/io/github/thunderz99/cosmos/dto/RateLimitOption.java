@@ -0,0 +1,162 @@
+package io.github.thunderz99.cosmos.dto;
+
+/**
+ * Options of the adaptive client-side rate limiter of cosmosdb. see CosmosBuilder.withAdaptiveRateLimit
+ *
+ * <p>
+ * Requests to a container are admitted at a permitted rate(requests per second). The rate is increased additively while no 429 occurs,
+ * and decreased multiplicatively on a 429(AIMD). After a 429, no request is admitted until its retryAfter.
+ * </p>
+ */
+public class RateLimitOption {
+
+    /**
+     * permitted rate of a container at the beginning, in requests per second. default is 100
+     */
+    public double initialRate = 100;
+
+    /**
+     * min permitted rate in requests per second. default is 1
+     */
+    public double minRate = 1;
+
+    /**
+     * max permitted rate in requests per second. default is 10000
+     */
+    public double maxRate = 10_000;
+
+    /**
+     * rate added every increaseIntervalMillis without 429, in requests per second. default is 10
+     */
+    public double additiveIncrease = 10;
+
+    /**
+     * interval of the additive increase in milliseconds. default is 1000
+     */
+    public long increaseIntervalMillis = 1000;
+
+    /**
+     * factor multiplied to the rate on a 429. default is 0.7
+     */
+    public double multiplicativeDecrease = 0.7;
+
+    /**
+     * 429s within this interval after a decrease are treated as the same congestion, and do not decrease the rate again. default is 1000
+     */
+    public long decreaseIntervalMillis = 1000;
+
+    /**
+     * requests admitted at once without waiting, when the container has been idle. default is 1 second of the rate
+     */
+    public double burstSeconds = 1;
+
+    /**
+     * max time in milliseconds a request waits to be admitted. a request needing longer fails with 429 immediately. default is 30s
+     */
+    public long maxWaitMillis = 30_000;
+
+    /**
+     * ratio of the random jitter added to the backoff before a retry. default is 0.5(up to 50% longer)
+     */
+    public double jitterRatio = 0.5;
+
+    /**
+     * set the permitted rate at the beginning. default is 100
+     * @param initialRate
+     * @return option
+     */
+    public RateLimitOption initialRate(double initialRate) {
+        this.initialRate = initialRate;
+        return this;
+    }
+
+    /**
+     * set the min permitted rate. default is 1
+     * @param minRate
+     * @return option
+     */
+    public RateLimitOption minRate(double minRate) {
+        this.minRate = minRate;
+        return this;
+    }
+
+    /**
+     * set the max permitted rate, e.g. estimated from the provisioned RU. default is 10000
+     * @param maxRate
+     * @return option
+     */
+    public RateLimitOption maxRate(double maxRate) {
+        this.maxRate = maxRate;
+        return this;
+    }
+
+    /**
+     * set the rate added every increaseIntervalMillis without 429. default is 10
+     * @param additiveIncrease
+     * @return option
+     */
+    public RateLimitOption additiveIncrease(double additiveIncrease) {
+        this.additiveIncrease = additiveIncrease;
+        return this;
+    }
+
+    /**
+     * set the interval of the additive increase in milliseconds. default is 1000
+     * @param increaseIntervalMillis
+     * @return option
+     */
+    public RateLimitOption increaseIntervalMillis(long increaseIntervalMillis) {
+        this.increaseIntervalMillis = increaseIntervalMillis;
+        return this;
+    }
+
+    /**
+     * set the factor multiplied to the rate on a 429. default is 0.7
+     * @param multiplicativeDecrease
+     * @return option
+     */
+    public RateLimitOption multiplicativeDecrease(double multiplicativeDecrease) {
+        this.multiplicativeDecrease = multiplicativeDecrease;
+        return this;
+    }
+
+    /**
+     * set the interval in which 429s are treated as the same congestion. default is 1000
+     * @param decreaseIntervalMillis
+     * @return option
+     */
+    public RateLimitOption decreaseIntervalMillis(long decreaseIntervalMillis) {
+        this.decreaseIntervalMillis = decreaseIntervalMillis;
+        return this;
+    }
+
+    /**
+     * set the burst admitted at once after idle, in seconds of the rate. default is 1
+     * @param burstSeconds
+     * @return option
+     */
+    public RateLimitOption burstSeconds(double burstSeconds) {
+        this.burstSeconds = burstSeconds;
+        return this;
+    }
+
+    /**
+     * set the max time in milliseconds a request waits to be admitted. default is 30s
+     * @param maxWaitMillis
+     * @return option
+     */
+    public RateLimitOption maxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+        return this;
+    }
+
+    /**
+     * set the ratio of the random jitter added to the backoff. default is 0.5
+     * @param jitterRatio
+     * @return option
+     */
+    public RateLimitOption jitterRatio(double jitterRatio) {
+        this.jitterRatio = jitterRatio;
+        return this;
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.thunderz99.cosmos.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+import io.github.thunderz99.cosmos.util.Checker;
+
+/**
+ * An (id, partition) pair to read by readMany.
+ */
+public class ReadManyItem {
+
+    /**
+     * Target document id.
+     */
+    public String id;
+
+    /**
+     * Partition of the target document.
+     */
+    public String partition;
+
+    /**
+     * Create an empty item.
+     */
+    public ReadManyItem() {
+    }
+
+    /**
+     * Create an item with id and partition.
+     *
+     * @param id        target document id
+     * @param partition partition name
+     */
+    public ReadManyItem(String id, String partition) {
+        this.id = id;
+        this.partition = partition;
+    }
+
+    /**
+     * Build a readMany item.
+     *
+     * @param id        target document id
+     * @param partition partition name
+     * @return ReadManyItem
+     */
+    public static ReadManyItem of(String id, String partition) {
+        return new ReadManyItem(id, partition);
+    }
+
+    /**
+     * Check that items is not null and every item has id and partition
+     *
+     * @param items items to check
+     */
+    public static void checkValid(List<ReadManyItem> items) {
+        Checker.checkNotNull(items, "items");
+        for (var item : items) {
+            Checker.checkNotNull(item, "item");
+            Checker.checkNotBlank(item.id, "id");
+            Checker.checkNotBlank(item.partition, "partition");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReadManyItem that)) {
+            return false;
+        }
+        return Objects.equals(id, that.id) && Objects.equals(partition, that.partition);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, partition);
+    }
+
+    @Override
+    public String toString() {
+        return "{id:%s, partition:%s}".formatted(id, partition);
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.thunderz99.cosmos.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import io.github.thunderz99.cosmos.CosmosDocument;
+
+/**
+ * The result of readMany
+ */
+public class ReadManyResult {
+
+    /**
+     * The documents found, in the order of the input items. Duplicated items are returned only once.
+     */
+    public List<CosmosDocument> documents = new ArrayList<>();
+
+    /**
+     * The items not found, in the order of the input items
+     */
+    public List<ReadManyItem> missingList = new ArrayList<>();
+
+    /**
+     * Get the ids of the items not found
+     *
+     * @return ids not found
+     */
+    public List<String> getMissingIds() {
+        return missingList.stream().map(item -> item.id).toList();
+    }
+
+    /**
+     * Build the result in the order of the input items
+     *
+     * @param items input items
+     * @param found documents found by item
+     * @return ReadManyResult
+     */
+    public static ReadManyResult of(List<ReadManyItem> items, Map<ReadManyItem, CosmosDocument> found) {
+        var ret = new ReadManyResult();
+        for (var item : new LinkedHashSet<>(items)) {
+            var doc = found.get(item);
+            if (doc == null) {
+                ret.missingList.add(item);
+            } else {
+                ret.documents.add(doc);
+            }
+        }
+        return ret;
+    }
+}
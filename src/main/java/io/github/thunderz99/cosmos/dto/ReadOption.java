@@ -0,0 +1,25 @@
+package io.github.thunderz99.cosmos.dto;
+
+/**
+ * Options when reading a document by id. e.g. whether a possibly stale document from a read replica is acceptable
+ */
+public class ReadOption {
+
+    /**
+     * Whether the document can be read from a read replica, which may lag behind the primary(eventual consistency).
+     * default is false(read from the primary). Only affects postgres with read replicas configured.
+     */
+    public boolean eventualConsistency = false;
+
+    public static ReadOption eventualConsistency(boolean eventualConsistency){
+        var option = new ReadOption();
+        option.eventualConsistency = eventualConsistency;
+        return option;
+    }
+
+    public ReadOption withEventualConsistency(boolean eventualConsistency){
+        this.eventualConsistency = eventualConsistency;
+        return this;
+    }
+
+}
@@ -0,0 +1,87 @@
+package io.github.thunderz99.cosmos.dto;
+
+/**
+ * Options of the write-coalescing micro-batcher. see BatchingCosmosDatabase
+ *
+ * <p>
+ * Single create / upsert calls are buffered by (coll, partition), and flushed by bulkCreate / bulkUpsert
+ * when maxBatchSize documents are buffered or maxDelayMillis has passed since the first one.
+ * </p>
+ */
+public class WriteBatchOption {
+
+    /**
+     * max number of documents in a batch. default is 100
+     */
+    public int maxBatchSize = 100;
+
+    /**
+     * max time in milliseconds a document waits in the buffer before flushed. default is 10ms
+     */
+    public long maxDelayMillis = 10;
+
+    /**
+     * max number of documents buffered or being flushed. callers are blocked when exceeded. default is 10000
+     */
+    public int maxPendingDocuments = 10_000;
+
+    /**
+     * max time in milliseconds a caller is blocked when the buffer is full, before failing with 429. default is 10s
+     */
+    public long maxBlockMillis = 10_000;
+
+    /**
+     * number of threads flushing batches. default is 4
+     */
+    public int flushThreads = 4;
+
+    /**
+     * set the max number of documents in a batch. default is 100
+     * @param maxBatchSize
+     * @return option
+     */
+    public WriteBatchOption maxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * set the max time in milliseconds a document waits in the buffer. default is 10ms
+     * @param maxDelayMillis
+     * @return option
+     */
+    public WriteBatchOption maxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * set the max number of documents buffered or being flushed. default is 10000
+     * @param maxPendingDocuments
+     * @return option
+     */
+    public WriteBatchOption maxPendingDocuments(int maxPendingDocuments) {
+        this.maxPendingDocuments = maxPendingDocuments;
+        return this;
+    }
+
+    /**
+     * set the max time in milliseconds a caller is blocked when the buffer is full. default is 10s
+     * @param maxBlockMillis
+     * @return option
+     */
+    public WriteBatchOption maxBlockMillis(long maxBlockMillis) {
+        this.maxBlockMillis = maxBlockMillis;
+        return this;
+    }
+
+    /**
+     * set the number of threads flushing batches. default is 4
+     * @param flushThreads
+     * @return option
+     */
+    public WriteBatchOption flushThreads(int flushThreads) {
+        this.flushThreads = flushThreads;
+        return this;
+    }
+}
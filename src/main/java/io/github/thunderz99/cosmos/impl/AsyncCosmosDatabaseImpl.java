@@ -0,0 +1,85 @@
+package io.github.thunderz99.cosmos.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.thunderz99.cosmos.AsyncCosmosDatabase;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.util.Checker;
+
+/**
+ * AsyncCosmosDatabase running the blocking operations of a CosmosDatabase on an executor.
+ *
+ * <p>
+ * The same implementation is used by cosmosdb, mongodb and postgres, so the behavior(retry, 404, etag and etc.) is exactly the same as the blocking api.
+ * The number of in-flight operations is bounded by the executor.
+ * </p>
+ */
+public class AsyncCosmosDatabaseImpl implements AsyncCosmosDatabase {
+
+    /**
+     * Threads of the default executor shared by Cosmos instances without a custom executor
+     */
+    public static final int DEFAULT_ASYNC_PARALLELISM = 32;
+
+    final CosmosDatabase database;
+
+    final Executor executor;
+
+    public AsyncCosmosDatabaseImpl(CosmosDatabase database, Executor executor) {
+        Checker.checkNotNull(database, "database");
+        Checker.checkNotNull(executor, "executor");
+        this.database = database;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the default executor. A fixed size pool of daemon threads, idle threads are terminated after 60 seconds.
+     *
+     * @return default executor
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    static class DefaultExecutorHolder {
+        static final ThreadPoolExecutor EXECUTOR = newFixedDaemonExecutor(DEFAULT_ASYNC_PARALLELISM);
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads. Tasks are queued when all threads are busy.
+     *
+     * @param parallelism number of threads
+     * @return executor
+     */
+    public static ThreadPoolExecutor newFixedDaemonExecutor(int parallelism) {
+        Checker.check(parallelism > 0, "parallelism should be > 0");
+        var executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("java-cosmos-async-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> executeAsync(DatabaseFunction<T> func) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return func.apply(database);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    @Override
+    public CosmosDatabase getDatabase() {
+        return database;
+    }
+}
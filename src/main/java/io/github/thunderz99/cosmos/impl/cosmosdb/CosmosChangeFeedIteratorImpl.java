@@ -0,0 +1,130 @@
+package io.github.thunderz99.cosmos.impl.cosmosdb;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.PartitionKey;
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A cosmosdb implementation of {@link ChangeFeedIterator}, using the pull model of the change feed of a logical partition.
+ *
+ * <p>
+ * The checkpoint is the continuation of the change feed. A continuation can only point to a page boundary,
+ * so while a page is being iterated, the checkpoint stays at the beginning of the page(the page is delivered again when resumed from it).
+ * Deletes are not included in the change feed(latest version mode).
+ * </p>
+ */
+public class CosmosChangeFeedIteratorImpl implements ChangeFeedIterator {
+
+    /**
+     * max number of changes in a page
+     */
+    static final int PAGE_SIZE = 1000;
+
+    final CosmosContainer container;
+
+    final String partition;
+
+    /**
+     * continuation after the changes already returned(or being returned) by next()
+     */
+    String continuation;
+
+    /**
+     * continuation after the page in the buffer
+     */
+    String pageContinuation;
+
+    final ArrayDeque<Map<String, Object>> buffer = new ArrayDeque<>();
+
+    /**
+     * @param container      container to read
+     * @param partition      partition name
+     * @param fromCheckpoint checkpoint to resume from. null to start from now
+     */
+    CosmosChangeFeedIteratorImpl(CosmosContainer container, String partition, String fromCheckpoint) {
+        this.container = container;
+        this.partition = partition;
+        this.continuation = fromCheckpoint;
+
+        if (StringUtils.isEmpty(fromCheckpoint)) {
+            // read the first page, in order to get a continuation of now
+            fetch();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffer.isEmpty()) {
+            fetch();
+        }
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * read the next page after the continuation
+     */
+    @SuppressWarnings("unchecked")
+    void fetch() {
+        CosmosChangeFeedRequestOptions options;
+        try {
+            options = StringUtils.isEmpty(continuation)
+                    ? CosmosChangeFeedRequestOptions.createForProcessingFromNow(FeedRange.forLogicalPartition(new PartitionKey(partition)))
+                    : CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuation);
+        } catch (IllegalArgumentException e) {
+            throw new CosmosException(400, "400", "Invalid checkpoint for cosmosdb: " + continuation, e);
+        }
+        options.setMaxItemCount(PAGE_SIZE);
+
+        try {
+            var pages = container.queryChangeFeed(options, Map.class).iterableByPage().iterator();
+            if (!pages.hasNext()) {
+                return;
+            }
+            var page = pages.next();
+            for (var item : page.getResults()) {
+                buffer.add((Map<String, Object>) item);
+            }
+            if (buffer.isEmpty()) {
+                // caught up
+                continuation = page.getContinuationToken();
+            } else {
+                pageContinuation = page.getContinuationToken();
+            }
+        } catch (com.azure.cosmos.CosmosException ce) {
+            throw new CosmosException(ce);
+        }
+    }
+
+    @Override
+    public CosmosDocument next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var doc = new CosmosDocument(buffer.poll());
+        if (buffer.isEmpty()) {
+            // the page has been returned entirely
+            continuation = pageContinuation;
+            pageContinuation = null;
+        }
+        return doc;
+    }
+
+    @Override
+    public String getCheckpoint() {
+        return continuation;
+    }
+
+    @Override
+    public void close() {
+        buffer.clear();
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.thunderz99.cosmos.impl.cosmosdb;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.azure.cosmos.CosmosClient;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.cache.InvalidationEvent;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
+import io.github.thunderz99.cosmos.util.Checker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the change feed of the watched collections, and publishes the changed documents to an InvalidationBus.
+ *
+ * <p>
+ * The pull model of the change feed is used instead of the change feed processor, because every node needs all the changes,
+ * while the processor distributes the leases(feed ranges) across the nodes. The continuation is kept in memory,
+ * so the changes made while this node is down are not delivered(the cache is empty at startup anyway).
+ * Deletes are not included in the change feed(latest version mode).
+ * </p>
+ */
+public class CosmosChangeFeedSubscriber implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CosmosChangeFeedSubscriber.class);
+
+    final CosmosClient client;
+
+    final InvalidationBus bus;
+
+    final List<CacheInvalidationOption.Target> targets;
+
+    /**
+     * continuation of each target. absent before the first poll
+     */
+    final Map<CacheInvalidationOption.Target, String> continuations = new LinkedHashMap<>();
+
+    final ScheduledExecutorService poller;
+
+    /**
+     * Create a subscriber and start polling in a daemon thread
+     *
+     * @param client cosmos client
+     * @param bus    bus to publish the changed documents
+     * @param option invalidation option. targets are required
+     */
+    public CosmosChangeFeedSubscriber(CosmosClient client, InvalidationBus bus, CacheInvalidationOption option) {
+        Checker.checkNotNull(client, "client");
+        Checker.checkNotNull(bus, "bus");
+        Checker.checkNotNull(option, "option");
+        Checker.check(!option.targets.isEmpty(), "targets should not be empty for cosmosdb. use option.watch(db, coll)");
+
+        this.client = client;
+        this.bus = bus;
+        this.targets = List.copyOf(option.targets);
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "java-cosmos-change-feed-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::pollAll, 0, option.pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void pollAll() {
+        for (var target : targets) {
+            try {
+                poll(target);
+            } catch (Exception e) {
+                // the continuation is kept, so no change is lost
+                log.warn("polling the change feed failed. db:{}, coll:{}", target.db(), target.coll(), e);
+            }
+        }
+    }
+
+    /**
+     * read the changes after the continuation of the target, and publish them
+     */
+    void poll(CacheInvalidationOption.Target target) {
+        var container = client.getDatabase(target.db()).getContainer(target.coll());
+        var continuation = continuations.get(target);
+        var options = continuation == null
+                ? CosmosChangeFeedRequestOptions.createForProcessingFromNow(FeedRange.forFullRange())
+                : CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuation);
+
+        for (var page : container.queryChangeFeed(options, Map.class).iterableByPage()) {
+            for (var item : page.getResults()) {
+                var id = item.get("id");
+                if (id == null) {
+                    continue;
+                }
+                var partition = item.get(Cosmos.getDefaultPartitionKey());
+                var etag = item.get("_etag");
+                bus.publish(new InvalidationEvent(target.db(), target.coll(), partition == null ? null : partition.toString(),
+                        id.toString(), etag == null ? null : etag.toString()));
+            }
+            continuations.put(target, page.getContinuationToken());
+        }
+    }
+
+    /**
+     * Stop polling
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
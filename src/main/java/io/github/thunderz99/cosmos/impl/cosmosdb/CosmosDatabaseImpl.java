@@ -15,6 +15,9 @@ import io.github.thunderz99.cosmos.dto.CosmosBatchResponseWrapper;
 import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.metrics.OperationContext;
 import io.github.thunderz99.cosmos.util.*;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
 import org.apache.commons.collections4.CollectionUtils;
@@ -89,7 +92,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         checkValidId(objectMap);
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
-        var response = RetryUtil.executeWithRetry(() -> container.createItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.createItem(
                 objectMap,
                 new PartitionKey(partition),
                 new CosmosItemRequestOptions()
@@ -99,6 +102,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         log.info("created Document:{}/docs/{}, partition:{}, account:{}, request charge:{}",
                 collectionLink, getId(item), partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(item);
     }
@@ -184,7 +188,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-        var response = RetryUtil.executeWithRetry(() -> container.readItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.readItem(
                 id,
                 new PartitionKey(partition),
                 mapInstance.getClass()
@@ -192,6 +196,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         log.info("read Document:{}, partition:{}, account:{}, request charge: {}",
                 documentLink, partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(response.getItem());
     }
@@ -233,6 +238,107 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         }
     }
 
+    /**
+     * Read a document only if its "_etag" does not match etag, using the If-None-Match header. A 304 Not Modified costs less RU than a full read.
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param etag      etag of the document already held. a full read is done if null
+     * @return CosmosDocument instance if modified, or null if not modified
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+
+        if (StringUtils.isEmpty(etag)) {
+            return read(coll, id, partition);
+        }
+
+        Checker.checkNotBlank(id, "id");
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        var documentLink = LinkFormatUtil.getDocumentLink(db, coll, id);
+
+        var container = this.clientV4.getDatabase(db).getContainer(coll);
+        var options = new CosmosItemRequestOptions().setIfNoneMatchETag(etag);
+
+        try {
+            var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.readItem(
+                    id,
+                    new PartitionKey(partition),
+                    options,
+                    mapInstance.getClass()
+            ));
+
+            log.info("read Document if none match:{}, partition:{}, statusCode:{}, account:{}, request charge: {}",
+                    documentLink, partition, response.getStatusCode(), getAccount(), response.getRequestCharge());
+            OperationContext.recordRequestCharge(response.getRequestCharge());
+
+            if (response.getStatusCode() == 304) {
+                return null;
+            }
+            return new CosmosDocument(response.getItem());
+        } catch (CosmosException ce) {
+            if (ce.getStatusCode() == 304) {
+                return null;
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Read multiple documents by (id, partition) pairs, using the SDK's readMany.
+     *
+     * <p>
+     * The fields are extracted at client side, because readMany of the SDK always returns the whole documents.
+     * </p>
+     *
+     * @param coll   collection name
+     * @param items  (id, partition) pairs to read
+     * @param fields fields to return. "id" is always returned. all fields are returned if empty
+     * @return documents found and items missing
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        ReadManyItem.checkValid(items);
+
+        var found = new HashMap<ReadManyItem, CosmosDocument>();
+        if (items.isEmpty()) {
+            return ReadManyResult.of(items, found);
+        }
+
+        var identities = new LinkedHashSet<>(items).stream()
+                .map(item -> new CosmosItemIdentity(new PartitionKey(item.partition), item.id))
+                .toList();
+
+        var container = this.clientV4.getDatabase(db).getContainer(coll);
+
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.readMany(identities, mapInstance.getClass()));
+
+        log.info("readMany Document:{}, items:{}, account:{}, request charge: {}",
+                LinkFormatUtil.getCollectionLink(db, coll), items.size(), getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
+
+        var projectionFields = ConditionUtil.processFields(fields == null ? Set.of() : new LinkedHashSet<>(List.of(fields)));
+        for (var item : response.getResults()) {
+            var map = (Map<String, Object>) item;
+            var key = ReadManyItem.of(String.valueOf(map.get("id")), String.valueOf(map.get(Cosmos.getDefaultPartitionKey())));
+            if (!projectionFields.isEmpty()) {
+                var includes = new LinkedHashSet<>(projectionFields);
+                includes.add("id");
+                map = MapUtil.project(map, includes);
+            }
+            found.put(key, new CosmosDocument(map));
+        }
+
+        return ReadManyResult.of(items, found);
+    }
+
     /**
      * Read a document by coll and id. Return null if object not exist
      *
@@ -274,7 +380,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-        var response = RetryUtil.executeWithRetry(() -> container.replaceItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.replaceItem(
                 map, id,
                 new PartitionKey(partition),
                 new CosmosItemRequestOptions()
@@ -283,6 +389,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         log.info("updated Document:{}, partition:{}, account:{}, request charge:{}",
                 documentLink, partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(response.getItem());
     }
@@ -393,7 +500,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var documentLink = LinkFormatUtil.getDocumentLink(db, coll, id);
 
-        var map = RetryUtil.executeWithRetry(() -> {
+        var map = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> {
                     // we will not retry if checkETag is true, this will result in an OCC.
                     // if we do not checkETag, we will get the newest etag from DB and retry replaceDocument.
                     var maxRetry = option.checkETag ? 0 : 3;
@@ -520,7 +627,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-        var response = RetryUtil.executeWithRetry(() -> container.upsertItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.upsertItem(
                 map,
                 new PartitionKey(partition),
                 new CosmosItemRequestOptions()
@@ -528,6 +635,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         log.info("upsert Document:{}/docs/{}, partition:{}, account:{}, request charge:{}",
                 collectionLink, id, partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(response.getItem());
     }
@@ -565,7 +673,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
             var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-            var response = RetryUtil.executeWithRetry(() -> container.deleteItem(
+            var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.deleteItem(
                     id,
                     new PartitionKey(partition),
                     new CosmosItemRequestOptions()
@@ -573,6 +681,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
             log.info("deleted Document:{}, partition:{}, account:{}, request charge:{}",
                     documentLink, partition, getAccount(), response.getRequestCharge());
+            OperationContext.recordRequestCharge(response.getRequestCharge());
 
         } catch (Exception e) {
             if (CosmosImpl.isResourceNotFoundException(e)) {
@@ -612,9 +721,18 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
     public CosmosDocumentList find(String coll, Condition cond, String partition) throws Exception {
         var collectionLink = LinkFormatUtil.getCollectionLink(db, coll);
 
+        if (cond.keysetPagination) {
+            // keyset pagination using the native continuation token of cosmosdb
+            var ret = _findPage(coll, cond, partition);
+            if(log.isInfoEnabled()){
+                log.info("find Document:{}, cond:{}, partition:{}, account:{}", collectionLink, cond, cond.crossPartition ? "crossPartition" : partition, getAccount());
+            }
+            return ret;
+        }
+
         // we should wrap the retry here, because the iterator method is a lazy method.
         // the real db access and db exception will be thrown when we call the iterator method.
-        var maps = RetryUtil.executeWithRetry(() -> {
+        var maps = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> {
             var iterator = _findToIterator(coll, cond, partition);
             return iterator.stream().collect(Collectors.toList());
         });
@@ -626,6 +744,45 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         return new CosmosDocumentList(maps);
     }
 
+    /**
+     * find a page of data using the native continuation token of cosmosdb. Used when Condition.after(continuationToken) is set.
+     *
+     * @param coll      collection name
+     * @param cond      condition to find(using keyset pagination)
+     * @param partition partition name
+     * @return CosmosDocumentList with the continuation token of the next page
+     * @throws Exception Cosmos client exception
+     */
+    CosmosDocumentList _findPage(String coll, Condition cond, String partition) throws Exception {
+
+        Checker.check(cond.joinCondText.isEmpty() || cond.returnAllSubArray,
+                "keyset pagination is not supported for join query with returnAllSubArray = false");
+
+        var queryRequestOptions = new CosmosQueryRequestOptions();
+
+        if (!cond.crossPartition) {
+            queryRequestOptions.setPartitionKey(new PartitionKey(partition));
+        }
+
+        // OFFSET / LIMIT is not included in querySpec when using keyset pagination
+        var querySpec = cond.toQuerySpec();
+
+        var container = this.clientV4.getDatabase(db).getContainer(coll);
+
+        return RetryUtil.executeWithRetry(getRateLimiter(coll), () -> {
+            var pages = container.queryItems(querySpec.toSqlQuerySpecV4(), queryRequestOptions, mapInstance.getClass())
+                    .iterableByPage(cond.continuationToken, cond.limit).iterator();
+
+            if (!pages.hasNext()) {
+                return new CosmosDocumentList();
+            }
+
+            var page = pages.next();
+            OperationContext.recordRequestCharge(page.getRequestCharge());
+            return new CosmosDocumentList(page.getResults()).setContinuationToken(page.getContinuationToken());
+        });
+    }
+
 
     /**
      * find data by condition to iterator and return a CosmosDocumentIterator instead of a list.
@@ -664,6 +821,34 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         return ret;
     }
 
+    /**
+     * Read the documents changed in a partition incrementally, resuming from a checkpoint(a continuation of the change feed).
+     *
+     * <p>
+     * Deletes are not included, because the change feed(latest version mode) does not contain them.
+     * </p>
+     *
+     * @param coll           collection name
+     * @param partition      partition name
+     * @param fromCheckpoint checkpoint got by ChangeFeedIterator.getCheckpoint. null to start from now
+     * @return ChangeFeedIterator
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        var container = this.clientV4.getDatabase(db).getContainer(coll);
+
+        var ret = new CosmosChangeFeedIteratorImpl(container, partition, fromCheckpoint);
+        if (log.isInfoEnabled()) {
+            log.info("changeFeed Document:{}, partition:{}, checkpoint:{}, account:{}", LinkFormatUtil.getCollectionLink(db, coll), partition, ret.getCheckpoint(), getAccount());
+        }
+        return ret;
+    }
+
     /**
      * A helper method to do findToIterator by condition. find method is also based on this inner method,
      * converting iterator to
@@ -753,7 +938,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
         var queryText = initJoinSelectPart(cond, querySpec, keyMap);
-        var pagedDocs = RetryUtil.executeWithRetry(
+        var pagedDocs = RetryUtil.executeWithRetry(getRateLimiter(coll),
                 () -> container.queryItems(new SqlQuerySpec(queryText, querySpec.getParametersv4()),  // use new querySpec with join
                         requestOptions, mapInstance.getClass()));
 
@@ -877,7 +1062,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
         // process aggregate query
-        var docs = RetryUtil.executeWithRetry(() ->
+        var docs = RetryUtil.executeWithRetry(getRateLimiter(coll), () ->
                 container.queryItems(querySpec.toSqlQuerySpecV4(), queryRequestOptions, mapInstance.getClass()));
 
         var maps = docs.stream().collect(Collectors.toList());
@@ -955,7 +1140,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var querySpec = cond.toQuerySpecForCount();
 
-        var docs = RetryUtil.executeWithRetry(
+        var docs = RetryUtil.executeWithRetry(getRateLimiter(coll),
                 () -> container.queryItems(querySpec.toSqlQuerySpecV4(), queryRequestOptions, mapInstance.getClass())
         );
 
@@ -994,7 +1179,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-        var response = RetryUtil.executeWithRetry(() -> container.patchItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.patchItem(
                 id,
                 new PartitionKey(partition),
                 CosmosPatchOperations
@@ -1006,6 +1191,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         var item = response.getItem();
         log.info("increment Document:{}, partition:{}, account:{}, request charge:{}",
                 documentLink, partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(item);
     }
@@ -1047,7 +1233,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
 
         var container = this.clientV4.getDatabase(db).getContainer(coll);
 
-        var response = RetryUtil.executeWithRetry(() -> container.patchItem(
+        var response = RetryUtil.executeWithRetry(getRateLimiter(coll), () -> container.patchItem(
                 id,
                 new PartitionKey(partition),
                 operations.getCosmosPatchOperations(),
@@ -1057,6 +1243,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         var item = response.getItem();
         log.info("patch Document:{}, partition:{}, account:{}, request charge:{}",
                 documentLink, partition, getAccount(), response.getRequestCharge());
+        OperationContext.recordRequestCharge(response.getRequestCharge());
 
         return new CosmosDocument(item);
     }
@@ -1160,12 +1347,13 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
     }
 
     private List<CosmosDocument> doBatchWithRetry(CosmosContainer container, CosmosBatch batch) throws Exception {
-        var response = RetryUtil.executeBatchWithRetry(() ->
+        var response = RetryUtil.executeBatchWithRetry(getRateLimiter(container.getId()), () ->
                 new CosmosBatchResponseWrapper(container.executeCosmosBatch(batch))
         );
 
         log.info("Document batch operations: partition key:{}, account:{}, request charge:{}",
                 Objects.nonNull(batch.getPartitionKeyValue()) ? batch.getPartitionKeyValue().toString() : "", getAccount(), response.cosmosBatchReponse.getRequestCharge());
+        OperationContext.recordRequestCharge(response.cosmosBatchReponse.getRequestCharge());
 
         var successDocuments = new ArrayList<CosmosDocument>();
         for (CosmosBatchOperationResult cosmosBatchOperationResult : response.cosmosBatchReponse.getResults()) {
@@ -1204,7 +1392,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         log.info("begin bulkCreate coll:{}, partition:{}, account:{}", coll, partition, getAccount());
 
         var ret = RetryUtil.executeBulkWithRetry(coll, operations,
-                (ops) -> container.executeBulkOperations(ops));
+                (ops) -> container.executeBulkOperations(ops), getRateLimiter(coll));
 
         log.info("end bulkCreate coll:{}, partition:{}, account:{}", coll, partition, getAccount());
 
@@ -1236,7 +1424,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         log.info("begin bulkUpsert coll:{}, partition:{}, account:{}", coll, partition, getAccount());
 
         var ret = RetryUtil.executeBulkWithRetry(coll, operations,
-                (ops) -> container.executeBulkOperations(ops));
+                (ops) -> container.executeBulkOperations(ops), getRateLimiter(coll));
 
         log.info("end bulkUpsert coll:{}, partition:{}, account:{}", coll, partition, getAccount());
         return ret;
@@ -1271,7 +1459,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         log.info("begin bulkDelete coll:{}, partition:{}, account:{}", coll, partition, getAccount());
 
         var result = RetryUtil.executeBulkWithRetry(coll, operations,
-                (ops) -> container.executeBulkOperations(ops));
+                (ops) -> container.executeBulkOperations(ops), getRateLimiter(coll));
 
         result.successList = ids.stream().map(it ->
                 new CosmosDocument(Map.of("id", it))
@@ -1309,7 +1497,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
                     .collect(Collectors.toList());
 
             var chunkResult = RetryUtil.executeBulkWithRetry(coll, itemOperations,
-                    (ops) -> container.executeBulkOperations(ops));
+                    (ops) -> container.executeBulkOperations(ops), getRateLimiter(coll));
 
             ret.successList.addAll(chunkResult.successList);
             ret.fatalList.addAll(chunkResult.fatalList);
@@ -1348,7 +1536,7 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
                     .collect(Collectors.toList());
 
             var chunkResult = RetryUtil.executeBulkWithRetry(coll, operations,
-                    (ops) -> container.executeBulkOperations(ops));
+                    (ops) -> container.executeBulkOperations(ops), getRateLimiter(coll));
 
             ret.successList.addAll(chunkResult.successList);
             ret.fatalList.addAll(chunkResult.fatalList);
@@ -1412,6 +1600,19 @@ public class CosmosDatabaseImpl implements CosmosDatabase {
         return this.cosmosAccount.getAccount();
     }
 
+    /**
+     * Get the adaptive rate limiter of the collection.
+     *
+     * @param coll collection name
+     * @return rate limiter. null if the adaptive rate limit is disabled
+     */
+    AdaptiveRateLimiter getRateLimiter(String coll) {
+        if (this.cosmosAccount instanceof CosmosImpl cosmos) {
+            return cosmos.getRateLimiter(db, coll);
+        }
+        return null;
+    }
+
     /**
      * Get cosmos db account instance associated with this instance.
      *
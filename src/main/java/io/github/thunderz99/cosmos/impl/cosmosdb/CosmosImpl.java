@@ -3,16 +3,30 @@ package io.github.thunderz99.cosmos.impl.cosmosdb;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import com.azure.cosmos.CosmosClient;
 import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.cosmos.models.CosmosContainerProperties;
+import io.github.thunderz99.cosmos.AsyncCosmosDatabase;
 import io.github.thunderz99.cosmos.Cosmos;
 import io.github.thunderz99.cosmos.CosmosBuilder;
 import io.github.thunderz99.cosmos.CosmosDatabase;
 import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.cache.CachingCosmosDatabase;
+import io.github.thunderz99.cosmos.cache.DocumentCache;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
 import io.github.thunderz99.cosmos.dto.CosmosContainerResponse;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import io.github.thunderz99.cosmos.dto.RateLimitOption;
 import io.github.thunderz99.cosmos.dto.UniqueKeyPolicy;
+import io.github.thunderz99.cosmos.impl.AsyncCosmosDatabaseImpl;
+import io.github.thunderz99.cosmos.metrics.InstrumentedCosmosDatabase;
+import io.github.thunderz99.cosmos.metrics.OperationListener;
+import io.github.thunderz99.cosmos.util.AdaptiveRateLimiter;
 import io.github.thunderz99.cosmos.util.Checker;
 import io.github.thunderz99.cosmos.util.ConnectionStringUtil;
 import io.github.thunderz99.cosmos.util.LinkFormatUtil;
@@ -43,6 +57,41 @@ public class CosmosImpl implements Cosmos {
 
     String account;
 
+    /**
+     * listener receiving the metrics of every operation. databases are not instrumented when NOOP.
+     */
+    public OperationListener operationListener = OperationListener.NOOP;
+
+    /**
+     * in-process read-through document cache shared by the databases of this account. null if disabled
+     */
+    public DocumentCache documentCache = null;
+
+    /**
+     * bus delivering the documents changed by any client to the document cache and the listeners. null if cross-node invalidation is disabled
+     */
+    public InvalidationBus invalidationBus = null;
+
+    /**
+     * subscriber publishing the changes to invalidationBus
+     */
+    CosmosChangeFeedSubscriber changeSubscriber = null;
+
+    /**
+     * option of the adaptive client-side rate limiter. null if disabled
+     */
+    public RateLimitOption rateLimitOption = null;
+
+    /**
+     * rate limiters by "db/coll"
+     */
+    final Map<String, AdaptiveRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * executor running the operations of AsyncCosmosDatabase
+     */
+    public Executor asyncExecutor = AsyncCosmosDatabaseImpl.getDefaultExecutor();
+
     public static final String COSMOS_SDK_V4_ENABLE = "COSMOS_SDK_V4_ENABLE";
 
     public static final String ETAG = "_etag";
@@ -83,7 +132,18 @@ public class CosmosImpl implements Cosmos {
      */
     public CosmosDatabase getDatabase(String db) {
         Checker.checkNotEmpty(db, "db");
-        return new CosmosDatabaseImpl(this, db);
+        return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new CosmosDatabaseImpl(this, db), CosmosBuilder.COSMOSDB, operationListener), documentCache);
+    }
+
+    /**
+     * Get an AsyncCosmosDatabase object by name
+     *
+     * @param db database name
+     * @return AsyncCosmosDatabase instance
+     */
+    @Override
+    public AsyncCosmosDatabase getAsyncDatabase(String db) {
+        return new AsyncCosmosDatabaseImpl(getDatabase(db), asyncExecutor);
     }
 
 
@@ -139,7 +199,7 @@ public class CosmosImpl implements Cosmos {
             cosmosDatabase.createContainerIfNotExists(containerProperties);
         }
 
-        return new CosmosDatabaseImpl(this, db);
+        return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new CosmosDatabaseImpl(this, db), CosmosBuilder.COSMOSDB, operationListener), documentCache);
     }
 
     /**
@@ -168,6 +228,9 @@ public class CosmosImpl implements Cosmos {
         if (StringUtils.isEmpty(db)) {
             return;
         }
+        if (documentCache != null) {
+            documentCache.invalidateAll(db, null);
+        }
         var cosmosDatabase = this.client.getDatabase(db);
         try {
             cosmosDatabase.delete();
@@ -189,6 +252,9 @@ public class CosmosImpl implements Cosmos {
      */
     public void deleteCollection(String db, String coll) throws CosmosException {
 
+        if (documentCache != null) {
+            documentCache.invalidateAll(db, coll);
+        }
         var cosmosDatabase = this.client.getDatabase(db);
         var container = cosmosDatabase.getContainer(coll);
         try {
@@ -280,7 +346,123 @@ public class CosmosImpl implements Cosmos {
      */
     @Override
     public void closeClient() {
+        closeCacheInvalidation();
         this.getClient().close();
     }
 
-}
\ No newline at end of file
+    /**
+     * Set the listener receiving the metrics of every CosmosDatabase operation
+     *
+     * @param operationListener listener. NOOP to disable
+     * @return this
+     */
+    public CosmosImpl withOperationListener(OperationListener operationListener) {
+        Checker.checkNotNull(operationListener, "operationListener");
+        this.operationListener = operationListener;
+        return this;
+    }
+
+    /**
+     * Set the executor running the operations of AsyncCosmosDatabase
+     *
+     * @param asyncExecutor executor. the number of threads bounds the in-flight async operations
+     * @return this
+     */
+    public CosmosImpl withAsyncExecutor(Executor asyncExecutor) {
+        Checker.checkNotNull(asyncExecutor, "asyncExecutor");
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Enable the in-process read-through document cache for read / readSuppressing404
+     *
+     * @param option cache option. null to disable
+     * @return this
+     */
+    public CosmosImpl withDocumentCache(DocumentCacheOption option) {
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.removeCache(this.documentCache);
+        }
+        this.documentCache = option == null ? null : new DocumentCache(option);
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        return this;
+    }
+
+    /**
+     * Enable the cross-node cache invalidation. Documents changed by any client are invalidated in the document cache, and delivered to the listeners of invalidationBus.
+     *
+     * <p>
+     * cosmosdb polls the change feed of the collections specified by option.watch. Deletes are not included in the change feed, so a deleted document is evicted by its ttl.
+     * </p>
+     *
+     * @param option invalidation option. null to disable
+     * @return this
+     */
+    public CosmosImpl withCacheInvalidation(CacheInvalidationOption option) {
+        closeCacheInvalidation();
+        if (option == null) {
+            return this;
+        }
+        this.invalidationBus = new InvalidationBus(option.queueCapacity);
+        if (this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        this.changeSubscriber = new CosmosChangeFeedSubscriber(this.client, invalidationBus, option);
+        return this;
+    }
+
+    /**
+     * Enable the adaptive client-side rate limiter. Requests to each container are admitted at a permitted rate learned from 429s,
+     * instead of retrying in lockstep after all threads are throttled.
+     *
+     * @param option rate limit option. null to disable
+     * @return this
+     */
+    public CosmosImpl withAdaptiveRateLimit(RateLimitOption option) {
+        this.rateLimitOption = option;
+        this.rateLimiters.clear();
+        return this;
+    }
+
+    /**
+     * Get the rate limiter of a container
+     *
+     * @param db   database name
+     * @param coll collection name
+     * @return rate limiter. null if the adaptive rate limit is disabled
+     */
+    public AdaptiveRateLimiter getRateLimiter(String db, String coll) {
+        var option = this.rateLimitOption;
+        if (option == null) {
+            return null;
+        }
+        var name = db + "/" + coll;
+        return rateLimiters.computeIfAbsent(name, key -> new AdaptiveRateLimiter(key, option));
+    }
+
+    /**
+     * Get the rate limiters created so far, for monitoring the permitted rate, queue depth and throttle ratio
+     *
+     * @return rate limiters by "db/coll"
+     */
+    public Map<String, AdaptiveRateLimiter> getRateLimiters() {
+        return Map.copyOf(rateLimiters);
+    }
+
+    /**
+     * Stop the cross-node cache invalidation
+     */
+    void closeCacheInvalidation() {
+        if (this.changeSubscriber != null) {
+            this.changeSubscriber.close();
+            this.changeSubscriber = null;
+        }
+        if (this.invalidationBus != null) {
+            this.invalidationBus.close();
+            this.invalidationBus = null;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.thunderz99.cosmos.impl.mongo;
+
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosException;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+/**
+ * A mongodb implementation of {@link ChangeFeedIterator}, using the change stream of a collection(partition).
+ *
+ * <p>
+ * The checkpoint is the resume token(in json) of the last event returned, or the post batch resume token when caught up.
+ * Requires a replica set.
+ * </p>
+ */
+public class MongoChangeFeedIteratorImpl implements ChangeFeedIterator {
+
+    /**
+     * max time a hasNext() waits for a new event, when caught up
+     */
+    static final long MAX_AWAIT_MILLIS = 200;
+
+    final MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+    /**
+     * the next change to return. null if not fetched yet
+     */
+    ChangeStreamDocument<Document> nextChange;
+
+    String checkpoint;
+
+    /**
+     * true if the stream is invalidated(e.g. the collection is dropped)
+     */
+    boolean invalidated = false;
+
+    /**
+     * @param container      collection to watch
+     * @param fromCheckpoint checkpoint to resume from. null to start from now
+     */
+    MongoChangeFeedIteratorImpl(MongoCollection<Document> container, String fromCheckpoint) {
+        var stream = container.watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (StringUtils.isNotEmpty(fromCheckpoint)) {
+            BsonDocument resumeToken;
+            try {
+                resumeToken = BsonDocument.parse(fromCheckpoint);
+            } catch (RuntimeException e) {
+                throw new CosmosException(400, "400", "Invalid checkpoint for mongodb: " + fromCheckpoint, e);
+            }
+            stream = stream.resumeAfter(resumeToken);
+        }
+
+        this.cursor = stream.cursor();
+        this.checkpoint = fromCheckpoint;
+        if (StringUtils.isEmpty(fromCheckpoint)) {
+            // start from now
+            updateCheckpointIfCaughtUp();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (nextChange == null && !invalidated) {
+            var change = cursor.tryNext();
+            if (change == null) {
+                updateCheckpointIfCaughtUp();
+                return false;
+            }
+            var operation = change.getOperationTypeString();
+            switch (operation == null ? "" : operation) {
+                case "insert", "update", "replace", "delete" -> nextChange = change;
+                case "invalidate" -> invalidated = true;
+                default -> {
+                    // not related to documents
+                }
+            }
+        }
+        return nextChange != null;
+    }
+
+    void updateCheckpointIfCaughtUp() {
+        var token = cursor.getResumeToken();
+        if (token != null) {
+            checkpoint = token.toJson();
+        }
+    }
+
+    @Override
+    public CosmosDocument next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var change = nextChange;
+        nextChange = null;
+        checkpoint = change.getResumeToken().toJson();
+        return toDocument(change);
+    }
+
+    static CosmosDocument toDocument(ChangeStreamDocument<Document> change) {
+        var fullDocument = change.getFullDocument();
+        if (fullDocument != null) {
+            return MongoDatabaseImpl.getCosmosDocument(fullDocument);
+        }
+        // deleted, or deleted before the full document is looked up
+        var map = new LinkedHashMap<String, Object>();
+        map.put("id", MongoChangeStreamSubscriber.toString(change.getDocumentKey().get("_id")));
+        map.put(DELETED, true);
+        return new CosmosDocument(map);
+    }
+
+    @Override
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.thunderz99.cosmos.impl.mongo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.cache.InvalidationEvent;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
+import io.github.thunderz99.cosmos.util.Checker;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the change stream of the cluster(or of the watched databases, which are colls in java-cosmos), and publishes the changed documents to an InvalidationBus.
+ *
+ * <p>
+ * The stream is resumed by its resume token after an error. When it can not be resumed(e.g. the oplog is rolled over), a resync is published and a new stream is opened.
+ * Requires a replica set.
+ * </p>
+ */
+public class MongoChangeStreamSubscriber implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoChangeStreamSubscriber.class);
+
+    final MongoClient client;
+
+    final InvalidationBus bus;
+
+    final CacheInvalidationOption option;
+
+    /**
+     * databases(colls) to watch. empty for all
+     */
+    final List<String> colls;
+
+    final Thread thread;
+
+    volatile boolean closed = false;
+
+    /**
+     * resume token of the last event received. null to start from now
+     */
+    BsonDocument resumeToken = null;
+
+    /**
+     * Create a subscriber and start watching in a daemon thread
+     *
+     * @param client mongo client
+     * @param bus    bus to publish the changed documents
+     * @param option invalidation option
+     */
+    public MongoChangeStreamSubscriber(MongoClient client, InvalidationBus bus, CacheInvalidationOption option) {
+        Checker.checkNotNull(client, "client");
+        Checker.checkNotNull(bus, "bus");
+        Checker.checkNotNull(option, "option");
+
+        this.client = client;
+        this.bus = bus;
+        this.option = option;
+        this.colls = option.getColls();
+
+        this.thread = new Thread(this::watchLoop, "java-cosmos-mongo-change-stream");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void watchLoop() {
+        while (!closed) {
+            var resuming = resumeToken != null;
+            var opened = false;
+            try {
+                var stream = colls.isEmpty() ? client.watch() : client.watch(List.of(Aggregates.match(Filters.in("ns.db", colls))));
+                stream = stream.maxAwaitTime(Math.max(1, option.pollIntervalMillis), TimeUnit.MILLISECONDS);
+                if (resuming) {
+                    stream = stream.resumeAfter(resumeToken);
+                }
+                try (var cursor = stream.cursor()) {
+                    opened = true;
+                    log.info("watching change stream. colls:{}, resumed:{}", colls, resuming);
+                    while (!closed) {
+                        var change = cursor.tryNext();
+                        if (change != null) {
+                            handle(change);
+                        }
+                        var token = cursor.getResumeToken();
+                        if (token != null) {
+                            resumeToken = token;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("watching change stream failed. reconnect after {}ms.", option.reconnectIntervalMillis, e);
+                if (resuming && !opened) {
+                    // can not be resumed. start from now, and drop everything cached
+                    resumeToken = null;
+                    bus.publishResync();
+                }
+                try {
+                    Thread.sleep(option.reconnectIntervalMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * publish a change event
+     */
+    void handle(ChangeStreamDocument<Document> change) {
+        var event = toEvent(change);
+        if (event != null) {
+            bus.publish(event);
+            return;
+        }
+        if ("invalidate".equals(change.getOperationTypeString())) {
+            // the stream is closed and can not be resumed by resumeAfter
+            resumeToken = null;
+            bus.publishResync();
+        }
+    }
+
+    /**
+     * convert a change event. null if not related to documents
+     */
+    static InvalidationEvent toEvent(ChangeStreamDocument<Document> change) {
+        var operation = change.getOperationTypeString();
+        if (operation == null) {
+            return null;
+        }
+        switch (operation) {
+            case "insert", "update", "replace", "delete" -> {
+                var ns = change.getNamespace();
+                var key = change.getDocumentKey();
+                if (ns == null || key == null || !key.containsKey("_id")) {
+                    return null;
+                }
+                return new InvalidationEvent(null, ns.getDatabaseName(), ns.getCollectionName(), toString(key.get("_id")), getEtag(change));
+            }
+            case "drop", "rename" -> {
+                var ns = change.getNamespace();
+                return ns == null ? null : new InvalidationEvent(null, ns.getDatabaseName(), ns.getCollectionName(), null, null);
+            }
+            case "dropDatabase" -> {
+                var db = change.getDatabaseName();
+                return db == null ? null : new InvalidationEvent(null, db, null, null, null);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * etag after the change, from the full document(insert / replace) or the updated fields(update)
+     */
+    static String getEtag(ChangeStreamDocument<Document> change) {
+        var fullDocument = change.getFullDocument();
+        if (fullDocument != null) {
+            var etag = fullDocument.get(MongoDatabaseImpl.ETAG);
+            return etag == null ? null : etag.toString();
+        }
+        var updateDescription = change.getUpdateDescription();
+        if (updateDescription != null && updateDescription.getUpdatedFields() != null) {
+            var etag = updateDescription.getUpdatedFields().get(MongoDatabaseImpl.ETAG);
+            return etag == null ? null : toString(etag);
+        }
+        return null;
+    }
+
+    static String toString(BsonValue value) {
+        return value.isString() ? value.asString().getValue() : value.toString();
+    }
+
+    /**
+     * Stop watching. The cursor is closed within pollIntervalMillis.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -19,6 +19,8 @@ import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.dto.FilterOptions;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
 import io.github.thunderz99.cosmos.util.*;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
 import org.apache.commons.collections4.CollectionUtils;
@@ -284,6 +286,99 @@ public class MongoDatabaseImpl implements CosmosDatabase {
         }
     }
 
+    /**
+     * Read a document only if its "_etag" does not match etag. Only the "_etag" field is read first, and a full read is done if it differs.
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param etag      etag of the document already held. a full read is done if null
+     * @return CosmosDocument instance if modified, or null if not modified
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+
+        if (StringUtils.isEmpty(etag)) {
+            return read(coll, id, partition);
+        }
+
+        Checker.checkNotBlank(id, "id");
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        var documentLink = LinkFormatUtil.getDocumentLink(coll, partition, id);
+
+        var container = this.client.getDatabase(coll).getCollection(partition);
+
+        var response = RetryUtil.executeWithRetry(() -> container.find(eq("_id", id)).projection(include(ETAG)).first());
+
+        if (response == null) {
+            throw new CosmosException(404, "404", "Resource Not Found. code: NotFound");
+        }
+
+        if (StringUtils.equals(etag, String.valueOf(response.get(ETAG)))) {
+            log.info("read Document if none match:{}, partition:{}, modified:false, account:{}", documentLink, partition, getAccount());
+            return null;
+        }
+        return read(coll, id, partition);
+    }
+
+    /**
+     * Read multiple documents by (id, partition) pairs.
+     *
+     * <p>
+     * One "_id $in [ids]" query is executed for each partition(collection).
+     * </p>
+     *
+     * @param coll   collection name
+     * @param items  (id, partition) pairs to read
+     * @param fields fields to return. "id" is always returned. all fields are returned if empty
+     * @return documents found and items missing
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        ReadManyItem.checkValid(items);
+
+        // group ids by partition, keeping the input order
+        var idsByPartition = new LinkedHashMap<String, Set<String>>();
+        for (var item : items) {
+            idsByPartition.computeIfAbsent(item.partition, k -> new LinkedHashSet<>()).add(item.id);
+        }
+
+        var projectionFields = ConditionUtil.processFields(fields == null ? Set.of() : new LinkedHashSet<>(List.of(fields)));
+
+        var found = new HashMap<ReadManyItem, CosmosDocument>();
+        for (var entry : idsByPartition.entrySet()) {
+            var partition = entry.getKey();
+            var container = this.client.getDatabase(coll).getCollection(partition);
+
+            var docs = RetryUtil.executeWithRetry(() -> {
+                var findIterable = container.find(Filters.in("_id", entry.getValue()));
+                if (!projectionFields.isEmpty()) {
+                    // "id" is always needed to match the input items
+                    var includes = new LinkedHashSet<>(projectionFields);
+                    includes.add("id");
+                    findIterable.projection(fields(excludeId(), include(List.copyOf(includes))));
+                }
+                return findIterable.into(new ArrayList<>());
+            });
+
+            for (var doc : docs) {
+                found.put(ReadManyItem.of(doc.getString("id"), partition), getCosmosDocument(doc));
+            }
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("readMany Document:{}, items:{}, found:{}, partitions:{}, account:{}", coll, items.size(), found.size(), idsByPartition.size(), getAccount());
+        }
+
+        return ReadManyResult.of(items, found);
+    }
+
     /**
      * Update existing data. if not exist, throw Not Found Exception.
      *
@@ -604,10 +699,22 @@ public class MongoDatabaseImpl implements CosmosDatabase {
 
         var collectionLink = LinkFormatUtil.getCollectionLink(coll, partition);
 
-        var docs = _findToIterable(coll, cond, partition).into(new ArrayList<>())
-                .stream().map(doc -> getCosmosDocument(doc).toMap()).toList();
+        // when using keyset pagination, fetch one more document to know whether there is a next page
+        var queryCond = cond != null && cond.keysetPagination ? KeysetUtil.prepareCondition(cond) : cond;
+        List<Document> rawDocs = queryCond != null && queryCond.crossPartition
+                ? _findCrossPartition(coll, queryCond)
+                : _findToIterable(coll, queryCond, partition).into(new ArrayList<>());
+
+        String continuationToken = null;
+        if (cond != null && cond.keysetPagination && rawDocs.size() > cond.limit) {
+            rawDocs = rawDocs.subList(0, cond.limit);
+            // encode the token using the raw document, before the precision of _ts is processed
+            continuationToken = KeysetUtil.encode(KeysetUtil.normalizeSort(cond.sort), rawDocs.get(rawDocs.size() - 1));
+        }
+
+        var docs = rawDocs.stream().map(doc -> getCosmosDocument(doc).toMap()).toList();
 
-        var ret = new CosmosDocumentList(docs);
+        var ret = new CosmosDocumentList(docs).setContinuationToken(continuationToken);
 
         if (log.isInfoEnabled()) {
             log.info("find Document:{}, cond:{}, partition:{}, account:{}", collectionLink, cond, cond.crossPartition ? "crossPartition" : partition, getAccount());
@@ -648,9 +755,13 @@ public class MongoDatabaseImpl implements CosmosDatabase {
 
         var collectionLink = LinkFormatUtil.getCollectionLink(coll, partition);
 
-        var findIterable = _findToIterable(coll, cond, partition);
-
-        var ret = new MongoDocumentIteratorImpl(findIterable);
+        MongoDocumentIteratorImpl ret;
+        if (cond != null && cond.crossPartition) {
+            // the merged result is bounded by offset + limit, so it is held in memory
+            ret = new MongoDocumentIteratorImpl(_findCrossPartition(coll, cond));
+        } else {
+            ret = new MongoDocumentIteratorImpl(_findToIterable(coll, cond, partition));
+        }
 
         if (log.isInfoEnabled()) {
             log.info("find Document:{}, cond:{}, partition:{}, account:{}", collectionLink, cond, cond.crossPartition ? "crossPartition" : partition, getAccount());
@@ -659,6 +770,36 @@ public class MongoDatabaseImpl implements CosmosDatabase {
         return ret;
     }
 
+    /**
+     * Read the documents changed in a partition incrementally, resuming from a checkpoint(a resume token of the change stream).
+     *
+     * <p>
+     * Requires a replica set. A checkpoint older than the oplog window can not be resumed.
+     * </p>
+     *
+     * @param coll           collection name
+     * @param partition      partition name
+     * @param fromCheckpoint checkpoint got by ChangeFeedIterator.getCheckpoint. null to start from now
+     * @return ChangeFeedIterator
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        var container = this.client.getDatabase(coll).getCollection(partition);
+
+        var ret = new MongoChangeFeedIteratorImpl(container, fromCheckpoint);
+
+        if (log.isInfoEnabled()) {
+            log.info("changeFeed Document:{}, checkpoint:{}, account:{}", LinkFormatUtil.getCollectionLink(coll, partition), ret.getCheckpoint(), getAccount());
+        }
+
+        return ret;
+    }
+
     MongoIterable<Document> _findToIterable(String coll, Condition cond, String partition) throws Exception {
 
         if (cond == null) {
@@ -671,17 +812,27 @@ public class MongoDatabaseImpl implements CosmosDatabase {
             return _findToIterableWithJoin(coll, cond, partition);
         }
 
-        // TODO crossPartition query
-
         var filter = ConditionUtil.toBsonFilter(cond);
 
         // process sort
         var sort = ConditionUtil.toBsonSort(cond.sort);
+        var offset = cond.offset;
+
+        if (cond.keysetPagination) {
+            // keyset pagination. use a seek filter instead of skip
+            var keysetSort = KeysetUtil.normalizeSort(cond.sort);
+            sort = ConditionUtil.toBsonSort(keysetSort);
+            offset = 0;
+            if (StringUtils.isNotEmpty(cond.continuationToken)) {
+                var seek = ConditionUtil.toBsonKeysetSeek(keysetSort, KeysetUtil.decode(cond.continuationToken, keysetSort));
+                filter = filter == null ? seek : Filters.and(filter, seek);
+            }
+        }
 
         var container = this.client.getDatabase(coll).getCollection(partition);
 
         var findIterable = container.find(filter)
-                .sort(sort).skip(cond.offset).limit(cond.limit);
+                .sort(sort).skip(offset).limit(cond.limit);
 
         var fields = ConditionUtil.processFields(cond.fields);
         if (!fields.isEmpty()) {
@@ -692,6 +843,51 @@ public class MongoDatabaseImpl implements CosmosDatabase {
         return findIterable;
     }
 
+    /**
+     * inner find method. Find documents across all the partitions(collections) of the coll(database).
+     *
+     * <p>
+     * Collections are queried in parallel(at most crossPartitionConcurrency at the same time), each returning its own top (offset + limit) documents sorted by cond.sort.
+     * The results are merged by a k-way heap and the global offset / limit is applied. Keyset pagination works in the same way, using the seek filter in every collection.
+     * If cond.fields is specified, the sort keys are also returned in order to merge the results.
+     * </p>
+     *
+     * @param coll collection name(database)
+     * @param cond condition to find. crossPartition should be true
+     * @return raw documents
+     * @throws Exception mongodb exception
+     */
+    List<Document> _findCrossPartition(String coll, Condition cond) throws Exception {
+
+        var offset = cond.keysetPagination ? 0 : cond.offset;
+
+        // "_ts" and "id" are added as tie-breakers, so that every collection is sorted in the same way as the merge. no merge sort when sort is empty
+        var sort = cond.keysetPagination || CollectionUtils.isNotEmpty(cond.sort) ? KeysetUtil.normalizeSort(cond.sort) : List.<String>of();
+
+        var partitionCond = cond.copy();
+        partitionCond.crossPartition = false;
+        partitionCond.offset = 0;
+        partitionCond.limit = (int) Math.min((long) offset + cond.limit, Integer.MAX_VALUE);
+        partitionCond.sort = sort;
+        if (CollectionUtils.isNotEmpty(partitionCond.fields)) {
+            for (int i = 0; i < sort.size(); i += 2) {
+                partitionCond.fields.add(StringUtils.substringBefore(sort.get(i), "::"));
+            }
+        }
+
+        var database = this.client.getDatabase(coll);
+        var collections = RetryUtil.executeWithRetry(() -> database.listCollectionNames().into(new ArrayList<>()))
+                .stream().filter(name -> !name.startsWith("system.")).toList();
+
+        var comparator = CrossPartitionUtil.comparator(sort, false, Comparator.naturalOrder());
+
+        var ret = CrossPartitionUtil.find(collections, ((MongoImpl) cosmosAccount).crossPartitionConcurrency,
+                comparator, offset, cond.limit, collection -> _findToIterable(coll, partitionCond, collection).into(new ArrayList<>()));
+
+        log.info("find crossPartition Document:{}, collections:{}, account:{}", coll, collections.size(), getAccount());
+        return ret;
+    }
+
     /**
      * inner find method. Find documents when JOIN is used and returnAllSubArray is false.
      * In mongo this is implemented by aggregate pipeline and using $project stage and $filter
@@ -721,19 +917,32 @@ public class MongoDatabaseImpl implements CosmosDatabase {
         // Process the condition into a BSON filter
         // @see docs/find-with-join.md
         var filter = ConditionUtil.toBsonFilter(cond);
+        var sort = ConditionUtil.toBsonSort(cond.sort);
+        var offset = cond.offset;
+
+        if (cond.keysetPagination) {
+            // keyset pagination. use a seek filter instead of skip
+            var keysetSort = KeysetUtil.normalizeSort(cond.sort);
+            sort = ConditionUtil.toBsonSort(keysetSort);
+            offset = 0;
+            if (StringUtils.isNotEmpty(cond.continuationToken)) {
+                var seek = ConditionUtil.toBsonKeysetSeek(keysetSort, KeysetUtil.decode(cond.continuationToken, keysetSort));
+                filter = filter == null ? seek : Filters.and(filter, seek);
+            }
+        }
+
         // Add the match stage based on the filter
         if (filter != null) {
             pipeline.add(Aggregates.match(filter));
         }
 
         // 1.2 sort stage
-        var sort = ConditionUtil.toBsonSort(cond.sort);
         if (sort != null) {
             pipeline.add(Aggregates.sort(sort));
         }
 
         // 1.3 skip / limit stage
-        pipeline.add(Aggregates.skip(cond.offset));
+        pipeline.add(Aggregates.skip(offset));
         pipeline.add(Aggregates.limit(cond.limit));
 
         // 2. project stage
@@ -1000,14 +1209,20 @@ public class MongoDatabaseImpl implements CosmosDatabase {
 
         var collectionLink = LinkFormatUtil.getCollectionLink(db, coll);
 
-        // TODO crossPartition query
-
         var filter = ConditionUtil.toBsonFilter(cond);
 
-        var container = this.client.getDatabase(coll).getCollection(partition);
-
-
-        var ret = RetryUtil.executeWithRetry(() -> container.countDocuments(filter));
+        long ret;
+        if (cond != null && cond.crossPartition) {
+            // count every collection(partition) in parallel and sum the counts
+            var database = this.client.getDatabase(coll);
+            var collections = RetryUtil.executeWithRetry(() -> database.listCollectionNames().into(new ArrayList<>()))
+                    .stream().filter(name -> !name.startsWith("system.")).toList();
+            ret = CrossPartitionUtil.count(collections, ((MongoImpl) cosmosAccount).crossPartitionConcurrency,
+                    collection -> RetryUtil.executeWithRetry(() -> database.getCollection(collection).countDocuments(filter)));
+        } else {
+            var container = this.client.getDatabase(coll).getCollection(partition);
+            ret = RetryUtil.executeWithRetry(() -> container.countDocuments(filter));
+        }
 
         if (log.isInfoEnabled()) {
             log.info("count:{}, Document:{}, cond:{}, partition:{}, account:{}", ret, collectionLink, cond, cond.crossPartition ? "crossPartition" : partition, getAccount());
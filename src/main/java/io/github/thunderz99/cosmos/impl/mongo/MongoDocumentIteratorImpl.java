@@ -34,6 +34,15 @@ public class MongoDocumentIteratorImpl implements CosmosDocumentIterator {
         setDocumentIterable(iterable);
     }
 
+    /**
+     * construct an iterator of documents already fetched(e.g. the merged result of a crossPartition query)
+     *
+     * @param docs raw documents
+     */
+    MongoDocumentIteratorImpl(List<Document> docs) {
+        this.iterator = docs.iterator();
+    }
+
     @Override
     public boolean hasNext() {
         if(iterator == null){
@@ -79,7 +88,9 @@ public class MongoDocumentIteratorImpl implements CosmosDocumentIterator {
 
     @Override
     public void close() {
-        iterable.iterator().close();
+        if (iterable != null) {
+            iterable.iterator().close();
+        }
     }
 
 }
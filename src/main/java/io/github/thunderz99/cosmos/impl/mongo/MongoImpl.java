@@ -3,19 +3,30 @@ package io.github.thunderz99.cosmos.impl.mongo;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import io.github.thunderz99.cosmos.AsyncCosmosDatabase;
 import io.github.thunderz99.cosmos.Cosmos;
 import io.github.thunderz99.cosmos.CosmosBuilder;
 import io.github.thunderz99.cosmos.CosmosDatabase;
 import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.cache.CachingCosmosDatabase;
+import io.github.thunderz99.cosmos.cache.DocumentCache;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
 import io.github.thunderz99.cosmos.dto.CosmosContainerResponse;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
 import io.github.thunderz99.cosmos.dto.UniqueKeyPolicy;
+import io.github.thunderz99.cosmos.impl.AsyncCosmosDatabaseImpl;
+import io.github.thunderz99.cosmos.metrics.InstrumentedCosmosDatabase;
+import io.github.thunderz99.cosmos.metrics.OperationListener;
 import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.CrossPartitionUtil;
 import io.github.thunderz99.cosmos.util.LinkFormatUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
@@ -53,6 +64,36 @@ public class MongoImpl implements Cosmos {
      */
     boolean etagEnabled = false;
 
+    /**
+     * max number of collections(partitions) queried at the same time by a crossPartition find / count
+     */
+    public int crossPartitionConcurrency = CrossPartitionUtil.DEFAULT_CONCURRENCY;
+
+    /**
+     * listener receiving the metrics of every operation. databases are not instrumented when NOOP.
+     */
+    public OperationListener operationListener = OperationListener.NOOP;
+
+    /**
+     * in-process read-through document cache shared by the databases of this account. null if disabled
+     */
+    public DocumentCache documentCache = null;
+
+    /**
+     * bus delivering the documents changed by any client to the document cache and the listeners. null if cross-node invalidation is disabled
+     */
+    public InvalidationBus invalidationBus = null;
+
+    /**
+     * subscriber publishing the changes to invalidationBus
+     */
+    MongoChangeStreamSubscriber changeSubscriber = null;
+
+    /**
+     * executor running the operations of AsyncCosmosDatabase
+     */
+    public Executor asyncExecutor = AsyncCosmosDatabaseImpl.getDefaultExecutor();
+
 
     public MongoImpl(String connectionString) {
         new MongoImpl(connectionString, false, false);
@@ -105,7 +146,18 @@ public class MongoImpl implements Cosmos {
      */
     public CosmosDatabase getDatabase(String db) {
         Checker.checkNotEmpty(db, "db");
-        return new MongoDatabaseImpl(this, db);
+        return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new MongoDatabaseImpl(this, db), CosmosBuilder.MONGODB, operationListener), documentCache);
+    }
+
+    /**
+     * Get an AsyncCosmosDatabase object by name
+     *
+     * @param db database name
+     * @return AsyncCosmosDatabase instance
+     */
+    @Override
+    public AsyncCosmosDatabase getAsyncDatabase(String db) {
+        return new AsyncCosmosDatabaseImpl(getDatabase(db), asyncExecutor);
     }
 
 
@@ -163,7 +215,7 @@ public class MongoImpl implements Cosmos {
 
         // uniqueKeyPolicy not used for mongo
 
-        return new MongoDatabaseImpl(this, db);
+        return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new MongoDatabaseImpl(this, db), CosmosBuilder.MONGODB, operationListener), documentCache);
     }
 
     /**
@@ -192,6 +244,9 @@ public class MongoImpl implements Cosmos {
         if (StringUtils.isEmpty(db)) {
             return;
         }
+        if (documentCache != null) {
+            documentCache.invalidateAll(db, null);
+        }
         var mongoDatabase = this.client.getDatabase(db);
         try {
             mongoDatabase.drop();
@@ -213,6 +268,9 @@ public class MongoImpl implements Cosmos {
      */
     public void deleteCollection(String db, String coll) throws CosmosException {
 
+        if (documentCache != null) {
+            documentCache.invalidateAll(db, coll);
+        }
         var mongoDatabase = this.client.getDatabase(db);
         var collection = mongoDatabase.getCollection(coll);
         try {
@@ -295,7 +353,98 @@ public class MongoImpl implements Cosmos {
      */
     @Override
     public void closeClient() {
+        closeCacheInvalidation();
         this.getClient().close();
     }
     
-}
\ No newline at end of file
+
+    /**
+     * Set the max number of collections(partitions) queried at the same time by a crossPartition find / count
+     *
+     * @param crossPartitionConcurrency should be &gt; 0
+     * @return this
+     */
+    public MongoImpl withCrossPartitionConcurrency(int crossPartitionConcurrency) {
+        Checker.check(crossPartitionConcurrency > 0, "crossPartitionConcurrency should be > 0");
+        this.crossPartitionConcurrency = crossPartitionConcurrency;
+        return this;
+    }
+
+    /**
+     * Set the listener receiving the metrics of every CosmosDatabase operation
+     *
+     * @param operationListener listener. NOOP to disable
+     * @return this
+     */
+    public MongoImpl withOperationListener(OperationListener operationListener) {
+        Checker.checkNotNull(operationListener, "operationListener");
+        this.operationListener = operationListener;
+        return this;
+    }
+
+    /**
+     * Set the executor running the operations of AsyncCosmosDatabase
+     *
+     * @param asyncExecutor executor. the number of threads bounds the in-flight async operations
+     * @return this
+     */
+    public MongoImpl withAsyncExecutor(Executor asyncExecutor) {
+        Checker.checkNotNull(asyncExecutor, "asyncExecutor");
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Enable the in-process read-through document cache for read / readSuppressing404
+     *
+     * @param option cache option. null to disable
+     * @return this
+     */
+    public MongoImpl withDocumentCache(DocumentCacheOption option) {
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.removeCache(this.documentCache);
+        }
+        this.documentCache = option == null ? null : new DocumentCache(option);
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        return this;
+    }
+
+    /**
+     * Enable the cross-node cache invalidation. Documents changed by any client are invalidated in the document cache, and delivered to the listeners of invalidationBus.
+     *
+     * <p>
+     * mongodb watches the change streams of the databases(colls) specified by option.watch, or of the whole cluster. Requires a replica set.
+     * </p>
+     *
+     * @param option invalidation option. null to disable
+     * @return this
+     */
+    public MongoImpl withCacheInvalidation(CacheInvalidationOption option) {
+        closeCacheInvalidation();
+        if (option == null) {
+            return this;
+        }
+        this.invalidationBus = new InvalidationBus(option.queueCapacity);
+        if (this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        this.changeSubscriber = new MongoChangeStreamSubscriber(this.client, invalidationBus, option);
+        return this;
+    }
+
+    /**
+     * Stop the cross-node cache invalidation
+     */
+    void closeCacheInvalidation() {
+        if (this.changeSubscriber != null) {
+            this.changeSubscriber.close();
+            this.changeSubscriber = null;
+        }
+        if (this.invalidationBus != null) {
+            this.invalidationBus.close();
+            this.invalidationBus = null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.thunderz99.cosmos.impl.postgres;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.cache.InvalidationEvent;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.postgresql.PGConnection;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscribes to the NOTIFY sent by the change notify trigger(see TableUtil.createChangeNotifyTriggerIfNotExists), and publishes the changed records to an InvalidationBus.
+ *
+ * <p>
+ * A dedicated connection(see newDedicatedDataSource) is held by a daemon thread for LISTEN, so that the pool of the application does not shrink. When the connection is lost, a resync is published(notifications may have been lost while disconnected),
+ * and the subscriber reconnects after reconnectIntervalMillis.
+ * </p>
+ */
+public class PGChangeNotifySubscriber implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PGChangeNotifySubscriber.class);
+
+    final DataSource dataSource;
+
+    final InvalidationBus bus;
+
+    final CacheInvalidationOption option;
+
+    /**
+     * schemas(colls) to follow. empty for all
+     */
+    final Set<String> colls;
+
+    final Thread thread;
+
+    volatile boolean closed = false;
+
+    /**
+     * Create a subscriber and start listening in a daemon thread
+     *
+     * @param dataSource data source of the primary, opening a dedicated connection for LISTEN(see newDedicatedDataSource)
+     * @param bus        bus to publish the changed records
+     * @param option     invalidation option
+     */
+    public PGChangeNotifySubscriber(DataSource dataSource, InvalidationBus bus, CacheInvalidationOption option) {
+        Checker.checkNotNull(dataSource, "dataSource");
+        Checker.checkNotNull(bus, "bus");
+        Checker.checkNotNull(option, "option");
+
+        this.dataSource = dataSource;
+        this.bus = bus;
+        this.option = option;
+        this.colls = Set.copyOf(option.getColls());
+
+        this.thread = new Thread(this::listenLoop, "java-cosmos-pg-change-notify");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Create a non-pooled data source with the same url, credentials and data source properties as the pool.
+     * Each connection is a new physical connection, and closed when the subscriber stops or reconnects.
+     *
+     * @param pool connection pool of the primary
+     * @return non-pooled data source
+     */
+    public static DataSource newDedicatedDataSource(HikariDataSource pool) {
+        Checker.checkNotNull(pool, "pool");
+
+        var ret = new PGSimpleDataSource();
+        ret.setURL(pool.getJdbcUrl());
+        if (pool.getUsername() != null) {
+            ret.setUser(pool.getUsername());
+        }
+        if (pool.getPassword() != null) {
+            ret.setPassword(pool.getPassword());
+        }
+        for (var name : pool.getDataSourceProperties().stringPropertyNames()) {
+            try {
+                ret.setProperty(name, pool.getDataSourceProperties().getProperty(name));
+            } catch (SQLException e) {
+                log.warn("data source property:{} is ignored for LISTEN.", name, e);
+            }
+        }
+        return ret;
+    }
+
+    void listenLoop() {
+        var connected = false;
+        while (!closed) {
+            try (var conn = dataSource.getConnection()) {
+                listen(conn);
+                if (connected) {
+                    // notifications sent while disconnected are lost
+                    bus.publishResync();
+                }
+                connected = true;
+                log.info("listening on channel:{}", TableUtil.CHANGE_NOTIFY_CHANNEL);
+                receive(conn);
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("listening on channel:{} failed. reconnect after {}ms.", TableUtil.CHANGE_NOTIFY_CHANNEL, option.reconnectIntervalMillis, e);
+                if (connected) {
+                    bus.publishResync();
+                }
+                try {
+                    Thread.sleep(option.reconnectIntervalMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    static void listen(Connection conn) throws SQLException {
+        conn.setAutoCommit(true);
+        try (var stmt = conn.createStatement()) {
+            stmt.execute("LISTEN " + TableUtil.CHANGE_NOTIFY_CHANNEL);
+        }
+    }
+
+    void receive(Connection conn) throws SQLException {
+        var pgConn = conn.unwrap(PGConnection.class);
+        while (!closed) {
+            var notifications = pgConn.getNotifications((int) Math.max(1, option.pollIntervalMillis));
+            if (notifications == null) {
+                continue;
+            }
+            for (var notification : notifications) {
+                var event = toEvent(notification.getParameter());
+                if (event != null && (colls.isEmpty() || colls.contains(event.coll))) {
+                    bus.publish(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * parse the payload of a notification. null if invalid
+     */
+    static InvalidationEvent toEvent(String payload) {
+        try {
+            var map = JsonUtil.toMap(payload);
+            var id = map.get("id");
+            if (id == null) {
+                return null;
+            }
+            var etag = map.get("etag");
+            return new InvalidationEvent(null, (String) map.get("coll"), (String) map.get("partition"), id.toString(), etag == null ? null : etag.toString());
+        } catch (Exception e) {
+            log.warn("invalid payload of channel:{}, payload:{}", TableUtil.CHANGE_NOTIFY_CHANNEL, payload, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stop listening. The connection is closed within pollIntervalMillis.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
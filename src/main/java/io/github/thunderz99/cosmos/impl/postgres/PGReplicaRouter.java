@@ -0,0 +1,213 @@
+package io.github.thunderz99.cosmos.impl.postgres;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.thunderz99.cosmos.util.Checker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes read-only queries(find / findToIterator / count / aggregate) to read replicas of postgres.
+ *
+ * <p>
+ * Each replica has its own connection pool. Replicas are checked periodically, and a replica is skipped when it is unreachable,
+ * its WAL receiver is not streaming from the primary, or its replication lag is over maxLagMillis. Queries are load-balanced across the healthy replicas by round-robin,
+ * and fall back to the primary when no replica is healthy. Writes always use the primary.
+ * </p>
+ */
+public class PGReplicaRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(PGReplicaRouter.class);
+
+    /**
+     * default max replication lag of a healthy replica
+     */
+    public static final long DEFAULT_MAX_LAG_MILLIS = 5_000;
+
+    /**
+     * default interval of the health check
+     */
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 5_000;
+
+    /**
+     * whether the server is in recovery(a replica), whether the WAL receiver is streaming, whether all the received WAL is replayed, and the age of the last replayed transaction in milliseconds.
+     *
+     * <p>
+     * The status of pg_stat_wal_receiver is null for a user without pg_read_all_stats, in which case a running WAL receiver is regarded as streaming.
+     * </p>
+     */
+    static final String LAG_SQL = """
+            SELECT pg_is_in_recovery(),
+                EXISTS(SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming' OR (status IS NULL AND pid IS NOT NULL)),
+                pg_last_wal_receive_lsn() IS NOT DISTINCT FROM pg_last_wal_replay_lsn(),
+                COALESCE(extract(epoch from (now() - pg_last_xact_replay_timestamp())) * 1000, 0)
+            """;
+
+    /**
+     * a read replica and its health
+     */
+    public static class Replica {
+
+        /**
+         * connection pool of the replica
+         */
+        public final HikariDataSource dataSource;
+
+        /**
+         * whether the replica is used for reads
+         */
+        public volatile boolean healthy = true;
+
+        /**
+         * replication lag at the last check. -1 if the replica is unreachable or not streaming from the primary
+         */
+        public volatile long lagMillis = 0;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    final DataSource primary;
+
+    final List<Replica> replicas;
+
+    final long maxLagMillis;
+
+    final AtomicInteger counter = new AtomicInteger();
+
+    ScheduledExecutorService healthChecker;
+
+    /**
+     * Create a router. The replicas are checked once immediately, then every checkIntervalMillis in a daemon thread.
+     *
+     * @param primary             data source of the primary, used when no replica is healthy
+     * @param replicas            data sources of the replicas
+     * @param maxLagMillis        max replication lag of a healthy replica
+     * @param checkIntervalMillis interval of the health check. 0 to disable the periodic check
+     */
+    public PGReplicaRouter(DataSource primary, List<HikariDataSource> replicas, long maxLagMillis, long checkIntervalMillis) {
+        Checker.checkNotNull(primary, "primary");
+        Checker.checkNotNull(replicas, "replicas");
+        Checker.check(maxLagMillis >= 0, "maxLagMillis should be >= 0");
+        Checker.check(checkIntervalMillis >= 0, "checkIntervalMillis should be >= 0");
+
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLagMillis = maxLagMillis;
+
+        checkReplicas();
+
+        if (checkIntervalMillis > 0 && !this.replicas.isEmpty()) {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                var thread = new Thread(r, "java-cosmos-pg-replica-checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.healthChecker.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Get the data source for a read-only query. Round-robin across the healthy replicas, or the primary if no replica is healthy.
+     *
+     * @return data source
+     */
+    public DataSource getReadDataSource() {
+        var size = replicas.size();
+        var start = Math.floorMod(counter.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            var replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.dataSource;
+            }
+        }
+        return primary;
+    }
+
+    /**
+     * Check the replication lag of every replica, and mark the replica healthy if it is reachable, streaming and lag &lt;= maxLagMillis
+     */
+    public void checkReplicas() {
+        for (var replica : replicas) {
+            var lag = getLagMillis(replica.dataSource);
+            var healthy = lag >= 0 && lag <= maxLagMillis;
+            if (healthy != replica.healthy) {
+                log.warn("postgres replica {} becomes {}. lagMillis:{}, maxLagMillis:{}", replica.dataSource.getJdbcUrl(), healthy ? "healthy" : "unhealthy", lag, maxLagMillis);
+            }
+            replica.lagMillis = lag;
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * Get the replication lag of a replica
+     *
+     * @param dataSource data source of the replica
+     * @return lag in milliseconds, -1 if the replica is unreachable or not streaming from the primary
+     */
+    static long getLagMillis(DataSource dataSource) {
+        try (var conn = dataSource.getConnection();
+             var stmt = conn.createStatement();
+             var rs = stmt.executeQuery(LAG_SQL)) {
+            return rs.next() ? toLagMillis(rs.getBoolean(1), rs.getBoolean(2), rs.getBoolean(3), rs.getLong(4)) : -1;
+        } catch (SQLException e) {
+            log.warn("failed to check postgres replica.", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Get the replication lag from the result of LAG_SQL
+     *
+     * <p>
+     * When the WAL receiver is stopped(e.g. disconnected from the primary), nothing new arrives and all the received WAL is replayed,
+     * so the replica looks up to date while it gets staler forever. It is treated as unhealthy(-1) instead.
+     * </p>
+     *
+     * @param inRecovery      whether the server is in recovery. 0 if not(not a replica)
+     * @param streaming       whether the WAL receiver is streaming from the primary
+     * @param replayed        whether all the received WAL is replayed. 0 if so(an idle primary does not make the replica stale)
+     * @param replayAgeMillis age of the last replayed transaction
+     * @return lag in milliseconds, -1 if not streaming
+     */
+    static long toLagMillis(boolean inRecovery, boolean streaming, boolean replayed, long replayAgeMillis) {
+        if (!inRecovery) {
+            return 0;
+        }
+        if (!streaming) {
+            return -1;
+        }
+        return replayed ? 0 : replayAgeMillis;
+    }
+
+    /**
+     * Get the replicas and their health
+     *
+     * @return replicas
+     */
+    public List<Replica> getReplicas() {
+        return new ArrayList<>(replicas);
+    }
+
+    /**
+     * Stop the health check and close the connection pools of the replicas
+     */
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (var replica : replicas) {
+            replica.dataSource.close();
+        }
+    }
+}
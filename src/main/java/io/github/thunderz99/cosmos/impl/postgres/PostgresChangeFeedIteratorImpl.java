@@ -0,0 +1,173 @@
+package io.github.thunderz99.cosmos.impl.postgres;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+
+import javax.sql.DataSource;
+
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGChangeLogUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.util.Checker;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A postgres implementation of {@link ChangeFeedIterator}, reading the change log table of the schema(see {@link PGChangeLogUtil}).
+ *
+ * <p>
+ * The checkpoint is "fromTxid:toTxid:seq", meaning that all the changes of transactions before fromTxid,
+ * and the changes in the window [fromTxid, toTxid) up to seq have been returned.
+ * A connection is borrowed from the pool only while fetching a page.
+ * </p>
+ */
+public class PostgresChangeFeedIteratorImpl implements ChangeFeedIterator {
+
+    /**
+     * number of changes fetched at once
+     */
+    static final int PAGE_SIZE = 1000;
+
+    /**
+     * a fetched change and the checkpoint after it
+     */
+    record Change(CosmosDocument document, String checkpoint) {
+    }
+
+    final DataSource dataSource;
+
+    final String schemaName;
+
+    final String tableName;
+
+    /**
+     * position of the next fetch
+     */
+    long fromTxid;
+    long toTxid;
+    long seq;
+
+    /**
+     * checkpoint after the last change returned by next()
+     */
+    String checkpoint;
+
+    final ArrayDeque<Change> buffer = new ArrayDeque<>();
+
+    /**
+     * @param dataSource     data source of the primary
+     * @param schemaName     schema name(coll)
+     * @param tableName      table name(partition)
+     * @param fromCheckpoint checkpoint to resume from. null to start from now
+     * @throws SQLException if a database error occurs
+     */
+    PostgresChangeFeedIteratorImpl(DataSource dataSource, String schemaName, String tableName, String fromCheckpoint) throws SQLException {
+        this.dataSource = dataSource;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+
+        if (StringUtils.isEmpty(fromCheckpoint)) {
+            try (var conn = dataSource.getConnection()) {
+                this.fromTxid = PGChangeLogUtil.getCurrentXmin(conn);
+            }
+            this.toTxid = this.fromTxid;
+            this.seq = 0;
+        } else {
+            var parts = fromCheckpoint.split(":");
+            try {
+                Checker.check(parts.length == 3, "invalid checkpoint");
+                this.fromTxid = Long.parseLong(parts[0]);
+                this.toTxid = Long.parseLong(parts[1]);
+                this.seq = Long.parseLong(parts[2]);
+            } catch (IllegalArgumentException e) {
+                throw new CosmosException(400, "400", "Invalid checkpoint for postgres: " + fromCheckpoint, e);
+            }
+        }
+        this.checkpoint = toCheckpoint();
+    }
+
+    String toCheckpoint() {
+        return "%d:%d:%d".formatted(fromTxid, toTxid, seq);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffer.isEmpty()) {
+            try {
+                fetch();
+            } catch (SQLException e) {
+                throw new CosmosException(500, "500", "changeFeed failed for %s.%s".formatted(schemaName, tableName), e);
+            }
+        }
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * fetch the next page. move to the next window when the current one is exhausted, until the window reaches the current xmin
+     */
+    void fetch() throws SQLException {
+        try (var conn = dataSource.getConnection()) {
+            while (true) {
+                if (fromTxid == toTxid) {
+                    var xmin = PGChangeLogUtil.getCurrentXmin(conn);
+                    if (xmin <= toTxid) {
+                        // no transaction has completed since the last fetch
+                        return;
+                    }
+                    toTxid = xmin;
+                    seq = 0;
+                }
+
+                var changes = PGChangeLogUtil.readChanges(conn, schemaName, tableName, fromTxid, toTxid, seq, PAGE_SIZE);
+                if (changes.isEmpty()) {
+                    // the window is exhausted
+                    fromTxid = toTxid;
+                    seq = 0;
+                    if (buffer.isEmpty()) {
+                        checkpoint = toCheckpoint();
+                    }
+                    continue;
+                }
+
+                for (var change : changes) {
+                    seq = change.seq;
+                    buffer.add(new Change(toDocument(change), toCheckpoint()));
+                }
+                return;
+            }
+        }
+    }
+
+    static CosmosDocument toDocument(PGChangeLogUtil.ChangeRecord change) {
+        if (change.data == null) {
+            var map = new LinkedHashMap<String, Object>();
+            map.put(TableUtil.ID, change.id);
+            map.put(DELETED, true);
+            return new CosmosDocument(map);
+        }
+        return PostgresDatabaseImpl.getCosmosDocument(new PostgresRecord(change.id, change.data));
+    }
+
+    @Override
+    public CosmosDocument next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var change = buffer.poll();
+        checkpoint = change.checkpoint();
+        return change.document();
+    }
+
+    @Override
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public void close() {
+        buffer.clear();
+    }
+}
@@ -9,13 +9,22 @@ import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
 import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGTimePartitionOption;
 import io.github.thunderz99.cosmos.impl.postgres.dto.QueryContext;
+import io.github.thunderz99.cosmos.impl.postgres.dto.TTLOption;
 import io.github.thunderz99.cosmos.impl.postgres.util.PGAggregateUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGChangeLogUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.PGConditionUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGPartitionUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGSortUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.TTLUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
 import io.github.thunderz99.cosmos.util.*;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -23,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -71,11 +81,61 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
     public String createTableIfNotExists(String schemaName, String tableName) throws Exception {
 
         try(var conn = dataSource.getConnection()) {
-            TableUtil.createTableIfNotExists(conn, schemaName, tableName);
+            var jsonbPathOps = cosmosAccount instanceof PostgresImpl postgres && postgres.jsonbPathOpsIndexEnabled;
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName, jsonbPathOps);
+            createChangeNotifyTriggerIfEnabled(conn, schemaName, tableName);
             return tableName;
         }
     }
 
+    /**
+     * Create a time-partitioned table representing a partition, if not exist, and schedule the maintenance job of it(using pg_cron).
+     *
+     * <p>
+     * Child partitions are created ahead of time and expired partitions are dropped(or detached) by the job,
+     * so that expiring data is a metadata operation instead of a DELETE of rows. Intended for append-only data, see {@link PGTimePartitionOption}.
+     * </p>
+     *
+     * @param schemaName      schema name
+     * @param tableName       table name
+     * @param partitionOption time partition option
+     * @return table name
+     * @throws Exception if a database error occurs
+     */
+    public String createTableIfNotExists(String schemaName, String tableName, PGTimePartitionOption partitionOption) throws Exception {
+
+        Checker.checkNotNull(partitionOption, "partitionOption");
+
+        try(var conn = dataSource.getConnection()) {
+            var jsonbPathOps = cosmosAccount instanceof PostgresImpl postgres && postgres.jsonbPathOpsIndexEnabled;
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName, jsonbPathOps, partitionOption);
+            PGPartitionUtil.scheduleJob(conn, schemaName, tableName, partitionOption);
+            createChangeNotifyTriggerIfEnabled(conn, schemaName, tableName);
+            return tableName;
+        }
+    }
+
+    /**
+     * Install the change notify trigger on the table, if the cross-node cache invalidation is enabled
+     */
+    void createChangeNotifyTriggerIfEnabled(Connection conn, String schemaName, String tableName) throws SQLException {
+        if (cosmosAccount instanceof PostgresImpl postgres && postgres.invalidationBus != null) {
+            TableUtil.createChangeNotifyTriggerIfNotExists(conn, schemaName, tableName);
+        }
+    }
+
+    /**
+     * Create a query context with the options of the account(e.g. containmentQueryEnabled, queryCache)
+     *
+     * @return query context
+     */
+    QueryContext newQueryContext() {
+        if (cosmosAccount instanceof PostgresImpl postgres) {
+            return QueryContext.create().containmentEnabled(postgres.containmentQueryEnabled).queryCache(postgres.queryCache);
+        }
+        return QueryContext.create();
+    }
+
     /**
      * Drop a table representing a partition, if exists.
      *
@@ -256,6 +316,25 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         return ret;
     }
 
+    /**
+     * Read a document by coll and id, from a read replica if option.eventualConsistency is true
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param option    read option
+     * @return CosmosDocument instance
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    @Override
+    public CosmosDocument read(String coll, String id, String partition, ReadOption option) throws Exception {
+        var ret = readSuppressing404(coll, id, partition, option);
+        if (ret == null) {
+            throw new CosmosException(404, "404", "Resource Not Found. code: NotFound");
+        }
+        return ret;
+    }
+
     /**
      * process precision of timestamp and get CosmosDocument instance from response
      *
@@ -303,6 +382,21 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
      * @throws Exception Cosmos client exception
      */
     public CosmosDocument readSuppressing404(String coll, String id, String partition) throws Exception {
+        return readSuppressing404(coll, id, partition, new ReadOption());
+    }
+
+    /**
+     * Read a document by coll and id, from a read replica if option.eventualConsistency is true. Return null if object not exist
+     *
+     * @param coll      collection name
+     * @param id        id of document
+     * @param partition partition name
+     * @param option    read option
+     * @return CosmosDocument instance
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition, ReadOption option) throws Exception {
 
         Checker.checkNotBlank(id, "id");
         Checker.checkNotBlank(coll, "coll");
@@ -313,8 +407,9 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         var documentLink = LinkFormatUtil.getDocumentLink(coll, partition, id);
 
         final var _coll = coll;
+        var dataSource = option != null && option.eventualConsistency ? readDataSource() : this.dataSource;
         var record = RetryUtil.executeWithRetry(() -> {
-            try(var conn = this.dataSource.getConnection()) {
+            try(var conn = dataSource.getConnection()) {
                 return TableUtil.readRecord(conn, _coll, partition, id);
             }
         });
@@ -330,6 +425,102 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
 
     }
 
+    /**
+     * Read a document only if its "_etag" does not match etag. The data column is not transferred when the etag matches.
+     *
+     * @param coll      collection name
+     * @param id        id of the document
+     * @param partition partition name
+     * @param etag      etag of the document already held. a full read is done if null
+     * @return CosmosDocument instance if modified, or null if not modified
+     * @throws Exception Throw 404 Not Found Exception if object not exist
+     */
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+
+        if (StringUtils.isEmpty(etag)) {
+            return read(coll, id, partition);
+        }
+
+        Checker.checkNotBlank(id, "id");
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        coll = TableUtil.checkAndNormalizeValidEntityName(coll);
+
+        var documentLink = LinkFormatUtil.getDocumentLink(coll, partition, id);
+
+        final var _coll = coll;
+        var record = RetryUtil.executeWithRetry(() -> {
+            try (var conn = this.dataSource.getConnection()) {
+                return TableUtil.readRecordIfNoneMatch(conn, _coll, partition, id, etag);
+            }
+        });
+
+        if (log.isInfoEnabled()) {
+            log.info("read Document if none match:{}, partition:{}, modified:{}, account:{}", documentLink, partition, record != null && record.data != null, getAccount());
+        }
+
+        if (record == null) {
+            throw new CosmosException(404, "404", "Resource Not Found. code: NotFound");
+        }
+        if (record.data == null) {
+            return null;
+        }
+        return getCosmosDocument(record);
+    }
+
+    /**
+     * Read multiple documents by (id, partition) pairs.
+     *
+     * <p>
+     * One "id = ANY(@param)" query is executed for each partition(table), all using the same connection.
+     * </p>
+     *
+     * @param coll   collection name
+     * @param items  (id, partition) pairs to read
+     * @param fields fields to return. "id" is always returned. all fields are returned if empty
+     * @return documents found and items missing
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        ReadManyItem.checkValid(items);
+
+        coll = TableUtil.checkAndNormalizeValidEntityName(coll);
+
+        // group ids by partition, keeping the input order
+        var idsByPartition = new LinkedHashMap<String, Set<String>>();
+        for (var item : items) {
+            idsByPartition.computeIfAbsent(item.partition, k -> new LinkedHashSet<>()).add(item.id);
+        }
+
+        final var _coll = coll;
+        var found = RetryUtil.executeWithRetry(() -> {
+            var ret = new HashMap<ReadManyItem, CosmosDocument>();
+            try (var conn = this.dataSource.getConnection()) {
+                for (var entry : idsByPartition.entrySet()) {
+                    var partition = entry.getKey();
+                    var ids = List.copyOf(entry.getValue());
+                    var cond = Condition.filter(TableUtil.ID, ids).fields(fields).limit(ids.size());
+                    var querySpec = PGConditionUtil.toQuerySpec(_coll, cond, partition, newQueryContext());
+                    for (var record : TableUtil.findRecords(conn, _coll, partition, querySpec)) {
+                        ret.put(ReadManyItem.of(record.id, partition), getCosmosDocument(record));
+                    }
+                }
+            }
+            return ret;
+        });
+
+        if (log.isInfoEnabled()) {
+            log.info("readMany Document:{}, items:{}, found:{}, partitions:{}, account:{}", coll, items.size(), found.size(), idsByPartition.size(), getAccount());
+        }
+
+        return ReadManyResult.of(items, found);
+    }
+
     /**
      * Update existing data. if not exist, throw Not Found Exception.
      *
@@ -585,7 +776,7 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
 
         var collectionLink = LinkFormatUtil.getCollectionLink(coll, partition);
 
-        var ret = _findToIterator(coll, cond, partition).docs;
+        var ret = _find(coll, cond, partition);
 
         if (log.isInfoEnabled()) {
             log.info("find Document:{}, cond:{}, partition:{}, account:{}", collectionLink, cond, cond.crossPartition ? "crossPartition" : partition, getAccount());
@@ -603,7 +794,7 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         if (StringUtils.isEmpty(cond.collate)) {
             cond.collate = ((PostgresImpl) cosmosAccount).collate;
         }
-        return PGConditionUtil.toQuerySpec(coll, cond, partition);
+        return PGConditionUtil.toQuerySpec(coll, cond, partition, newQueryContext());
     }
 
     /**
@@ -647,16 +838,56 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
     }
 
     /**
-     * A helper method to do findToIterator by condition. find method is also based on this inner method,
-     * converting iterator to List.
+     * Read the records changed in a partition incrementally, resuming from a checkpoint.
+     *
+     * <p>
+     * The change log table of the schema and the trigger on the table are installed on the first call(see {@link PGChangeLogUtil}),
+     * so only the changes after the first call are available. Changes are always read from the primary.
+     * The change log grows without bound until purged. Set PostgresImpl.withChangeLogRetentionMinutes to purge it by a pg_cron job, or call PGChangeLogUtil.purgeChangeLog.
+     * </p>
+     *
+     * @param coll           collection name
+     * @param partition      partition name
+     * @param fromCheckpoint checkpoint got by ChangeFeedIterator.getCheckpoint. null to start from now
+     * @return ChangeFeedIterator
+     * @throws Exception Cosmos client exception
+     */
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        coll = TableUtil.checkAndNormalizeValidEntityName(coll);
+
+        try (var conn = this.dataSource.getConnection()) {
+            TableUtil.createTableIfNotExists(conn, coll, partition);
+            PGChangeLogUtil.enableChangeLog(conn, coll, partition);
+            if (cosmosAccount instanceof PostgresImpl postgres && postgres.changeLogRetentionMinutes > 0 && !postgres.changeLogPurgeSchemas.contains(coll)) {
+                PGChangeLogUtil.schedulePurgeJob(conn, coll, postgres.changeLogRetentionMinutes);
+                postgres.changeLogPurgeSchemas.add(coll);
+            }
+        }
+
+        var iterator = new PostgresChangeFeedIteratorImpl(this.dataSource, coll, partition, fromCheckpoint);
+
+        if (log.isInfoEnabled()) {
+            log.info("changeFeed Document:{}, checkpoint:{}, account:{}", LinkFormatUtil.getCollectionLink(coll, partition), iterator.getCheckpoint(), getAccount());
+        }
+
+        return iterator;
+    }
+
+    /**
+     * A helper method to do find by condition, loading all the records into a list.
      *
      * @param coll      collection name
      * @param cond      condition to find
      * @param partition partition name
-     * @return CosmosDocumentIteratorImpl
+     * @return CosmosDocumentList
      * @throws Exception Cosmos client exception
      */
-    PostgresDocumentIteratorImpl _findToIterator(String coll, Condition cond, String partition) throws Exception {
+    CosmosDocumentList _find(String coll, Condition cond, String partition) throws Exception {
 
         Checker.checkNotBlank(coll, "coll");
         Checker.checkNotBlank(partition, "partition");
@@ -665,23 +896,163 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
             cond = new Condition();
         }
 
-        // TODO crossPartition query
-
         if(StringUtils.isEmpty(cond.collate)){
             cond.collate = ((PostgresImpl)cosmosAccount).collate;
         }
-        var querySpec = PGConditionUtil.toQuerySpec(coll, cond, partition);
+
+        if (cond.crossPartition) {
+            return _findCrossPartition(coll, cond);
+        }
+
+        // when using keyset pagination, fetch one more record to know whether there is a next page
+        var queryCond = cond.keysetPagination ? KeysetUtil.prepareCondition(cond) : cond;
+        var querySpec = PGConditionUtil.toQuerySpec(coll, queryCond, partition, newQueryContext());
 
 
         final var _coll = coll;
+        var start = System.nanoTime();
         var records = RetryUtil.executeWithRetry(() -> {
-            try (var conn = this.dataSource.getConnection()) {
+            try (var conn = readDataSource().getConnection()) {
                 return TableUtil.findRecords(conn, _coll, partition, querySpec);
             }
         });
+        recordIndexCandidates(coll, partition, cond, true, System.nanoTime() - start);
+
+        String continuationToken = null;
+        if (cond.keysetPagination && records.size() > cond.limit) {
+            records = records.subList(0, cond.limit);
+            // encode the token using the raw data, before the precision of _ts is processed
+            continuationToken = KeysetUtil.encode(KeysetUtil.normalizeSort(cond.sort), records.get(records.size() - 1).data);
+        }
+
+        var maps = records.stream().map(r -> getCosmosDocument(r).toMap()).toList();
+        return new CosmosDocumentList(maps).setContinuationToken(continuationToken);
+
+    }
+
+    /**
+     * A helper method to do find across all the partitions(tables) of the coll(schema).
+     *
+     * <p>
+     * Tables are queried in parallel(at most crossPartitionConcurrency at the same time), each returning its own top (offset + limit) records sorted by cond.sort.
+     * The results are merged by a k-way heap and the global offset / limit is applied. Keyset pagination works in the same way, using the seek predicate in every table.
+     * If cond.fields is specified, the sort keys are also returned in order to merge the results.
+     * </p>
+     *
+     * <p>
+     * Strings are always sorted with collate "C" regardless of cond.collate, because the order of a locale collate in postgres(ICU / libc) cannot be reproduced by the merge.
+     * A different order between the tables and the merge would break the global top-N and skip records in keyset pagination.
+     * </p>
+     *
+     * @param coll collection name(schema)
+     * @param cond condition to find. crossPartition should be true
+     * @return CosmosDocumentList
+     * @throws Exception Cosmos client exception
+     */
+    CosmosDocumentList _findCrossPartition(String coll, Condition cond) throws Exception {
+
+        var queryCond = cond.keysetPagination ? KeysetUtil.prepareCondition(cond) : cond;
+        var offset = cond.keysetPagination ? 0 : cond.offset;
+
+        // the same sort as ORDER BY of each table("_ts" and "id" are added as tie-breakers). no merge sort when sort is empty
+        var sort = cond.keysetPagination || CollectionUtils.isNotEmpty(cond.sort) ? KeysetUtil.normalizeSort(cond.sort) : List.<String>of();
+
+        var partitionCond = queryCond.copy();
+        partitionCond.crossPartition = false;
+        // the byte order of "C" is the same as the String comparator of the merge
+        partitionCond.collate = PGSortUtil.COLLATE_C;
+        partitionCond.offset = 0;
+        partitionCond.limit = (int) Math.min((long) offset + queryCond.limit, Integer.MAX_VALUE);
+        if (CollectionUtils.isNotEmpty(partitionCond.fields)) {
+            for (int i = 0; i < sort.size(); i += 2) {
+                partitionCond.fields.add(StringUtils.substringBefore(sort.get(i), "::"));
+            }
+        }
+
+        var postgres = (PostgresImpl) cosmosAccount;
+        // the same order as ORDER BY of each table
+        var comparator = PGSortUtil.getComparator4Merge(sort);
+
+        final var _coll = coll;
+        var tables = RetryUtil.executeWithRetry(() -> {
+            try (var conn = readDataSource().getConnection()) {
+                return TableUtil.listTables(conn, _coll);
+            }
+        });
+
+        // generated once, and only the table differs
+        var template = PGConditionUtil.toQuerySpecTemplate(_coll, partitionCond, newQueryContext());
+
+        List<PostgresRecord> records = CrossPartitionUtil.find(tables, postgres.crossPartitionConcurrency, comparator,
+                offset, queryCond.limit, table -> {
+                    var querySpec = PGConditionUtil.bindTable(template, _coll, table);
+                    return RetryUtil.executeWithRetry(() -> {
+                        try (var conn = readDataSource().getConnection()) {
+                            return TableUtil.findRecords(conn, _coll, table, querySpec);
+                        }
+                    });
+                });
+
+        String continuationToken = null;
+        if (cond.keysetPagination && records.size() > cond.limit) {
+            records = records.subList(0, cond.limit);
+            // encode the token using the raw data, before the precision of _ts is processed. id is the id column, the same as the seek predicate
+            var last = records.get(records.size() - 1);
+            last.data.put(TableUtil.ID, last.id);
+            continuationToken = KeysetUtil.encode(sort, last.data);
+        }
 
         var maps = records.stream().map(r -> getCosmosDocument(r).toMap()).toList();
-        return new PostgresDocumentIteratorImpl(new CosmosDocumentList(maps));
+        return new CosmosDocumentList(maps).setContinuationToken(continuationToken);
+    }
+
+    /**
+     * A helper method to do findToIterator by condition, using a server-side cursor.
+     *
+     * <p>
+     * A dedicated connection with autocommit=false is held by the returned iterator,
+     * and rows are fetched {@code fetchSize} at a time. The connection is released when the iterator is exhausted or closed.
+     * </p>
+     *
+     * @param coll      collection name
+     * @param cond      condition to find
+     * @param partition partition name
+     * @return CosmosDocumentIteratorImpl
+     * @throws Exception Cosmos client exception
+     */
+    PostgresDocumentIteratorImpl _findToIterator(String coll, Condition cond, String partition) throws Exception {
+
+        Checker.checkNotBlank(coll, "coll");
+        Checker.checkNotBlank(partition, "partition");
+
+        if (cond == null) {
+            cond = new Condition();
+        }
+
+        if(StringUtils.isEmpty(cond.collate)){
+            cond.collate = ((PostgresImpl)cosmosAccount).collate;
+        }
+
+        if (cond.crossPartition) {
+            // the merged result is bounded by offset + limit, so it is held in memory instead of a cursor
+            return new PostgresDocumentIteratorImpl(_findCrossPartition(coll, cond));
+        }
+
+        var querySpec = PGConditionUtil.toQuerySpec(coll, cond, partition, newQueryContext());
+        var fetchSize = ((PostgresImpl) cosmosAccount).fetchSize;
+
+        final var _coll = coll;
+        return RetryUtil.executeWithRetry(() -> {
+            var conn = readDataSource().getConnection();
+            try {
+                conn.setAutoCommit(false);
+                var resultSet = TableUtil.openCursor(conn, _coll, partition, querySpec, fetchSize);
+                return new PostgresDocumentIteratorImpl(conn, resultSet);
+            } catch (Exception e) {
+                PostgresDocumentIteratorImpl.closeCursor(conn, null);
+                throw e;
+            }
+        });
 
     }
 
@@ -737,12 +1108,12 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
 
         // because aggregate will do a peak to the db, to determine the type of field to aggregate,
         // we need to pass the databaseImpl to the QueryContext
-        var queryContext = QueryContext.create().databaseImpl(this);
+        var queryContext = newQueryContext().databaseImpl(this);
         var querySpec = PGConditionUtil.toQuerySpec4Aggregate(coll, cond, aggregate, partition, queryContext);
 
         final var _coll = coll;
         List<Map<String, Object>> maps = RetryUtil.executeWithRetry(() -> {
-            try (var conn = this.dataSource.getConnection()) {
+            try (var conn = readDataSource().getConnection()) {
                 var records = TableUtil.aggregateRecords(conn, _coll, partition, querySpec);
                 return records.stream().map(r -> r.data).toList();
             }
@@ -764,7 +1135,7 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         if (cond == null) {
             cond = new Condition();
         }
-        var queryContext = QueryContext.create().databaseImpl(this);
+        var queryContext = newQueryContext().databaseImpl(this);
         return PGConditionUtil.toQuerySpec4Aggregate(coll, cond, aggregate, partition, queryContext);
     }
 
@@ -800,13 +1171,18 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
             cond = new Condition();
         }
 
-        var querySpec = PGConditionUtil.toQuerySpecForCount(coll, cond, partition);
+        if (cond.crossPartition) {
+            return _countCrossPartition(coll, cond);
+        }
+
+        var querySpec = PGConditionUtil.toQuerySpecForCount(coll, cond, partition, newQueryContext());
 
         final var _coll = coll;
         final var _cond = cond;
 
-        return RetryUtil.executeWithRetry(() -> {
-            try(var conn = this.dataSource.getConnection()) {
+        var start = System.nanoTime();
+        var ret = RetryUtil.executeWithRetry(() -> {
+            try(var conn = readDataSource().getConnection()) {
                 var count = TableUtil.countRecords(conn, _coll, partition, querySpec);
                 if(log.isInfoEnabled()) {
                     log.info("count Document:{}, cond:{}, collection:{}, partition:{}, account:{}", _coll, _cond, collectionLink, partition, getAccount());
@@ -814,6 +1190,62 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
                 return count;
             }
         });
+        recordIndexCandidates(coll, partition, cond, false, System.nanoTime() - start);
+        return ret;
+    }
+
+    /**
+     * A helper method to count across all the partitions(tables) of the coll(schema). Tables are counted in parallel and the counts are summed.
+     *
+     * @param coll collection name(schema)
+     * @param cond condition to count. crossPartition should be true
+     * @return count of documents
+     * @throws Exception Cosmos client exception
+     */
+    int _countCrossPartition(String coll, Condition cond) throws Exception {
+
+        final var _coll = coll;
+        var tables = RetryUtil.executeWithRetry(() -> {
+            try (var conn = readDataSource().getConnection()) {
+                return TableUtil.listTables(conn, _coll);
+            }
+        });
+
+        var partitionCond = cond.copy();
+        partitionCond.crossPartition = false;
+
+        // generated once, and only the table differs
+        var template = PGConditionUtil.toQuerySpecTemplateForCount(_coll, partitionCond, newQueryContext());
+
+        var ret = CrossPartitionUtil.count(tables, ((PostgresImpl) cosmosAccount).crossPartitionConcurrency, table -> {
+            var querySpec = PGConditionUtil.bindTable(template, _coll, table);
+            return RetryUtil.executeWithRetry(() -> {
+                try (var conn = readDataSource().getConnection()) {
+                    return TableUtil.countRecords(conn, _coll, table, querySpec);
+                }
+            });
+        });
+
+        if (log.isInfoEnabled()) {
+            log.info("count Document:{}, cond:{}, partition:crossPartition({} tables), account:{}", coll, cond, tables.size(), getAccount());
+        }
+        return Math.toIntExact(ret);
+    }
+
+    /**
+     * Record the expressions of a query to the index advisor, if enabled
+     *
+     * @param coll         collection name(schema)
+     * @param partition    partition name(table)
+     * @param cond         condition of the query
+     * @param sorted       whether ORDER BY is used
+     * @param latencyNanos latency of the query
+     */
+    void recordIndexCandidates(String coll, String partition, Condition cond, boolean sorted, long latencyNanos) {
+        var indexAdvisor = ((PostgresImpl) cosmosAccount).indexAdvisor;
+        if (indexAdvisor != null) {
+            indexAdvisor.record(coll, partition, cond, sorted, latencyNanos, newQueryContext());
+        }
     }
 
     @Override
@@ -821,7 +1253,7 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         if (cond == null) {
             cond = new Condition();
         }
-        return PGConditionUtil.toQuerySpecForCount(coll, cond, partition);
+        return PGConditionUtil.toQuerySpecForCount(coll, cond, partition, newQueryContext());
     }
 
     /**
@@ -1154,9 +1586,12 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
 
         // currently, we wrap the SQLException to CosmosException. And do not retry(maxRetries = 0)
         // TODO: retry for bulk operations
+        final var bulkCopyEnabled = ((PostgresImpl) cosmosAccount).bulkCopyEnabled;
         var ret = RetryUtil.executeWithRetry(() -> {
             try (var conn = this.dataSource.getConnection()) {
-                return TableUtil.bulkInsertRecords(conn, _coll, partition, records);
+                return bulkCopyEnabled
+                        ? TableUtil.copyInsertRecords(conn, _coll, partition, records)
+                        : TableUtil.bulkInsertRecords(conn, _coll, partition, records);
             } catch (SQLException e){
                 log.warn("Error when bulk creating records from table '{}.{}'. records size:{}. ", _coll, partition, records.size(), e);
                 throw e;
@@ -1213,9 +1648,12 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         final var _coll = coll;
         // currently, we wrap the SQLException to CosmosException. And do not retry(maxRetries = 0)
         // TODO: retry for bulk operations
+        final var bulkCopyEnabled = ((PostgresImpl) cosmosAccount).bulkCopyEnabled;
         var ret = RetryUtil.executeWithRetry(() -> {
             try (var conn = this.dataSource.getConnection()) {
-                return TableUtil.bulkUpsertRecords(conn, _coll, partition, records);
+                return bulkCopyEnabled
+                        ? TableUtil.copyUpsertRecords(conn, _coll, partition, records)
+                        : TableUtil.bulkUpsertRecords(conn, _coll, partition, records);
             } catch (SQLException e){
                 log.warn("Error when bulk upserting records from table '{}.{}'. records size:{}. ", _coll, partition, records.size(), e);
                 throw e;
@@ -1324,24 +1762,14 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         coll = TableUtil.checkAndNormalizeValidEntityName(coll);
         var collectionLink = LinkFormatUtil.getCollectionLink(coll, partition);
 
-        var ret = new CosmosBulkResult();
         final var _coll = coll;
         // Do not retry bulkPatch at wrapper level (maxRetries = 0):
         // patch operations can be non-idempotent (e.g. increment), so retrying the whole batch may apply
         // successful items twice and break per-id success/failure classification.
-        RetryUtil.executeWithRetry(() -> {
+        var ret = RetryUtil.executeWithRetry(() -> {
             try (var conn = this.dataSource.getConnection()) {
-                for (var operation : data) {
-                    try {
-                        var record = TableUtil.patchRecord(conn, _coll, partition, operation.id, operation.operations);
-                        ret.successList.add(getCosmosDocument(record));
-                    } catch (CosmosException ce) {
-                        ret.fatalList.add(ce);
-                    } catch (Exception e) {
-                        ret.fatalList.add(new CosmosException(500, "UNKNOWN", e.getMessage(), e));
-                    }
-                }
-                return ret;
+                // operations with the same patch expression are executed by one set-based UPDATE to reduce SQL round trips.
+                return TableUtil.bulkPatchRecords(conn, _coll, partition, data);
             }
         }, RetryUtil.BATCH_EXECUTION_DEFAULT_WAIT_TIME, 0);
 
@@ -1413,34 +1841,26 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
      * @throws Exception   if the table does not exist or a database error occurs
      */
     public String enableTTL(String coll, String partition, int intervalInMinutes) throws Exception {
+        return enableTTL(coll, partition, intervalInMinutes, new TTLOption());
+    }
 
-        try(var conn = this.dataSource.getConnection()){
-
-            try {
-                conn.setAutoCommit(false);
-
-                if (TTLUtil.jobExists(conn, coll, partition)) {
-                    return TTLUtil.getJobName(coll, partition);
-                }
-
-                TTLUtil.scheduleJob(conn, coll, partition, intervalInMinutes);
-                conn.commit();
-                return TTLUtil.getJobName(coll, partition);
-
-            } catch (SQLException e){
-                log.warn("Error when enableTTL for partition '{}.{}'.", coll, partition, e);
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    log.error("Failed to rollback when enableTTL for partition '{}.{}'. id:{}.", coll, partition, rollbackEx);
-                }
-                throw e;
-            }
-            finally {
-                conn.setAutoCommit(true);
-            }
-        }
-
+    /**
+     * Enable TTL feature for a given collection and partition, deleting expired records in batches specified by ttlOption.
+     *
+     * <p>
+     * A btree index on "_expireAt" is created if not exists. If the job already exists but was scheduled with a different command
+     * (e.g. by an older version, or with another ttlOption), the job is re-scheduled.
+     * </p>
+     *
+     * @param coll         collection name
+     * @param partition    partition name
+     * @param intervalInMinutes interval in minutes
+     * @param ttlOption    batch size / pause / max batches per run of the job
+     * @return             job name
+     * @throws Exception   if the table does not exist or a database error occurs
+     */
+    public String enableTTL(String coll, String partition, int intervalInMinutes, TTLOption ttlOption) throws Exception {
+        return enableTTL0(coll, partition, ttlOption, conn -> TTLUtil.scheduleJob(conn, coll, partition, intervalInMinutes, ttlOption));
     }
 
     /**
@@ -1453,17 +1873,50 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
      * @throws Exception   if the table does not exist or a database error occurs
      */
     public String enableTTL(String coll, String partition, String cronExpression) throws Exception {
+        return enableTTL(coll, partition, cronExpression, new TTLOption());
+    }
+
+    /**
+     * Enable TTL feature for a given collection and partition, deleting expired records in batches specified by ttlOption.
+     *
+     * @param coll         collection name
+     * @param partition    partition name
+     * @param cronExpression cron expression
+     * @param ttlOption    batch size / pause / max batches per run of the job
+     * @return             job name
+     * @throws Exception   if the table does not exist or a database error occurs
+     * @see #enableTTL(String, String, int, TTLOption)
+     */
+    public String enableTTL(String coll, String partition, String cronExpression, TTLOption ttlOption) throws Exception {
+        return enableTTL0(coll, partition, ttlOption, conn -> TTLUtil.scheduleJob(conn, coll, partition, cronExpression, ttlOption));
+    }
+
+    /**
+     * schedules the ttl job using the given connection
+     */
+    @FunctionalInterface
+    interface TTLScheduler {
+        long schedule(Connection conn) throws SQLException;
+    }
+
+    /**
+     * create the "_expireAt" index and schedule the ttl job if it does not exist or is not up to date
+     */
+    String enableTTL0(String coll, String partition, TTLOption ttlOption, TTLScheduler scheduler) throws Exception {
 
         try(var conn = this.dataSource.getConnection()){
 
             try {
                 conn.setAutoCommit(false);
 
-                if (TTLUtil.jobExists(conn, coll, partition)) {
+                // the delete job uses this index to find expired records
+                TTLUtil.createExpireAtIndexIfNotExist(conn, coll, partition);
+
+                if (TTLUtil.jobUpToDate(conn, coll, partition, ttlOption)) {
                     return TTLUtil.getJobName(coll, partition);
                 }
 
-                TTLUtil.scheduleJob(conn, coll, partition, cronExpression);
+                scheduler.schedule(conn);
                 conn.commit();
                 return TTLUtil.getJobName(coll, partition);
 
@@ -1508,6 +1961,15 @@ public class PostgresDatabaseImpl implements CosmosDatabase {
         }
     }
 
+    /**
+     * Returns the data source for read-only queries(find / findToIterator / count / aggregate).
+     * A healthy read replica if configured, otherwise the primary.
+     * @return data source
+     */
+    DataSource readDataSource() {
+        return cosmosAccount instanceof PostgresImpl postgres ? postgres.getReadDataSource() : this.dataSource;
+    }
+
     /**
      * Returns the data source which is used to connect to Postgres database.
      * @return data source
@@ -1,17 +1,23 @@
 package io.github.thunderz99.cosmos.impl.postgres;
 
-import com.mongodb.client.MongoIterable;
 import io.github.thunderz99.cosmos.CosmosDocument;
 import io.github.thunderz99.cosmos.CosmosDocumentIterator;
 import io.github.thunderz99.cosmos.CosmosDocumentList;
+import io.github.thunderz99.cosmos.CosmosException;
 import io.github.thunderz99.cosmos.dto.MapIterator;
 import io.github.thunderz99.cosmos.dto.TypedIterator;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
 import io.github.thunderz99.cosmos.util.Checker;
-import org.bson.Document;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * A postgres implementation of {@link CosmosDocumentIterator} interface, use to iterate {@link CosmosDocument} from an iterable of Map.
@@ -21,9 +27,18 @@ import java.util.Map;
  * But the iterable is not a {@link Iterable<CosmosDocument>} but a {@link Iterable<Map>}.
  * So we need this class to convert the {@link Iterable<Map>} to a {@link Iterable<CosmosDocument>}
  * </p>
+ *
+ * <p>
+ * When constructed from a connection and a resultSet, the iterator is backed by a server-side cursor.
+ * Rows are fetched in chunks of fetchSize and the "data" column is parsed lazily in next().
+ * The connection is held until the cursor is exhausted or {@link #close()} is called,
+ * so use try-with-resources when the iteration may stop early.
+ * </p>
  */
 public class PostgresDocumentIteratorImpl implements CosmosDocumentIterator {
 
+    private static final Logger log = LoggerFactory.getLogger(PostgresDocumentIteratorImpl.class);
+
     CosmosDocumentList docs;
     Iterator<? extends Map> iterator;
 
@@ -33,6 +48,16 @@ public class PostgresDocumentIteratorImpl implements CosmosDocumentIterator {
         setDocumentIterable(docs);
     }
 
+    /**
+     * construct an iterator backed by a server-side cursor
+     *
+     * @param conn      connection holding the cursor(autocommit=false). will be released when closed.
+     * @param resultSet resultSet opened by TableUtil.openCursor
+     */
+    PostgresDocumentIteratorImpl(Connection conn, ResultSet resultSet) {
+        this.iterator = new CursorIterator(conn, resultSet);
+    }
+
     @Override
     public boolean hasNext() {
         if(iterator == null){
@@ -78,7 +103,103 @@ public class PostgresDocumentIteratorImpl implements CosmosDocumentIterator {
 
     @Override
     public void close() {
-        // todo
+        if (iterator instanceof CursorIterator cursorIterator) {
+            cursorIterator.close();
+        }
+    }
+
+    /**
+     * An iterator of map reading rows from a resultSet lazily. Resources are released when the cursor is exhausted or closed.
+     */
+    static class CursorIterator implements Iterator<Map<String, Object>>, AutoCloseable {
+
+        Connection conn;
+        ResultSet resultSet;
+
+        /**
+         * whether the resultSet has been advanced to a row not yet returned by next()
+         */
+        boolean fetched = false;
+
+        boolean closed = false;
+
+        CursorIterator(Connection conn, ResultSet resultSet) {
+            Checker.checkNotNull(conn, "conn");
+            Checker.checkNotNull(resultSet, "resultSet");
+            this.conn = conn;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (fetched) {
+                return true;
+            }
+            try {
+                fetched = resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw new CosmosException(500, "500", "Failed to fetch next record from cursor", e);
+            }
+            if (!fetched) {
+                // release the connection as soon as the cursor is exhausted
+                close();
+            }
+            return fetched;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fetched = false;
+            try {
+                var record = new PostgresRecord(resultSet.getString(TableUtil.ID), JsonUtil.toMap(resultSet.getString(TableUtil.DATA)));
+                return PostgresDatabaseImpl.getCosmosDocument(record).toMap();
+            } catch (SQLException e) {
+                close();
+                throw new CosmosException(500, "500", "Failed to read record from cursor", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeCursor(conn, resultSet);
+        }
+    }
+
+    /**
+     * close the resultSet/statement, end the read-only transaction and return the connection to the pool.
+     *
+     * @param conn      connection holding the cursor
+     * @param resultSet resultSet of the cursor. can be null
+     */
+    static void closeCursor(Connection conn, ResultSet resultSet) {
+        if (resultSet != null) {
+            try (var stmt = resultSet.getStatement(); var rs = resultSet) {
+                // closed by try-with-resources
+            } catch (SQLException e) {
+                log.warn("Failed to close cursor", e);
+            }
+        }
+
+        if (conn == null) {
+            return;
+        }
+        try (conn) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.warn("Failed to release connection of cursor", e);
+        }
     }
 
 }
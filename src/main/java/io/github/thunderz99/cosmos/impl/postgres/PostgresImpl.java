@@ -3,26 +3,44 @@ package io.github.thunderz99.cosmos.impl.postgres;
 import com.google.common.base.Splitter;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.github.thunderz99.cosmos.AsyncCosmosDatabase;
 import io.github.thunderz99.cosmos.Cosmos;
 import io.github.thunderz99.cosmos.CosmosBuilder;
 import io.github.thunderz99.cosmos.CosmosDatabase;
 import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.cache.CachingCosmosDatabase;
+import io.github.thunderz99.cosmos.cache.DocumentCache;
+import io.github.thunderz99.cosmos.cache.InvalidationBus;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
 import io.github.thunderz99.cosmos.dto.CosmosContainerResponse;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
 import io.github.thunderz99.cosmos.dto.UniqueKeyPolicy;
 import io.github.thunderz99.cosmos.impl.postgres.dto.PostgresHikariOptions;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGChangeLogUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGIndexAdvisor;
 import io.github.thunderz99.cosmos.impl.postgres.util.PGSortUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.impl.AsyncCosmosDatabaseImpl;
+import io.github.thunderz99.cosmos.metrics.InstrumentedCosmosDatabase;
+import io.github.thunderz99.cosmos.metrics.OperationListener;
 import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.CompiledQueryCache;
+import io.github.thunderz99.cosmos.util.CrossPartitionUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /***
  * class that represent a cosmos account
@@ -56,6 +74,86 @@ public class PostgresImpl implements Cosmos {
      */
     boolean etagEnabled = false;
 
+    /**
+     * number of rows fetched per round trip when using findToIterator(server-side cursor)
+     */
+    public int fetchSize = TableUtil.DEFAULT_FETCH_SIZE;
+
+    /**
+     * whether bulkCreate / bulkUpsert use COPY into a staging table instead of multi-row INSERT
+     */
+    public boolean bulkCopyEnabled = false;
+
+    /**
+     * whether the GIN index on data is created with jsonb_path_ops when creating a table
+     */
+    public boolean jsonbPathOpsIndexEnabled = false;
+
+    /**
+     * whether equality / IN / ARRAY_CONTAINS filters are translated to jsonb containment predicates
+     */
+    public boolean containmentQueryEnabled = false;
+
+    /**
+     * cache of query templates generated for find / count of this account, keyed on the shape of condition. null if disabled(default)
+     */
+    public CompiledQueryCache queryCache = null;
+
+    /**
+     * advisor recording the expressions of find / count to recommend indexes. null to disable
+     */
+    public PGIndexAdvisor indexAdvisor = null;
+
+    /**
+     * max number of tables(partitions) queried at the same time by a crossPartition find / count
+     */
+    public int crossPartitionConcurrency = CrossPartitionUtil.DEFAULT_CONCURRENCY;
+
+    /**
+     * listener receiving the metrics of every operation. databases are not instrumented when NOOP.
+     */
+    public OperationListener operationListener = OperationListener.NOOP;
+
+    /**
+     * in-process read-through document cache shared by the databases of this account. null if disabled
+     */
+    public DocumentCache documentCache = null;
+
+    /**
+     * bus delivering the documents changed by any client to the document cache and the listeners. null if cross-node invalidation is disabled
+     */
+    public InvalidationBus invalidationBus = null;
+
+    /**
+     * subscriber publishing the changes to invalidationBus
+     */
+    PGChangeNotifySubscriber changeSubscriber = null;
+
+    /**
+     * retention of the change log in minutes, purged by a pg_cron job. 0 to keep the changes until purged by PGChangeLogUtil.purgeChangeLog(default)
+     */
+    public int changeLogRetentionMinutes = 0;
+
+    /**
+     * schemas whose purge job of the change log is scheduled by this account
+     */
+    final Set<String> changeLogPurgeSchemas = ConcurrentHashMap.newKeySet();
+
+    /**
+     * executor running the operations of AsyncCosmosDatabase
+     */
+    public Executor asyncExecutor = AsyncCosmosDatabaseImpl.getDefaultExecutor();
+
+    /**
+     * router of read-only queries to read replicas. null if no replica is configured
+     */
+    public PGReplicaRouter replicaRouter = null;
+
+    /**
+     * custom hikari options, also applied to the pools of the replicas
+     */
+    PostgresHikariOptions hikariOptions;
+
 
     public PostgresImpl(String connectionString) {
         this(connectionString, false, false, PGSortUtil.COLLATE_C);
@@ -80,6 +178,7 @@ public class PostgresImpl implements Cosmos {
         var pair = parseToHikariConfig(connectionString, hikariOptions);
         var config = pair.getLeft();
         this.account = pair.getRight();
+        this.hikariOptions = hikariOptions;
 
         this.dataSource = new HikariDataSource(config);
 
@@ -189,7 +288,18 @@ public class PostgresImpl implements Cosmos {
      * @return CosmosDatabase instance
      */
     public CosmosDatabase getDatabase(String db) {
-        return new PostgresDatabaseImpl(this, TableUtil.checkAndNormalizeValidEntityName(db));
+        return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new PostgresDatabaseImpl(this, TableUtil.checkAndNormalizeValidEntityName(db)), CosmosBuilder.POSTGRES, operationListener), documentCache);
+    }
+
+    /**
+     * Get an AsyncCosmosDatabase object by name
+     *
+     * @param db database name
+     * @return AsyncCosmosDatabase instance
+     */
+    @Override
+    public AsyncCosmosDatabase getAsyncDatabase(String db) {
+        return new AsyncCosmosDatabaseImpl(getDatabase(db), asyncExecutor);
     }
 
     /**
@@ -204,7 +314,7 @@ public class PostgresImpl implements Cosmos {
     public CosmosDatabase createIfNotExist(String db, String coll, UniqueKeyPolicy uniqueKeyPolicy) throws CosmosException {
 
         if(StringUtils.isEmpty(db) || StringUtils.isEmpty(coll)){
-            return new PostgresDatabaseImpl(this, db);
+            return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new PostgresDatabaseImpl(this, db), CosmosBuilder.POSTGRES, operationListener), documentCache);
         }
 
         db = TableUtil.checkAndNormalizeValidEntityName(db);
@@ -219,7 +329,7 @@ public class PostgresImpl implements Cosmos {
                 stmt.execute(sql);
             }
 
-            return new PostgresDatabaseImpl(this, db);
+            return CachingCosmosDatabase.wrap(InstrumentedCosmosDatabase.wrap(new PostgresDatabaseImpl(this, db), CosmosBuilder.POSTGRES, operationListener), documentCache);
 
         } catch (SQLException e) {
             throw new CosmosException(500, "500", "createIfNotExist failed for coll: " + coll, e);
@@ -271,6 +381,12 @@ public class PostgresImpl implements Cosmos {
         }
 
         db = TableUtil.checkAndNormalizeValidEntityName(db);
+
+        if (documentCache != null) {
+            // documents are cached by the coll name specified by the caller
+            documentCache.invalidateAll(db, coll);
+        }
+
         coll = TableUtil.checkAndNormalizeValidEntityName(coll);
 
         if(Objects.isNull(dataSource)){
@@ -325,6 +441,251 @@ public class PostgresImpl implements Cosmos {
         return uniqueKeyPolicy;
     }
 
+    /**
+     * Set the number of rows fetched per round trip when using findToIterator(server-side cursor)
+     *
+     * @param fetchSize rows per round trip. should be &gt; 0
+     * @return this
+     */
+    public PostgresImpl withFetchSize(int fetchSize) {
+        Checker.check(fetchSize > 0, "fetchSize should be > 0");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Set whether bulkCreate / bulkUpsert use COPY into a staging table instead of multi-row INSERT
+     *
+     * @param bulkCopyEnabled true to use COPY
+     * @return this
+     */
+    public PostgresImpl withBulkCopyEnabled(boolean bulkCopyEnabled) {
+        this.bulkCopyEnabled = bulkCopyEnabled;
+        return this;
+    }
+
+    /**
+     * Set whether the GIN index on data is created with jsonb_path_ops when creating a table.
+     *
+     * <p>
+     * jsonb_path_ops is smaller and faster for the containment predicates(data @&gt; '{"status":"A"}') generated by equality / IN / ARRAY_CONTAINS filters
+     * when containmentQueryEnabled, but does not support the key-exists operators. Existing tables are not affected.
+     * </p>
+     *
+     * @param jsonbPathOpsIndexEnabled true to use jsonb_path_ops
+     * @return this
+     */
+    public PostgresImpl withJsonbPathOpsIndexEnabled(boolean jsonbPathOpsIndexEnabled) {
+        this.jsonbPathOpsIndexEnabled = jsonbPathOpsIndexEnabled;
+        return this;
+    }
+
+    /**
+     * Set whether equality / IN / ARRAY_CONTAINS filters on scalar values are translated to containment predicates(data @&gt; '{"status":"A"}'),
+     * so that the GIN index on data can be used.
+     *
+     * <p>
+     * default is false, because the results differ from the default translation in some cases:
+     * json types are compared strictly({"age": 123} does not match "123"),
+     * and ARRAY_CONTAINS does not match a scalar field. Filters under NOT are never translated.
+     * </p>
+     *
+     * @param containmentQueryEnabled true to use containment predicates
+     * @return this
+     */
+    public PostgresImpl withContainmentQueryEnabled(boolean containmentQueryEnabled) {
+        this.containmentQueryEnabled = containmentQueryEnabled;
+        return this;
+    }
+
+    /**
+     * Set the max number of query shapes whose templates are cached for find / count. The cached templates are cleared.
+     *
+     * @param maximumSize max number of query shapes. 0 to disable the cache
+     * @return this
+     */
+    public PostgresImpl withQueryCacheMaximumSize(int maximumSize) {
+        this.queryCache = maximumSize > 0 ? new CompiledQueryCache(maximumSize) : null;
+        return this;
+    }
+
+    /**
+     * Set the advisor recording the filter and sort expressions of find / count to recommend expression indexes
+     *
+     * @param indexAdvisor advisor. null to disable
+     * @return this
+     */
+    public PostgresImpl withIndexAdvisor(PGIndexAdvisor indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+        return this;
+    }
+
+    /**
+     * Set the max number of tables(partitions) queried at the same time by a crossPartition find / count.
+     * Each query holds a connection of the pool while running.
+     *
+     * @param crossPartitionConcurrency should be &gt; 0
+     * @return this
+     */
+    public PostgresImpl withCrossPartitionConcurrency(int crossPartitionConcurrency) {
+        Checker.check(crossPartitionConcurrency > 0, "crossPartitionConcurrency should be > 0");
+        this.crossPartitionConcurrency = crossPartitionConcurrency;
+        return this;
+    }
+
+    /**
+     * Set the listener receiving the metrics of every CosmosDatabase operation
+     *
+     * @param operationListener listener. NOOP to disable
+     * @return this
+     */
+    public PostgresImpl withOperationListener(OperationListener operationListener) {
+        Checker.checkNotNull(operationListener, "operationListener");
+        this.operationListener = operationListener;
+        return this;
+    }
+
+    /**
+     * Set the retention of the change log backing changeFeed. A pg_cron job purging the older changes is scheduled for the schema at the first changeFeed call.
+     *
+     * @param retentionInMinutes retention in minutes. 0 to keep the changes until purged by PGChangeLogUtil.purgeChangeLog
+     * @return this
+     */
+    public PostgresImpl withChangeLogRetentionMinutes(int retentionInMinutes) {
+        Checker.check(retentionInMinutes >= 0, "retentionInMinutes should be >= 0");
+        this.changeLogRetentionMinutes = retentionInMinutes;
+        this.changeLogPurgeSchemas.clear();
+        return this;
+    }
+
+    /**
+     * Set the executor running the operations of AsyncCosmosDatabase
+     *
+     * @param asyncExecutor executor. the number of threads bounds the in-flight async operations
+     * @return this
+     */
+    public PostgresImpl withAsyncExecutor(Executor asyncExecutor) {
+        Checker.checkNotNull(asyncExecutor, "asyncExecutor");
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Enable the in-process read-through document cache for read / readSuppressing404
+     *
+     * @param option cache option. null to disable
+     * @return this
+     */
+    public PostgresImpl withDocumentCache(DocumentCacheOption option) {
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.removeCache(this.documentCache);
+        }
+        this.documentCache = option == null ? null : new DocumentCache(option);
+        if (this.invalidationBus != null && this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        return this;
+    }
+
+    /**
+     * Enable the cross-node cache invalidation. Documents changed by any client are invalidated in the document cache, and delivered to the listeners of invalidationBus.
+     *
+     * <p>
+     * postgres sends a NOTIFY by a trigger. The trigger is installed on the existing tables of the followed collections when this is enabled,
+     * and by createTableIfNotExists. Tables created by a client without the invalidation have no trigger until installChangeNotifyTriggers is called,
+     * and their cached documents are refreshed only when the ttl expires. LISTEN uses a dedicated connection outside the pool.
+     * </p>
+     *
+     * @param option invalidation option. null to disable
+     * @return this
+     */
+    public PostgresImpl withCacheInvalidation(CacheInvalidationOption option) {
+        closeCacheInvalidation();
+        if (option == null) {
+            return this;
+        }
+        this.invalidationBus = new InvalidationBus(option.queueCapacity);
+        if (this.documentCache != null) {
+            this.invalidationBus.addCache(this.documentCache);
+        }
+        this.changeSubscriber = new PGChangeNotifySubscriber(PGChangeNotifySubscriber.newDedicatedDataSource(this.dataSource), invalidationBus, option);
+        for (var coll : option.getColls()) {
+            installChangeNotifyTriggers(coll);
+        }
+        return this;
+    }
+
+    /**
+     * Install the change notify trigger on the existing tables of the collection. Failures are logged.
+     * Call this after tables are created by a client without the invalidation.
+     *
+     * @param coll collection name
+     */
+    public void installChangeNotifyTriggers(String coll) {
+        var schemaName = TableUtil.checkAndNormalizeValidEntityName(coll);
+        try (var conn = dataSource.getConnection()) {
+            for (var tableName : TableUtil.listTables(conn, schemaName)) {
+                if (PGChangeLogUtil.CHANGE_LOG_TABLE.equals(tableName)) {
+                    continue;
+                }
+                TableUtil.createChangeNotifyTriggerIfNotExists(conn, schemaName, tableName);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to install the change notify trigger on the tables of coll:{}.", coll, e);
+        }
+    }
+
+    /**
+     * Stop the cross-node cache invalidation
+     */
+    void closeCacheInvalidation() {
+        if (this.changeSubscriber != null) {
+            this.changeSubscriber.close();
+            this.changeSubscriber = null;
+        }
+        if (this.invalidationBus != null) {
+            this.invalidationBus.close();
+            this.invalidationBus = null;
+        }
+    }
+
+    /**
+     * Set the read replicas. find / findToIterator / count / aggregate(and read with ReadOption.eventualConsistency) are load-balanced across the healthy replicas.
+     *
+     * <p>
+     * Each replica has its own connection pool(using the same hikari options as the primary). A replica is skipped when it is unreachable or its replication lag is over maxLagMillis.
+     * Writes always use the primary.
+     * </p>
+     *
+     * @param connectionStrings connection strings of the replicas. empty to use the primary only
+     * @param maxLagMillis      max replication lag of a healthy replica
+     * @return this
+     */
+    public PostgresImpl withReadReplicas(List<String> connectionStrings, long maxLagMillis) {
+        Checker.checkNotNull(connectionStrings, "connectionStrings");
+
+        if (this.replicaRouter != null) {
+            this.replicaRouter.close();
+            this.replicaRouter = null;
+        }
+        if (connectionStrings.isEmpty()) {
+            return this;
+        }
+
+        var replicas = connectionStrings.stream().map(cs -> new HikariDataSource(parseToHikariConfig(cs, hikariOptions).getLeft())).toList();
+        this.replicaRouter = new PGReplicaRouter(this.dataSource, replicas, maxLagMillis, PGReplicaRouter.DEFAULT_CHECK_INTERVAL_MILLIS);
+        return this;
+    }
+
+    /**
+     * Get the data source for read-only queries. A healthy replica if configured, otherwise the primary.
+     *
+     * @return data source
+     */
+    public DataSource getReadDataSource() {
+        return replicaRouter == null ? this.dataSource : replicaRouter.getReadDataSource();
+    }
+
     public String getAccount() throws CosmosException {
         return account;
     }
@@ -339,6 +700,10 @@ public class PostgresImpl implements Cosmos {
      */
     @Override
     public void closeClient() {
+        closeCacheInvalidation();
+        if (this.replicaRouter != null) {
+            this.replicaRouter.close();
+        }
         this.getDataSource().close();
     }
 
@@ -7,6 +7,7 @@ import io.github.thunderz99.cosmos.condition.FieldKey;
 import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.impl.postgres.util.PGKeyUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
 import io.github.thunderz99.cosmos.util.Checker;
 import io.github.thunderz99.cosmos.util.JsonUtil;
 import io.github.thunderz99.cosmos.util.ParamUtil;
@@ -23,6 +24,9 @@ import java.util.regex.Pattern;
  * {@code
  * data->>'id' = "001", (data->>'age')::numeric > 15,  data->'skills' @> 'java' (means CONTAINS "java"), and other simple filter
  * }
+ * <p>
+ * If containmentEnabled, equality, IN and ARRAY_CONTAINS for scalar values are translated to containment predicates(e.g. {@code data @> '{"status":"A"}'::jsonb}),
+ * so that the default GIN(data) index can be used.
  */
 public class PGSimpleExpression implements Expression {
 
@@ -44,6 +48,17 @@ public class PGSimpleExpression implements Expression {
 	 */
     public String operator = "";
 
+    /**
+     * Whether to translate the filter to a containment predicate, if possible. default is false.
+     *
+     * <p>
+     * The containment does not return the same results in some cases, so it is opt-in(see QueryContext.containmentEnabled).
+     * e.g. json types are compared strictly({@code {"age": 123}} does not match "123"),
+     * and ARRAY_CONTAINS does not match a scalar field({@code {"tags": "A"}} does not match "tags ARRAY_CONTAINS", "A").
+     * </p>
+     */
+    public boolean containmentEnabled = false;
+
 
     /**
      * maps of type check functions from cosmosdb to postgres
@@ -57,6 +72,14 @@ public class PGSimpleExpression implements Expression {
             "IS_OBJECT", "object"
     );
 
+    /**
+     * max size of IN list translated to containment predicates({@code data @> ANY(...)}). Larger lists use {@code = ANY(...)}
+     * <p>
+     * a power of 2, so that it matches the collection size bucket of {@link io.github.thunderz99.cosmos.util.CompiledQueryCache}
+     * </p>
+     */
+    public static final int CONTAINMENT_IN_LIST_LIMIT = 128;
+
     public PGSimpleExpression() {
     }
 
@@ -96,7 +119,7 @@ public class PGSimpleExpression implements Expression {
 
         if (paramValue instanceof Collection<?>) {
             // collection param value
-            // e.g ( c.parentId IN (@parentId__0, @parentId__1, @parentId__2) )
+            // e.g ( data->>'parentId' = ANY(@parentId::text[]) ), bound as a single array param
             var coll = (Collection<?>) paramValue;
 
             // array equals or not
@@ -109,6 +132,10 @@ public class PGSimpleExpression implements Expression {
                 if (coll.isEmpty()) {
                     //if paramValue is empty, return a FALSE queryText.
                     ret.setQueryText(" (1=0)");
+                } else if (this.containmentEnabled && canUseContainment4In(this.key, coll, selectAlias)) {
+                    // use containments to utilize GIN(data) index
+                    // (data @> ANY(@param000_status::jsonb[])) with ['{"status":"A"}', '{"status":"B"}']
+                    ret.setQueryText(buildContainmentInArray(this.key, paramName, coll, params));
 				} else {
 					// use IN array
 					ret.setQueryText(buildInArray(this.key, paramName, coll, params, selectAlias));
@@ -141,7 +168,17 @@ public class PGSimpleExpression implements Expression {
 
             // other types
             var formattedKey = PGKeyUtil.getFormattedKeyWithAlias(this.key, selectAlias, paramValue);
-            if (this.type == OperatorType.BINARY_OPERATOR) { // operators, e.g. =, !=, <, >, LIKE
+            if (this.containmentEnabled && "=".equals(this.operator) && canUseContainment(this.key, paramValue, selectAlias)) {
+                // use containment to utilize GIN(data) index
+                // (data @> '{"address":{"city":"Tokyo"}}'::jsonb)
+                ret.setQueryText(buildContainment(this.key, paramName, paramValue, params));
+
+            } else if (this.containmentEnabled && "ARRAY_CONTAINS".equalsIgnoreCase(this.operator) && canUseContainment(this.key, paramValue, selectAlias)) {
+                // use containment to utilize GIN(data) index
+                // (data @> '{"skills":["Java"]}'::jsonb)
+                ret.setQueryText(buildContainment(this.key, paramName, List.of(toContainmentValue(paramValue)), params));
+
+            } else if (this.type == OperatorType.BINARY_OPERATOR) { // operators, e.g. =, !=, <, >, LIKE
                 //use c["key"] for cosmosdb reserved words
                 ret.setQueryText(String.format(" (%s %s %s)", formattedKey, this.operator, valueString));
                 params.add(Condition.createSqlParameter(paramName, paramValue));
@@ -332,17 +369,165 @@ public class PGSimpleExpression implements Expression {
     }
 
 
+    /**
+     * operators which can use a btree expression index
+     */
+    static final Set<String> INDEXABLE_OPERATORS = Set.of("=", "<", "<=", ">", ">=");
+
+    /**
+     * Get the expression compared with the filter value in the generated queryText, which can be used by a btree expression index.
+     *
+     * <p>
+     * e.g. "age &gt;", 20 -&gt; NULLIF(data-&gt;&gt;'age','')::numeric . An expression index is only used when the expression is exactly the same as the one in the query.
+     * </p>
+     *
+     * @return expression, or null if the filter is not indexable by a btree expression index(id column, containment using GIN index, functions, null and etc)
+     */
+    public String getIndexExpression() {
+
+        if (StringUtils.isBlank(this.key) || TableUtil.ID.equals(this.key) || this.value instanceof FieldKey) {
+            return null;
+        }
+
+        var operator = StringUtils.isEmpty(this.operator) ? "" : this.operator;
+        var paramValue = "IN".equals(operator) && !(this.value instanceof Collection<?>) ? List.of(this.value) : this.value;
+
+        if (paramValue instanceof Collection<?> coll) {
+            // the same as toQuerySpec. only "IN"(using = ANY(@param)) is indexable
+            if (Set.of("=", "!=").contains(operator) || coll.isEmpty() || (this.containmentEnabled && canUseContainment4In(this.key, coll, TableUtil.DATA))) {
+                return null;
+            }
+            return PGKeyUtil.getFormattedKeyWithAlias(this.key, TableUtil.DATA, getTypicalValue(coll));
+        }
+
+        if (paramValue == null) {
+            return null;
+        }
+
+        operator = StringUtils.isEmpty(operator) ? "=" : operator;
+        if (!INDEXABLE_OPERATORS.contains(operator) || (this.containmentEnabled && "=".equals(operator) && canUseContainment(this.key, paramValue, TableUtil.DATA))) {
+            return null;
+        }
+        return PGKeyUtil.getFormattedKeyWithAlias(this.key, TableUtil.DATA, paramValue);
+    }
+
+    /**
+     * Whether the filter can be translated to a containment predicate on the data column. e.g. {@code data @> '{"status":"A"}'::jsonb}
+     *
+     * <p>
+     * Only scalar values(string, number, boolean, enum) on the data column are supported.
+     * The containment compares json types strictly(e.g. 20 does not match "20"), which is the same as cosmosdb / mongodb.
+     * "id" is excluded because it is a primary key column.
+     * </p>
+     *
+     * @param key         filter's key. e.g. "address.city"
+     * @param value       filter's value
+     * @param selectAlias typically "data" (or "j1" "s1" for cond.join query) (or empty for afterAggregation)
+     * @return true if containment can be used
+     */
+    static boolean canUseContainment(String key, Object value, String selectAlias) {
+        if (!TableUtil.DATA.equals(selectAlias) || StringUtils.isBlank(key) || TableUtil.ID.equals(key)) {
+            return false;
+        }
+        if (Arrays.stream(key.split("\\.", -1)).anyMatch(String::isEmpty)) {
+            return false;
+        }
+        return isContainmentScalar(value);
+    }
+
+    /**
+     * Whether the IN filter can be translated to OR'd containment predicates
+     *
+     * @param key         filter's key
+     * @param values      values of IN
+     * @param selectAlias typically "data"
+     * @return true if containment can be used
+     */
+    static boolean canUseContainment4In(String key, Collection<?> values, String selectAlias) {
+        return values.size() <= CONTAINMENT_IN_LIST_LIMIT
+                && canUseContainment(key, getTypicalValue(values), selectAlias)
+                && values.stream().allMatch(PGSimpleExpression::isContainmentScalar);
+    }
+
+    static boolean isContainmentScalar(Object value) {
+        if (value instanceof Double d) {
+            return Double.isFinite(d);
+        }
+        if (value instanceof Float f) {
+            return Float.isFinite(f);
+        }
+        return value instanceof String || value instanceof Boolean || value instanceof Enum<?>
+                || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof java.math.BigDecimal;
+    }
+
+    static Object toContainmentValue(Object value) {
+        return value instanceof Enum<?> e ? e.name() : value;
+    }
+
+    /**
+     * Build the json used by containment. e.g. "address.city", "Tokyo" -&gt; {"address":{"city":"Tokyo"}}
+     *
+     * @param key       filter's key in dot format
+     * @param leafValue the value at the key
+     * @return json string
+     */
+    static String buildContainmentJson(String key, Object leafValue) {
+        var parts = key.split("\\.");
+        Object json = leafValue;
+        for (int i = parts.length - 1; i >= 0; i--) {
+            var map = new LinkedHashMap<String, Object>();
+            map.put(parts[i], json);
+            json = map;
+        }
+        return JsonUtil.toJsonNoIndent(json);
+    }
+
+    /**
+     * A helper function to generate a containment queryText
+     * <p>
+     * INPUT: "address.city", "@param000_address__city", "Tokyo", params OUTPUT:
+     * (data @> @param000_address__city::jsonb)
+     * {"address":{"city":"Tokyo"}} into params
+     * </p>
+     */
+    static String buildContainment(String key, String paramName, Object leafValue, List<CosmosSqlParameter> params) {
+        params.add(Condition.createSqlParameter(paramName, buildContainmentJson(key, toContainmentValue(leafValue))));
+        return String.format(" (%s @> %s::jsonb)", TableUtil.DATA, paramName);
+    }
+
+    /**
+     * A helper function to generate containment queryText for IN
+     * <p>
+     * INPUT: "status", "@param000_status", ["A", "B"], params OUTPUT:
+     * (data @> ANY(@param000_status::jsonb[]))
+     * [{"status":"A"}, {"status":"B"}] into params
+     * </p>
+     * <p>
+     * The whole list is bound as a single array param, so the query text does not depend on the size of the list
+     * and postgres can reuse the prepared statement / plan.
+     * </p>
+     */
+    static String buildContainmentInArray(String key, String paramName, Collection<?> values, List<CosmosSqlParameter> params) {
+        var jsonList = new ArrayList<String>(values.size());
+        for (var value : values) {
+            jsonList.add(buildContainmentJson(key, toContainmentValue(value)));
+        }
+        params.add(Condition.createSqlParameter(paramName, jsonList));
+        return String.format(" (%s @> ANY(%s::jsonb[]))", TableUtil.DATA, paramName);
+    }
+
     /**
      * A helper function to generate c.foo IN @param000_array1 queryText
      * <p>
      * INPUT: "parentId", "@parentId", ["id001", "id002", "id005"], params OUTPUT:
-     * (data->>'parentId' = ANY(@parentId))
+     * (data->>'parentId' = ANY(@parentId::text[]))
      * paramsValue into params
      * </p>
      */
     static String buildInArray(String key, String paramName, Collection<?> paramValue, List<CosmosSqlParameter> params, String selectAlias) {
 
-        var ret = String.format(" (%s = ANY(%s))", PGKeyUtil.getFormattedKeyWithAlias(key, selectAlias, getTypicalValue(paramValue)), paramName);
+        var ret = String.format(" (%s = ANY(%s::%s[]))", PGKeyUtil.getFormattedKeyWithAlias(key, selectAlias, getTypicalValue(paramValue)),
+                paramName, TableUtil.getSqlType(paramValue));
         params.add(Condition.createSqlParameter(paramName, paramValue));
         return ret;
     }
@@ -110,6 +110,7 @@ public class PGSimpleExpression4Join implements Expression {
         if(StringUtils.isEmpty(joinKey)){
             // joinKey not match, so this is a normal PGSimpleExpression
             var exp = new PGSimpleExpression(this.key, this.value, this.operator);
+            exp.containmentEnabled = queryContext != null && queryContext.containmentEnabled;
             return exp.toQuerySpec(paramIndex, selectAlias);
         }
 
@@ -93,18 +93,18 @@ public class PGSubQueryExpression implements Expression {
      * <pre>
      * INPUT: "items", "", "@items_009", ["id001", "id002", "id005"], params
      * OUTPUT:
-     * " data->'items' ??| @items_009"
+     * " (data->'items' @> ANY(@items_009::jsonb[]))"
+     * and add ['["id001"]', '["id002"]', '["id005"]'] into params
      *
      *
      * INPUT: "items", "id", "@items_id_010", ["id001", "id002", "id005"], params
      * OUTPUT:
-     * "  (data->'items' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__0)
-     * OR data->'items' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__1)
-     * OR data->'items' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__2)
-     * "
-     *
-     *  and add paramsValue into params
+     * " (data->'items' @> ANY(@items_id_010::jsonb[]))"
+     * and add ['[{"id":"id001"}]', '[{"id":"id002"}]', '[{"id":"id005"}]'] into params
      * </pre>
+     * <p>
+     * The whole list is bound as a single array param, so the query text does not depend on the size of the list.
+     * </p>
      *
      * @param joinKey e.g. items
      * @param filterKey e.g. id
@@ -162,41 +162,29 @@ public class PGSubQueryExpression implements Expression {
          */
 
         // Condition.filter("items ARRAY_CONTAINS_ANY id", List.of("A","B"))
-        // INPUT: "items", "id", "@items_id_010", ["id001", "id002", "id005"], params
-        // OUTPUT:
-        // data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_id_010__0)
-        // OR data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_id_010__1)
-
-        var index = 0;
-        var subQueries = new ArrayList<String>();
-
-
-        for(var value : paramValue){
-            // break down the list values to multiple single value
-            var subParamName = String.format("%s__%d", paramName, index);
-
-            if(StringUtils.isEmpty(filterKey)) {
-                //simple key
-                if(value instanceof Integer) {
-                    //for integer value
-                    params.add(Condition.createSqlParameter(subParamName, String.valueOf(value)));
-                } else {
-                    //for str value
-                    params.add(Condition.createSqlParameter(subParamName, "\"%s\"".formatted(value)));
-                }
-                subQueries.add(String.format("%s @> %s::jsonb", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), subParamName));
-            } else {
-                //nested key
-                params.add(Condition.createSqlParameter(subParamName, value));
-                subQueries.add(String.format("%s @> %s", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), buildNestedJsonbExpression(filterKey, subParamName)));
-            }
+        // INPUT: "items", "id", "@items_id_010", ["A", "B"], params
+        // OUTPUT: " (data->'items' @> ANY(@items_id_010::jsonb[]))" with ['[{"id":"A"}]', '[{"id":"B"}]']
+        params.add(Condition.createSqlParameter(paramName, buildArrayElementJsonList(filterKey, paramValue)));
+        return String.format(" (%s @> ANY(%s::jsonb[]))", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), paramName);
 
+    }
 
-            index++;
+    /**
+     * Build the json arrays used by containment for each value. e.g. "", ["A", 1] -&gt; ['["A"]', '[1]'], "school.grade", [1] -&gt; ['[{"school":{"grade":1}}]']
+     *
+     * @param filterKey   e.g. "school.grade". empty if the array is a list of string / number
+     * @param paramValue  values to be contained
+     * @return list of json strings, bound as jsonb[]
+     */
+    static List<String> buildArrayElementJsonList(String filterKey, Collection<?> paramValue) {
+        var ret = new ArrayList<String>(paramValue.size());
+        for (var value : paramValue) {
+            // numbers and booleans are kept as json literals, others are compared as strings
+            Object leafValue = (value instanceof Number || value instanceof Boolean) ? value : String.valueOf(PGSimpleExpression.toContainmentValue(value));
+            var element = StringUtils.isEmpty(filterKey) ? JsonUtil.toJsonNoIndent(leafValue) : PGSimpleExpression.buildContainmentJson(filterKey, leafValue);
+            ret.add("[" + element + "]");
         }
-
-        return String.format(" (%s)", String.join(" OR ", subQueries));
-
+        return ret;
     }
 
     /**
@@ -242,15 +230,14 @@ public class PGSubQueryExpression implements Expression {
      * <pre>
      * INPUT: "items", "", "@items_009", ["id001", "id002"], params
      * OUTPUT:
-     * " data->'items' @> '[\"id001\",\"id002\"]'::jsonb
+     * " (data->'items' @> ALL(@items_009::jsonb[]))"
+     * and add ['["id001"]', '["id002"]'] into params
      *
      *
      * INPUT: "tags", "name", "@tags_name_010", ["react", "java"], params
      * OUTPUT:
-     * "  (data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__0)
-     * AND data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__1)
-     *
-     *  and add paramsValue into params
+     * " (data->'tags' @> ALL(@tags_name_010::jsonb[]))"
+     * and add ['[{"name":"react"}]', '[{"name":"java"}]'] into params
      * </pre>
      *
      * @param joinKey e.g. items
@@ -306,42 +293,11 @@ public class PGSubQueryExpression implements Expression {
          */
 
 
-        // for complicated pattern with filterKey
-
         // Condition.filter("items ARRAY_CONTAINS_ALL id", List.of("A","B"))
-        // INPUT: "items", "id", "@items_id_010", ["id001", "id002", "id005"], params
-        // OUTPUT: "  (data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_id_010__0)
-        // AND data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_id_010__1)
-        // AND data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_id_010__2)
-
-        var index = 0;
-        var subQueries = new ArrayList<String>();
-
-
-        for(var value : paramValue){
-            // break down the list values to multiple single value
-            var subParamName = String.format("%s__%d", paramName, index);
-
-            if(StringUtils.isEmpty(filterKey)) {
-                //simple key
-                if(value instanceof Integer) {
-                    //for integer value
-                    params.add(Condition.createSqlParameter(subParamName, String.valueOf(value)));
-                } else {
-                    //for str value
-                    params.add(Condition.createSqlParameter(subParamName, "\"%s\"".formatted(value)));
-                }
-                subQueries.add(String.format("%s @> %s::jsonb", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), subParamName));
-            } else {
-                //nested key
-                params.add(Condition.createSqlParameter(subParamName, value));
-                subQueries.add(String.format("%s @> %s", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), buildNestedJsonbExpression(filterKey, subParamName)));
-            }
-
-            index++;
-        }
-
-        return String.format(" (%s)", String.join(" AND ", subQueries));
+        // INPUT: "items", "id", "@items_id_010", ["A", "B"], params
+        // OUTPUT: " (data->'items' @> ALL(@items_id_010::jsonb[]))" with ['[{"id":"A"}]', '[{"id":"B"}]']
+        params.add(Condition.createSqlParameter(paramName, buildArrayElementJsonList(filterKey, paramValue)));
+        return String.format(" (%s @> ALL(%s::jsonb[]))", PGKeyUtil.getFormattedKey4JsonWithAlias(joinKey, selectAlias), paramName);
 
 	}
 
@@ -107,7 +107,7 @@ public class PGSubQueryExpression4Join implements Expression {
          *  // EXISTS (
          *       SELECT 1
          *       FROM jsonb_array_elements(data->'floors') AS j2
-         *       WHERE (j2->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) OR data->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+         *       WHERE (j2->'rooms' @> ANY(@param000_rooms__name::jsonb[]))
          *     )
          */
 
@@ -1,4 +1,7 @@
 package io.github.thunderz99.cosmos.impl.postgres.dto;
+
+import java.time.Instant;
+
 /**
  * DTO class representing a job in PG-Cron.
  */
@@ -23,4 +26,34 @@ public class PGJob {
      * The SQL command the job will execute.
      */
     public String command;
+
+    /**
+     * The status of the latest run(e.g. "running" / "succeeded" / "failed"). null if the job has not run yet.
+     */
+    public String lastRunStatus;
+
+    /**
+     * The return message of the latest run. contains the error message if the run failed.
+     */
+    public String lastRunMessage;
+
+    /**
+     * The start time of the latest run.
+     */
+    public Instant lastRunStartTime;
+
+    /**
+     * The end time of the latest run. null if the run is still running.
+     */
+    public Instant lastRunEndTime;
+
+    /**
+     * The number of succeeded runs kept in cron.job_run_details.
+     */
+    public long succeededRuns;
+
+    /**
+     * The number of failed runs kept in cron.job_run_details.
+     */
+    public long failedRuns;
 }
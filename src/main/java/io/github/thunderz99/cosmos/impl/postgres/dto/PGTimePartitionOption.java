@@ -0,0 +1,110 @@
+package io.github.thunderz99.cosmos.impl.postgres.dto;
+
+/**
+ * Options for a time-partitioned table.
+ *
+ * <p>
+ * The table is created as a range-partitioned parent on {@code NULLIF(data->>'<timeField>','')::numeric}(epoch seconds).
+ * Child partitions are created ahead of time, and expired partitions are dropped(or detached) as a whole, instead of deleting rows one by one.
+ * </p>
+ *
+ * <p>
+ * Note: postgres does not allow a unique index on a partitioned table without the partition key,
+ * so id is only indexed(not unique) in a time-partitioned table. This is intended for append-only data(create / batchCreate / bulkCreate),
+ * upsert(ON CONFLICT) is not supported.
+ * </p>
+ */
+public class PGTimePartitionOption {
+
+    /**
+     * the time field(epoch seconds) used as partition key. default is "_ts". "_expireAt" is also a typical value
+     */
+    public String timeField = "_ts";
+
+    /**
+     * the range of each partition in days. default is 1
+     */
+    public int partitionDays = 1;
+
+    /**
+     * number of partitions created ahead of the current one. default is 3
+     */
+    public int premakePartitions = 3;
+
+    /**
+     * a partition expires when its whole range is older than now - retentionDays. default is 30.
+     * use 0 when timeField is "_expireAt"
+     */
+    public int retentionDays = 30;
+
+    /**
+     * detach the expired partitions instead of dropping them. default is false
+     */
+    public boolean detachOnly = false;
+
+    /**
+     * cron expression of the maintenance job(timezone is UTC). default is every hour
+     */
+    public String cronExpression = "0 * * * *";
+
+    /**
+     * set the time field used as partition key. default is "_ts"
+     * @param timeField
+     * @return partitionOption
+     */
+    public PGTimePartitionOption timeField(String timeField) {
+        this.timeField = timeField;
+        return this;
+    }
+
+    /**
+     * set the range of each partition in days. default is 1
+     * @param partitionDays
+     * @return partitionOption
+     */
+    public PGTimePartitionOption partitionDays(int partitionDays) {
+        this.partitionDays = partitionDays;
+        return this;
+    }
+
+    /**
+     * set the number of partitions created ahead. default is 3
+     * @param premakePartitions
+     * @return partitionOption
+     */
+    public PGTimePartitionOption premakePartitions(int premakePartitions) {
+        this.premakePartitions = premakePartitions;
+        return this;
+    }
+
+    /**
+     * set the retention in days. default is 30
+     * @param retentionDays
+     * @return partitionOption
+     */
+    public PGTimePartitionOption retentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+        return this;
+    }
+
+    /**
+     * detach the expired partitions instead of dropping them
+     * @param detachOnly
+     * @return partitionOption
+     */
+    public PGTimePartitionOption detachOnly(boolean detachOnly) {
+        this.detachOnly = detachOnly;
+        return this;
+    }
+
+    /**
+     * set the cron expression of the maintenance job. default is "0 * * * *"
+     * @param cronExpression
+     * @return partitionOption
+     */
+    public PGTimePartitionOption cronExpression(String cronExpression) {
+        this.cronExpression = cronExpression;
+        return this;
+    }
+
+}
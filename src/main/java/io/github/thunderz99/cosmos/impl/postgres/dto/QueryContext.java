@@ -7,6 +7,7 @@ import java.util.Map;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.github.thunderz99.cosmos.dto.RecordData;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
+import io.github.thunderz99.cosmos.util.CompiledQueryCache;
 
 /**
  * context info for query, especially when join and (returnAllSubArray=false) is used.
@@ -65,6 +66,25 @@ public class QueryContext extends RecordData {
      */
     public boolean afterAggregation = false;
 
+    /**
+     * Whether equality / IN / ARRAY_CONTAINS filters on scalar values are translated to containment predicates(e.g. {@code data @> '{"status":"A"}'::jsonb}).
+     *
+     * <p>
+     *     default is false. see PostgresImpl.withContainmentQueryEnabled for the difference of the results
+     * </p>
+     */
+    public boolean containmentEnabled = false;
+
+    /**
+     * cache of query templates for find / count. null not to use the cache
+     *
+     * <p>
+     *     this field is not a simple data dto. so it should not be serialized
+     * </p>
+     */
+    @JsonIgnore
+    public CompiledQueryCache queryCache;
+
     public String schemaName;
 
     public String tableName;
@@ -101,6 +121,26 @@ public class QueryContext extends RecordData {
         return this;
     }
 
+    /**
+     * set whether containment predicates are used
+     * @param containmentEnabled
+     * @return self
+     */
+    public QueryContext containmentEnabled(boolean containmentEnabled){
+        this.containmentEnabled = containmentEnabled;
+        return this;
+    }
+
+    /**
+     * set the cache of query templates
+     * @param queryCache
+     * @return self
+     */
+    public QueryContext queryCache(CompiledQueryCache queryCache){
+        this.queryCache = queryCache;
+        return this;
+    }
+
     /**
      * set the databaseImpl context
      * @param databaseImpl
@@ -0,0 +1,58 @@
+package io.github.thunderz99.cosmos.impl.postgres.dto;
+
+/**
+ * Options for the TTL job which deletes expired records.
+ *
+ * <p>
+ * Expired records are deleted in bounded batches, each batch in its own transaction, with a pause between batches.
+ * So the throughput per table is at most batchSize * maxBatchesPerRun rows per run of the job.
+ * </p>
+ */
+public class TTLOption {
+
+    /**
+     * rows deleted per batch(transaction). default is 1000
+     */
+    public int batchSize = 1000;
+
+    /**
+     * pause between batches in milliseconds. default is 100. 0 means no pause
+     */
+    public long pauseMillis = 100;
+
+    /**
+     * max batches per run of the job. default is 100. the remaining expired records will be deleted in the next run
+     */
+    public int maxBatchesPerRun = 100;
+
+    /**
+     * set the rows deleted per batch. default is 1000
+     * @param batchSize
+     * @return ttlOption
+     */
+    public TTLOption batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * set the pause between batches in milliseconds. default is 100
+     * @param pauseMillis
+     * @return ttlOption
+     */
+    public TTLOption pauseMillis(long pauseMillis) {
+        this.pauseMillis = pauseMillis;
+        return this;
+    }
+
+    /**
+     * set the max batches per run of the job. default is 100
+     * @param maxBatchesPerRun
+     * @return ttlOption
+     */
+    public TTLOption maxBatchesPerRun(int maxBatchesPerRun) {
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        return this;
+    }
+
+}
@@ -0,0 +1,309 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility class for the change log of a schema, which backs the change feed of postgres.
+ *
+ * <p>
+ * A trigger on each table(partition) appends (seq, txid, partition, id, deleted) to the change log table of the schema for every changed record.
+ * The data itself is not copied. It is joined from the table when the changes are read, so the latest state of a record is returned.
+ * </p>
+ *
+ * <p>
+ * seq is assigned when the record is changed, not when the transaction commits, so a smaller seq may become visible later.
+ * To never skip such a change, changes are read in windows of txid: [fromTxid, toTxid), where toTxid is the xmin of the current snapshot,
+ * i.e. all the transactions in the window have already committed or aborted. Changes in a window are returned in the order of seq.
+ * A long-running transaction delays the changes after it, but never causes them to be skipped.
+ * </p>
+ *
+ * <p>
+ * The change log table grows without bound until it is purged, by purgeChangeLog or by the pg_cron job scheduled by schedulePurgeJob.
+ * </p>
+ */
+public class PGChangeLogUtil {
+
+    private static final Logger log = LoggerFactory.getLogger(PGChangeLogUtil.class);
+
+    /**
+     * change log table(one per schema)
+     */
+    public static final String CHANGE_LOG_TABLE = "java_cosmos_change_log";
+
+    /**
+     * trigger function(installed per schema) and trigger name appending to the change log
+     */
+    static final String CHANGE_LOG_FUNCTION = "java_cosmos_log_change";
+
+    /**
+     * cron expression of the purge job(every hour at minute 0, UTC)
+     */
+    static final String PURGE_CRON_EXPRESSION = "0 * * * *";
+
+    /**
+     * a changed record read from the change log
+     */
+    public static class ChangeRecord {
+
+        /**
+         * sequence of the change
+         */
+        public long seq;
+
+        /**
+         * id of the record
+         */
+        public String id;
+
+        /**
+         * latest data of the record. null if deleted
+         */
+        public Map<String, Object> data;
+    }
+
+    /**
+     * Install the change log table of the schema and the trigger on the table, if not exist
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @throws SQLException if a database error occurs
+     */
+    public static void enableChangeLog(Connection conn, String schemaName, String tableName) throws SQLException {
+
+        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
+        tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
+
+        if (changeLogTriggerExists(conn, schemaName, tableName)) {
+            return;
+        }
+
+        var logTable = "%s.%s".formatted(schemaName, CHANGE_LOG_TABLE);
+        var functionName = "%s.%s".formatted(schemaName, CHANGE_LOG_FUNCTION);
+
+        var createTableSQL = """
+                CREATE TABLE IF NOT EXISTS %s (
+                    seq BIGSERIAL PRIMARY KEY,
+                    txid BIGINT NOT NULL DEFAULT txid_current(),
+                    partition TEXT NOT NULL,
+                    id TEXT NOT NULL,
+                    deleted BOOLEAN NOT NULL DEFAULT false,
+                    ts TIMESTAMPTZ NOT NULL DEFAULT now()
+                )
+                """.formatted(logTable);
+
+        var createIndexSQL = """
+                CREATE INDEX IF NOT EXISTS %s_partition_txid ON %s (partition, txid, seq)
+                """.formatted(CHANGE_LOG_TABLE, logTable);
+
+        // for purging by ts
+        var createTsIndexSQL = getCreateTsIndexSQL(logTable);
+
+        var createFunctionSQL = """
+                CREATE OR REPLACE FUNCTION %s()
+                RETURNS trigger
+                LANGUAGE plpgsql
+                AS $$
+                BEGIN
+                    IF TG_OP = 'DELETE' THEN
+                        INSERT INTO %s(partition, id, deleted) VALUES (TG_ARGV[0], OLD.id, true);
+                    ELSE
+                        INSERT INTO %s(partition, id) VALUES (TG_ARGV[0], NEW.id);
+                    END IF;
+                    RETURN NULL;
+                END;
+                $$
+                """.formatted(functionName, logTable, logTable);
+
+        // the partition name is passed as an argument, because TG_TABLE_NAME is the child table for a time-partitioned table
+        var createTriggerSQL = """
+                CREATE TRIGGER %s AFTER INSERT OR UPDATE OR DELETE ON %s.%s
+                FOR EACH ROW EXECUTE FUNCTION %s('%s')
+                """.formatted(CHANGE_LOG_FUNCTION, schemaName, tableName, functionName, TableUtil.removeQuotes(tableName).replace("'", "''"));
+
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(createTableSQL);
+            stmt.execute(createIndexSQL);
+            stmt.execute(createTsIndexSQL);
+            stmt.execute(createFunctionSQL);
+            stmt.execute(createTriggerSQL);
+            if (log.isInfoEnabled()) {
+                log.info("Change log of '{}.{}' enabled successfully.", schemaName, tableName);
+            }
+        } catch (SQLException e) {
+            // may be created concurrently by another session
+            if (changeLogTriggerExists(conn, schemaName, tableName)) {
+                log.warn("Change log of '{}.{}' already enabled by another session. msg:{}", schemaName, tableName, e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the change log trigger exists on the table
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema(normalized)
+     * @param tableName  the name of the table(normalized)
+     * @return true if exists
+     * @throws SQLException if a database error occurs
+     */
+    static boolean changeLogTriggerExists(Connection conn, String schemaName, String tableName) throws SQLException {
+        try (var pstmt = conn.prepareStatement("SELECT EXISTS(SELECT 1 FROM pg_trigger WHERE tgname = ? AND tgrelid = to_regclass(?))")) {
+            pstmt.setString(1, CHANGE_LOG_FUNCTION);
+            pstmt.setString(2, "%s.%s".formatted(schemaName, tableName));
+            try (var rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Get the xmin of the current snapshot. All the transactions whose txid is less than it have committed or aborted.
+     *
+     * @param conn the database connection
+     * @return xmin(epoch-extended txid)
+     * @throws SQLException if a database error occurs
+     */
+    public static long getCurrentXmin(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement();
+             var rs = stmt.executeQuery("SELECT txid_snapshot_xmin(txid_current_snapshot())")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Read the changes of a table in the txid window [fromTxid, toTxid) after afterSeq, in the order of seq
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param fromTxid   start of the window(inclusive)
+     * @param toTxid     end of the window(exclusive). should not be greater than the current xmin
+     * @param afterSeq   seq of the last change already read in the window. 0 for the beginning
+     * @param limit      max number of changes
+     * @return changes
+     * @throws SQLException if a database error occurs
+     */
+    public static List<ChangeRecord> readChanges(Connection conn, String schemaName, String tableName, long fromTxid, long toTxid, long afterSeq, int limit) throws SQLException {
+
+        Checker.check(limit > 0, "limit should be > 0");
+
+        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
+        tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
+
+        var querySQL = """
+                SELECT l.seq, l.id, t.%s
+                FROM %s.%s l LEFT JOIN %s.%s t ON t.%s = l.id
+                WHERE l.partition = ? AND l.txid >= ? AND l.txid < ? AND l.seq > ?
+                ORDER BY l.seq
+                LIMIT ?
+                """.formatted(TableUtil.DATA, schemaName, CHANGE_LOG_TABLE, schemaName, tableName, TableUtil.ID);
+
+        var ret = new ArrayList<ChangeRecord>();
+        try (var pstmt = conn.prepareStatement(querySQL)) {
+            pstmt.setString(1, TableUtil.removeQuotes(tableName));
+            pstmt.setLong(2, fromTxid);
+            pstmt.setLong(3, toTxid);
+            pstmt.setLong(4, afterSeq);
+            pstmt.setInt(5, limit);
+            try (var rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    var change = new ChangeRecord();
+                    change.seq = rs.getLong(1);
+                    change.id = rs.getString(2);
+                    var data = rs.getString(3);
+                    change.data = data == null ? null : JsonUtil.toMap(data);
+                    ret.add(change);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Delete the changes older than the specified time from the change log of the schema. Consumers behind it will miss the deleted changes.
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param olderThan  changes before this time are deleted
+     * @return number of deleted changes
+     * @throws SQLException if a database error occurs
+     */
+    public static int purgeChangeLog(Connection conn, String schemaName, Instant olderThan) throws SQLException {
+
+        Checker.checkNotNull(olderThan, "olderThan");
+        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
+
+        try (var pstmt = conn.prepareStatement("DELETE FROM %s.%s WHERE ts < ?".formatted(schemaName, CHANGE_LOG_TABLE))) {
+            pstmt.setTimestamp(1, Timestamp.from(olderThan));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Schedule(or re-schedule) a pg_cron job purging the changes older than the retention from the change log of the schema, every hour.
+     * Consumers behind the retention will miss the purged changes.
+     *
+     * @param conn               the database connection
+     * @param schemaName         the name of the schema
+     * @param retentionInMinutes changes older than this are purged. should be &gt; 0
+     * @return jobId of the scheduled job. return -1 if job is not created.
+     * @throws SQLException if a database error occurs(e.g. pg_cron is not installed)
+     */
+    public static long schedulePurgeJob(Connection conn, String schemaName, int retentionInMinutes) throws SQLException {
+
+        Checker.check(retentionInMinutes > 0, "retentionInMinutes should be > 0");
+        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
+
+        var logTable = "%s.%s".formatted(schemaName, CHANGE_LOG_TABLE);
+
+        // the change log may be created before the index on ts is introduced
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(getCreateTsIndexSQL(logTable));
+        }
+
+        var purgeSQL = "DELETE FROM %s WHERE ts < now() - interval '%d minutes'".formatted(logTable, retentionInMinutes);
+        return PGCronUtil.scheduleCustomJob(conn, getPurgeJobName(schemaName), PURGE_CRON_EXPRESSION, purgeSQL);
+    }
+
+    /**
+     * Un-schedule the purge job of the change log of the schema
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @return true if the job is un-scheduled, false if the job is not found
+     * @throws SQLException if a database error occurs
+     */
+    public static boolean unSchedulePurgeJob(Connection conn, String schemaName) throws SQLException {
+        return PGCronUtil.unScheduleJob(conn, getPurgeJobName(schemaName));
+    }
+
+    /**
+     * get the jobName purging the change log of the schema
+     *
+     * @param schemaName the schema name
+     * @return the jobName
+     */
+    public static String getPurgeJobName(String schemaName) {
+        Checker.checkNotBlank(schemaName, "schemaName");
+        return "%s_change_log_purge_job".formatted(TableUtil.removeQuotes(schemaName));
+    }
+
+    static String getCreateTsIndexSQL(String logTable) {
+        return "CREATE INDEX IF NOT EXISTS %s_ts ON %s (ts)".formatted(CHANGE_LOG_TABLE, logTable);
+    }
+}
@@ -14,6 +14,7 @@ import io.github.thunderz99.cosmos.util.AggregateUtil;
 import io.github.thunderz99.cosmos.util.Checker;
 import io.github.thunderz99.cosmos.util.FieldNameUtil;
 import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.util.KeysetUtil;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
@@ -29,6 +30,11 @@ public class PGConditionUtil {
 
     private static final Logger log = LoggerFactory.getLogger(PGConditionUtil.class);
 
+    /**
+     * table name in a query spec template. never a valid table name, because "(" and ")" are not allowed in entity names(see TableUtil.checkValidEntityName)
+     */
+    public static final String TABLE_PLACEHOLDER = "(table)";
+
     /**
      * Generate a query spec for postgres from a Condition obj
      * @param coll
@@ -37,27 +43,107 @@ public class PGConditionUtil {
      * @return querySpec for postgres
      */
     public static CosmosSqlQuerySpec toQuerySpec(String coll, Condition cond, String partition) {
+        return toQuerySpec(coll, cond, partition, QueryContext.create());
+    }
+
+    /**
+     * Generate a query spec for postgres from a Condition obj, with options in queryContext(e.g. containmentEnabled, queryCache)
+     * @param coll
+     * @param cond
+     * @param partition
+     * @param queryContext options of the query. only the options are used, and a new context is created for each generation
+     * @return querySpec for postgres
+     */
+    public static CosmosSqlQuerySpec toQuerySpec(String coll, Condition cond, String partition, QueryContext queryContext) {
 
         // When rawSql is set, other filter / limit / offset / sort will be ignored.
         if (cond.rawQuerySpec != null) {
             return cond.rawQuerySpec;
         }
 
+        var querySpec = bindTable(toQuerySpecTemplate(coll, cond, queryContext), coll, partition);
+        logPostgresQuery(querySpec.queryText);
+        return querySpec;
+    }
+
+    /**
+     * Generate a query spec template for postgres from a Condition obj, whose table is {@link #TABLE_PLACEHOLDER}.
+     *
+     * <p>
+     * The template does not depend on the partition, so it is shared by all the partitions(e.g. the queryCache and the cross-partition fan-out).
+     * Use {@link #bindTable} to get the query spec of a partition.
+     * </p>
+     * @param coll
+     * @param cond
+     * @param queryContext options of the query. only the options are used, and a new context is created for each generation
+     * @return querySpec template for postgres
+     */
+    public static CosmosSqlQuerySpec toQuerySpecTemplate(String coll, Condition cond, QueryContext queryContext) {
+
+        // When rawSql is set, other filter / limit / offset / sort will be ignored.
+        if (cond.rawQuerySpec != null) {
+            return cond.rawQuerySpec;
+        }
+
+        var containmentEnabled = queryContext.containmentEnabled;
+        return queryContext.queryCache == null ? _toQuerySpec(coll, cond, TABLE_PLACEHOLDER, containmentEnabled)
+                : queryContext.queryCache.get("find|%s|%s".formatted(coll, containmentEnabled), cond, c -> _toQuerySpec(coll, c, TABLE_PLACEHOLDER, containmentEnabled));
+    }
+
+    /**
+     * Replace the {@link #TABLE_PLACEHOLDER} in the FROM clause of a query spec template with the table of the partition
+     *
+     * @param template query spec template whose table is {@link #TABLE_PLACEHOLDER}
+     * @param coll
+     * @param partition
+     * @return querySpec for the partition. the template itself if it has no placeholder(e.g. rawSql)
+     */
+    public static CosmosSqlQuerySpec bindTable(CosmosSqlQuerySpec template, String coll, String partition) {
+
         var schema = TableUtil.checkAndNormalizeValidEntityName(coll);
         var table = TableUtil.checkAndNormalizeValidEntityName(partition);
 
+        var from = " FROM %s.%s".formatted(schema, TABLE_PLACEHOLDER);
+        if (!Strings.CS.contains(template.queryText, from)) {
+            return template;
+        }
+
+        var queryText = Strings.CS.replaceOnce(template.queryText, from, " FROM %s.%s".formatted(schema, table));
+        return new CosmosSqlQuerySpec(queryText, new ArrayList<>(template.params));
+    }
+
+    /**
+     * Generate a query spec for postgres from a Condition obj, without using the cache
+     * @param coll
+     * @param cond
+     * @param table normalized table name, or {@link #TABLE_PLACEHOLDER} for a template
+     * @param containmentEnabled whether to use containment predicates for equality / IN / ARRAY_CONTAINS
+     * @return querySpec for postgres
+     */
+    static CosmosSqlQuerySpec _toQuerySpec(String coll, Condition cond, String table, boolean containmentEnabled) {
+
+        var schema = TableUtil.checkAndNormalizeValidEntityName(coll);
+
 
         var initialText = String.format(" FROM %s.%s\n", schema, table);
         var initialParams = new ArrayList<CosmosSqlParameter>();
         var initialConditionIndex = new AtomicInteger(0);
         var initialParamIndex = new AtomicInteger(0);
 
-        var queryContext = QueryContext.create();
+        var queryContext = QueryContext.create().containmentEnabled(containmentEnabled);
         var filterQuery = generateFilterQuery(cond, initialText, initialParams, initialConditionIndex, initialParamIndex, queryContext);
 
         var queryText = filterQuery.queryText;
         var params = filterQuery.params;
 
+        // keyset pagination
+        var sort = cond.keysetPagination ? KeysetUtil.normalizeSort(cond.sort) : cond.sort;
+        if (cond.keysetPagination && StringUtils.isNotEmpty(cond.continuationToken)) {
+            var values = KeysetUtil.decode(cond.continuationToken, sort);
+            queryText.append(getConnectPart(filterQuery.conditionIndex))
+                    .append(buildKeysetSeek(sort, values, cond.collate, params, filterQuery.paramIndex));
+        }
+
         // select
         var select = generateSelect(cond, queryContext, params);
         queryText.insert(0, "SELECT %s\n".formatted(select.selectPart));
@@ -81,19 +167,69 @@ public class PGConditionUtil {
         }
 
         // sort
-        if (!CollectionUtils.isEmpty(cond.sort) && cond.sort.size() > 1) {
-            var sorts = buildSorts(cond.sort, cond.collate);
+        if (!CollectionUtils.isEmpty(sort) && sort.size() > 1) {
+            var sorts = buildSorts(sort, cond.collate);
             queryText.append("\n").append(sorts);
         }
 
         // offset and limit
-        queryText.append(String.format(" OFFSET %d LIMIT %d", cond.offset, cond.limit));
+        // offset is replaced by the seek predicate when using keyset pagination
+        queryText.append(String.format(" OFFSET %d LIMIT %d", cond.keysetPagination ? 0 : cond.offset, cond.limit));
 
-        logPostgresQuery(queryText);
         return new CosmosSqlQuerySpec(queryText.toString(), params);
 
     }
 
+    /**
+     * Generate the seek predicate for keyset pagination.
+     *
+     * <p>
+     * When all the sort orders are the same, a row comparison is used, which can utilize a composite index:
+     * {@code (data->>'name', data->>'_ts', id) > (@keyset000, @keyset001, @keyset002)}
+     * Otherwise, the expanded form is used:
+     * {@code ((data->>'name' > @keyset000) OR (data->>'name' = @keyset000 AND id < @keyset001))}
+     * </p>
+     *
+     * @param sort normalized sort pairs. see KeysetUtil.normalizeSort
+     * @param values values of sort keys decoded from the continuation token
+     * @param collate "C" or "en_US"
+     * @param params params to add values
+     * @param paramIndex param index
+     * @return seek predicate queryText
+     */
+    static String buildKeysetSeek(List<String> sort, List<Object> values, String collate, List<CosmosSqlParameter> params, AtomicInteger paramIndex) {
+
+        var expressions = new ArrayList<String>();
+        var paramParts = new ArrayList<String>();
+        var operators = new ArrayList<String>();
+
+        for (int i = 0; i < sort.size(); i += 2) {
+            var operator = "DESC".equalsIgnoreCase(sort.get(i + 1)) ? "<" : ">";
+            for (var seekKey : PGSortUtil.getSeekKeys(sort.get(i), values.get(i / 2), collate)) {
+                var paramName = "@keyset%03d".formatted(paramIndex.getAndIncrement());
+                params.add(Condition.createSqlParameter(paramName, seekKey.value));
+                expressions.add(seekKey.expression);
+                paramParts.add(seekKey.paramTemplate.formatted(paramName));
+                operators.add(operator);
+            }
+        }
+
+        if (operators.stream().distinct().count() == 1) {
+            return " (%s) %s (%s)".formatted(String.join(", ", expressions), operators.get(0), String.join(", ", paramParts));
+        }
+
+        var ors = new ArrayList<String>();
+        for (int i = 0; i < expressions.size(); i++) {
+            var ands = new ArrayList<String>();
+            for (int j = 0; j < i; j++) {
+                ands.add("%s = %s".formatted(expressions.get(j), paramParts.get(j)));
+            }
+            ands.add("%s %s %s".formatted(expressions.get(i), operators.get(i), paramParts.get(i)));
+            ors.add("(%s)".formatted(String.join(" AND ", ands)));
+        }
+        return " (%s)".formatted(String.join(" OR ", ors));
+    }
+
     /**
      * Generate an aggregate query spec for postgres from a Condition obj
      *
@@ -473,6 +609,21 @@ public class PGConditionUtil {
             return "";
         }
 
+        var ret = getSortMap(sort).entrySet().stream()
+                .filter(entry -> StringUtils.isNotBlank(entry.getKey()))
+                .map(entry -> String.format(" %s", PGSortUtil.getFormattedKey4Sort(entry.getKey(), entry.getValue().toUpperCase(), collate)))
+                .collect(Collectors.joining(",", " ORDER BY", ""));
+        return ret;
+    }
+
+    /**
+     * Get the sort keys and orders used in ORDER BY, including the "_ts" and "id" added for a stable sort result
+     *
+     * @param sort list of sort key and orders. should not be empty
+     * @return map of sort key and order
+     */
+    static LinkedHashMap<String, String> getSortMap(List<String> sort) {
+
         var sortMap = new LinkedHashMap<String, String>();
 
         // record the first order "ASC" or "DESC"
@@ -498,11 +649,7 @@ public class PGConditionUtil {
             sortMap.put("id", firstOrder);
         }
 
-        var ret = sortMap.entrySet().stream()
-                .filter(entry -> StringUtils.isNotBlank(entry.getKey()))
-                .map(entry -> String.format(" %s", PGSortUtil.getFormattedKey4Sort(entry.getKey(), entry.getValue().toUpperCase(), collate)))
-                .collect(Collectors.joining(",", " ORDER BY", ""));
-        return ret;
+        return sortMap;
     }
 
     /**
@@ -513,14 +660,62 @@ public class PGConditionUtil {
      * @return querySpec for postgres
      */
     public static CosmosSqlQuerySpec toQuerySpecForCount(String coll, Condition cond, String partition) {
+        return toQuerySpecForCount(coll, cond, partition, QueryContext.create());
+    }
+
+    /**
+     * Generate a count query spec for postgres from a Condition obj, with options in queryContext(e.g. containmentEnabled, queryCache)
+     * @param coll
+     * @param cond
+     * @param partition
+     * @param queryContext options of the query. only the options are used, and a new context is created for each generation
+     * @return querySpec for postgres
+     */
+    public static CosmosSqlQuerySpec toQuerySpecForCount(String coll, Condition cond, String partition, QueryContext queryContext) {
 
         // When rawSql is set, other filter / limit / offset / sort will be ignored.
         if (cond.rawQuerySpec != null) {
             return cond.rawQuerySpec;
         }
 
+        var querySpec = bindTable(toQuerySpecTemplateForCount(coll, cond, queryContext), coll, partition);
+        logPostgresQuery(querySpec.queryText);
+        return querySpec;
+    }
+
+    /**
+     * Generate a count query spec template for postgres from a Condition obj, whose table is {@link #TABLE_PLACEHOLDER}.
+     * Use {@link #bindTable} to get the query spec of a partition.
+     *
+     * @param coll
+     * @param cond
+     * @param queryContext options of the query. only the options are used, and a new context is created for each generation
+     * @return querySpec template for postgres
+     */
+    public static CosmosSqlQuerySpec toQuerySpecTemplateForCount(String coll, Condition cond, QueryContext queryContext) {
+
+        // When rawSql is set, other filter / limit / offset / sort will be ignored.
+        if (cond.rawQuerySpec != null) {
+            return cond.rawQuerySpec;
+        }
+
+        var containmentEnabled = queryContext.containmentEnabled;
+        return queryContext.queryCache == null ? _toQuerySpecForCount(coll, cond, TABLE_PLACEHOLDER, containmentEnabled)
+                : queryContext.queryCache.get("count|%s|%s".formatted(coll, containmentEnabled), cond, c -> _toQuerySpecForCount(coll, c, TABLE_PLACEHOLDER, containmentEnabled));
+    }
+
+    /**
+     * Generate a query spec for count, without using the cache
+     *
+     * @param coll
+     * @param cond
+     * @param table normalized table name, or {@link #TABLE_PLACEHOLDER} for a template
+     * @param containmentEnabled whether to use containment predicates for equality / IN / ARRAY_CONTAINS
+     * @return querySpec for postgres
+     */
+    static CosmosSqlQuerySpec _toQuerySpecForCount(String coll, Condition cond, String table, boolean containmentEnabled) {
+
         var schema = TableUtil.checkAndNormalizeValidEntityName(coll);
-        var table = TableUtil.checkAndNormalizeValidEntityName(partition);
 
         var select = "COUNT(*)";
 
@@ -529,7 +724,7 @@ public class PGConditionUtil {
         var initialConditionIndex = new AtomicInteger(0);
         var initialParamIndex = new AtomicInteger(0);
 
-        var queryContext = QueryContext.create();
+        var queryContext = QueryContext.create().containmentEnabled(containmentEnabled);
         var filterQuery = generateFilterQuery(cond, initialText, initialParams, initialConditionIndex, initialParamIndex, queryContext);
 
         var queryText = filterQuery.queryText;
@@ -541,7 +736,6 @@ public class PGConditionUtil {
         // offset and limit
         // not needed for count
 
-        logPostgresQuery(queryText);
         return new CosmosSqlQuerySpec(queryText.toString(), params);
 
     }
@@ -572,6 +766,17 @@ public class PGConditionUtil {
     static FilterQuery generateFilterQuery(Condition cond, String selectPart, List<CosmosSqlParameter> params,
                                     AtomicInteger conditionIndex, AtomicInteger paramIndex, QueryContext queryContext) {
 
+        if (cond.negative && queryContext.containmentEnabled) {
+            // containment is not used under NOT. NOT(data @> '{"status":"A"}') matches a document without "status",
+            // while NOT(data->>'status' = 'A') is NULL and does not match
+            queryContext.containmentEnabled = false;
+            try {
+                return generateFilterQuery(cond, selectPart, params, conditionIndex, paramIndex, queryContext);
+            } finally {
+                queryContext.containmentEnabled = true;
+            }
+        }
+
         // process raw sql
         if (cond.rawQuerySpec != null) {
             conditionIndex.getAndIncrement();
@@ -833,11 +1038,18 @@ public class PGConditionUtil {
      * @return
      */
     static Expression parseExpression4SimpleMatcher(String key, String parsedKey, Object value, String operator, Set<String> join, QueryContext queryContext) {
+        var containmentEnabled = queryContext != null && queryContext.containmentEnabled;
         if (key.contains(" OR ")) {
-            return new PGOrExpressions(parsedKey, value);
+            var exp = new PGOrExpressions(parsedKey, value);
+            if (exp.simpleExps != null) {
+                exp.simpleExps.forEach(simpleExp -> simpleExp.containmentEnabled = containmentEnabled);
+            }
+            return exp;
         } else {
             if (CollectionUtils.isEmpty(join)) {
-                return new PGSimpleExpression(parsedKey, value, operator);
+                var exp = new PGSimpleExpression(parsedKey, value, operator);
+                exp.containmentEnabled = containmentEnabled;
+                return exp;
             } else {
                 return new PGSimpleExpression4Join(parsedKey, value, operator, join, queryContext);
             }
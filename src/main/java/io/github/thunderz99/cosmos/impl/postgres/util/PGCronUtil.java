@@ -107,6 +107,10 @@ public class PGCronUtil {
      *
      * @param conn    the database connection
      * @param jobName the name of the job
+     * <p>
+     * Run metrics(status / message / start and end time of the latest run, succeeded and failed run counts) are read from cron.job_run_details.
+     * </p>
+     *
      * @return PGJob object containing job details, or null if not found
      * @throws SQLException if a database error occurs
      */
@@ -114,8 +118,29 @@ public class PGCronUtil {
 
         Checker.checkNotBlank(jobName, "jobName");
 
+        var sql = """
+                SELECT j.jobid, j.jobname, j.schedule, j.command,
+                       r.status, r.return_message, r.start_time, r.end_time,
+                       c.succeeded, c.failed
+                FROM cron.job j
+                LEFT JOIN LATERAL (
+                    SELECT d.status, d.return_message, d.start_time, d.end_time
+                    FROM cron.job_run_details d
+                    WHERE d.jobid = j.jobid
+                    ORDER BY d.runid DESC
+                    LIMIT 1
+                ) r ON true
+                LEFT JOIN LATERAL (
+                    SELECT count(*) FILTER (WHERE d.status = 'succeeded') AS succeeded,
+                           count(*) FILTER (WHERE d.status = 'failed') AS failed
+                    FROM cron.job_run_details d
+                    WHERE d.jobid = j.jobid
+                ) c ON true
+                WHERE j.jobname = ?
+                """;
+
         var ret = new PGJob();
-        try (var stmt = conn.prepareStatement("SELECT jobid, jobname, schedule, command FROM cron.job WHERE jobname = ?")) {
+        try (var stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, jobName);
             try (var rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -123,6 +148,14 @@ public class PGCronUtil {
                     ret.jobName = rs.getString("jobname");
                     ret.schedule = rs.getString("schedule");
                     ret.command = rs.getString("command");
+                    ret.lastRunStatus = rs.getString("status");
+                    ret.lastRunMessage = rs.getString("return_message");
+                    var startTime = rs.getTimestamp("start_time");
+                    ret.lastRunStartTime = startTime == null ? null : startTime.toInstant();
+                    var endTime = rs.getTimestamp("end_time");
+                    ret.lastRunEndTime = endTime == null ? null : endTime.toInstant();
+                    ret.succeededRuns = rs.getLong("succeeded");
+                    ret.failedRuns = rs.getLong("failed");
                     return ret;
                 }
             }
@@ -0,0 +1,397 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.impl.postgres.condition.PGSimpleExpression;
+import io.github.thunderz99.cosmos.impl.postgres.dto.QueryContext;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.HashUtil;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt-in advisor recording the filter and sort expressions of queries per table, and recommending the btree expression indexes matching them.
+ *
+ * <p>
+ * An expression index is only used when the expression in the query is exactly the same as the one in the index(including the cast and COLLATE).
+ * So the expressions are generated by the same logic as PGConditionUtil, e.g. {@code NULLIF(data->>'age','')::numeric} for "age &gt;", 20,
+ * and {@code data->>'name' COLLATE "C"} for sort("name", "ASC") with collate "C".
+ * </p>
+ *
+ * <p>
+ * Equality / IN / ARRAY_CONTAINS filters using containment predicates(QueryContext.containmentEnabled) are covered by the default GIN(data) index, and are not recorded.
+ * Candidates are ranked by total latency(frequency * mean latency) of the queries using them.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * var advisor = new PGIndexAdvisor();
+ * var cosmos = new CosmosBuilder().withDatabaseType("postgres").withConnectionString(cs).withIndexAdvisor(advisor).build();
+ *
+ * // after some workload
+ * advisor.getRecommendations(10).forEach(r -> log.info(r.toString()));
+ * }
+ * </pre>
+ */
+public class PGIndexAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(PGIndexAdvisor.class);
+
+    public static final int DEFAULT_MAX_CANDIDATES = 1000;
+
+    /**
+     * the kind of index candidate
+     */
+    public enum Kind {
+        /**
+         * index for a filter expression. e.g. WHERE NULLIF(data->>'age','')::numeric > @param
+         */
+        FILTER,
+        /**
+         * composite index for the ORDER BY expressions. e.g. ORDER BY data->>'name' COLLATE "C" ASC, data->>'_ts' ASC, id COLLATE "C" ASC
+         */
+        SORT
+    }
+
+    record Key(String schemaName, String tableName, Kind kind, String indexElements) {
+    }
+
+    static class Stats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalLatencyNanos = new LongAdder();
+        final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    final Map<Key, Stats> candidates = new ConcurrentHashMap<>();
+
+    final int maxCandidates;
+
+    final LongAdder droppedCount = new LongAdder();
+
+    public PGIndexAdvisor() {
+        this(DEFAULT_MAX_CANDIDATES);
+    }
+
+    /**
+     * Create an advisor
+     *
+     * @param maxCandidates max number of candidates tracked. new candidates are ignored after reaching it
+     */
+    public PGIndexAdvisor(int maxCandidates) {
+        Checker.check(maxCandidates > 0, "maxCandidates should be > 0");
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Record the expressions used by a query
+     *
+     * @param schemaName   schema name(coll)
+     * @param tableName    table name(partition)
+     * @param cond         condition of the query. collate should be set already
+     * @param sorted       whether ORDER BY is used(false for count)
+     * @param latencyNanos latency of the query
+     */
+    public void record(String schemaName, String tableName, Condition cond, boolean sorted, long latencyNanos) {
+        record(schemaName, tableName, cond, sorted, latencyNanos, QueryContext.create());
+    }
+
+    /**
+     * Record the expressions used by a query, generated with the options in queryContext(e.g. containmentEnabled)
+     *
+     * @param schemaName   schema name(coll)
+     * @param tableName    table name(partition)
+     * @param cond         condition of the query. collate should be set already
+     * @param sorted       whether ORDER BY is used(false for count)
+     * @param latencyNanos latency of the query
+     * @param queryContext options of the query
+     */
+    public void record(String schemaName, String tableName, Condition cond, boolean sorted, long latencyNanos, QueryContext queryContext) {
+        if (cond == null || cond.rawQuerySpec != null || StringUtils.isAnyBlank(schemaName, tableName)) {
+            return;
+        }
+
+        try {
+            for (var elements : getFilterIndexElements(cond, queryContext.containmentEnabled)) {
+                add(new Key(schemaName, tableName, Kind.FILTER, elements), latencyNanos);
+            }
+            if (sorted) {
+                var elements = getSortIndexElements(cond);
+                if (StringUtils.isNotEmpty(elements)) {
+                    add(new Key(schemaName, tableName, Kind.SORT, elements), latencyNanos);
+                }
+            }
+        } catch (RuntimeException e) {
+            // the advisor should never break the query
+            log.warn("Failed to record index candidates. schema:{}, table:{}, cond:{}", schemaName, tableName, cond, e);
+        }
+    }
+
+    void add(Key key, long latencyNanos) {
+        var stats = candidates.get(key);
+        if (stats == null) {
+            if (candidates.size() >= maxCandidates) {
+                droppedCount.increment();
+                return;
+            }
+            stats = candidates.computeIfAbsent(key, k -> new Stats());
+        }
+        stats.count.increment();
+        stats.totalLatencyNanos.add(latencyNanos);
+        stats.maxLatencyNanos.accumulate(latencyNanos);
+    }
+
+    /**
+     * Get the index elements of the top level filters. e.g. "(NULLIF(data->>'age','')::numeric)"
+     *
+     * <p>
+     * Only the filters combined by AND at the top level are collected. Filters in sub conditions(OR, NOT, join) are not.
+     * </p>
+     *
+     * @param cond condition
+     * @return index elements for each filter expression
+     */
+    static List<String> getFilterIndexElements(Condition cond) {
+        return getFilterIndexElements(cond, false);
+    }
+
+    /**
+     * Get the index elements of the top level filters, generated with or without containment predicates
+     *
+     * @param cond               condition
+     * @param containmentEnabled whether equality / IN / ARRAY_CONTAINS use containment predicates
+     * @return index elements for each filter expression
+     */
+    static List<String> getFilterIndexElements(Condition cond, boolean containmentEnabled) {
+        var ret = new LinkedHashSet<String>();
+        if (cond.filter == null || CollectionUtils.isNotEmpty(cond.join) || cond.negative) {
+            return List.of();
+        }
+        for (var entry : cond.filter.entrySet()) {
+            var key = entry.getKey();
+            if (StringUtils.isBlank(key) || key.startsWith("$") || entry.getValue() instanceof Condition) {
+                // sub conditions
+                continue;
+            }
+            var exp = PGConditionUtil.parse(key, entry.getValue(), null, QueryContext.create().containmentEnabled(containmentEnabled));
+            if (exp instanceof PGSimpleExpression simpleExp) {
+                var expression = simpleExp.getIndexExpression();
+                if (StringUtils.isNotEmpty(expression)) {
+                    ret.add("(%s)".formatted(expression));
+                }
+            }
+        }
+        return List.copyOf(ret);
+    }
+
+    /**
+     * Get the index elements of ORDER BY, including "_ts" and "id" added for a stable sort result.
+     * e.g. "(data->>'name') COLLATE "C" ASC, (data->>'_ts') ASC, id COLLATE "C" ASC"
+     *
+     * @param cond condition
+     * @return index elements. or "" if no sort or some sort expression cannot be indexed(jsonb sort with COLLATE "C")
+     */
+    static String getSortIndexElements(Condition cond) {
+        if (CollectionUtils.isEmpty(cond.sort) || CollectionUtils.isNotEmpty(cond.join)) {
+            return "";
+        }
+
+        var elements = new ArrayList<String>();
+        for (var entry : PGConditionUtil.getSortMap(cond.sort).entrySet()) {
+            if (StringUtils.isBlank(entry.getKey())) {
+                continue;
+            }
+            var direction = entry.getValue().toUpperCase();
+            var sortExpression = PGSortUtil.getFormattedKey4Sort(entry.getKey(), direction, cond.collate).trim();
+            if (StringUtils.contains(sortExpression, "CASE")) {
+                // the jsonb sort with COLLATE "C" is a list of CASE expressions. not suitable for an index
+                return "";
+            }
+            var expression = StringUtils.removeEnd(sortExpression, " " + direction).trim();
+            var collate = "";
+            if (expression.endsWith(" COLLATE \"C\"")) {
+                expression = StringUtils.removeEnd(expression, " COLLATE \"C\"").trim();
+                collate = " COLLATE \"C\"";
+            }
+            elements.add("%s%s %s".formatted(TableUtil.ID.equals(expression) ? expression : "(" + expression + ")", collate, direction));
+        }
+        return String.join(", ", elements);
+    }
+
+    /**
+     * Get the recommended indexes ranked by total latency of the queries using them
+     *
+     * @param limit max number of recommendations
+     * @return recommendations
+     */
+    public List<IndexRecommendation> getRecommendations(int limit) {
+        return getRecommendations(limit, 1);
+    }
+
+    /**
+     * Get the recommended indexes ranked by total latency of the queries using them
+     *
+     * @param limit    max number of recommendations
+     * @param minCount candidates used less than minCount times are not recommended
+     * @return recommendations
+     */
+    public List<IndexRecommendation> getRecommendations(int limit, long minCount) {
+        Checker.check(limit >= 0, "limit should be >= 0");
+        return candidates.entrySet().stream()
+                .map(e -> toRecommendation(e.getKey(), e.getValue()))
+                .filter(r -> r.count >= minCount)
+                .sorted(Comparator.comparingLong((IndexRecommendation r) -> r.totalLatencyNanos).reversed()
+                        .thenComparing(Comparator.comparingLong((IndexRecommendation r) -> r.count).reversed()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    static IndexRecommendation toRecommendation(Key key, Stats stats) {
+        var ret = new IndexRecommendation();
+        ret.schemaName = key.schemaName;
+        ret.tableName = key.tableName;
+        ret.kind = key.kind;
+        ret.indexElements = key.indexElements;
+        ret.indexName = getIndexName(key.tableName, key.indexElements);
+        ret.count = stats.count.sum();
+        ret.totalLatencyNanos = stats.totalLatencyNanos.sum();
+        ret.maxLatencyNanos = stats.maxLatencyNanos.get();
+        return ret;
+    }
+
+    /**
+     * Generate an index name from the table name and a hash of the index elements. e.g. idx_table1_adv_1a2b3c4d5e6f7a8b
+     *
+     * @param tableName     table name
+     * @param indexElements index elements
+     * @return index name
+     */
+    static String getIndexName(String tableName, String indexElements) {
+        var name = "idx_%s_adv_%s".formatted(TableUtil.removeQuotes(tableName), HashUtil.toShortHash(indexElements));
+        return TableUtil.checkAndNormalizeValidEntityName(name);
+    }
+
+    /**
+     * Create the recommended indexes if not exist.
+     *
+     * <p>
+     * When concurrently is true, the indexes are created by CREATE INDEX CONCURRENTLY, which does not block writes but cannot run in a transaction.
+     * So autoCommit of the connection is set to true during the creation.
+     * </p>
+     *
+     * @param conn            the database connection
+     * @param recommendations recommendations to apply
+     * @param concurrently    whether to use CREATE INDEX CONCURRENTLY
+     * @return schema.indexName of the indexes created
+     * @throws SQLException if a database error occurs
+     */
+    public static List<String> apply(Connection conn, List<IndexRecommendation> recommendations, boolean concurrently) throws SQLException {
+        Checker.checkNotNull(conn, "conn");
+
+        var ret = new ArrayList<String>();
+        if (CollectionUtils.isEmpty(recommendations)) {
+            return ret;
+        }
+
+        var previousAutoCommit = conn.getAutoCommit();
+        try (var stmt = conn.createStatement()) {
+            conn.setAutoCommit(true);
+            for (var recommendation : recommendations) {
+                if (TableUtil.indexExistsByName(conn, recommendation.schemaName, recommendation.tableName, recommendation.indexName)) {
+                    continue;
+                }
+                stmt.execute(recommendation.toCreateIndexSQL(concurrently));
+                if (log.isInfoEnabled()) {
+                    log.info("Index({}) on '{}' of table '{}.{}' created by advisor.", recommendation.indexName, recommendation.indexElements,
+                            recommendation.schemaName, recommendation.tableName);
+                }
+                ret.add("%s.%s".formatted(TableUtil.checkAndNormalizeValidEntityName(recommendation.schemaName), recommendation.indexName));
+            }
+        } finally {
+            conn.setAutoCommit(previousAutoCommit);
+        }
+        return ret;
+    }
+
+    /**
+     * Remove all the recorded candidates
+     */
+    public void reset() {
+        candidates.clear();
+        droppedCount.reset();
+    }
+
+    /**
+     * number of records ignored because maxCandidates is reached
+     *
+     * @return dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * A recommended index and the statistics of the queries using it
+     */
+    public static class IndexRecommendation {
+
+        public String schemaName;
+
+        public String tableName;
+
+        public Kind kind;
+
+        /**
+         * index elements in CREATE INDEX. e.g. (NULLIF(data->>'age','')::numeric)
+         */
+        public String indexElements;
+
+        public String indexName;
+
+        /**
+         * number of queries using the expressions
+         */
+        public long count;
+
+        public long totalLatencyNanos;
+
+        public long maxLatencyNanos;
+
+        public double getMeanLatencyMillis() {
+            return count == 0 ? 0 : totalLatencyNanos / 1_000_000.0 / count;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos / 1_000_000.0;
+        }
+
+        /**
+         * Generate the CREATE INDEX statement
+         *
+         * @param concurrently whether to use CREATE INDEX CONCURRENTLY
+         * @return sql. e.g. CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_table1_adv_xxx ON schema1.table1 ((NULLIF(data->>'age','')::numeric));
+         */
+        public String toCreateIndexSQL(boolean concurrently) {
+            return "CREATE INDEX %sIF NOT EXISTS %s ON %s.%s (%s);".formatted(concurrently ? "CONCURRENTLY " : "", indexName,
+                    TableUtil.checkAndNormalizeValidEntityName(schemaName), TableUtil.checkAndNormalizeValidEntityName(tableName), indexElements);
+        }
+
+        @Override
+        public String toString() {
+            return JsonUtil.toJsonNoIndent(this);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGTimePartitionOption;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.util.CronUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility class for time-partitioned tables. Provides the partition key expression, and the maintenance job(using pg_cron plugin)
+ * which creates child partitions ahead of time and drops(or detaches) expired partitions.
+ */
+public class PGPartitionUtil {
+    private static final Logger log = LoggerFactory.getLogger(PGPartitionUtil.class);
+
+    /**
+     * length of the suffix of a child partition. e.g. "_p20250101"
+     */
+    static final int PARTITION_SUFFIX_LENGTH = "_p20250101".length();
+
+    /**
+     * max length of a postgres identifier
+     */
+    static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    /**
+     * get the partition key expression for the time field.
+     *
+     * <p>
+     * The expression is exactly the same as the one generated for a number filter(e.g. {"_ts &gt;": 1700000000}),
+     * so that postgres can prune partitions when the Condition constrains the time field.
+     * </p>
+     *
+     * @param timeField the time field. e.g. "_ts"
+     * @return partition key expression. e.g. NULLIF(data-&gt;&gt;'_ts','')::numeric
+     */
+    public static String getPartitionKeyExpression(String timeField) {
+        Checker.checkNotBlank(timeField, "timeField");
+        TableUtil.checkValidEntityName(timeField);
+        return PGKeyUtil.getFormattedKeyWithAlias(timeField, TableUtil.DATA, 0L);
+    }
+
+    /**
+     * check the partition option
+     *
+     * @param tableName       the table name
+     * @param partitionOption the partition option
+     */
+    static void checkPartitionOption(String tableName, PGTimePartitionOption partitionOption) {
+        Checker.checkNotNull(partitionOption, "partitionOption");
+        Checker.check(partitionOption.partitionDays > 0, "partitionDays must > 0. %s".formatted(tableName));
+        Checker.check(partitionOption.premakePartitions >= 0, "premakePartitions must >= 0. %s".formatted(tableName));
+        Checker.check(partitionOption.retentionDays >= 0, "retentionDays must >= 0. %s".formatted(tableName));
+        Checker.check(StringUtils.length(TableUtil.removeQuotes(tableName)) + PARTITION_SUFFIX_LENGTH <= MAX_IDENTIFIER_LENGTH,
+                "tableName is too long for a time-partitioned table. %s".formatted(tableName));
+        getPartitionKeyExpression(partitionOption.timeField);
+    }
+
+    /**
+     * build the maintenance SQL for a time-partitioned table. The SQL is a single DO statement which:
+     *
+     * <ul>
+     *     <li>creates the current partition and premakePartitions partitions ahead, named as &lt;table&gt;_pYYYYMMDD(UTC)</li>
+     *     <li>drops(or detaches) the partitions whose whole range is older than now - retentionDays</li>
+     * </ul>
+     *
+     * <p>
+     * Does nothing if the table does not exist.
+     * </p>
+     *
+     * @param schemaName      the schema name
+     * @param tableName       the table name
+     * @param partitionOption the partition option
+     * @return the DO statement
+     */
+    public static String buildMaintenanceSQL(String schemaName, String tableName, PGTimePartitionOption partitionOption) {
+
+        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
+        tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
+        checkPartitionOption(tableName, partitionOption);
+
+        var schema = TableUtil.removeQuotes(schemaName);
+        var table = TableUtil.removeQuotes(tableName);
+
+        var expireSQL = partitionOption.detachOnly
+                ? "EXECUTE format('ALTER TABLE %%I.%%I DETACH PARTITION %%I.%%I', '%1$s', '%2$s', '%1$s', r.relname);"
+                : "EXECUTE format('DROP TABLE %%I.%%I', '%1$s', r.relname);";
+
+        return ("""
+                DO $partition$
+                DECLARE
+                    step numeric := %3$d;
+                    now_epoch numeric := extract(epoch from now());
+                    lower_bound numeric;
+                    part_name text;
+                    r record;
+                BEGIN
+                    IF to_regclass('%5$s.%6$s') IS NULL THEN
+                        RETURN;
+                    END IF;
+                    FOR i IN 0..%4$d LOOP
+                        lower_bound := (floor(now_epoch / step) + i) * step;
+                        part_name := '%2$s_p' || to_char(to_timestamp(lower_bound) AT TIME ZONE 'UTC', 'YYYYMMDD');
+                        BEGIN
+                            EXECUTE format('CREATE TABLE IF NOT EXISTS %%I.%%I PARTITION OF %%I.%%I FOR VALUES FROM (%%s) TO (%%s)',
+                                '%1$s', part_name, '%1$s', '%2$s', lower_bound, lower_bound + step);
+                        EXCEPTION WHEN others THEN
+                            RAISE WARNING 'failed to create partition %%.%%: %%', '%1$s', part_name, SQLERRM;
+                        END;
+                    END LOOP;
+                    FOR r IN
+                        SELECT c.relname, (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''?([0-9.]+)''?\\)'))[1]::numeric AS upper_bound
+                        FROM pg_inherits inh JOIN pg_class c ON c.oid = inh.inhrelid
+                        WHERE inh.inhparent = to_regclass('%5$s.%6$s')
+                    LOOP
+                        IF r.upper_bound IS NOT NULL AND r.upper_bound <= now_epoch - %7$d THEN
+                            %8$s
+                            RAISE LOG 'expired partition %%.%% is %9$s', '%1$s', r.relname;
+                        END IF;
+                    END LOOP;
+                END
+                $partition$;
+                """).formatted(schema, table,
+                partitionOption.partitionDays * 86400L, partitionOption.premakePartitions,
+                schemaName, tableName, partitionOption.retentionDays * 86400L,
+                expireSQL.formatted(schema, table), partitionOption.detachOnly ? "detached" : "dropped");
+    }
+
+    /**
+     * create the partitions ahead and drop(or detach) the expired partitions immediately, using the current transaction of conn.
+     *
+     * @param conn            the database connection
+     * @param schemaName      the schema name
+     * @param tableName       the table name
+     * @param partitionOption the partition option
+     * @throws SQLException if a database error occurs
+     */
+    public static void runMaintenance(Connection conn, String schemaName, String tableName, PGTimePartitionOption partitionOption) throws SQLException {
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(buildMaintenanceSQL(schemaName, tableName, partitionOption));
+        }
+    }
+
+    /**
+     * schedule(or re-schedule) the maintenance job of a time-partitioned table, using partitionOption.cronExpression
+     *
+     * @param conn            the database connection
+     * @param schemaName      the schema name
+     * @param tableName       the table name
+     * @param partitionOption the partition option
+     * @return jobId of the scheduled job. return -1 if job is not created.
+     * @throws SQLException if a database error occurs
+     */
+    public static long scheduleJob(Connection conn, String schemaName, String tableName, PGTimePartitionOption partitionOption) throws SQLException {
+
+        Checker.checkNotNull(partitionOption, "partitionOption");
+        Checker.check(CronUtil.isValidPgCronExpression(partitionOption.cronExpression),
+                "cronExpression is not valid. %s, %s.%s".formatted(partitionOption.cronExpression, schemaName, tableName));
+
+        var sql = buildMaintenanceSQL(schemaName, tableName, partitionOption);
+        var jobId = PGCronUtil.scheduleCustomJob(conn, getJobName(schemaName, tableName), partitionOption.cronExpression, sql);
+
+        if (log.isInfoEnabled()) {
+            log.info("schedule partition job for '{}.{}' successfully. cronExpression: {}", schemaName, tableName, partitionOption.cronExpression);
+        }
+        return jobId;
+    }
+
+    /**
+     * un-schedule the maintenance job of a time-partitioned table
+     *
+     * @param conn       the database connection
+     * @param schemaName the schema name
+     * @param tableName  the table name
+     * @return true if the job is un-scheduled, false if the job is not found
+     * @throws SQLException if a database error occurs
+     */
+    public static boolean unScheduleJob(Connection conn, String schemaName, String tableName) throws SQLException {
+        return PGCronUtil.unScheduleJob(conn, getJobName(schemaName, tableName));
+    }
+
+    /**
+     * get the jobName of the maintenance job for schemaName and tableName
+     *
+     * @param schemaName the schema name
+     * @param tableName  the table name
+     * @return the jobName
+     */
+    public static String getJobName(String schemaName, String tableName) {
+        Checker.checkNotBlank(schemaName, "schemaName");
+        Checker.checkNotBlank(tableName, "tableName");
+
+        schemaName = TableUtil.removeQuotes(TableUtil.checkAndNormalizeValidEntityName(schemaName));
+        tableName = TableUtil.removeQuotes(TableUtil.checkAndNormalizeValidEntityName(tableName));
+
+        return String.format("%s_partition_job_%s", schemaName, tableName);
+    }
+
+    /**
+     * check whether the table is a partitioned(parent) table
+     *
+     * @param conn       the database connection
+     * @param schemaName the schema name
+     * @param tableName  the table name
+     * @return true if the table is partitioned
+     * @throws SQLException if a database error occurs
+     */
+    public static boolean isPartitionedTable(Connection conn, String schemaName, String tableName) throws SQLException {
+
+        schemaName = TableUtil.removeQuotes(TableUtil.checkAndNormalizeValidEntityName(schemaName));
+        tableName = TableUtil.removeQuotes(TableUtil.checkAndNormalizeValidEntityName(tableName));
+
+        try (var stmt = conn.prepareStatement("""
+                SELECT 1 FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = ? AND c.relname = ? AND c.relkind = 'p'
+                """)) {
+            stmt.setString(1, schemaName);
+            stmt.setString(2, tableName);
+            try (var rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -1,7 +1,16 @@
 package io.github.thunderz99.cosmos.impl.postgres.util;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
+import io.github.thunderz99.cosmos.impl.postgres.PostgresRecord;
+import io.github.thunderz99.cosmos.util.JsonUtil;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import static io.github.thunderz99.cosmos.impl.postgres.util.PGKeyUtil.*;
@@ -122,4 +131,296 @@ public class PGSortUtil {
 
     }
 
+    /**
+     * A part of the sort key used in the seek predicate of keyset pagination. e.g. "data->>'name' > @keyset000"
+     */
+    static class SeekKey {
+
+        /**
+         * expression to compare, which is the same as the expression used in ORDER BY. e.g. "data->>'name'"
+         */
+        String expression;
+
+        /**
+         * template of the param part. e.g. "%s" or "(%s)::jsonb"
+         */
+        String paramTemplate;
+
+        /**
+         * value of the param
+         */
+        Object value;
+
+        SeekKey(String expression, String paramTemplate, Object value) {
+            this.expression = expression;
+            this.paramTemplate = paramTemplate;
+            this.value = value;
+        }
+    }
+
+    /**
+     * generate the expressions and values for the seek predicate of keyset pagination.
+     * The expressions should be consistent with getFormattedKey4Sort, in order to seek the same order as ORDER BY.
+     *
+     * @param key key in dot format address.city.street::text / content.age.value::numeric
+     * @param value value of the key in the last document of the previous page
+     * @param collate "C" or "en_US" or null/"". default to "en_US"
+     * @return list of seek keys(a jsonb key sorted with collate "C" will be expanded to 3 seek keys)
+     */
+    static List<SeekKey> getSeekKeys(String key, Object value, String collate) {
+
+        if(StringUtils.isEmpty(collate)){
+            collate = COLLATE_EN_US;
+        }
+
+        var collateStr = COLLATE_C.equals(collate) ? " COLLATE \"C\"" : "";
+
+        if(preservedSorts.contains(key)){
+            return List.of(new SeekKey(getFormattedKeyWithAlias(key, TableUtil.DATA, ""), "%s", toSeekText(value)));
+        }
+
+        if("id".equals(key)){
+            return List.of(new SeekKey("id" + collateStr, "%s", toSeekText(value)));
+        }
+
+        if(PGKeyUtil.textKeys.contains(key)){
+            return List.of(new SeekKey(getFormattedKeyWithAlias(key, TableUtil.DATA, "") + collateStr, "%s", toSeekText(value)));
+        }
+
+        var parts = key.split("::");
+
+        if(parts.length == 2 && sortTypes.contains(parts[1])) {
+            var type = parts[1];
+            return "text".equals(type) ?
+                    List.of(new SeekKey(getFormattedKey(parts[0]) + collateStr, "%s", toSeekText(value)))
+                    : List.of(new SeekKey("(%s)::%s".formatted(getFormattedKey(parts[0]), type), "(%s)::" + type, toSeekText(value)));
+        }
+
+        var jsonKey = getFormattedKey4JsonWithAlias(key, TableUtil.DATA);
+        var jsonValue = JsonUtil.toJsonNoIndent(value);
+
+        if(COLLATE_C.equals(collate)) {
+            // the same order as the complicatedSortKey in getFormattedKey4Sort
+            var typeRank = """
+                    CASE jsonb_typeof(%s) WHEN 'null' THEN 0 WHEN 'boolean' THEN 1 WHEN 'number' THEN 2 WHEN 'string' THEN 3 WHEN 'array' THEN 4 WHEN 'object' THEN 5 ELSE 6 END"""
+                    .formatted(jsonKey);
+            var textKey = "COALESCE(CASE WHEN jsonb_typeof(%s) = 'string' THEN %s END, '') COLLATE \"C\"".formatted(jsonKey, getFormattedKey(key));
+
+            return List.of(
+                    new SeekKey(typeRank, "%s", getJsonTypeRank(value)),
+                    new SeekKey(textKey, "%s", value instanceof String ? value : ""),
+                    new SeekKey(jsonKey, "(%s)::jsonb", jsonValue));
+        }
+
+        return List.of(new SeekKey(jsonKey, "(%s)::jsonb", jsonValue));
+    }
+
+    /**
+     * value of a key which does not exist in the document(SQL NULL in postgres, different from a json null)
+     */
+    static final Object MISSING = new Object();
+
+    /**
+     * Get a comparator of records in the same order as ORDER BY generated by getFormattedKey4Sort with collate "C", in order to merge the sorted results of tables.
+     *
+     * <p>
+     * Each key is compared by the value of the same expression as ORDER BY:
+     * "id" by the id column, "_ts" / textKeys / "key::text" by the text of "->>", "key::int" / "key::float8" / "key::numeric" by the number cast from the text of "->>",
+     * and other keys by the jsonb type rank(null &lt; booleans &lt; numbers &lt; strings &lt; arrays &lt; objects) and then the value.
+     * Strings are compared in the code point order, which is the byte order of collate "C".
+     * An SQL NULL(a missing key) is the greatest value(ASC NULLS LAST / DESC NULLS FIRST).
+     * Arrays and objects are not compared with each other, and left to the following sort keys.
+     * </p>
+     *
+     * @param sort sort keys and orders. e.g. ["name", "ASC", "age::int", "DESC"]
+     * @return comparator, or null if sort is empty
+     */
+    public static Comparator<PostgresRecord> getComparator4Merge(List<String> sort) {
+
+        if (CollectionUtils.isEmpty(sort)) {
+            return null;
+        }
+
+        Comparator<PostgresRecord> ret = null;
+        for (int i = 0; i + 1 < sort.size(); i += 2) {
+            var keyComparator = getKeyComparator4Merge(sort.get(i));
+            if ("DESC".equalsIgnoreCase(sort.get(i + 1))) {
+                keyComparator = keyComparator.reversed();
+            }
+            ret = ret == null ? keyComparator : ret.thenComparing(keyComparator);
+        }
+        return ret;
+    }
+
+    /**
+     * Get an ASC comparator of a sort key, consistent with getFormattedKey4Sort
+     *
+     * @param key key in dot format address.city.street::text / content.age.value::numeric
+     * @return comparator of the key
+     */
+    static Comparator<PostgresRecord> getKeyComparator4Merge(String key) {
+
+        if ("id".equals(key)) {
+            // the id column
+            return nullsGreatest(r -> r.id, PGSortUtil::compareCollateC);
+        }
+
+        if (preservedSorts.contains(key) || PGKeyUtil.textKeys.contains(key)) {
+            // data->>'key'
+            return nullsGreatest(r -> toSortText(r.data, key), PGSortUtil::compareCollateC);
+        }
+
+        var parts = key.split("::");
+
+        if (parts.length == 2 && sortTypes.contains(parts[1])) {
+            var path = parts[0];
+            return "text".equals(parts[1]) ?
+                    nullsGreatest(r -> toSortText(r.data, path), PGSortUtil::compareCollateC)
+                    : nullsGreatest(r -> toSortNumber(r.data, path), Comparator.<BigDecimal>naturalOrder());
+        }
+
+        // jsonb sorted by type rank, text with collate "C" and jsonb
+        return (a, b) -> compareJsonb(getJsonValue(a.data, key), getJsonValue(b.data, key));
+    }
+
+    static <U> Comparator<PostgresRecord> nullsGreatest(Function<PostgresRecord, U> extractor, Comparator<? super U> comparator) {
+        return Comparator.comparing(extractor, Comparator.nullsLast(comparator));
+    }
+
+    /**
+     * compare strings in the byte order of utf-8, which is the same as collate "C"
+     *
+     * @param a string
+     * @param b string
+     * @return result of comparison
+     */
+    static int compareCollateC(String a, String b) {
+        var i = 0;
+        while (i < a.length() && i < b.length()) {
+            var ca = a.codePointAt(i);
+            var cb = b.codePointAt(i);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    /**
+     * compare json values in the same order as the jsonb sort key with collate "C" in getFormattedKey4Sort
+     *
+     * @param a json value or MISSING
+     * @param b json value or MISSING
+     * @return result of comparison
+     */
+    static int compareJsonb(Object a, Object b) {
+        var rankA = a == MISSING ? 6 : getJsonTypeRank(a);
+        var rankB = b == MISSING ? 6 : getJsonTypeRank(b);
+        if (rankA != rankB) {
+            return Integer.compare(rankA, rankB);
+        }
+        if (a instanceof String sa && b instanceof String sb) {
+            return compareCollateC(sa, sb);
+        }
+        if (a instanceof Number na && b instanceof Number nb) {
+            return new BigDecimal(na.toString()).compareTo(new BigDecimal(nb.toString()));
+        }
+        if (a instanceof Boolean ba && b instanceof Boolean bb) {
+            return Boolean.compare(ba, bb);
+        }
+        return 0;
+    }
+
+    /**
+     * get the value of a key in dot format from the data column
+     *
+     * @param data data column
+     * @param key  key in dot format. e.g. address.city
+     * @return json value, or MISSING if the key does not exist
+     */
+    static Object getJsonValue(Map<String, Object> data, String key) {
+        Object current = data;
+        for (var part : key.split("\\.")) {
+            if (!(current instanceof Map<?, ?> map) || !map.containsKey(part)) {
+                return MISSING;
+            }
+            current = map.get(part);
+        }
+        return current;
+    }
+
+    /**
+     * the text of data->>'key'. null for a json null or a missing key
+     */
+    static String toSortText(Map<String, Object> data, String key) {
+        var value = getJsonValue(data, key);
+        return value == MISSING ? null : toSeekText(value);
+    }
+
+    /**
+     * the number of (data->>'key')::numeric. null for a json null, a missing key, or a text which cannot be cast(the query fails in postgres)
+     */
+    static BigDecimal toSortNumber(Map<String, Object> data, String key) {
+        var text = toSortText(data, key);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * convert a value to the text format of postgres's "->>" operator. e.g. 1.714546148123E9 -> "1714546148.123"
+     *
+     * @param value value in the document
+     * @return text format
+     */
+    static String toSeekText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String str) {
+            return str;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString()).toPlainString();
+        }
+        if (value instanceof Boolean) {
+            return value.toString();
+        }
+        return JsonUtil.toJsonNoIndent(value);
+    }
+
+    /**
+     * get the rank of jsonb type, the same as the complicatedSortKey in getFormattedKey4Sort
+     *
+     * @param value value in the document
+     * @return rank of type
+     */
+    static int getJsonTypeRank(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof Number) {
+            return 2;
+        }
+        if (value instanceof String) {
+            return 3;
+        }
+        if (value instanceof Collection<?>) {
+            return 4;
+        }
+        if (value instanceof Map<?, ?>) {
+            return 5;
+        }
+        return 6;
+    }
+
 }
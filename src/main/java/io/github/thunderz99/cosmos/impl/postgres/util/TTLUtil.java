@@ -1,16 +1,23 @@
 package io.github.thunderz99.cosmos.impl.postgres.util;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
+import io.github.thunderz99.cosmos.impl.postgres.dto.IndexOption;
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGFieldType;
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGIndexField;
 import io.github.thunderz99.cosmos.impl.postgres.dto.PGJob;
+import io.github.thunderz99.cosmos.impl.postgres.dto.TTLOption;
 import io.github.thunderz99.cosmos.util.Checker;
 import io.github.thunderz99.cosmos.util.CronUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Utility class for ttl feature using pg_cron plugin. provides schedule / un-schedule cron jobs that delete expired records
+ * Utility class for ttl feature using pg_cron plugin. provides schedule / un-schedule cron jobs that delete expired records in batches
  */
 public class TTLUtil {
     private static final Logger log = LoggerFactory.getLogger(TTLUtil.class);
@@ -30,65 +37,32 @@ public class TTLUtil {
      *
      */
     public static long scheduleJob(Connection conn, String schemaName, String tableName, int intervalInMinutes) throws SQLException {
+        return scheduleJob(conn, schemaName, tableName, intervalInMinutes, new TTLOption());
+    }
 
-        Checker.check(intervalInMinutes > 0, "intervalInMinutes must > 0. %s.%s".formatted(schemaName, tableName));
-
-        schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
-        tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
-
-        if(!TableUtil.schemaExists(conn, schemaName)){
-            // SQLState 42P01 is for "relation not exist" in postgres
-            throw new SQLException(String.format("schema %s does not exist / relation does not exist", schemaName), "42P01", 404);
-        }
-
-        if(!TableUtil.tableExist(conn, schemaName, tableName)){
-            // we allow the job to be scheduled even if the table does not exist,
-            // because there is chance that the table will be created later.
-            // or the table is created immediately before the job is scheduled, but tableExist returns false
-            log.warn("table {}.{} does not exist. but the job is still scheduled.", schemaName, tableName);
-        }
-
-        /**
-         * -- sample SQL
-         * SELECT cron.schedule(
-         *     'localhost_ttl_job_sessioninfoes',  -- Job name
-         *     '*\/1 * * * * ',          -- Run every 1 minutes
-         *     $$
-         *     DELETE FROM sessioninfoes -- table name
-         *     WHERE(data -> > '/_expireAt')::timestamp < now(); -- finding expired records
-         *     $$
-         *  );
-         */
-
-        var jobName = getJobName(schemaName, tableName);
-
-        var deleteSQL = String.format("""
-                DELETE FROM %s.%s
-                WHERE (data->>'_expireAt')::bigint < extract(epoch from now())::bigint;
-                """, schemaName, tableName, TableUtil.DATA);
+    /**
+     * schedule a job to delete expired records in batches
+     *
+     * @param conn              the database connection
+     * @param schemaName        the schema name
+     * @param tableName         the table name
+     * @param intervalInMinutes interval in minutes
+     * @param ttlOption         batch size / pause / max batches per run of the job
+     * @return jobId of the scheduled job. return -1 if job is not created.
+     * @throws IllegalArgumentException if intervalInMinutes is less than or equal to 0
+     * @throws SQLException if the table does not exist
+     * @throws SQLException if a database error occurs
+     *
+     */
+    public static long scheduleJob(Connection conn, String schemaName, String tableName, int intervalInMinutes, TTLOption ttlOption) throws SQLException {
 
-        var scheduleSQL = String.format("""
-                SELECT cron.schedule(
-                    '%s',
-                    '*/%d * * * * ',
-                     $$
-                     %s
-                     $$
-                );
-                """, jobName, intervalInMinutes, deleteSQL);
+        Checker.check(intervalInMinutes > 0, "intervalInMinutes must > 0. %s.%s".formatted(schemaName, tableName));
 
-        // the stmt will return the job id
-        try (var stmt = conn.prepareStatement(scheduleSQL)) {
-            try (var rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    if (log.isInfoEnabled()) {
-                        log.info("scheduleJob for '{}.{}' successfully. intervalInMinutes: {}", schemaName, tableName, intervalInMinutes);
-                    }
-                    return rs.getLong(1);
-                }
-            }
+        var jobId = scheduleJob0(conn, schemaName, tableName, "*/%d * * * * ".formatted(intervalInMinutes), ttlOption);
+        if (jobId > 0 && log.isInfoEnabled()) {
+            log.info("scheduleJob for '{}.{}' successfully. intervalInMinutes: {}", schemaName, tableName, intervalInMinutes);
         }
-        return -1L;
+        return jobId;
     }
 
     /**
@@ -105,9 +79,39 @@ public class TTLUtil {
      *
      */
     public static long scheduleJob(Connection conn, String schemaName, String tableName, String cronExpression) throws SQLException {
+        return scheduleJob(conn, schemaName, tableName, cronExpression, new TTLOption());
+    }
+
+    /**
+     * schedule a job to delete expired records in batches(using cronExpression, timezone is UTC)
+     *
+     * @param conn              the database connection
+     * @param schemaName        the schema name
+     * @param tableName         the table name
+     * @param cronExpression    the cron expression e.g. "*\/1 * * * *"
+     * @param ttlOption         batch size / pause / max batches per run of the job
+     * @return jobId of the scheduled job. return -1 if job is not created.
+     * @throws IllegalArgumentException if cronExpression is not valid
+     * @throws SQLException if the table does not exist
+     * @throws SQLException if a database error occurs
+     *
+     */
+    public static long scheduleJob(Connection conn, String schemaName, String tableName, String cronExpression, TTLOption ttlOption) throws SQLException {
 
         Checker.check(CronUtil.isValidPgCronExpression(cronExpression), "cronExpression is not valid. %s, %s.%s".formatted(cronExpression, schemaName, tableName));
 
+        var jobId = scheduleJob0(conn, schemaName, tableName, cronExpression + " ", ttlOption);
+        if (jobId > 0 && log.isInfoEnabled()) {
+            log.info("scheduleJob for '{}.{}' successfully. cronExpression: {}", schemaName, tableName, cronExpression);
+        }
+        return jobId;
+    }
+
+    /**
+     * schedule(or re-schedule, if the job name already exists) the ttl job for the table
+     */
+    static long scheduleJob0(Connection conn, String schemaName, String tableName, String schedule, TTLOption ttlOption) throws SQLException {
+
         schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
         tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
 
@@ -120,7 +124,7 @@ public class TTLUtil {
             // we allow the job to be scheduled even if the table does not exist,
             // because there is chance that the table will be created later.
             // or the table is created immediately before the job is scheduled, but tableExist returns false
-            log.warn("table {}.{} does not exist. but the job is still scheduled, using cronExpression: {}.", schemaName, tableName, cronExpression);
+            log.warn("table {}.{} does not exist. but the job is still scheduled, using schedule: {}.", schemaName, tableName, schedule);
         }
 
         /**
@@ -129,36 +133,29 @@ public class TTLUtil {
          *     'localhost_ttl_job_sessioninfoes',  -- Job name
          *     '*\/1 * * * * ',          -- Run every 1 minutes
          *     $$
-         *     DELETE FROM sessioninfoes -- table name
-         *     WHERE(data -> > '/_expireAt')::timestamp < now(); -- finding expired records
+         *     DO $ttl$ ... $ttl$;     -- delete expired records in batches. see buildDeleteSQL
          *     $$
          *  );
          */
 
         var jobName = getJobName(schemaName, tableName);
 
-        var deleteSQL = String.format("""
-                DELETE FROM %s.%s
-                WHERE (data->>'_expireAt')::bigint < extract(epoch from now())::bigint;
-                """, schemaName, tableName, TableUtil.DATA);
+        var deleteSQL = buildDeleteSQL(schemaName, tableName, ttlOption);
 
         var scheduleSQL = String.format("""
                 SELECT cron.schedule(
                     '%s',
-                    '%s ',
+                    '%s',
                      $$
                      %s
                      $$
                 );
-                """, jobName, cronExpression, deleteSQL);
+                """, jobName, schedule, deleteSQL);
 
         // the stmt will return the job id
         try (var stmt = conn.prepareStatement(scheduleSQL)) {
             try (var rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    if (log.isInfoEnabled()) {
-                        log.info("scheduleJob for '{}.{}' successfully. cronExpression: {}", schemaName, tableName, cronExpression);
-                    }
                     return rs.getLong(1);
                 }
             }
@@ -166,6 +163,111 @@ public class TTLUtil {
         return -1L;
     }
 
+    /**
+     * build the command of the ttl job, which deletes expired records in bounded batches.
+     *
+     * <p>
+     * Each batch deletes at most batchSize rows(located by ctid, using the btree index on _expireAt) and is committed
+     * in its own transaction, so that locks are short-lived and WAL is written evenly. The job sleeps pauseMillis between batches,
+     * and stops after maxBatchesPerRun batches. The remaining expired records are deleted in the next run.
+     * Totals of each run are written to the server log(RAISE LOG).
+     * The outer DELETE checks _expireAt again, because ctid is only unique in a partition in a time-partitioned table.
+     * </p>
+     *
+     * <p>
+     * Note: the command must be a single DO statement, because COMMIT is only allowed in a DO block executed outside of a transaction block.
+     * </p>
+     *
+     * @param schemaName the schema name(normalized)
+     * @param tableName  the table name(normalized)
+     * @param ttlOption  batch size / pause / max batches per run
+     * @return the DO statement
+     */
+    static String buildDeleteSQL(String schemaName, String tableName, TTLOption ttlOption) {
+
+        Checker.checkNotNull(ttlOption, "ttlOption");
+        Checker.check(ttlOption.batchSize > 0, "batchSize must > 0. %s.%s".formatted(schemaName, tableName));
+        Checker.check(ttlOption.pauseMillis >= 0, "pauseMillis must >= 0. %s.%s".formatted(schemaName, tableName));
+        Checker.check(ttlOption.maxBatchesPerRun > 0, "maxBatchesPerRun must > 0. %s.%s".formatted(schemaName, tableName));
+
+        var pause = ttlOption.pauseMillis > 0
+                ? "PERFORM pg_sleep(%s);".formatted(BigDecimal.valueOf(ttlOption.pauseMillis, 3).toPlainString())
+                : "";
+
+        return """
+                DO $ttl$
+                DECLARE
+                    now_epoch bigint := extract(epoch from now())::bigint;
+                    deleted int;
+                    total bigint := 0;
+                    batches int := 0;
+                BEGIN
+                    LOOP
+                        DELETE FROM %1$s.%2$s
+                        WHERE ctid = ANY(ARRAY(
+                            SELECT ctid FROM %1$s.%2$s
+                            WHERE (data->>'_expireAt')::bigint < now_epoch
+                            LIMIT %3$d
+                            FOR UPDATE SKIP LOCKED))
+                        AND (data->>'_expireAt')::bigint < now_epoch;
+                        GET DIAGNOSTICS deleted = ROW_COUNT;
+                        total := total + deleted;
+                        batches := batches + 1;
+                        COMMIT;
+                        EXIT WHEN deleted < %3$d OR batches >= %4$d;
+                        %5$s
+                    END LOOP;
+                    RAISE LOG 'ttl job %1$s.%2$s: deleted %% rows in %% batches', total, batches;
+                END
+                $ttl$;
+                """.formatted(schemaName, tableName, ttlOption.batchSize, ttlOption.maxBatchesPerRun, pause);
+    }
+
+    /**
+     * check whether the ttl job exists and its command is the same as the one built from ttlOption.
+     *
+     * <p>
+     * Returns false for jobs scheduled by older versions(a single unbounded DELETE), so that they can be re-scheduled as batched jobs.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the schema name
+     * @param tableName  the table name
+     * @param ttlOption  batch size / pause / max batches per run
+     * @return true if the job exists and is up to date
+     * @throws SQLException if a database error occurs
+     */
+    public static boolean jobUpToDate(Connection conn, String schemaName, String tableName, TTLOption ttlOption) throws SQLException {
+
+        var job = findJobByName(conn, schemaName, tableName);
+        if (job == null) {
+            return false;
+        }
+
+        var expected = buildDeleteSQL(TableUtil.checkAndNormalizeValidEntityName(schemaName), TableUtil.checkAndNormalizeValidEntityName(tableName), ttlOption);
+        return StringUtils.equals(StringUtils.trim(job.command), expected.trim());
+    }
+
+    /**
+     * create the btree expression index on "_expireAt"(bigint) used by the ttl job, if the table exists.
+     *
+     * @param conn       the database connection
+     * @param schemaName the schema name
+     * @param tableName  the table name
+     * @return schema.indexName if created, or "" if index already exists / table does not exist
+     * @throws SQLException if a database error occurs
+     */
+    public static String createExpireAtIndexIfNotExist(Connection conn, String schemaName, String tableName) throws SQLException {
+
+        if (!TableUtil.tableExist(conn, schemaName, tableName)) {
+            log.warn("table {}.{} does not exist. skip creating index on {}.", schemaName, tableName, PostgresDatabaseImpl.EXPIRE_AT);
+            return "";
+        }
+
+        return TableUtil.createIndexIfNotExist4SingleField(conn, schemaName, tableName,
+                PGIndexField.of(PostgresDatabaseImpl.EXPIRE_AT, PGFieldType.BIGINT), new IndexOption());
+    }
+
 
     /**
      * un-schedule the job to delete expired records
@@ -248,32 +350,18 @@ public class TTLUtil {
     }
 
     /**
-     * get the job command text for schemaName and tableName
+     * find the ttl job for schemaName and tableName, including the run metrics of the job
      * @param conn
      * @param schemaName
      * @param tableName
-     * @return
+     * @return job or null if not found
+     * @see PGCronUtil#findJobByName(Connection, String)
      */
     public static PGJob findJobByName(Connection conn, String schemaName, String tableName) throws SQLException {
 
         schemaName = TableUtil.checkAndNormalizeValidEntityName(schemaName);
         tableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
 
-        var jobName = getJobName(schemaName, tableName);
-
-        var ret = new PGJob();
-        try (var stmt = conn.prepareStatement("SELECT jobid, jobname, schedule, command FROM cron.job WHERE jobname = ?")) {
-            stmt.setString(1, jobName);
-            try (var rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    ret.id = rs.getString("jobid");
-                    ret.jobName = rs.getString("jobname");
-                    ret.schedule = rs.getString("schedule");
-                    ret.command = rs.getString("command");
-                    return ret;
-                }
-            }
-        }
-        return null;
+        return PGCronUtil.findJobByName(conn, getJobName(schemaName, tableName));
     }
 }
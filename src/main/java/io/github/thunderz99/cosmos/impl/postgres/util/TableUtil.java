@@ -1,8 +1,11 @@
 package io.github.thunderz99.cosmos.impl.postgres.util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Maps;
 import io.github.thunderz99.cosmos.CosmosDocument;
 import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
 import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
@@ -12,17 +15,24 @@ import io.github.thunderz99.cosmos.impl.postgres.PostgresRecord;
 import io.github.thunderz99.cosmos.impl.postgres.dto.PGIndexField;
 import io.github.thunderz99.cosmos.impl.postgres.dto.PGFieldType;
 import io.github.thunderz99.cosmos.impl.postgres.dto.IndexOption;
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGTimePartitionOption;
+import io.github.thunderz99.cosmos.metrics.OperationContext;
 import io.github.thunderz99.cosmos.util.*;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Types;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -56,6 +66,41 @@ public class TableUtil {
      */
     public static final Set<String> SUPPORTED_INDEX_FIELD_TYPE = Set.of("bigint", "integer", "numeric", "float8", "timestamp", "text", "boolean");
 
+    /**
+     * default number of rows fetched per round trip when reading records through a server-side cursor
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * session-local staging table used by COPY-based bulk operations
+     */
+    static final String COPY_STAGING_TABLE = "java_cosmos_copy_stage";
+
+    /**
+     * helper function(installed per schema) doing a nested jsonb merge, used by updatePartial with serverSideMerge
+     */
+    static final String JSONB_MERGE_FUNCTION = "java_cosmos_jsonb_merge";
+
+    /**
+     * channel of the NOTIFY sent by the change notify trigger. payload: {"coll": schema, "partition": table, "id": id, "etag": etag}
+     */
+    public static final String CHANGE_NOTIFY_CHANNEL = "java_cosmos_changes";
+
+    /**
+     * trigger function(installed per schema) and trigger name sending a NOTIFY for each changed record
+     */
+    static final String CHANGE_NOTIFY_FUNCTION = "java_cosmos_notify_change";
+
+    /**
+     * SQLState of undefined_function
+     */
+    static final String UNDEFINED_FUNCTION = "42883";
+
+    /**
+     * named param in a patch expression. e.g. @param000_name
+     */
+    static final Pattern PATCH_PARAM_PATTERN = Pattern.compile("(@[a-zA-Z_][a-zA-Z0-9_]*)");
+
     /**
      * Checks if a table exists in the specified schema.
      *
@@ -74,11 +119,43 @@ public class TableUtil {
         var tableNameWithoutQuotes = removeQuotes(tableName);
 
         var metaData = conn.getMetaData();
-        try (var tables = metaData.getTables(null, schemaNameWithoutQuotes, tableNameWithoutQuotes, new String[]{"TABLE"})) {
+        try (var tables = metaData.getTables(null, schemaNameWithoutQuotes, tableNameWithoutQuotes, new String[]{"TABLE", "PARTITIONED TABLE"})) {
             return tables.next(); // If there's a result, the table exists
         }
     }
 
+    /**
+     * List the tables(partitions) in the specified schema.
+     *
+     * <p>
+     * Child partitions of a time-partitioned table are not listed, only the parent is.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the schema name
+     * @return table names(without quotes)
+     * @throws SQLException if a database error occurs
+     */
+    public static List<String> listTables(Connection conn, String schemaName) throws SQLException {
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+
+        var ret = new ArrayList<String>();
+        try (var stmt = conn.prepareStatement("""
+                SELECT c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+                WHERE n.nspname = ? AND c.relkind IN ('r', 'p') AND NOT c.relispartition
+                ORDER BY c.relname
+                """)) {
+            stmt.setString(1, removeQuotes(schemaName));
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ret.add(rs.getString(1));
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * Creates a table with the specified name and schema if it does not already exist.
      *
@@ -87,6 +164,48 @@ public class TableUtil {
      * @throws SQLException if a database error occurs
      */
     public static String createTableIfNotExists(Connection conn, String schemaName, String tableName) throws SQLException {
+        return createTableIfNotExists(conn, schemaName, tableName, false);
+    }
+
+    /**
+     * Creates a table with the specified name and schema if it does not already exist.
+     *
+     * <p>
+     * When jsonbPathOps is true, the GIN index on data is created with the jsonb_path_ops operator class.
+     * It is smaller and faster for containment(data @&gt; '{"status":"A"}') and jsonpath(@?, @@) queries,
+     * but does not support the key-exists operators(?, ?|, ?&amp;).
+     * </p>
+     *
+     * @param conn         the database connection
+     * @param tableName    the name of the table to create
+     * @param jsonbPathOps whether to create the GIN index on data using jsonb_path_ops
+     * @throws SQLException if a database error occurs
+     */
+    public static String createTableIfNotExists(Connection conn, String schemaName, String tableName, boolean jsonbPathOps) throws SQLException {
+        return createTableIfNotExists(conn, schemaName, tableName, jsonbPathOps, null);
+    }
+
+    /**
+     * Creates a table with the specified name and schema if it does not already exist.
+     *
+     * <p>
+     * When partitionOption is not null, the table is created as a range-partitioned parent on the time field(see {@link PGPartitionUtil#getPartitionKeyExpression(String)}),
+     * with a default partition, and the current partition and partitions ahead are created immediately.
+     * Because postgres does not allow a unique index without the partition key, the id column is indexed but not unique in this case.
+     * Use {@link PGPartitionUtil#scheduleJob(Connection, String, String, PGTimePartitionOption)} to maintain the partitions periodically.
+     * </p>
+     *
+     * @param conn            the database connection
+     * @param tableName       the name of the table to create
+     * @param jsonbPathOps    whether to create the GIN index on data using jsonb_path_ops
+     * @param partitionOption time partition option. null for a normal table
+     * @throws SQLException if a database error occurs
+     */
+    public static String createTableIfNotExists(Connection conn, String schemaName, String tableName, boolean jsonbPathOps, PGTimePartitionOption partitionOption) throws SQLException {
+
+        if (partitionOption != null) {
+            PGPartitionUtil.checkPartitionOption(tableName, partitionOption);
+        }
 
         if (tableExist(conn, schemaName, tableName)) {
             // already exists
@@ -148,12 +267,19 @@ public class TableUtil {
             }
 
             // create table
-            var createTableSQL = String.format("""
+            var createTableSQL = partitionOption == null
+                    ? String.format("""
                         CREATE TABLE IF NOT EXISTS %s.%s (
                             %s TEXT NOT NULL PRIMARY KEY,
                             %s JSONB NOT NULL
                         )
-                    """, schemaName, tableName, ID, DATA);
+                    """, schemaName, tableName, ID, DATA)
+                    : String.format("""
+                        CREATE TABLE IF NOT EXISTS %s.%s (
+                            %s TEXT NOT NULL,
+                            %s JSONB NOT NULL
+                        ) PARTITION BY RANGE ((%s))
+                    """, schemaName, tableName, ID, DATA, PGPartitionUtil.getPartitionKeyExpression(partitionOption.timeField));
 
             stmt.execute(createTableSQL);
 
@@ -161,9 +287,19 @@ public class TableUtil {
                 log.info("Table '{}.{}' created successfully.", schemaName, tableName);
             }
 
+            if (partitionOption != null) {
+                // id is not unique in a partitioned table. index it for point reads
+                stmt.execute("CREATE INDEX IF NOT EXISTS %s ON %s.%s (%s);".formatted(getIndexName(tableName, ID), schemaName, tableName, ID));
+                // rows outside the created partitions(e.g. without the time field) go to the default partition
+                stmt.execute("CREATE TABLE IF NOT EXISTS %s.%s PARTITION OF %s.%s DEFAULT;".formatted(
+                        schemaName, checkAndNormalizeValidEntityName(removeQuotes(tableName) + "_default"), schemaName, tableName));
+                PGPartitionUtil.runMaintenance(conn, schemaName, tableName, partitionOption);
+            }
+
             // create data index for json data search performance
             var indexName = getIndexName(tableName, DATA);
-            var createIndexSQL = String.format("CREATE INDEX IF NOT EXISTS %s ON %s.%s USING GIN (%s);", indexName, schemaName, tableName, DATA);
+            var createIndexSQL = String.format("CREATE INDEX IF NOT EXISTS %s ON %s.%s USING GIN (%s%s);", indexName, schemaName, tableName, DATA,
+                    jsonbPathOps ? " jsonb_path_ops" : "");
 
             stmt.execute(createIndexSQL);
             if (log.isInfoEnabled()) {
@@ -302,11 +438,7 @@ public class TableUtil {
         tableName = checkAndNormalizeValidEntityName(tableName);
 
         var id = record.id;
-        var map = new HashMap<>(record.data);
-
-        // add ID fields to map, for the compatibility with CosmosDB/MongoDB
-        map.put(ID, id);
-        var json = JsonUtil.toJson(map);
+        var json = toRecordJson(record);
 
         // insert into table and return the result
         var insertSQL = String.format("""
@@ -393,6 +525,51 @@ public class TableUtil {
         }
     }
 
+    /**
+     * Read a record from a table by id, only if its "_etag" does not match etag. The data column is not transferred when the etag matches.
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param id         the id of the record
+     * @param etag       the etag already held
+     * @return the record if modified. a record whose data is null if not modified. null if not found
+     * @throws SQLException if a database error occurs
+     */
+    public static PostgresRecord readRecordIfNoneMatch(Connection conn, String schemaName, String tableName, String id, String etag) throws Exception {
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+        tableName = checkAndNormalizeValidEntityName(tableName);
+
+        Checker.checkNotEmpty(id, "id");
+        Checker.checkNotEmpty(etag, "etag");
+
+        var querySQL = String.format("""
+                SELECT %s, CASE WHEN %s->>'%s' = ? THEN NULL ELSE %s END AS %s FROM %s.%s WHERE %s = ?
+                """, ID, DATA, ETAG, DATA, DATA, schemaName, tableName, ID);
+
+        try (var pstmt = conn.prepareStatement(querySQL)) {
+            pstmt.setString(1, etag);
+            pstmt.setString(2, id);
+            try (var resultSet = pstmt.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                var data = resultSet.getString(DATA);
+                if (data == null) {
+                    // not modified
+                    var ret = new PostgresRecord();
+                    ret.id = resultSet.getString(ID);
+                    return ret;
+                }
+                return new PostgresRecord(resultSet.getString(ID), JsonUtil.toMap(data));
+            }
+        } catch (SQLException e) {
+            log.warn("Error when reading record from table '{}.{}'. id:{}, etag:{}.", schemaName, tableName, id, etag, e);
+            throw e;
+        }
+    }
+
     /**
      * Update a record in a table.
      *
@@ -410,11 +587,7 @@ public class TableUtil {
         tableName = checkAndNormalizeValidEntityName(tableName);
 
         var id = record.id;
-        var map = new HashMap<>(record.data);
-
-        // add ID fields to map, for the compatibility with CosmosDB/MongoDB
-        map.put(ID, id);
-        var data = JsonUtil.toJson(map);
+        var data = toRecordJson(record);
 
         // update table
         var updateSQL = String.format("""
@@ -472,6 +645,19 @@ public class TableUtil {
         schemaName = checkAndNormalizeValidEntityName(schemaName);
         tableName = checkAndNormalizeValidEntityName(tableName);
 
+        if (option.serverSideMerge) {
+            try {
+                return _updatePartialRecordByServerSideMerge(conn, schemaName, tableName, record, option, etag);
+            } catch (SQLException e) {
+                if (!UNDEFINED_FUNCTION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                // the helper function is not installed yet in this schema. install it and retry once
+                createJsonbMergeFunctionIfNotExists(conn, schemaName);
+                return _updatePartialRecordByServerSideMerge(conn, schemaName, tableName, record, option, etag);
+            }
+        }
+
         try {
 
             conn.setAutoCommit(false);
@@ -489,7 +675,8 @@ public class TableUtil {
             // like Object.assign(m1, m2) in javascript, but support nested merge.
             var merged = MapUtil.merge(existRecord.data, newMap);
 
-            var data = JsonUtil.toJson(merged);
+            var data = JsonUtil.toJsonNoIndent(merged);
+            OperationContext.recordBytesSerialized(data);
 
             String updateSQL;
             if(option.checkETag && StringUtils.isNotEmpty(etag)) {
@@ -547,6 +734,229 @@ public class TableUtil {
     }
 
 
+    /**
+     * Partially update a record by a nested jsonb merge in postgres, using one UPDATE statement without SELECT FOR UPDATE.
+     *
+     * <p>
+     * The merge has the same semantics as MapUtil.merge: nested objects are merged, other values are replaced, and fields set to null are removed.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema(normalized)
+     * @param tableName  the name of the table(normalized)
+     * @param record     partial data to update
+     * @param option     partial update option
+     * @param etag       etag for optimistic concurrency check
+     * @return the updated record
+     * @throws Exception if a database error occurs
+     */
+    static PostgresRecord _updatePartialRecordByServerSideMerge(Connection conn, String schemaName, String tableName, PostgresRecord record, PartialUpdateOption option, String etag) throws Exception {
+
+        var id = record.id;
+        // keep null values in the partial data, so that the fields are removed by jsonb_strip_nulls, the same as MapUtil.merge + JsonUtil
+        var data = NULL_INCLUDED_MAPPER.writeValueAsString(new RecordDataView(id, record.data));
+
+        var checkETag = option.checkETag && StringUtils.isNotEmpty(etag);
+
+        var updateSQL = String.format("""
+                UPDATE %s.%s
+                SET %s = jsonb_strip_nulls(%s.%s(%s, ?::jsonb))
+                WHERE %s = ?%s
+                RETURNING *
+                """, schemaName, tableName, DATA, schemaName, JSONB_MERGE_FUNCTION, DATA, ID,
+                checkETag ? " AND %s ->> '%s' = ?".formatted(DATA, ETAG) : "");
+
+        try (var pstmt = conn.prepareStatement(updateSQL)) {
+            pstmt.setString(1, data);
+            pstmt.setString(2, id);
+            if (checkETag) {
+                pstmt.setString(3, etag);
+            }
+
+            try (var resultSet = pstmt.executeQuery()) {
+                if (resultSet.next()) {
+                    return new PostgresRecord(resultSet.getString(ID), JsonUtil.toMap(resultSet.getString(DATA)));
+                }
+            }
+        }
+
+        // no row updated. distinguish not found and etag not match(only in the failure path)
+        if (readRecord(conn, schemaName, tableName, id) == null) {
+            throw new CosmosException(404, "404", "record 404 Not Found when updating partial record in table '%s.%s'. id:%s.".formatted(schemaName, tableName, id));
+        }
+        if (option.checkETag) {
+            throw new CosmosException(412, "412 Precondition Failed", "failed to updatePartial because etag not match. table:'%s.%s', id:%s, etag:%s".formatted(schemaName, tableName, id, etag));
+        }
+        throw new IllegalStateException("resultSet is empty(Not Found) when updating partial record in table '%s.%s'. id:%s.".formatted(schemaName, tableName, id));
+    }
+
+    /**
+     * mapper used to serialize partial data for server-side merge, which keeps null values
+     */
+    static final ObjectMapper NULL_INCLUDED_MAPPER = JsonUtil.getObjectMapper().setSerializationInclusion(JsonInclude.Include.ALWAYS);
+
+    /**
+     * Install the helper function doing a nested jsonb merge in the schema if not exists. Used by updatePartial with serverSideMerge.
+     *
+     * <p>
+     * {@code java_cosmos_jsonb_merge('{"a":{"b":1,"c":2}}', '{"a":{"c":3}}') -> {"a":{"b":1,"c":3}}}
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @throws SQLException if a database error occurs
+     */
+    public static void createJsonbMergeFunctionIfNotExists(Connection conn, String schemaName) throws SQLException {
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+
+        if (jsonbMergeFunctionExists(conn, schemaName)) {
+            return;
+        }
+
+        var functionName = "%s.%s".formatted(schemaName, JSONB_MERGE_FUNCTION);
+
+        var createFunctionSQL = """
+                CREATE OR REPLACE FUNCTION %s(target jsonb, patch jsonb)
+                RETURNS jsonb
+                LANGUAGE plpgsql IMMUTABLE
+                AS $$
+                BEGIN
+                    IF jsonb_typeof(target) IS DISTINCT FROM 'object' OR jsonb_typeof(patch) IS DISTINCT FROM 'object' THEN
+                        RETURN patch;
+                    END IF;
+                    RETURN target || COALESCE((
+                        SELECT jsonb_object_agg(p.key,
+                            CASE WHEN jsonb_typeof(target -> p.key) = 'object' AND jsonb_typeof(p.value) = 'object'
+                                 THEN %s(target -> p.key, p.value)
+                                 ELSE p.value END)
+                        FROM jsonb_each(patch) p), '{}'::jsonb);
+                END;
+                $$
+                """.formatted(functionName, functionName);
+
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(createFunctionSQL);
+            if (log.isInfoEnabled()) {
+                log.info("Function '{}' created successfully.", functionName);
+            }
+        } catch (SQLException e) {
+            // may be created concurrently by another session
+            if (jsonbMergeFunctionExists(conn, schemaName)) {
+                log.warn("Function '{}' already created by another session. msg:{}", functionName, e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the helper function doing a nested jsonb merge exists in the schema
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema(normalized)
+     * @return true if exists
+     * @throws SQLException if a database error occurs
+     */
+    static boolean jsonbMergeFunctionExists(Connection conn, String schemaName) throws SQLException {
+        try (var pstmt = conn.prepareStatement("SELECT to_regprocedure(?) IS NOT NULL")) {
+            pstmt.setString(1, "%s.%s(jsonb,jsonb)".formatted(schemaName, JSONB_MERGE_FUNCTION));
+            try (var rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Install a trigger sending a NOTIFY on CHANGE_NOTIFY_CHANNEL for each inserted / updated / deleted record of the table, if not exists.
+     * Used by the cross-node cache invalidation(see PGChangeNotifySubscriber).
+     *
+     * <p>
+     * The NOTIFY is sent when the transaction commits, and identical notifications in a transaction are sent only once.
+     * The partition in the payload is the table name passed as the trigger argument, so that it is the same for the child tables of a time-partitioned table.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @throws SQLException if a database error occurs
+     */
+    public static void createChangeNotifyTriggerIfNotExists(Connection conn, String schemaName, String tableName) throws SQLException {
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+        tableName = checkAndNormalizeValidEntityName(tableName);
+
+        if (changeNotifyTriggerExists(conn, schemaName, tableName)) {
+            return;
+        }
+
+        var functionName = "%s.%s".formatted(schemaName, CHANGE_NOTIFY_FUNCTION);
+
+        var createFunctionSQL = """
+                CREATE OR REPLACE FUNCTION %s()
+                RETURNS trigger
+                LANGUAGE plpgsql
+                AS $$
+                DECLARE
+                    rec RECORD;
+                BEGIN
+                    IF TG_OP = 'DELETE' THEN
+                        rec := OLD;
+                    ELSE
+                        rec := NEW;
+                    END IF;
+                    -- TG_TABLE_NAME for the triggers of an older version(without the argument) not yet replaced
+                    PERFORM pg_notify('%s', json_build_object('coll', TG_TABLE_SCHEMA, 'partition', COALESCE(TG_ARGV[0], TG_TABLE_NAME), 'id', rec.id,
+                        'etag', CASE WHEN TG_OP = 'DELETE' THEN NULL ELSE rec.data->>'%s' END)::text);
+                    RETURN NULL;
+                END;
+                $$
+                """.formatted(functionName, CHANGE_NOTIFY_CHANNEL, ETAG);
+
+        // the partition name is passed as an argument, because TG_TABLE_NAME is the child table for a time-partitioned table.
+        // a trigger installed by an older version without the argument is replaced
+        var dropTriggerSQL = "DROP TRIGGER IF EXISTS %s ON %s.%s".formatted(CHANGE_NOTIFY_FUNCTION, schemaName, tableName);
+        var createTriggerSQL = """
+                CREATE TRIGGER %s AFTER INSERT OR UPDATE OR DELETE ON %s.%s
+                FOR EACH ROW EXECUTE FUNCTION %s('%s')
+                """.formatted(CHANGE_NOTIFY_FUNCTION, schemaName, tableName, functionName, removeQuotes(tableName).replace("'", "''"));
+
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(createFunctionSQL);
+            stmt.execute(dropTriggerSQL);
+            stmt.execute(createTriggerSQL);
+            if (log.isInfoEnabled()) {
+                log.info("Change notify trigger on '{}.{}' created successfully.", schemaName, tableName);
+            }
+        } catch (SQLException e) {
+            // may be created concurrently by another session
+            if (changeNotifyTriggerExists(conn, schemaName, tableName)) {
+                log.warn("Change notify trigger on '{}.{}' already created by another session. msg:{}", schemaName, tableName, e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the change notify trigger(with the partition name argument) exists on the table
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema(normalized)
+     * @param tableName  the name of the table(normalized)
+     * @return true if exists
+     * @throws SQLException if a database error occurs
+     */
+    static boolean changeNotifyTriggerExists(Connection conn, String schemaName, String tableName) throws SQLException {
+        try (var pstmt = conn.prepareStatement("SELECT EXISTS(SELECT 1 FROM pg_trigger WHERE tgname = ? AND tgrelid = to_regclass(?) AND tgnargs = 1)")) {
+            pstmt.setString(1, CHANGE_NOTIFY_FUNCTION);
+            pstmt.setString(2, "%s.%s".formatted(schemaName, tableName));
+            try (var rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
     /**
      * Upsert. Insert a record into a table if not exist, otherwise update the record.
      *
@@ -561,11 +971,7 @@ public class TableUtil {
         checkValidRecord(record);
 
         var id = record.id;
-        var map = new HashMap<>(record.data);
-
-        // add ID fields to map, for the compatibility with CosmosDB/MongoDB
-        map.put(ID, id);
-        var data = JsonUtil.toJson(map);
+        var data = toRecordJson(record);
 
         schemaName = checkAndNormalizeValidEntityName(schemaName);
         tableName = checkAndNormalizeValidEntityName(tableName);
@@ -640,11 +1046,7 @@ public class TableUtil {
 
             var index = 1;
             for (var param : params) {
-                if (param.value instanceof String strValue) {
-                    pstmt.setString(index, "\"" + strValue + "\"");
-                } else {
-                    pstmt.setString(index, JsonUtil.toJson(param.value));
-                }
+                pstmt.setString(index, toPatchParamValue(param.value));
                 index++;
             }
 
@@ -944,11 +1346,7 @@ public class TableUtil {
             try (var pstmt = conn.prepareStatement(patchTableSQL)) {
                 var index = 1;
                 for (var param : params) {
-                    if (param.value instanceof String strValue) {
-                        pstmt.setString(index, "\"" + strValue + "\"");
-                    } else {
-                        pstmt.setString(index, JsonUtil.toJson(param.value));
-                    }
+                    pstmt.setString(index, toPatchParamValue(param.value));
                     index++;
                 }
                 var sqlArray = conn.createArrayOf("text", chunkIds.toArray());
@@ -1030,11 +1428,7 @@ public class TableUtil {
             for (var record : records) {
 
                 var id = record.id;
-                var map = new HashMap<>(record.data);
-
-                // add ID fields to map, for the compatibility with CosmosDB/MongoDB
-                map.put(ID, id);
-                var json = JsonUtil.toJson(map);
+                var json = toRecordJson(record);
 
 
                 pstmt.setString(1, id);
@@ -1069,71 +1463,363 @@ public class TableUtil {
 
 
     /**
-     * Inner method: Bulk delete records (Transaction is NOT done in this method).
+     * Patch a bulk of records, each with its own patch operations(Transaction is NOT managed in this method).
      *
      * <p>
-     * This method will NOT call commit automatically. You must manage transaction your self. see also batchDeleteRecords
+     * Operations generating the same patch expression(same op types and paths, with different values) are grouped,
+     * and each group is executed by a single "UPDATE ... FROM unnest(?::text[], ...) AS u(id, p1, ...)" statement per chunk,
+     * where the values of each record are passed as arrays and referenced as u.p1, u.p2... in the patch expression.
+     * Multiple operations against the same id are applied in the input order.
+     * </p>
+     *
+     * <p>
+     * This method will NOT begin/commit a transaction. You can manage transaction by yourself.
      * </p>
      *
      * @param conn       the database connection
      * @param schemaName the name of the schema
      * @param tableName  the name of the table
-     * @param ids        the list of ids to delete
-     * @param throwException if true, throw exception if a database error occurs(used in batch). if false, record the results in ret and return it instead of throw an exception(used in bulk)
-     * @return an array of integers representing the number of rows affected for each record
+     * @param data       patch operations for each id
+     * @return CosmosBulkResult. successList and fatalList are in the input order
      * @throws Exception if a database error occurs
      */
-    public static CosmosBulkResult _deleteRecords(Connection conn, String schemaName, String tableName, List<String> ids, boolean throwException) throws Exception {
+    public static CosmosBulkResult bulkPatchRecords(Connection conn, String schemaName, String tableName, List<BulkPatchOperation> data) throws Exception {
+        return bulkPatchRecords(conn, schemaName, tableName, data, CosmosLimits.BULK_CHUNK_SIZE);
+    }
 
-        Checker.checkNotNull(ids, "ids");
+    /**
+     * Patch a bulk of records, each with its own patch operations(Transaction is NOT managed in this method).
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param data       patch operations for each id
+     * @param chunkSize  chunk size for bulk processing
+     * @return CosmosBulkResult
+     * @throws Exception if a database error occurs
+     */
+    static CosmosBulkResult bulkPatchRecords(Connection conn, String schemaName, String tableName, List<BulkPatchOperation> data, int chunkSize) throws Exception {
+        Checker.checkNotNull(data, "data");
+        Checker.check(chunkSize > 0, "chunkSize should be positive");
 
         var ret = new CosmosBulkResult();
-        if (ids.isEmpty()) {
-            // do nothing if records is empty.
+        if (data.isEmpty()) {
             return ret;
         }
 
         schemaName = checkAndNormalizeValidEntityName(schemaName);
         tableName = checkAndNormalizeValidEntityName(tableName);
 
+        // outcome(CosmosDocument or CosmosException) of each input, in order to return the results in the input order
+        var outcomes = new Object[data.size()];
+
+        // round: the n-th operation against the same id goes to round n, so that operations against the same id are applied in order.
+        // in each round, operations are grouped by the patch expression
+        var rounds = new ArrayList<LinkedHashMap<String, List<Integer>>>();
+        var specs = new CosmosSqlQuerySpec[data.size()];
+        var occurrences = new HashMap<String, Integer>();
+
+        for (int i = 0; i < data.size(); i++) {
+            var operation = data.get(i);
+            Checker.checkNotNull(operation, "operation");
+            Checker.checkNotEmpty(operation.id, "id");
+            Checker.checkNotNull(operation.operations, "operations");
+
+            if (CollectionUtils.isEmpty(operation.operations.getPatchOperations())) {
+                log.warn("operations is empty. do nothing in table '{}.{}'. id:{}.", schemaName, tableName, operation.id);
+                outcomes[i] = getCosmosDocument(new PostgresRecord(operation.id, new HashMap<>()));
+                continue;
+            }
 
-        var deleteSQL = String.format("DELETE FROM %s.%s WHERE id = ?", schemaName, tableName);
-
-        try (var pstmt = conn.prepareStatement(deleteSQL)) {
+            specs[i] = JsonPatchUtil.toPostgresPatchData(operation.operations);
 
-            int count = 0;
-            int chunkSize = CosmosLimits.BULK_CHUNK_SIZE;
-            for (var id : ids) {
+            var round = occurrences.merge(operation.id, 1, Integer::sum) - 1;
+            if (rounds.size() <= round) {
+                rounds.add(new LinkedHashMap<>());
+            }
+            rounds.get(round).computeIfAbsent(specs[i].queryText, k -> new ArrayList<>()).add(i);
+        }
 
-                pstmt.setString(1, id);
-                pstmt.addBatch();
+        for (var round : rounds) {
+            for (var entry : round.entrySet()) {
+                var indexes = entry.getValue();
+                for (int from = 0; from < indexes.size(); from += chunkSize) {
+                    var chunk = indexes.subList(from, Math.min(from + chunkSize, indexes.size()));
+                    executePatchGroup(conn, schemaName, tableName, data, specs, entry.getKey(), chunk, outcomes);
+                }
+            }
+        }
 
-                count++;
+        for (var outcome : outcomes) {
+            if (outcome instanceof CosmosDocument doc) {
+                ret.successList.add(doc);
+            } else {
+                ret.fatalList.add((CosmosException) outcome);
+            }
+        }
+        return ret;
+    }
 
-                // execute the batch in chunks, in order to reduce memory consumption
-                if (count % chunkSize == 0) {
-                    var expOccurred = executeDeletionAndRecordResult(schemaName, tableName, ids, throwException, pstmt, chunkSize, count, ret);
+    /**
+     * execute a chunk of patch operations sharing the same patch expression by a single UPDATE statement, and record the outcomes.
+     *
+     * <p>
+     * If the statement fails(e.g. an increment on a non-numeric field of one record), nothing in the chunk is applied,
+     * so the chunk is retried id by id by patchRecord, in order that only the offending ids fail.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the normalized schema name
+     * @param tableName  the normalized table name
+     * @param data       all the patch operations
+     * @param specs      patch expression and params of each operation
+     * @param subSql     the shared patch expression with named params
+     * @param chunk      indexes of the operations in this chunk
+     * @param outcomes   outcome of each operation, to be filled
+     */
+    static void executePatchGroup(Connection conn, String schemaName, String tableName, List<BulkPatchOperation> data,
+                                  CosmosSqlQuerySpec[] specs, String subSql, List<Integer> chunk, Object[] outcomes) {
+
+        // replace the named params with columns of the unnest-ed arrays
+        // e.g. jsonb_set(data, '{name}', @param000_name::jsonb) -> jsonb_set(data, '{name}', u.p1::jsonb)
+        var paramNames = new ArrayList<String>();
+        var matcher = PATCH_PARAM_PATTERN.matcher(subSql);
+        var sb = new StringBuilder();
+        while (matcher.find()) {
+            var paramName = matcher.group(1);
+            if (!paramNames.contains(paramName)) {
+                paramNames.add(paramName);
+            }
+            matcher.appendReplacement(sb, "u.p" + (paramNames.indexOf(paramName) + 1));
+        }
+        matcher.appendTail(sb);
 
-                    if (expOccurred) {
+        var columns = new StringBuilder("id");
+        var arrays = new StringBuilder("?::text[]");
+        for (int p = 1; p <= paramNames.size(); p++) {
+            columns.append(", p").append(p);
+            arrays.append(", ?::text[]");
+        }
 
-                        // if exception occurred, do not execute the remained chunks. instead add all the remained records to fatalList.
-                        // Then return and fail fast
-                        for (var i = count; i < ids.size(); i++) {
-                            var docId = ids.get(i);
-                            ret.fatalList.add(new CosmosException(500, docId, "Skipped because database error occurred when batch deleting records into table '%s.%s'. id:%s, index:%d.".formatted(schemaName, tableName, docId, i)));
-                        }
-                        return ret;
+        var patchTableSQL = String.format("""
+                UPDATE %s.%s AS t
+                SET %s = %s
+                FROM unnest(%s) AS u(%s)
+                WHERE t.%s = u.id
+                RETURNING t.%s, t.%s
+                """, schemaName, tableName, DATA, sb, arrays, columns, ID, ID, DATA);
 
-                    }
+        var ids = chunk.stream().map(i -> data.get(i).id).toArray(String[]::new);
+
+        Savepoint savepoint = null;
+        try (var pstmt = conn.prepareStatement(patchTableSQL)) {
+            savepoint = setSavepointIfInTransaction(conn);
+            pstmt.setArray(1, conn.createArrayOf("text", ids));
+            for (int p = 0; p < paramNames.size(); p++) {
+                var values = new String[chunk.size()];
+                var paramName = paramNames.get(p);
+                for (int c = 0; c < chunk.size(); c++) {
+                    var param = specs[chunk.get(c)].params.stream().filter(sp -> paramName.equals(sp.name)).findFirst()
+                            .orElseThrow(() -> new IllegalArgumentException("Parameter '" + paramName + "' not found in the patch params"));
+                    values[c] = toPatchParamValue(param.value);
                 }
+                pstmt.setArray(p + 2, conn.createArrayOf("text", values));
             }
 
-            // Execute any remaining records in the batch
-            executeDeletionAndRecordResult(schemaName, tableName, ids, throwException, pstmt, chunkSize, count, ret);
+            var updatedMap = new HashMap<String, PostgresRecord>();
+            try (var resultSet = pstmt.executeQuery()) {
+                while (resultSet.next()) {
+                    var record = new PostgresRecord(resultSet.getString(ID), JsonUtil.toMap(resultSet.getString(DATA)));
+                    updatedMap.put(record.id, record);
+                }
+            }
+            releaseSavepoint(conn, savepoint);
+
+            for (var i : chunk) {
+                var id = data.get(i).id;
+                var updated = updatedMap.get(id);
+                outcomes[i] = updated != null
+                        ? getCosmosDocument(updated)
+                        : new CosmosException(404, "404", "resultSet is 404 Not Found when patch record into table '%s.%s'. id:%s.".formatted(schemaName, tableName, id));
+            }
+        } catch (SQLException e) {
+            log.warn("Error when bulk patch records in table '{}.{}'. size:{}. Retry id by id.", schemaName, tableName, chunk.size(), e);
+            if (!rollbackToSavepoint(conn, savepoint)) {
+                for (var i : chunk) {
+                    var id = data.get(i).id;
+                    outcomes[i] = new CosmosException(500, id, "Failed to bulkPatch. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, id, i), e);
+                }
+                return;
+            }
+            for (var i : chunk) {
+                outcomes[i] = patchRecordForBulk(conn, schemaName, tableName, data.get(i).id, data.get(i).operations, i);
+            }
+        }
+    }
+
+    /**
+     * patch a record in bulkPatch, returning the outcome(CosmosDocument or CosmosException) instead of throwing
+     *
+     * @param conn       the database connection
+     * @param schemaName the normalized schema name
+     * @param tableName  the normalized table name
+     * @param id         id of the record
+     * @param operations patch operations
+     * @param index      index of the operation in the input, used in the error message
+     * @return CosmosDocument if succeeded, or CosmosException
+     */
+    static Object patchRecordForBulk(Connection conn, String schemaName, String tableName, String id, PatchOperations operations, int index) {
+        Savepoint savepoint = null;
+        try {
+            savepoint = setSavepointIfInTransaction(conn);
+            var ret = getCosmosDocument(patchRecord(conn, schemaName, tableName, id, operations));
+            releaseSavepoint(conn, savepoint);
+            return ret;
+        } catch (CosmosException e) {
+            rollbackToSavepoint(conn, savepoint);
+            return e;
+        } catch (Exception e) {
+            rollbackToSavepoint(conn, savepoint);
+            return new CosmosException(500, id, "Failed to bulkPatch. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, id, index), e);
+        }
+    }
+
+    /**
+     * set a savepoint if the connection is in a transaction(autoCommit is false), so that a failed statement does not abort the transaction
+     *
+     * @param conn the database connection
+     * @return savepoint, or null if autoCommit
+     * @throws SQLException if a database error occurs
+     */
+    static Savepoint setSavepointIfInTransaction(Connection conn) throws SQLException {
+        return conn.getAutoCommit() ? null : conn.setSavepoint();
+    }
+
+    /**
+     * release a savepoint set by setSavepointIfInTransaction
+     *
+     * @param conn      the database connection
+     * @param savepoint savepoint. do nothing if null
+     * @throws SQLException if a database error occurs
+     */
+    static void releaseSavepoint(Connection conn, Savepoint savepoint) throws SQLException {
+        if (savepoint != null) {
+            conn.releaseSavepoint(savepoint);
+        }
+    }
+
+    /**
+     * rollback to a savepoint set by setSavepointIfInTransaction, after a failed statement
+     *
+     * @param conn      the database connection
+     * @param savepoint savepoint. null if autoCommit
+     * @return true if the connection can be used for the following statements
+     */
+    static boolean rollbackToSavepoint(Connection conn, Savepoint savepoint) {
+        try {
+            if (savepoint != null) {
+                conn.rollback(savepoint);
+                return true;
+            }
+            return conn.getAutoCommit();
+        } catch (SQLException e) {
+            log.warn("Failed to rollback to savepoint.", e);
+            return false;
+        }
+    }
+
+    /**
+     * convert a patch param value to the json text bound to the patch expression
+     *
+     * @param value param value
+     * @return json text
+     */
+    static String toPatchParamValue(Object value) {
+        if (value instanceof String strValue) {
+            return "\"" + strValue + "\"";
+        }
+        return JsonUtil.toJsonNoIndent(value);
+    }
+
+    /**
+     * Inner method: Bulk delete records (Transaction is NOT done in this method).
+     *
+     * <p>
+     * This method will NOT call commit automatically. You must manage transaction your self. see also batchDeleteRecords
+     * </p>
+     *
+     * <p>
+     * Each chunk of ids is deleted by a single "DELETE ... WHERE id = ANY(?) RETURNING id" statement.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param ids        the list of ids to delete
+     * @param throwException if true, throw exception if a database error occurs(used in batch). if false, record the results in ret and return it instead of throw an exception(used in bulk)
+     * @return an array of integers representing the number of rows affected for each record
+     * @throws Exception if a database error occurs
+     */
+    public static CosmosBulkResult _deleteRecords(Connection conn, String schemaName, String tableName, List<String> ids, boolean throwException) throws Exception {
 
+        Checker.checkNotNull(ids, "ids");
+
+        var ret = new CosmosBulkResult();
+        if (ids.isEmpty()) {
+            // do nothing if records is empty.
             return ret;
+        }
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+        tableName = checkAndNormalizeValidEntityName(tableName);
+
 
+        // set-based deletion: one statement per chunk instead of one statement per id
+        var deleteSQL = String.format("DELETE FROM %s.%s WHERE %s = ANY(?) RETURNING %s", schemaName, tableName, ID, ID);
+
+        int chunkSize = CosmosLimits.BULK_CHUNK_SIZE;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            var to = Math.min(from + chunkSize, ids.size());
+            var chunkIds = ids.subList(from, to);
+
+            try (var pstmt = conn.prepareStatement(deleteSQL)) {
+                pstmt.setArray(1, conn.createArrayOf("text", chunkIds.toArray()));
+
+                var deletedIds = new HashSet<String>();
+                try (var resultSet = pstmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        deletedIds.add(resultSet.getString(1));
+                    }
+                }
+
+                // deletion is idempotent, so ids not found are also treated as success(the same as deleteRecord)
+                for (var id : chunkIds) {
+                    ret.successList.add(new CosmosDocument(Map.of(ID, id)));
+                }
+                if (log.isDebugEnabled() && deletedIds.size() < chunkIds.size()) {
+                    log.debug("{} of {} ids are not found when deleting records from table '{}.{}'. from:{}, to:{}",
+                            chunkIds.size() - deletedIds.size(), chunkIds.size(), schemaName, tableName, from, to);
+                }
+            } catch (SQLException e) {
+                // if throwException is true, throw the exception
+                if (throwException) {
+                    throw e;
+                }
+                log.warn("Failed to execute deletion. {}.{}, from:{}, to:{}", schemaName, tableName, from, to, e);
+                for (int i = from; i < to; i++) {
+                    var docId = ids.get(i);
+                    ret.fatalList.add(new CosmosException(500, docId, "Failed to executeDeletion. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, docId, i), e));
+                }
+                // do not execute the remained chunks. instead add all the remained records to fatalList. Then return and fail fast
+                for (int i = to; i < ids.size(); i++) {
+                    var docId = ids.get(i);
+                    ret.fatalList.add(new CosmosException(500, docId, "Skipped because database error occurred when batch deleting records into table '%s.%s'. id:%s, index:%d.".formatted(schemaName, tableName, docId, i)));
+                }
+                return ret;
+            }
         }
+
+        return ret;
     }
 
 
@@ -1182,7 +1868,7 @@ public class TableUtil {
                 checkValidRecord(record);
 
                 pstmt.setString(1, record.id);
-                pstmt.setObject(2, JsonUtil.toJson(record.data), Types.OTHER);
+                pstmt.setObject(2, toRecordJson(record), Types.OTHER);
                 pstmt.addBatch();
 
                 count++;
@@ -1212,81 +1898,264 @@ public class TableUtil {
     }
 
     /**
-     * execute the batch in chunks, and record the results in cosmosBulkResult
+     * Serialize a record to a compact json string(without indent) to be written to the data column.
      *
-     * @param schemaName       the name of the schema
-     * @param tableName        the name of the table
-     * @param records          the list of records to insert/upsert
-     * @param throwException   if true, throw exception if a database error occurs(used in batch). if false, record the results in ret and return it instead of throw an exception(used in bulk)
-     * @param pstmt            the prepared statement
-     * @param chunkSize        the size of each chunk
-     * @param count            the current count of record
-     * @param cosmosBulkResult the result of bulk operations
-     * @return true/false whether SQLException occurred.
-     * @throws SQLException if a database error occurs
+     * <p>
+     * ID field is added for the compatibility with CosmosDB/MongoDB. record.data is not copied, a read-only view overlaying the ID field is serialized instead.
+     * </p>
+     *
+     * @param record the record to write
+     * @return compact json string
      */
-    static boolean executeAndRecordResult(String schemaName, String tableName, List<PostgresRecord> records, boolean throwException, PreparedStatement pstmt, int chunkSize, int count, CosmosBulkResult cosmosBulkResult) throws SQLException {
+    static String toRecordJson(PostgresRecord record) {
+        var json = JsonUtil.toJsonNoIndent(new RecordDataView(record.id, record.data));
+        OperationContext.recordBytesSerialized(json);
+        return json;
+    }
 
-        var processedCount = cosmosBulkResult.successList.size() + cosmosBulkResult.fatalList.size() + cosmosBulkResult.retryList.size();
-        if(processedCount >= records.size()) {
-            // if processedCount is over record's size, no need to execute anymore
-            return false;
+    /**
+     * A read-only map view of record.data with ID field overlaid, in order to avoid copying the map on every write.
+     */
+    static class RecordDataView extends AbstractMap<String, Object> {
+
+        final String id;
+        final Map<String, Object> data;
+
+        RecordDataView(String id, Map<String, Object> data) {
+            this.id = id;
+            this.data = data == null ? Map.of() : data;
         }
-        // from index and to index for this chunk
-        int from, to;
-        if (count % chunkSize == 0) {
-            // if this is a chunk that fit the chunkSize
-            from = count - chunkSize;
-            to = count;
-        } else {
-            // if this is a batch that not fit the chunkSize
-            from = count - (count % chunkSize);
-            to = count;
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    var entries = data.entrySet().stream().filter(e -> !ID.equals(e.getKey())).iterator();
+                    return new Iterator<>() {
+                        boolean idReturned = false;
+
+                        @Override
+                        public boolean hasNext() {
+                            return !idReturned || entries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!idReturned) {
+                                idReturned = true;
+                                return new SimpleImmutableEntry<>(ID, id);
+                            }
+                            return entries.next();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return data.containsKey(ID) ? data.size() : data.size() + 1;
+                }
+            };
         }
+    }
 
-        // size of this chunk
-        var size = to - from;
+    /**
+     * Bulk insert records into a table using COPY(without transaction).
+     *
+     * <p>
+     * Records are streamed by COPY into a session-local staging table, and then inserted into the target table by one
+     * {@code INSERT ... SELECT ... ON CONFLICT DO NOTHING RETURNING id}. Records whose id already exists are added to fatalList with 409.
+     * This is much faster than bulkInsertRecords when the records size is large.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param records    the list of records to insert
+     * @return CosmosBulkResult instance including successList and fatalList
+     * @throws Exception if a database error occurs
+     */
+    public static CosmosBulkResult copyInsertRecords(Connection conn, String schemaName, String tableName, List<PostgresRecord> records) throws Exception {
+        return _copyRecords(conn, schemaName, tableName, records, false, false);
+    }
+
+    /**
+     * Bulk upsert records into a table using COPY(without transaction).
+     *
+     * <p>
+     * Records are streamed by COPY into a session-local staging table, and then upserted into the target table by one
+     * {@code INSERT ... SELECT ... ON CONFLICT DO UPDATE}. When the same id appears more than once, the last one wins.
+     * This is much faster than bulkUpsertRecords when the records size is large.
+     * </p>
+     *
+     * @param conn       the database connection
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param records    the list of records to upsert
+     * @return CosmosBulkResult instance including successList and fatalList
+     * @throws Exception if a database error occurs
+     */
+    public static CosmosBulkResult copyUpsertRecords(Connection conn, String schemaName, String tableName, List<PostgresRecord> records) throws Exception {
+        return _copyRecords(conn, schemaName, tableName, records, true, false);
+    }
+
+    /**
+     * Inner method: insert / upsert a bulk of records using COPY and a staging table(Transaction is NOT managed in this method).
+     *
+     * @param conn           the database connection
+     * @param schemaName     the name of the schema
+     * @param tableName      the name of the table
+     * @param records        the list of records to insert / upsert
+     * @param upsert         true: upsert, false: insert
+     * @param throwException if true, throw exception if a database error occurs. if false, record the results in ret and return it instead of throw an exception(used in bulk)
+     * @return CosmosBulkResult instance including successList and fatalList
+     * @throws Exception if a database error occurs
+     */
+    static CosmosBulkResult _copyRecords(Connection conn, String schemaName, String tableName, List<PostgresRecord> records, boolean upsert, boolean throwException) throws Exception {
+
+        Checker.checkNotNull(records, "records");
+
+        var ret = new CosmosBulkResult();
+        if (records.isEmpty()) {
+            // do nothing if records is empty.
+            return ret;
+        }
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+        tableName = checkAndNormalizeValidEntityName(tableName);
+
+        for (var record : records) {
+            checkValidRecord(record);
+        }
+
+        // the staging table is a temp table, which is unlogged and only visible in this session
+        var prepareSQL = """
+                CREATE TEMP TABLE IF NOT EXISTS %s (seq bigserial, %s text, %s jsonb);
+                TRUNCATE %s;
+                """.formatted(COPY_STAGING_TABLE, ID, DATA, COPY_STAGING_TABLE);
+
+        // when the same id appears more than once, the last one wins for upsert
+        var mergeSQL = upsert ? """
+                INSERT INTO %s.%s (%s, %s)
+                SELECT DISTINCT ON (%s) %s, %s FROM %s ORDER BY %s, seq DESC
+                ON CONFLICT (%s) DO UPDATE SET %s = excluded.%s
+                RETURNING %s
+                """.formatted(schemaName, tableName, ID, DATA, ID, ID, DATA, COPY_STAGING_TABLE, ID, ID, DATA, DATA, ID)
+                : """
+                INSERT INTO %s.%s (%s, %s)
+                SELECT %s, %s FROM %s ORDER BY seq
+                ON CONFLICT (%s) DO NOTHING
+                RETURNING %s
+                """.formatted(schemaName, tableName, ID, DATA, ID, DATA, COPY_STAGING_TABLE, ID, ID);
+
+        var succeededIds = new HashSet<String>();
 
         try {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute(prepareSQL);
+            }
 
-            var part = pstmt.executeBatch();
+            copyToStagingTable(conn, records);
 
-            // record this chunk execution's result to cosmosBulkResult
-            for (var i = 0; i < size; i++) {
-                var docIndex = from + i;
-                if (part[i] > 0) {
-                    cosmosBulkResult.successList.add(getCosmosDocument(records.get(docIndex)));
-                } else {
-                    var docId = records.get(docIndex).id;
-                    cosmosBulkResult.fatalList.add(new CosmosException(500, docId, "Failed to executeBulk. %s.%s, id:%s".formatted(schemaName, tableName, docId)));
+            try (var stmt = conn.createStatement(); var resultSet = stmt.executeQuery(mergeSQL)) {
+                while (resultSet.next()) {
+                    succeededIds.add(resultSet.getString(1));
                 }
             }
-            // no SQLException occurred
-            return false;
+
+            try (var stmt = conn.createStatement()) {
+                // release the staging data as soon as possible
+                stmt.execute("TRUNCATE " + COPY_STAGING_TABLE);
+            }
+
         } catch (SQLException e) {
-            // if throwException is true, throw the exception
             if (throwException) {
                 throw e;
+            }
+            log.warn("Failed to execute copy. {}.{}, records size:{}", schemaName, tableName, records.size(), e);
+            for (var i = 0; i < records.size(); i++) {
+                var docId = records.get(i).id;
+                ret.fatalList.add(new CosmosException(500, docId, "Failed to executeCopy. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, docId, i), e));
+            }
+            return ret;
+        }
+
+        // record the results for each record, in the order of input
+        for (var record : records) {
+            if (upsert ? succeededIds.contains(record.id) : succeededIds.remove(record.id)) {
+                ret.successList.add(getCosmosDocument(record));
+            } else if (upsert) {
+                ret.fatalList.add(new CosmosException(500, record.id, "Failed to executeCopy. %s.%s, id:%s".formatted(schemaName, tableName, record.id)));
             } else {
-                log.warn("Failed to executeBatch. {}.{}, from:{}, to:{}", schemaName, tableName, from, to, e);
-                // record this batch execution's result to cosmosBulkResult
-                for (var i = 0; i < size; i++) {
-                    var docIndex = from + i;
-                    var docId = records.get(docIndex).id;
-                    cosmosBulkResult.fatalList.add(new CosmosException(500, docId, "Failed to executeBulk. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, docId, docIndex), e));
+                // insert: the id already exists(or appears more than once in records)
+                ret.fatalList.add(new CosmosException(409, record.id, "Conflict when executeCopy. id already exists. %s.%s, id:%s".formatted(schemaName, tableName, record.id)));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * stream records into the staging table using COPY FROM STDIN(csv format)
+     *
+     * @param conn    the database connection
+     * @param records the list of records
+     * @throws SQLException if a database error occurs
+     */
+    static void copyToStagingTable(Connection conn, List<PostgresRecord> records) throws SQLException {
+
+        var copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+        var copyIn = copyManager.copyIn("COPY %s (%s, %s) FROM STDIN (FORMAT csv)".formatted(COPY_STAGING_TABLE, ID, DATA));
+
+        try {
+            var buffer = new StringBuilder();
+            for (var record : records) {
+                buffer.append(toCsvField(record.id)).append(',').append(toCsvField(toRecordJson(record))).append('\n');
+
+                // flush in chunks, in order to reduce memory consumption
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
                 }
             }
-            // SQLException occurred
-            return true;
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
         }
     }
 
+    /**
+     * chars buffered before written to COPY stream
+     */
+    static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * quote a value as a csv field. e.g. {"a":"b"} -> "{""a"":""b""}"
+     *
+     * @param value value
+     * @return quoted csv field
+     */
+    static String toCsvField(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
     /**
      * execute the batch in chunks, and record the results in cosmosBulkResult
      *
      * @param schemaName       the name of the schema
      * @param tableName        the name of the table
-     * @param ids              the list of ids to delete
+     * @param records          the list of records to insert/upsert
      * @param throwException   if true, throw exception if a database error occurs(used in batch). if false, record the results in ret and return it instead of throw an exception(used in bulk)
      * @param pstmt            the prepared statement
      * @param chunkSize        the size of each chunk
@@ -1295,8 +2164,13 @@ public class TableUtil {
      * @return true/false whether SQLException occurred.
      * @throws SQLException if a database error occurs
      */
-    static boolean executeDeletionAndRecordResult(String schemaName, String tableName, List<String> ids, boolean throwException, PreparedStatement pstmt, int chunkSize, int count, CosmosBulkResult cosmosBulkResult) throws SQLException {
+    static boolean executeAndRecordResult(String schemaName, String tableName, List<PostgresRecord> records, boolean throwException, PreparedStatement pstmt, int chunkSize, int count, CosmosBulkResult cosmosBulkResult) throws SQLException {
 
+        var processedCount = cosmosBulkResult.successList.size() + cosmosBulkResult.fatalList.size() + cosmosBulkResult.retryList.size();
+        if(processedCount >= records.size()) {
+            // if processedCount is over record's size, no need to execute anymore
+            return false;
+        }
         // from index and to index for this chunk
         int from, to;
         if (count % chunkSize == 0) {
@@ -1314,12 +2188,17 @@ public class TableUtil {
 
         try {
 
-            pstmt.executeBatch();
+            var part = pstmt.executeBatch();
 
             // record this chunk execution's result to cosmosBulkResult
             for (var i = 0; i < size; i++) {
                 var docIndex = from + i;
-                cosmosBulkResult.successList.add(new CosmosDocument(Map.of("id", ids.get(docIndex))));
+                if (part[i] > 0) {
+                    cosmosBulkResult.successList.add(getCosmosDocument(records.get(docIndex)));
+                } else {
+                    var docId = records.get(docIndex).id;
+                    cosmosBulkResult.fatalList.add(new CosmosException(500, docId, "Failed to executeBulk. %s.%s, id:%s".formatted(schemaName, tableName, docId)));
+                }
             }
             // no SQLException occurred
             return false;
@@ -1332,8 +2211,8 @@ public class TableUtil {
                 // record this batch execution's result to cosmosBulkResult
                 for (var i = 0; i < size; i++) {
                     var docIndex = from + i;
-                    var docId = ids.get(docIndex);
-                    cosmosBulkResult.fatalList.add(new CosmosException(500, docId, "Failed to executeDeletion. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, docId, docIndex), e));
+                    var docId = records.get(docIndex).id;
+                    cosmosBulkResult.fatalList.add(new CosmosException(500, docId, "Failed to executeBulk. %s.%s, id:%s, index:%s".formatted(schemaName, tableName, docId, docIndex), e));
                 }
             }
             // SQLException occurred
@@ -1421,6 +2300,11 @@ public class TableUtil {
     /**
      * find records from a table with condition in a querySpec(queryText and params)
      *
+     * <p>
+     * For a time-partitioned table, postgres prunes the partitions when the condition constrains the time field(e.g. {"_ts &gt;=": 1700000000}),
+     * because the filter expression is the same as the partition key expression, and numbers are bound as numeric.
+     * </p>
+     *
      * @param conn       the database connection
      * @param schemaName the name of the schema
      * @param tableName  the name of the table
@@ -1459,6 +2343,50 @@ public class TableUtil {
         }
     }
 
+    /**
+     * open a server-side cursor to find records from a table with condition in a querySpec(queryText and params).
+     *
+     * <p>
+     * Rows are fetched from the server {@code fetchSize} rows at a time instead of being loaded all at once.
+     * Note that PgJDBC only uses a cursor when the connection is in autocommit=false mode,
+     * so the caller should set autocommit to false before calling this method, and keep the connection open until the resultSet is consumed.
+     * The caller is responsible for closing the returned resultSet and its statement.
+     * </p>
+     *
+     * @param conn       the database connection(autocommit=false)
+     * @param schemaName the name of the schema
+     * @param tableName  the name of the table
+     * @param querySpec  the querySpec to find(including queryText and params)
+     * @param fetchSize  number of rows fetched per round trip
+     * @return resultSet containing "id" and "data" columns
+     * @throws Exception if a database error occurs
+     */
+    public static ResultSet openCursor(Connection conn, String schemaName, String tableName, CosmosSqlQuerySpec querySpec, int fetchSize) throws Exception {
+
+        schemaName = checkAndNormalizeValidEntityName(schemaName);
+        tableName = checkAndNormalizeValidEntityName(tableName);
+
+        Checker.checkNotNull(querySpec, "querySpec");
+        Checker.checkNotBlank(querySpec.queryText, "querySpec.queryText");
+        Checker.check(fetchSize > 0, "fetchSize should be > 0");
+
+        querySpec = NamedParameterUtil.convert(querySpec);
+
+        var findSQL = querySpec.queryText;
+        var params = querySpec.params;
+
+        var pstmt = conn.prepareStatement(findSQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            pstmt.setFetchSize(fetchSize);
+            setParamsForStatement(conn, params, pstmt);
+            return pstmt.executeQuery();
+        } catch (SQLException e) {
+            pstmt.close();
+            log.warn("Error when open cursor for records in table'{}.{}'. sql:{}", schemaName, tableName, querySpec.queryText, e);
+            throw e;
+        }
+    }
+
     /**
      * count records from a table with condition in a querySpec(queryText and params)
      *
@@ -2138,9 +3066,20 @@ public class TableUtil {
             } else if (param.value instanceof Boolean boolValue) {
                 pstmt.setBoolean(index, boolValue);
             } else if (param.value instanceof Float floatValue) {
-                pstmt.setFloat(index, floatValue);
+                if (Float.isFinite(floatValue)) {
+                    // bind as numeric, the same type as NULLIF(data->>'x','')::numeric. see the comment for Double below
+                    pstmt.setBigDecimal(index, new BigDecimal(Float.toString(floatValue)));
+                } else {
+                    pstmt.setFloat(index, floatValue);
+                }
             } else if (param.value instanceof Double doubleValue) {
-                pstmt.setDouble(index, doubleValue);
+                if (Double.isFinite(doubleValue)) {
+                    // bind as numeric instead of float8. numeric > float8 casts the left side to float8,
+                    // which makes expression indexes and partition pruning on NULLIF(data->>'x','')::numeric unusable
+                    pstmt.setBigDecimal(index, BigDecimal.valueOf(doubleValue));
+                } else {
+                    pstmt.setDouble(index, doubleValue);
+                }
             } else if (param.value instanceof BigDecimal bigDecimalValue) {
                 pstmt.setBigDecimal(index, bigDecimalValue);
             } else if (param.value instanceof Collection<?> collectionValue) {
@@ -2150,7 +3089,7 @@ public class TableUtil {
                 var sqlArray = conn.createArrayOf(sqlType, collectionValue.toArray());
                 pstmt.setArray(index, sqlArray);
             } else {
-                pstmt.setString(index, JsonUtil.toJson(param.value));
+                pstmt.setString(index, JsonUtil.toJsonNoIndent(param.value));
             }
             index++;
         }
@@ -2160,19 +3099,24 @@ public class TableUtil {
      * Returns the SQL type that corresponds to the type of elements in the given collection.
      *
      * If the collection is empty, returns "text" as a default.
+     * All the numbers are mapped to "numeric", so that a list mixing Integer and Long is bound as the same array type,
+     * and matches the cast used by {@link PGKeyUtil#getFormattedKeyWithAlias(String, String, Object)}.
      *
      * @param collection the collection to determine the SQL type for
      * @return the corresponding SQL type
      */
-    static String getSqlType(Collection<?> collection) {
+    public static String getSqlType(Collection<?> collection) {
         if (collection.isEmpty()) {
             return "text"; // default to varchar if empty
         }
         var firstElement = collection.iterator().next();
         if (firstElement instanceof String) return "text";
-        if (firstElement instanceof Integer) return "integer";
-        if (firstElement instanceof Long) return "bigint";
-        if (firstElement instanceof Double) return "double precision";
+        if (firstElement instanceof Boolean) return "boolean";
+        if (firstElement instanceof Integer
+                || firstElement instanceof Long
+                || firstElement instanceof Double
+                || firstElement instanceof Float
+                || firstElement instanceof BigDecimal) return "numeric";
         // Add more types as needed
         return "text"; // default to varchar
     }
@@ -0,0 +1,244 @@
+package io.github.thunderz99.cosmos.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.thunderz99.cosmos.util.Checker;
+
+/**
+ * An OperationListener keeping metrics in memory, without any metrics library. Mainly used for tests and simple diagnostics.
+ *
+ * <p>
+ * Metrics are aggregated per tags(backend, coll, partition, operation), including a latency histogram.
+ * The latest events are kept as well(max 10000 by default).
+ * </p>
+ */
+public class InMemoryOperationListener implements OperationListener {
+
+    /**
+     * default max number of events kept
+     */
+    public static final int DEFAULT_MAX_EVENTS = 10_000;
+
+    /**
+     * Tags of metrics
+     *
+     * @param backend   "cosmosdb" / "mongodb" / "postgres"
+     * @param coll      collection name
+     * @param partition partition name
+     * @param operation operation name
+     */
+    public record Tags(String backend, String coll, String partition, String operation) {
+    }
+
+    final int maxEvents;
+
+    final ArrayDeque<OperationEvent> events = new ArrayDeque<>();
+
+    final Map<Tags, OperationStats> stats = new ConcurrentHashMap<>();
+
+    public InMemoryOperationListener() {
+        this(DEFAULT_MAX_EVENTS);
+    }
+
+    /**
+     * Constructor specifying max number of events kept. Older events are dropped.
+     *
+     * @param maxEvents max number of events. 0 to keep no events(metrics are still aggregated)
+     */
+    public InMemoryOperationListener(int maxEvents) {
+        Checker.check(maxEvents >= 0, "maxEvents should be >= 0");
+        this.maxEvents = maxEvents;
+    }
+
+    @Override
+    public void onOperation(OperationEvent event) {
+        var tags = new Tags(event.backend, event.coll, event.partition, event.operation);
+        stats.computeIfAbsent(tags, t -> new OperationStats()).record(event);
+
+        if (maxEvents == 0) {
+            return;
+        }
+        synchronized (events) {
+            if (events.size() >= maxEvents) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    /**
+     * Get the latest events in the order of occurrence
+     *
+     * @return copy of events
+     */
+    public List<OperationEvent> getEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    /**
+     * Get all the aggregated metrics
+     *
+     * @return copy of the metrics map
+     */
+    public Map<Tags, OperationStats> getStats() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    /**
+     * Get the aggregated metrics of specific tags
+     *
+     * @param backend   "cosmosdb" / "mongodb" / "postgres"
+     * @param coll      collection name
+     * @param partition partition name
+     * @param operation operation name
+     * @return metrics or null if no operation recorded
+     */
+    public OperationStats getStats(String backend, String coll, String partition, String operation) {
+        return stats.get(new Tags(backend, coll, partition, operation));
+    }
+
+    /**
+     * Clear all the metrics and events
+     */
+    public void reset() {
+        stats.clear();
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    /**
+     * Aggregated metrics of operations having the same tags
+     */
+    public static class OperationStats {
+
+        /**
+         * number of histogram buckets. bucket i counts latencies in [2^(i-1), 2^i) microseconds
+         */
+        static final int BUCKETS = 40;
+
+        final LongAdder count = new LongAdder();
+
+        final LongAdder errorCount = new LongAdder();
+
+        final LongAdder totalLatencyNanos = new LongAdder();
+
+        final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        final DoubleAdder totalRequestCharge = new DoubleAdder();
+
+        final LongAdder totalRows = new LongAdder();
+
+        final LongAdder totalBytesSerialized = new LongAdder();
+
+        final LongAdder totalRetryCount = new LongAdder();
+
+        final LongAdder totalThrottleWaitMillis = new LongAdder();
+
+        final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKETS);
+
+        void record(OperationEvent event) {
+            count.increment();
+            if (!event.success) {
+                errorCount.increment();
+            }
+            totalLatencyNanos.add(event.latencyNanos);
+            maxLatencyNanos.accumulate(event.latencyNanos);
+            totalRequestCharge.add(event.requestCharge);
+            totalRows.add(event.rows);
+            totalBytesSerialized.add(event.bytesSerialized);
+            totalRetryCount.add(event.retryCount);
+            totalThrottleWaitMillis.add(event.throttleWaitMillis);
+            latencyHistogram.incrementAndGet(bucketOf(event.latencyNanos));
+        }
+
+        static int bucketOf(long latencyNanos) {
+            var micros = Math.max(latencyNanos / 1000, 0);
+            return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        public double getTotalRequestCharge() {
+            return totalRequestCharge.sum();
+        }
+
+        public long getTotalRows() {
+            return totalRows.sum();
+        }
+
+        public long getTotalBytesSerialized() {
+            return totalBytesSerialized.sum();
+        }
+
+        public long getTotalRetryCount() {
+            return totalRetryCount.sum();
+        }
+
+        public long getTotalThrottleWaitMillis() {
+            return totalThrottleWaitMillis.sum();
+        }
+
+        /**
+         * average latency in milliseconds
+         *
+         * @return average latency, 0 if no operation recorded
+         */
+        public double getMeanLatencyMillis() {
+            var n = getCount();
+            return n == 0 ? 0 : totalLatencyNanos.sum() / 1_000_000.0 / n;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1_000_000.0;
+        }
+
+        /**
+         * Get the latency percentile from the histogram. The upper bound of the bucket is returned, so the value is accurate within a factor of 2.
+         *
+         * @param percentile e.g. 0.5, 0.99
+         * @return latency in milliseconds. 0 if no operation recorded
+         */
+        public double getLatencyPercentileMillis(double percentile) {
+            Checker.check(percentile > 0 && percentile <= 1, "percentile should be in (0, 1]");
+            var n = getCount();
+            if (n == 0) {
+                return 0;
+            }
+            var rank = (long) Math.ceil(n * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += latencyHistogram.get(i);
+                if (seen >= rank) {
+                    // cannot exceed the real max latency
+                    return Math.min((1L << i) / 1000.0, getMaxLatencyMillis());
+                }
+            }
+            return getMaxLatencyMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "OperationStats{count=%d, errorCount=%d, mean=%.3f ms, p99=%.3f ms, max=%.3f ms, requestCharge=%s, rows=%d, bytesSerialized=%d, retryCount=%d, throttleWaitMillis=%d}"
+                    .formatted(getCount(), getErrorCount(), getMeanLatencyMillis(), getLatencyPercentileMillis(0.99), getMaxLatencyMillis(),
+                            getTotalRequestCharge(), getTotalRows(), getTotalBytesSerialized(), getTotalRetryCount(), getTotalThrottleWaitMillis());
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package io.github.thunderz99.cosmos.metrics;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.ToIntFunction;
+
+import io.github.thunderz99.cosmos.ChangeFeedIterator;
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosDocumentIterator;
+import io.github.thunderz99.cosmos.CosmosDocumentList;
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.condition.Aggregate;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
+import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
+import io.github.thunderz99.cosmos.dto.ReadManyResult;
+import io.github.thunderz99.cosmos.util.Checker;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A CosmosDatabase decorator measuring every operation of the delegate and notifying an OperationListener.
+ *
+ * <p>
+ * Every method(including the overloads having default implementations) is delegated as is, so the behavior is the same as the delegate.
+ * Request charge, retries and serialized bytes are collected by OperationContext during the operation.
+ * </p>
+ */
+public class InstrumentedCosmosDatabase implements CosmosDatabase {
+
+    private static final Logger log = LoggerFactory.getLogger(InstrumentedCosmosDatabase.class);
+
+    static final ToIntFunction<CosmosDocument> ONE_DOCUMENT = doc -> 1;
+
+    static final ToIntFunction<Object> NO_ROWS = obj -> 0;
+
+    final CosmosDatabase delegate;
+
+    final String backend;
+
+    final OperationListener listener;
+
+    InstrumentedCosmosDatabase(CosmosDatabase delegate, String backend, OperationListener listener) {
+        this.delegate = delegate;
+        this.backend = backend;
+        this.listener = listener;
+    }
+
+    /**
+     * Wrap a database to be instrumented. Returns the database itself if listener is null or NOOP.
+     *
+     * @param db       database to wrap
+     * @param backend  "cosmosdb" / "mongodb" / "postgres"
+     * @param listener listener to notify
+     * @return instrumented database
+     */
+    public static CosmosDatabase wrap(CosmosDatabase db, String backend, OperationListener listener) {
+        Checker.checkNotNull(db, "db");
+        if (listener == null || listener == OperationListener.NOOP) {
+            return db;
+        }
+        return new InstrumentedCosmosDatabase(db, backend, listener);
+    }
+
+    /**
+     * Get the database being instrumented
+     *
+     * @return delegate database
+     */
+    public CosmosDatabase getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Execute func and notify the listener with the measured metrics
+     *
+     * @param operation operation name
+     * @param coll      collection name
+     * @param partition partition name
+     * @param func      the operation
+     * @param rows      function to count the rows in the result
+     * @return result of func
+     * @throws Exception thrown by func
+     */
+    <T> T execute(String operation, String coll, String partition, Callable<T> func, ToIntFunction<? super T> rows) throws Exception {
+        var context = OperationContext.begin();
+        if (context == null) {
+            // nested operation. measured by the outer one
+            return func.call();
+        }
+
+        var event = new OperationEvent(backend, delegate.getDatabaseName(), coll, partition == null ? "" : partition, operation);
+        var start = System.nanoTime();
+        try {
+            var ret = func.call();
+            event.rows = ret == null ? 0 : rows.applyAsInt(ret);
+            return ret;
+        } catch (Exception e) {
+            event.success = false;
+            event.statusCode = e instanceof CosmosException ce ? ce.getStatusCode() : 0;
+            throw e;
+        } finally {
+            event.latencyNanos = System.nanoTime() - start;
+            context.end();
+            // may be recorded by the fan-out threads
+            synchronized (context) {
+                event.requestCharge = context.requestCharge;
+                event.bytesSerialized = context.bytesSerialized;
+                event.retryCount = context.retryCount;
+                event.throttleWaitMillis = context.throttleWaitMillis;
+            }
+            notifyListener(event);
+        }
+    }
+
+    void notifyListener(OperationEvent event) {
+        try {
+            listener.onOperation(event);
+        } catch (Exception e) {
+            log.warn("OperationListener failed. event:{}", event, e);
+        }
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data, String partition) throws Exception {
+        return execute("create", coll, partition, () -> delegate.create(coll, data, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument create(String coll, Object data) throws Exception {
+        return execute("create", coll, coll, () -> delegate.create(coll, data), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition) throws Exception {
+        return execute("read", coll, partition, () -> delegate.read(coll, id, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id, String partition, ReadOption option) throws Exception {
+        return execute("read", coll, partition, () -> delegate.read(coll, id, partition, option), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument read(String coll, String id) throws Exception {
+        return execute("read", coll, coll, () -> delegate.read(coll, id), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition) throws Exception {
+        return execute("readSuppressing404", coll, partition, () -> delegate.readSuppressing404(coll, id, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id) throws Exception {
+        return execute("readSuppressing404", coll, coll, () -> delegate.readSuppressing404(coll, id), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument readSuppressing404(String coll, String id, String partition, ReadOption option) throws Exception {
+        return execute("readSuppressing404", coll, partition, () -> delegate.readSuppressing404(coll, id, partition, option), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument readIfNoneMatch(String coll, String id, String partition, String etag) throws Exception {
+        return execute("readIfNoneMatch", coll, partition, () -> delegate.readIfNoneMatch(coll, id, partition, etag), ONE_DOCUMENT);
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<ReadManyItem> items, String... fields) throws Exception {
+        return execute("readMany", coll, "", () -> delegate.readMany(coll, items, fields), result -> result.documents.size());
+    }
+
+    @Override
+    public ReadManyResult readMany(String coll, List<String> ids, String partition, String... fields) throws Exception {
+        return execute("readMany", coll, partition, () -> delegate.readMany(coll, ids, partition, fields), result -> result.documents.size());
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data, String partition) throws Exception {
+        return execute("update", coll, partition, () -> delegate.update(coll, data, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument update(String coll, Object data) throws Exception {
+        return execute("update", coll, coll, () -> delegate.update(coll, data), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition) throws Exception {
+        return execute("updatePartial", coll, partition, () -> delegate.updatePartial(coll, id, data, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data, String partition, PartialUpdateOption option) throws Exception {
+        return execute("updatePartial", coll, partition, () -> delegate.updatePartial(coll, id, data, partition, option), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument updatePartial(String coll, String id, Object data) throws Exception {
+        return execute("updatePartial", coll, coll, () -> delegate.updatePartial(coll, id, data), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data, String partition) throws Exception {
+        return execute("upsert", coll, partition, () -> delegate.upsert(coll, data, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument upsert(String coll, Object data) throws Exception {
+        return execute("upsert", coll, coll, () -> delegate.upsert(coll, data), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDatabase delete(String coll, String id, String partition) throws Exception {
+        execute("delete", coll, partition, () -> delegate.delete(coll, id, partition), NO_ROWS);
+        return this;
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond, String partition) throws Exception {
+        return execute("find", coll, partition, () -> delegate.find(coll, cond, partition), CosmosDocumentList::size);
+    }
+
+    @Override
+    public CosmosDocumentList find(String coll, Condition cond) throws Exception {
+        return execute("find", coll, coll, () -> delegate.find(coll, cond), CosmosDocumentList::size);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForFind(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForFind(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentIterator findToIterator(String coll, Condition cond, String partition) throws Exception {
+        // only the time to open the iterator is measured. rows are fetched lazily
+        return execute("findToIterator", coll, partition, () -> delegate.findToIterator(coll, cond, partition), NO_ROWS);
+    }
+
+    @Override
+    public ChangeFeedIterator changeFeed(String coll, String partition, String fromCheckpoint) throws Exception {
+        // only the time to open the iterator is measured. changes are fetched lazily
+        return execute("changeFeed", coll, partition, () -> delegate.changeFeed(coll, partition, fromCheckpoint), NO_ROWS);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond, String partition) throws Exception {
+        return execute("aggregate", coll, partition, () -> delegate.aggregate(coll, aggregate, cond, partition), CosmosDocumentList::size);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForAggregate(String coll, Aggregate aggregate, Condition cond, String partition) {
+        return delegate.toQuerySpecForAggregate(coll, aggregate, cond, partition);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, String partition) throws Exception {
+        return execute("aggregate", coll, partition, () -> delegate.aggregate(coll, aggregate, partition), CosmosDocumentList::size);
+    }
+
+    @Override
+    public CosmosDocumentList aggregate(String coll, Aggregate aggregate, Condition cond) throws Exception {
+        return execute("aggregate", coll, coll, () -> delegate.aggregate(coll, aggregate, cond), CosmosDocumentList::size);
+    }
+
+    @Override
+    public int count(String coll, Condition cond, String partition) throws Exception {
+        return execute("count", coll, partition, () -> delegate.count(coll, cond, partition), NO_ROWS);
+    }
+
+    @Override
+    public CosmosSqlQuerySpec toQuerySpecForCount(String coll, Condition cond, String partition) {
+        return delegate.toQuerySpecForCount(coll, cond, partition);
+    }
+
+    @Override
+    public CosmosDocument increment(String coll, String id, String path, int value, String partition) throws Exception {
+        return execute("increment", coll, partition, () -> delegate.increment(coll, id, path, value, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public CosmosDocument patch(String coll, String id, PatchOperations operations, String partition) throws Exception {
+        return execute("patch", coll, partition, () -> delegate.patch(coll, id, operations, partition), ONE_DOCUMENT);
+    }
+
+    @Override
+    public Cosmos getCosmosAccount() {
+        return delegate.getCosmosAccount();
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return delegate.getDatabaseName();
+    }
+
+    @Override
+    public List<CosmosDocument> batchCreate(String coll, List<?> data, String partition) throws Exception {
+        return execute("batchCreate", coll, partition, () -> delegate.batchCreate(coll, data, partition), List::size);
+    }
+
+    @Override
+    public List<CosmosDocument> batchUpsert(String coll, List<?> data, String partition) throws Exception {
+        return execute("batchUpsert", coll, partition, () -> delegate.batchUpsert(coll, data, partition), List::size);
+    }
+
+    @Override
+    public List<CosmosDocument> batchDelete(String coll, List<?> data, String partition) throws Exception {
+        return execute("batchDelete", coll, partition, () -> delegate.batchDelete(coll, data, partition), List::size);
+    }
+
+    @Override
+    public CosmosBulkResult bulkCreate(String coll, List<?> data, String partition) throws Exception {
+        return execute("bulkCreate", coll, partition, () -> delegate.bulkCreate(coll, data, partition), result -> result.successList.size());
+    }
+
+    @Override
+    public CosmosBulkResult bulkUpsert(String coll, List<?> data, String partition) throws Exception {
+        return execute("bulkUpsert", coll, partition, () -> delegate.bulkUpsert(coll, data, partition), result -> result.successList.size());
+    }
+
+    @Override
+    public CosmosBulkResult bulkDelete(String coll, List<?> data, String partition) throws Exception {
+        return execute("bulkDelete", coll, partition, () -> delegate.bulkDelete(coll, data, partition), result -> result.successList.size());
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<String> ids, PatchOperations operations, String partition) throws Exception {
+        return execute("bulkPatch", coll, partition, () -> delegate.bulkPatch(coll, ids, operations, partition), result -> result.successList.size());
+    }
+
+    @Override
+    public CosmosBulkResult bulkPatch(String coll, List<BulkPatchOperation> data, String partition) throws Exception {
+        return execute("bulkPatch", coll, partition, () -> delegate.bulkPatch(coll, data, partition), result -> result.successList.size());
+    }
+
+    @Override
+    public boolean ping(String coll) throws Exception {
+        return execute("ping", coll, "", () -> delegate.ping(coll), NO_ROWS);
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.thunderz99.cosmos.metrics;
+
+/**
+ * Thread-local accumulator for measurements that are only known deep inside an operation(request charge, retries, serialized bytes).
+ *
+ * <p>
+ * A context is only active while an instrumented operation is running, so the record methods are no-op otherwise.
+ * Nested operations(e.g. upsert calling read internally) are accumulated into the outermost context.
+ * Work running in other threads(e.g. the crossPartition fan-out) is attributed to the operation by running it with {@link #wrap}.
+ * </p>
+ */
+public class OperationContext {
+
+    static final ThreadLocal<OperationContext> current = new ThreadLocal<>();
+
+    double requestCharge = 0;
+
+    long bytesSerialized = 0;
+
+    int retryCount = 0;
+
+    long throttleWaitMillis = 0;
+
+    OperationContext() {
+    }
+
+    /**
+     * Start a context for the current thread
+     *
+     * @return the new context, or null if a context is already active
+     */
+    static OperationContext begin() {
+        if (current.get() != null) {
+            return null;
+        }
+        var context = new OperationContext();
+        current.set(context);
+        return context;
+    }
+
+    /**
+     * End the context started by begin
+     */
+    void end() {
+        current.remove();
+    }
+
+    /**
+     * Wrap a task to be run in another thread, so that the measurements recorded by the task are accumulated into the context of the current thread.
+     * Measurements recorded after the operation has ended are not reported.
+     *
+     * @param task task to run in another thread
+     * @return wrapped task, or the task itself if no context is active
+     */
+    public static Runnable wrap(Runnable task) {
+        var context = current.get();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            var previous = current.get();
+            current.set(context);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Record the request charge(RU) of a cosmosdb response
+     *
+     * @param requestCharge request charge
+     */
+    public static void recordRequestCharge(double requestCharge) {
+        var context = current.get();
+        if (context != null) {
+            synchronized (context) {
+                context.requestCharge += requestCharge;
+            }
+        }
+    }
+
+    /**
+     * Record the UTF-8 byte length of json serialized for writing
+     *
+     * @param bytes UTF-8 byte length of json
+     */
+    public static void recordBytesSerialized(long bytes) {
+        var context = current.get();
+        if (context != null) {
+            synchronized (context) {
+                context.bytesSerialized += bytes;
+            }
+        }
+    }
+
+    /**
+     * Record the UTF-8 byte length of a json serialized for writing. The length is only calculated when a context is active
+     *
+     * @param json json serialized
+     */
+    public static void recordBytesSerialized(String json) {
+        var context = current.get();
+        if (context != null && json != null) {
+            var bytes = utf8Length(json);
+            synchronized (context) {
+                context.bytesSerialized += bytes;
+            }
+        }
+    }
+
+    /**
+     * Count the UTF-8 byte length of a string without encoding it
+     *
+     * @param s string
+     * @return UTF-8 byte length
+     */
+    static long utf8Length(String s) {
+        long ret = 0;
+        for (int i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c < 0x80) {
+                ret += 1;
+            } else if (c < 0x800) {
+                ret += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // a supplementary character is 4 bytes
+                ret += 4;
+                i++;
+            } else {
+                // unpaired surrogates are encoded as '?'
+                ret += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Record a retry and the time waited before it
+     *
+     * @param waitMillis wait time in milliseconds
+     */
+    public static void recordRetry(long waitMillis) {
+        var context = current.get();
+        if (context != null) {
+            synchronized (context) {
+                context.retryCount++;
+                context.throttleWaitMillis += Math.max(waitMillis, 0);
+            }
+        }
+    }
+
+    /**
+     * Record the time waited to be admitted by a client-side rate limiter. not counted as a retry
+     *
+     * @param waitMillis wait time in milliseconds
+     */
+    public static void recordThrottleWait(long waitMillis) {
+        var context = current.get();
+        if (context != null) {
+            synchronized (context) {
+                context.throttleWaitMillis += Math.max(waitMillis, 0);
+            }
+        }
+    }
+}
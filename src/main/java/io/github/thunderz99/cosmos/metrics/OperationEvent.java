@@ -0,0 +1,102 @@
+package io.github.thunderz99.cosmos.metrics;
+
+/**
+ * Metrics of one CosmosDatabase operation, passed to OperationListener after the operation finished(succeeded or failed).
+ *
+ * <p>
+ * Tags are backend, database, coll, partition and operation. Other fields are measurements.
+ * </p>
+ */
+public class OperationEvent {
+
+    /**
+     * "cosmosdb" / "mongodb" / "postgres"
+     */
+    public String backend = "";
+
+    /**
+     * database name
+     */
+    public String database = "";
+
+    /**
+     * collection name(schema for postgres)
+     */
+    public String coll = "";
+
+    /**
+     * partition name(table for postgres). empty if not specified
+     */
+    public String partition = "";
+
+    /**
+     * operation name. e.g. "create", "find", "bulkUpsert"
+     */
+    public String operation = "";
+
+    /**
+     * latency of the whole operation including retries, in nanoseconds
+     */
+    public long latencyNanos = 0;
+
+    /**
+     * request charge(RU) consumed. only cosmosdb
+     */
+    public double requestCharge = 0;
+
+    /**
+     * number of documents returned
+     */
+    public int rows = 0;
+
+    /**
+     * UTF-8 byte length of json serialized for writing. only postgres
+     */
+    public long bytesSerialized = 0;
+
+    /**
+     * number of retries caused by 429 / 449 / 408
+     */
+    public int retryCount = 0;
+
+    /**
+     * total time waited before retries, in milliseconds
+     */
+    public long throttleWaitMillis = 0;
+
+    /**
+     * whether the operation succeeded
+     */
+    public boolean success = true;
+
+    /**
+     * status code of the exception if failed. e.g. 404, 409. 0 if succeeded or unknown
+     */
+    public int statusCode = 0;
+
+    public OperationEvent() {
+    }
+
+    public OperationEvent(String backend, String database, String coll, String partition, String operation) {
+        this.backend = backend;
+        this.database = database;
+        this.coll = coll;
+        this.partition = partition;
+        this.operation = operation;
+    }
+
+    /**
+     * latency in milliseconds
+     *
+     * @return latency
+     */
+    public double getLatencyMillis() {
+        return latencyNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationEvent{backend=%s, database=%s, coll=%s, partition=%s, operation=%s, latency=%.3f ms, requestCharge=%s, rows=%d, bytesSerialized=%d, retryCount=%d, throttleWaitMillis=%d, success=%s, statusCode=%d}"
+                .formatted(backend, database, coll, partition, operation, getLatencyMillis(), requestCharge, rows, bytesSerialized, retryCount, throttleWaitMillis, success, statusCode);
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.thunderz99.cosmos.metrics;
+
+/**
+ * Listener receiving the metrics of every CosmosDatabase operation. Register it by CosmosBuilder.withOperationListener.
+ *
+ * <p>
+ * onOperation is called synchronously in the caller's thread after each operation, so implementations should be fast and thread-safe.
+ * Exceptions thrown by the listener are logged and ignored.
+ * Bridge it to Micrometer / OpenTelemetry or any metrics system in the application.
+ * </p>
+ *
+ * <pre>
+ * var listener = new InMemoryOperationListener();
+ * var cosmos = new CosmosBuilder().withDatabaseType("postgres")
+ *     .withConnectionString(connectionString)
+ *     .withOperationListener(listener)
+ *     .build();
+ * </pre>
+ */
+@FunctionalInterface
+public interface OperationListener {
+
+    /**
+     * The default listener doing nothing. Databases are not instrumented at all when this is used.
+     */
+    OperationListener NOOP = event -> {
+    };
+
+    /**
+     * Called after an operation finished
+     *
+     * @param event metrics of the operation
+     */
+    void onOperation(OperationEvent event);
+}
@@ -0,0 +1,349 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.dto.RateLimitOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client-side rate limiter of a cosmosdb container, which learns the permitted rate from 429(too many requests).
+ *
+ * <p>
+ * Requests are admitted by a token bucket(implemented as GCRA). A request waits until a token is available, so callers are spaced
+ * at the permitted rate instead of all hitting 429 and retrying in lockstep. The rate is increased additively while the limiter is saturated without 429,
+ * and decreased multiplicatively on a 429(AIMD). After a 429 with retryAfter, no request is admitted until retryAfter has passed.
+ * </p>
+ *
+ * <p>
+ * A request that would wait longer than maxWaitMillis is not admitted and fails with 429 immediately(load shedding).
+ * </p>
+ */
+public class AdaptiveRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+
+    /**
+     * window to calculate the throttle ratio. 10 seconds
+     */
+    static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * code of the CosmosException(429) thrown when a request is rejected by the limiter
+     */
+    public static final String CODE_RATE_LIMITED = "ClientRateLimited";
+
+    /**
+     * statistics of the limiter
+     */
+    public static class Stats {
+
+        /**
+         * current permitted rate in requests per second
+         */
+        public double permittedRate;
+
+        /**
+         * current number of requests waiting to be admitted
+         */
+        public int queueDepth;
+
+        /**
+         * ratio of the responses throttled(429) in the recent 10 - 20 seconds
+         */
+        public double throttleRatio;
+
+        /**
+         * requests admitted
+         */
+        public long admittedCount;
+
+        /**
+         * responses throttled(429)
+         */
+        public long throttledCount;
+
+        /**
+         * requests rejected because the wait exceeded maxWaitMillis
+         */
+        public long rejectedCount;
+
+        @Override
+        public String toString() {
+            return "Stats{permittedRate=%.1f, queueDepth=%d, throttleRatio=%.3f, admittedCount=%d, throttledCount=%d, rejectedCount=%d}"
+                    .formatted(permittedRate, queueDepth, throttleRatio, admittedCount, throttledCount, rejectedCount);
+        }
+    }
+
+    final String name;
+
+    final RateLimitOption option;
+
+    final LongSupplier nanoClock;
+
+    /**
+     * current permitted rate, guarded by this
+     */
+    double rate;
+
+    /**
+     * theoretical arrival time of the next request in nanos(GCRA), guarded by this
+     */
+    long tat;
+
+    /**
+     * no request is admitted before this time in nanos, guarded by this
+     */
+    long pauseUntil;
+
+    long lastIncrease;
+
+    long lastDecrease;
+
+    /**
+     * responses / throttled responses in the current and previous window, guarded by this
+     */
+    long windowStart;
+    long windowResponses;
+    long windowThrottled;
+    long prevWindowResponses;
+    long prevWindowThrottled;
+
+    final AtomicInteger waiting = new AtomicInteger();
+
+    final LongAdder admitted = new LongAdder();
+    final LongAdder throttled = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a limiter
+     *
+     * @param name   name used in logs. e.g. "db/coll"
+     * @param option rate limit option
+     */
+    public AdaptiveRateLimiter(String name, RateLimitOption option) {
+        this(name, option, System::nanoTime);
+    }
+
+    AdaptiveRateLimiter(String name, RateLimitOption option, LongSupplier nanoClock) {
+        Checker.checkNotNull(option, "option");
+        Checker.check(option.minRate > 0, "minRate should be > 0");
+        Checker.check(option.maxRate >= option.minRate, "maxRate should be >= minRate");
+        Checker.check(option.multiplicativeDecrease > 0 && option.multiplicativeDecrease < 1, "multiplicativeDecrease should be between 0 and 1");
+        Checker.check(option.additiveIncrease >= 0, "additiveIncrease should be >= 0");
+        Checker.check(option.burstSeconds >= 0, "burstSeconds should be >= 0");
+        Checker.check(option.maxWaitMillis >= 0, "maxWaitMillis should be >= 0");
+        Checker.check(option.jitterRatio >= 0, "jitterRatio should be >= 0");
+
+        this.name = name;
+        this.option = option;
+        this.nanoClock = nanoClock;
+        this.rate = Math.min(option.maxRate, Math.max(option.minRate, option.initialRate));
+
+        var now = nanoClock.getAsLong();
+        this.tat = now;
+        this.pauseUntil = now;
+        this.lastIncrease = now;
+        this.lastDecrease = now - TimeUnit.MILLISECONDS.toNanos(option.decreaseIntervalMillis);
+        this.windowStart = now;
+    }
+
+    /**
+     * Wait until the permits are admitted.
+     *
+     * @param permits number of requests
+     * @return waited time in milliseconds
+     * @throws CosmosException 429 if the wait would exceed maxWaitMillis. the permits are not consumed in this case
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long acquire(int permits) throws InterruptedException {
+        var wait = reserve(permits);
+        if (wait <= 0) {
+            return 0;
+        }
+        waiting.incrementAndGet();
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(wait);
+    }
+
+    /**
+     * Reserve the permits and return the time to wait before sending the requests
+     *
+     * @param permits number of requests
+     * @return wait time in nanos. 0 if admitted immediately
+     */
+    synchronized long reserve(int permits) {
+        Checker.check(permits > 0, "permits should be > 0");
+
+        var now = nanoClock.getAsLong();
+        var tau = burstNanos();
+
+        var base = Math.max(tat, now);
+        if (pauseUntil > now) {
+            // the bucket is empty when the pause ends, so requests are spaced instead of bursting after retryAfter
+            base = Math.max(base, pauseUntil + tau);
+        }
+        var interval = (long) (permits * 1_000_000_000d / rate);
+        var newTat = base + interval;
+        // permits more than the burst are admitted when the bucket is full
+        var wait = Math.max(0, newTat - Math.max(tau, interval) - now);
+
+        if (wait > TimeUnit.MILLISECONDS.toNanos(option.maxWaitMillis)) {
+            rejected.increment();
+            var retryAfter = TimeUnit.NANOSECONDS.toMillis(wait);
+            throw new CosmosException(429, CODE_RATE_LIMITED,
+                    "Request rate is large(client side). %s permits would wait %d ms, exceeding maxWaitMillis:%d ms. limiter:%s, permittedRate:%.1f"
+                            .formatted(permits, retryAfter, option.maxWaitMillis, name, rate), retryAfter);
+        }
+
+        tat = newTat;
+        admitted.add(permits);
+        return wait;
+    }
+
+    /**
+     * Record a response which is not throttled. The rate is increased by additiveIncrease at most once per increaseIntervalMillis,
+     * only when the limiter is saturated(requests are spaced by the limiter, rather than by the caller's demand).
+     */
+    public synchronized void onResponse() {
+        var now = nanoClock.getAsLong();
+        countResponse(now, false);
+
+        var interval = TimeUnit.MILLISECONDS.toNanos(option.increaseIntervalMillis);
+        if (now - lastIncrease < interval || now - lastDecrease < interval) {
+            return;
+        }
+        lastIncrease = now;
+        if (tat - now < burstNanos() / 2) {
+            // less than half of the bucket is used, so the limiter is not saturated.
+            // increasing the rate without demand would only allow a larger burst later
+            return;
+        }
+        rate = Math.min(option.maxRate, rate + option.additiveIncrease);
+    }
+
+    /**
+     * Record a throttled(429) response. The rate is decreased by multiplicativeDecrease, and requests are paused until retryAfter.
+     *
+     * <p>
+     * 429s within decreaseIntervalMillis after a decrease are the same congestion(responses of the requests sent before the decrease),
+     * so they do not decrease the rate again.
+     * </p>
+     *
+     * @param retryAfterMillis retryAfter hint of the response. 0 if none
+     */
+    public synchronized void onThrottled(long retryAfterMillis) {
+        var now = nanoClock.getAsLong();
+        countResponse(now, true);
+        throttled.increment();
+
+        if (retryAfterMillis > 0) {
+            pauseUntil = Math.max(pauseUntil, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        }
+
+        if (now - lastDecrease < TimeUnit.MILLISECONDS.toNanos(option.decreaseIntervalMillis)) {
+            return;
+        }
+        var before = rate;
+        rate = Math.max(option.minRate, rate * option.multiplicativeDecrease);
+        lastDecrease = now;
+        lastIncrease = now;
+        if (rate < before) {
+            log.info("AdaptiveRateLimiter decreased rate. limiter:{}, rate:{} -> {}, retryAfter:{} ms", name, before, rate, retryAfterMillis);
+        }
+    }
+
+    /**
+     * Add a random jitter to the backoff, so that throttled callers do not retry in lockstep
+     *
+     * @param waitMillis backoff in milliseconds
+     * @return waitMillis + random(0, waitMillis * jitterRatio)
+     */
+    public long withJitter(long waitMillis) {
+        if (waitMillis <= 0 || option.jitterRatio <= 0) {
+            return waitMillis;
+        }
+        return waitMillis + (long) (ThreadLocalRandom.current().nextDouble() * waitMillis * option.jitterRatio);
+    }
+
+    /**
+     * max number of permits admitted at once without waiting. used to split a bulk operation into chunks
+     *
+     * @return max burst permits(at least 1)
+     */
+    public synchronized int getMaxBurstPermits() {
+        return (int) Math.max(1, Math.floor(rate * option.burstSeconds));
+    }
+
+    /**
+     * current permitted rate
+     *
+     * @return requests per second
+     */
+    public synchronized double getPermittedRate() {
+        return rate;
+    }
+
+    /**
+     * get the statistics
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.queueDepth = waiting.get();
+        stats.admittedCount = admitted.sum();
+        stats.throttledCount = throttled.sum();
+        stats.rejectedCount = rejected.sum();
+        synchronized (this) {
+            rotateWindow(nanoClock.getAsLong());
+            stats.permittedRate = rate;
+            var responses = windowResponses + prevWindowResponses;
+            stats.throttleRatio = responses == 0 ? 0 : (double) (windowThrottled + prevWindowThrottled) / responses;
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveRateLimiter{name=%s, %s}".formatted(name, getStats());
+    }
+
+    long burstNanos() {
+        return (long) (option.burstSeconds * 1_000_000_000d);
+    }
+
+    void countResponse(long now, boolean isThrottled) {
+        rotateWindow(now);
+        windowResponses++;
+        if (isThrottled) {
+            windowThrottled++;
+        }
+    }
+
+    void rotateWindow(long now) {
+        if (now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+        if (now - windowStart < WINDOW_NANOS * 2) {
+            prevWindowResponses = windowResponses;
+            prevWindowThrottled = windowThrottled;
+            windowStart += WINDOW_NANOS;
+        } else {
+            prevWindowResponses = 0;
+            prevWindowThrottled = 0;
+            windowStart = now;
+        }
+        windowResponses = 0;
+        windowThrottled = 0;
+    }
+}
@@ -0,0 +1,606 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.condition.FieldKey;
+import io.github.thunderz99.cosmos.condition.SubConditionType;
+import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+
+/**
+ * A bounded cache of generated query templates keyed on the shape of a Condition(keys, operators, value types, join, sort, fields, offset, limit, collate).
+ *
+ * <p>
+ * Conditions with the same shape generate the same query text, and only the param values differ.
+ * So the query text is generated once, and the param values are bound from the filter values on later calls.
+ * </p>
+ *
+ * <p>
+ * How a param value is derived from the filter values(as-is, wrapped by "%", enum name, or embedded in a json document) is inferred from the first generation.
+ * A param which can be derived in more than one way(e.g. "ab%" from the filter value "ab%" as-is, or from "ab" wrapped by "%") is ambiguous, and the inference is retried at the next call.
+ * The template is verified against normal generations, and used only after every param has been confirmed with a filter value different from the one at the inference.
+ * When the inference fails or the verification does not match, the shape is marked as uncacheable and the query is always generated normally.
+ * </p>
+ */
+public class CompiledQueryCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    enum State {
+        /**
+         * the template is inferred but not verified yet
+         */
+        PENDING,
+        /**
+         * the template can be used
+         */
+        VERIFIED,
+        /**
+         * the query cannot be generated from a template. always generate normally
+         */
+        UNCACHEABLE
+    }
+
+    enum SlotType {
+        /**
+         * param value is the filter value as-is
+         */
+        VALUE,
+        /**
+         * param value is the filter value wrapped by a prefix and a suffix. e.g. "%" + value + "%"
+         */
+        WRAP,
+        /**
+         * param value is the name of an enum filter value
+         */
+        ENUM_NAME,
+        /**
+         * param value is a json document containing the filter value(or an element of a collection filter value). e.g. {"status":"A"} for jsonb containment
+         */
+        JSON,
+        /**
+         * param value is a list of json documents, each containing an element of a collection filter value. e.g. [{"status":"A"}, {"status":"B"}] for {@code data @> ANY(@param::jsonb[])}
+         */
+        JSON_ARRAY,
+        /**
+         * param value is a constant determined by the shape(e.g. a boolean)
+         */
+        CONSTANT
+    }
+
+    /**
+     * How to bind a param from the filter values
+     */
+    record Slot(String name, SlotType type, int valueIndex, int elementIndex, String prefix, String suffix, Object constant) {
+
+        Slot(String name, SlotType type, int valueIndex, String prefix, String suffix, Object constant) {
+            this(name, type, valueIndex, -1, prefix, suffix, constant);
+        }
+
+        Object bind(List<Object> values) {
+            return switch (type) {
+                case VALUE -> values.get(valueIndex);
+                case WRAP -> prefix + values.get(valueIndex) + suffix;
+                case ENUM_NAME -> ((Enum<?>) values.get(valueIndex)).name();
+                case JSON -> prefix + toJsonLeaf(getElement(values.get(valueIndex), elementIndex)) + suffix;
+                case JSON_ARRAY -> ((Collection<?>) values.get(valueIndex)).stream().map(v -> prefix + toJsonLeaf(v) + suffix).toList();
+                case CONSTANT -> constant;
+            };
+        }
+    }
+
+    /**
+     * @param confirmedSlots indexes of the slots verified with a filter value different from the recorded one
+     */
+    record Entry(State state, String queryText, List<Slot> slots, List<Object> recordedValues, Set<Integer> confirmedSlots) {
+
+        static final Entry UNCACHEABLE = new Entry(State.UNCACHEABLE, null, List.of(), List.of(), Set.of());
+
+        CosmosSqlQuerySpec bind(List<Object> values) {
+            var params = new ArrayList<CosmosSqlParameter>(slots.size());
+            for (var slot : slots) {
+                params.add(new CosmosSqlParameter(slot.name, slot.bind(values)));
+            }
+            return new CosmosSqlQuerySpec(queryText, params);
+        }
+    }
+
+    /**
+     * Shape of a condition and the filter values collected in the same order
+     */
+    record Shape(String key, List<Object> values) {
+    }
+
+    final Cache<String, Entry> cache;
+
+    final int maximumSize;
+
+    final LongAdder hitCount = new LongAdder();
+    final LongAdder missCount = new LongAdder();
+    final LongAdder uncacheableCount = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maximumSize max number of query shapes cached. 0 to disable the cache
+     */
+    public CompiledQueryCache(int maximumSize) {
+        Checker.check(maximumSize >= 0, "maximumSize should be >= 0");
+        this.maximumSize = maximumSize;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * Get the querySpec from the cached template, or generate it using the generator
+     *
+     * @param prefix    things other than condition that affect the generated query. e.g. "find|schema|table"
+     * @param cond      condition
+     * @param generator function to generate the querySpec normally
+     * @return querySpec
+     */
+    public CosmosSqlQuerySpec get(String prefix, Condition cond, Function<Condition, CosmosSqlQuerySpec> generator) {
+
+        if (maximumSize == 0 || !isCacheable(cond)) {
+            return generator.apply(cond);
+        }
+
+        var shape = toShape(prefix, cond);
+        var entry = cache.getIfPresent(shape.key);
+
+        if (entry != null && entry.state == State.VERIFIED) {
+            hitCount.increment();
+            return entry.bind(shape.values);
+        }
+
+        if (entry != null && entry.state == State.UNCACHEABLE) {
+            uncacheableCount.increment();
+            return generator.apply(cond);
+        }
+
+        missCount.increment();
+        var querySpec = generator.apply(cond);
+
+        if (entry == null) {
+            var inferred = infer(querySpec, shape.values);
+            if (inferred != null) {
+                cache.put(shape.key, inferred);
+            }
+        } else {
+            cache.put(shape.key, verify(entry, querySpec, shape.values));
+        }
+
+        return querySpec;
+    }
+
+    /**
+     * Only conditions without raw sql and continuation token are cached. Sub conditions are checked recursively in toShape.
+     */
+    static boolean isCacheable(Condition cond) {
+        return cond != null && cond.rawQuerySpec == null && cond.continuationToken == null;
+    }
+
+    /**
+     * Infer how params are bound from the filter values.
+     *
+     * @param querySpec querySpec generated normally
+     * @param values    filter values
+     * @return a pending entry, UNCACHEABLE entry, or null if ambiguous(e.g. the same value appears twice) and should be inferred again next time
+     */
+    static Entry infer(CosmosSqlQuerySpec querySpec, List<Object> values) {
+
+        var slots = new ArrayList<Slot>();
+        for (var param : querySpec.params) {
+            var value = param.getValue();
+
+            if (value == null || value instanceof Boolean) {
+                // null and booleans are a part of shape
+                slots.add(new Slot(param.getName(), SlotType.CONSTANT, -1, null, null, value));
+                continue;
+            }
+
+            var candidates = findSlots(param.getName(), value, values);
+            if (candidates.size() > 1) {
+                // e.g. "ab%" is the filter value "ab%" as-is, or "ab" wrapped by "%"
+                return null;
+            }
+            if (candidates.size() == 1) {
+                slots.add(candidates.get(0));
+                continue;
+            }
+
+            // the param value is derived in a way not supported(e.g. converted to json)
+            return Entry.UNCACHEABLE;
+        }
+
+        return new Entry(State.PENDING, querySpec.queryText, List.copyOf(slots), new ArrayList<>(values), Set.of());
+    }
+
+    /**
+     * Find all the ways the param value can be derived from the filter values
+     *
+     * @param name   param name
+     * @param value  param value
+     * @param values filter values
+     * @return candidate slots. more than one if ambiguous
+     */
+    static List<Slot> findSlots(String name, Object value, List<Object> values) {
+        var candidates = new ArrayList<Slot>();
+
+        for (int i = 0; i < values.size(); i++) {
+            if (Objects.equals(values.get(i), value)) {
+                candidates.add(new Slot(name, SlotType.VALUE, i, null, null, null));
+            }
+        }
+
+        if (value instanceof String strValue) {
+            // a json document also contains the filter value wrapped by the json around it.
+            // json is preferred so that the filter value is escaped when bound
+            var jsonSlots = findJsonSlots(name, strValue, values);
+            candidates.addAll(jsonSlots);
+            if (jsonSlots.isEmpty()) {
+                if (candidates.isEmpty() && isJsonWithBooleanLeaf(strValue)) {
+                    // booleans are a part of shape, so a json document containing a boolean only is a constant
+                    return List.of(new Slot(name, SlotType.CONSTANT, -1, null, null, value));
+                }
+                candidates.addAll(findWrapSlots(name, strValue, values));
+            }
+            candidates.addAll(findEnumSlots(name, strValue, values));
+        }
+
+        if (value instanceof List<?> listValue) {
+            candidates.addAll(findJsonArraySlots(name, listValue, values));
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Find the string filter values contained in the param value once. e.g. "%" + value + "%"
+     *
+     * @param name   param name
+     * @param value  param value
+     * @param values filter values
+     * @return wrap slots. the filter value equal to the param value is not included(it is VALUE)
+     */
+    static List<Slot> findWrapSlots(String name, String value, List<Object> values) {
+        var found = new ArrayList<Slot>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) instanceof String strValue && !strValue.isEmpty() && !strValue.equals(value)) {
+                var pos = value.indexOf(strValue);
+                if (pos < 0 || value.indexOf(strValue, pos + 1) >= 0) {
+                    continue;
+                }
+                found.add(new Slot(name, SlotType.WRAP, i, value.substring(0, pos), value.substring(pos + strValue.length()), null));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the filter values embedded in a json document param. The filter value is only matched at a json value position(after ':' or '[', and before '}', ']' or ',').
+     *
+     * @param name  param name
+     * @param value param value
+     * @param values filter values
+     * @return json slots
+     */
+    static List<Slot> findJsonSlots(String name, String value, List<Object> values) {
+        if (!value.startsWith("{") && !value.startsWith("[")) {
+            return List.of();
+        }
+        var found = new ArrayList<Slot>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) instanceof Collection<?> coll) {
+                var j = 0;
+                for (var element : coll) {
+                    var slot = findJsonSlot(name, value, i, j++, element);
+                    if (slot != null) {
+                        found.add(slot);
+                    }
+                }
+            } else {
+                var slot = findJsonSlot(name, value, i, -1, values.get(i));
+                if (slot != null) {
+                    found.add(slot);
+                }
+            }
+        }
+        return found;
+    }
+
+    static Slot findJsonSlot(String name, String value, int valueIndex, int elementIndex, Object filterValue) {
+        if (filterValue == null || filterValue instanceof Boolean || filterValue instanceof Collection<?> || filterValue instanceof Map<?, ?>) {
+            return null;
+        }
+        var json = toJsonLeaf(filterValue);
+        var pos = value.indexOf(json);
+        if (pos <= 0 || value.indexOf(json, pos + 1) >= 0) {
+            return null;
+        }
+        var end = pos + json.length();
+        if (end >= value.length() || ":[".indexOf(value.charAt(pos - 1)) < 0 || "}],".indexOf(value.charAt(end)) < 0) {
+            return null;
+        }
+        return new Slot(name, SlotType.JSON, valueIndex, elementIndex, value.substring(0, pos), value.substring(end), null);
+    }
+
+    /**
+     * Find the collection filter values whose elements are embedded in a list of json documents param one by one, with the same prefix and suffix.
+     *
+     * @param name   param name
+     * @param value  param value. e.g. ["{\"status\":\"A\"}", "{\"status\":\"B\"}"]
+     * @param values filter values
+     * @return json array slots
+     */
+    static List<Slot> findJsonArraySlots(String name, List<?> value, List<Object> values) {
+        if (value.isEmpty() || !value.stream().allMatch(v -> v instanceof String)) {
+            return List.of();
+        }
+        var found = new ArrayList<Slot>();
+        for (int i = 0; i < values.size(); i++) {
+            if (!(values.get(i) instanceof Collection<?> coll) || coll.size() != value.size()) {
+                continue;
+            }
+            Slot slot = null;
+            var j = 0;
+            for (var element : coll) {
+                var elementSlot = findJsonSlot(name, (String) value.get(j), i, j, element);
+                if (elementSlot == null || (slot != null && !(slot.prefix.equals(elementSlot.prefix) && slot.suffix.equals(elementSlot.suffix)))) {
+                    slot = null;
+                    break;
+                }
+                slot = elementSlot;
+                j++;
+            }
+            if (slot != null) {
+                found.add(new Slot(name, SlotType.JSON_ARRAY, i, slot.prefix, slot.suffix, null));
+            }
+        }
+        return found;
+    }
+
+    static boolean isJsonWithBooleanLeaf(String value) {
+        return value.startsWith("{") && (value.contains(":true}") || value.contains(":false}") || value.contains(":[true]}") || value.contains(":[false]}"));
+    }
+
+    static Object getElement(Object value, int elementIndex) {
+        if (elementIndex < 0) {
+            return value;
+        }
+        return value instanceof List<?> list ? list.get(elementIndex) : List.copyOf((Collection<?>) value).get(elementIndex);
+    }
+
+    static String toJsonLeaf(Object value) {
+        return JsonUtil.toJsonNoIndent(value instanceof Enum<?> enumValue ? enumValue.name() : value);
+    }
+
+    static List<Slot> findEnumSlots(String name, String value, List<Object> values) {
+        var found = new ArrayList<Slot>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) instanceof Enum<?> enumValue && enumValue.name().equals(value)) {
+                found.add(new Slot(name, SlotType.ENUM_NAME, i, null, null, null));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Verify a pending entry by a normal generation. The entry is verified when every slot has been confirmed with a changed filter value.
+     *
+     * @param entry     pending entry
+     * @param querySpec querySpec generated normally
+     * @param values    filter values
+     * @return entry with the new state
+     */
+    static Entry verify(Entry entry, CosmosSqlQuerySpec querySpec, List<Object> values) {
+
+        var bound = entry.bind(values);
+        if (!Objects.equals(bound.queryText, querySpec.queryText) || !sameParams(bound.params, querySpec.params)) {
+            return Entry.UNCACHEABLE;
+        }
+
+        // a slot is confirmed only when its filter value is different from the recorded one.
+        // a match with the same value does not tell whether the param is derived from this filter value or from another one(or a constant)
+        var confirmedSlots = new HashSet<>(entry.confirmedSlots);
+        var unconfirmed = 0;
+        for (int i = 0; i < entry.slots.size(); i++) {
+            var slot = entry.slots.get(i);
+            if (slot.type == SlotType.CONSTANT || confirmedSlots.contains(i)) {
+                continue;
+            }
+            if (!Objects.equals(getElement(entry.recordedValues.get(slot.valueIndex), slot.elementIndex), getElement(values.get(slot.valueIndex), slot.elementIndex))) {
+                confirmedSlots.add(i);
+            } else {
+                unconfirmed++;
+            }
+        }
+
+        var state = unconfirmed == 0 ? State.VERIFIED : State.PENDING;
+        return new Entry(state, entry.queryText, entry.slots, entry.recordedValues, Set.copyOf(confirmedSlots));
+    }
+
+    static boolean sameParams(List<CosmosSqlParameter> params1, List<CosmosSqlParameter> params2) {
+        if (params1.size() != params2.size()) {
+            return false;
+        }
+        for (int i = 0; i < params1.size(); i++) {
+            if (!Objects.equals(params1.get(i).getName(), params2.get(i).getName())
+                    || !Objects.equals(params1.get(i).getValue(), params2.get(i).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generate the shape key of a condition, and collect the filter values in the same order.
+     *
+     * @param prefix things other than condition that affect the generated query
+     * @param cond   condition
+     * @return shape
+     */
+    static Shape toShape(String prefix, Condition cond) {
+        var key = new StringBuilder(prefix);
+        var values = new ArrayList<Object>();
+
+        appendConditionShape(key, values, cond);
+        key.append("|sort:").append(cond.sort)
+                .append("|fields:").append(cond.fields)
+                .append("|offset:").append(cond.offset)
+                .append("|limit:").append(cond.limit)
+                .append("|collate:").append(cond.collate)
+                .append("|returnAllSubArray:").append(cond.returnAllSubArray)
+                .append("|crossPartition:").append(cond.crossPartition)
+                .append("|keyset:").append(cond.keysetPagination);
+
+        return new Shape(key.toString(), values);
+    }
+
+    static void appendConditionShape(StringBuilder key, List<Object> values, Condition cond) {
+        key.append("{");
+        if (cond.rawQuerySpec != null) {
+            // raw sql in sub conditions is a part of shape
+            key.append("raw:").append(cond.rawQuerySpec.queryText).append(cond.rawQuerySpec.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList());
+        }
+        appendFilterShape(key, values, cond.filter);
+        key.append("|join:").append(cond.join).append("|not:").append(cond.negative).append("}");
+    }
+
+    static void appendFilterShape(StringBuilder key, List<Object> values, Map<?, ?> filter) {
+        if (filter == null) {
+            return;
+        }
+        for (var entry : filter.entrySet()) {
+            var filterKey = String.valueOf(entry.getKey());
+            key.append(filterKey).append("=");
+            if (filterKey.startsWith(SubConditionType.EXPRESSION)) {
+                // expression is converted to query text directly
+                key.append("expression:").append(entry.getValue());
+            } else {
+                appendValueShape(key, values, entry.getValue());
+            }
+            key.append(";");
+        }
+    }
+
+    static void appendValueShape(StringBuilder key, List<Object> values, Object value) {
+        if (value == null) {
+            key.append("null");
+        } else if (value instanceof Boolean) {
+            // booleans may change the query text(e.g. IS_DEFINED true / false), so they are a part of shape
+            key.append("B:").append(value);
+        } else if (value instanceof FieldKey fieldKey) {
+            key.append("K:").append(fieldKey.keyName);
+        } else if (value instanceof Condition subCond) {
+            appendConditionShape(key, values, subCond);
+        } else if (value instanceof Map<?, ?> map) {
+            key.append("M{");
+            appendFilterShape(key, values, map);
+            key.append("}");
+        } else if (value instanceof Collection<?> coll && coll.stream().anyMatch(v -> v instanceof Condition || v instanceof Map<?, ?>)) {
+            // list of sub conditions
+            key.append("L[");
+            for (var v : coll) {
+                appendValueShape(key, values, v);
+                key.append(",");
+            }
+            key.append("]");
+        } else if (value instanceof Collection<?> coll) {
+            // the element types affect the cast of the key. e.g. (data->>'age')::numeric = ANY(@param::numeric[])
+            var elementTypes = new LinkedHashSet<String>();
+            for (var v : coll) {
+                elementTypes.add(v == null ? "null" : v.getClass().getName());
+            }
+            // a collection is bound as a single array param(e.g. data @> ANY(@param::jsonb[])), so only the size bucket is a part of shape:
+            // an empty collection is translated to a FALSE query text, and the query text may switch at a power of 2(e.g. containment up to 128 elements)
+            key.append("C").append(coll.isEmpty() ? "0" : "~" + (Integer.SIZE - Integer.numberOfLeadingZeros(coll.size() - 1))).append(elementTypes);
+            values.add(value);
+        } else if (value instanceof String strValue) {
+            key.append(strValue.isEmpty() ? "S0" : "S");
+            values.add(value);
+        } else {
+            key.append(value.getClass().getName());
+            values.add(value);
+        }
+    }
+
+    /**
+     * Remove all the cached templates
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get statistics of the cache
+     *
+     * @return stats
+     */
+    public Stats getStats() {
+        var stats = new Stats();
+        stats.hitCount = hitCount.sum();
+        stats.missCount = missCount.sum();
+        stats.uncacheableCount = uncacheableCount.sum();
+        stats.evictionCount = cache.stats().evictionCount();
+        stats.size = cache.size();
+        return stats;
+    }
+
+    /**
+     * Statistics of CompiledQueryCache
+     */
+    public static class Stats {
+
+        /**
+         * number of queries bound from a verified template
+         */
+        public long hitCount;
+
+        /**
+         * number of queries generated normally because the template is not cached or not verified yet
+         */
+        public long missCount;
+
+        /**
+         * number of queries generated normally because the shape cannot be cached
+         */
+        public long uncacheableCount;
+
+        /**
+         * number of shapes evicted because of maximumSize
+         */
+        public long evictionCount;
+
+        /**
+         * number of shapes cached
+         */
+        public long size;
+
+        /**
+         * ratio of hit in all requests
+         *
+         * @return hit rate. 0 if no request
+         */
+        public double hitRate() {
+            var total = hitCount + missCount + uncacheableCount;
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return JsonUtil.toJsonNoIndent(this);
+        }
+    }
+}
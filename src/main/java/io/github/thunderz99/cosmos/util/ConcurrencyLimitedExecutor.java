@@ -0,0 +1,69 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An executor capping the number of tasks running at the same time by a semaphore.
+ *
+ * <p>
+ * Used with a virtual thread executor: every task gets its own virtual thread, but only maxConcurrency tasks call the backend at the same time,
+ * so thousands of callers do not exhaust the connection pool(which would fail by connection timeout instead of waiting).
+ * Waiting for the semaphore parks the virtual thread without pinning the carrier thread.
+ * </p>
+ */
+public class ConcurrencyLimitedExecutor implements Executor {
+
+    final Executor delegate;
+
+    final int maxConcurrency;
+
+    final Semaphore semaphore;
+
+    public ConcurrencyLimitedExecutor(Executor delegate, int maxConcurrency) {
+        Checker.checkNotNull(delegate, "delegate");
+        Checker.check(maxConcurrency > 0, "maxConcurrency should be > 0");
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.semaphore = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(() -> {
+            semaphore.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                semaphore.release();
+            }
+        });
+    }
+
+    /**
+     * max number of tasks running at the same time
+     *
+     * @return maxConcurrency
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * number of tasks running now
+     *
+     * @return in-flight tasks
+     */
+    public int getInFlight() {
+        return maxConcurrency - semaphore.availablePermits();
+    }
+
+    /**
+     * Get the executor running tasks
+     *
+     * @return delegate executor
+     */
+    public Executor getDelegate() {
+        return delegate;
+    }
+}
@@ -771,6 +771,36 @@ public class ConditionUtil {
         return Sorts.orderBy(bsonSortList);
     }
 
+    /**
+     * Generate the seek filter for keyset pagination.
+     *
+     * <p>
+     * Mongo does not support row comparison, so the expanded form is used:
+     * {@code {$or: [{name: {$gt: v1}}, {name: v1, _ts: {$gt: v2}}, {name: v1, _ts: v2, id: {$gt: v3}}]}}
+     * </p>
+     *
+     * @param sort normalized sort pairs. see KeysetUtil.normalizeSort
+     * @param values values of sort keys decoded from the continuation token
+     * @return bson filter
+     */
+    public static Bson toBsonKeysetSeek(List<String> sort, List<Object> values) {
+        Checker.checkNotEmpty(sort, "sort");
+        Checker.check(sort.size() == values.size() * 2, "sort and values of continuationToken do not match");
+
+        var ors = new ArrayList<Bson>();
+        for (int i = 0; i < sort.size(); i += 2) {
+            var ands = new ArrayList<Bson>();
+            for (int j = 0; j < i; j += 2) {
+                ands.add(Filters.eq(sort.get(j), values.get(j / 2)));
+            }
+            var key = sort.get(i);
+            var value = values.get(i / 2);
+            ands.add("DESC".equalsIgnoreCase(sort.get(i + 1)) ? Filters.lt(key, value) : Filters.gt(key, value));
+            ors.add(ands.size() == 1 ? ands.get(0) : Filters.and(ands));
+        }
+        return Filters.or(ors);
+    }
+
     /**
      * Convert $not to $nor because MongoDB does not support a top-level $not operator
      *
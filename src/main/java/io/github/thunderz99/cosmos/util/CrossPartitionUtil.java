@@ -0,0 +1,363 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.thunderz99.cosmos.metrics.OperationContext;
+import org.apache.commons.collections4.CollectionUtils;
+
+/**
+ * A util to execute a crossPartition query for mongodb and postgres, where each partition is a separate collection / table.
+ *
+ * <p>
+ * The query is fanned out to every partition in parallel with bounded concurrency. Per-partition results are consumed as they arrive,
+ * and merged by a k-way heap into the running top (offset + limit) documents, so the memory used is bounded by
+ * (concurrency + 1) * (offset + limit) documents regardless of the number of partitions. count is the sum of the per-partition counts.
+ * </p>
+ */
+public class CrossPartitionUtil {
+
+    /**
+     * Default number of partitions queried at the same time by a crossPartition query
+     */
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    /**
+     * A query executed against one partition
+     *
+     * @param <T> type of result
+     */
+    @FunctionalInterface
+    public interface PartitionQuery<T> {
+        T apply(String partition) throws Exception;
+    }
+
+    /**
+     * Result of a partition. error is set if the query failed
+     */
+    record PartitionResult<T>(T value, Exception error) {
+    }
+
+    static class DefaultExecutorHolder {
+        static final Executor EXECUTOR = VirtualThreadUtil.isSupported()
+                ? VirtualThreadUtil.newVirtualThreadPerTaskExecutor("java-cosmos-fanout-")
+                : newCachedDaemonExecutor();
+    }
+
+    static ThreadPoolExecutor newCachedDaemonExecutor() {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("java-cosmos-fanout-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Find documents in all partitions, and merge them by sort. Offset and limit are applied globally.
+     *
+     * <p>
+     * The query of each partition should return at most (offset + limit) documents, already sorted by the same sort,
+     * with offset = 0. If sort is empty, documents are returned in the order of arrival, and the remaining partitions are skipped once enough documents are found.
+     * </p>
+     *
+     * @param partitions  partitions to query
+     * @param concurrency max partitions queried at the same time
+     * @param comparator  comparator of the sort. null if sort is empty
+     * @param offset      global offset
+     * @param limit       global limit
+     * @param query       query of a partition, returning sorted documents
+     * @return documents of [offset, offset + limit)
+     * @throws Exception the first exception thrown by a partition query
+     */
+    public static <T> List<T> find(List<String> partitions, int concurrency, Comparator<? super T> comparator,
+                                   int offset, int limit, PartitionQuery<List<T>> query) throws Exception {
+
+        Checker.check(offset >= 0, "offset should be >= 0");
+        Checker.check(limit >= 0, "limit should be >= 0");
+
+        var maxSize = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        var top = new ArrayList<List<T>>(1);
+        top.add(List.of());
+
+        fanOut(partitions, concurrency, query, batch -> {
+            var lists = new ArrayList<List<T>>(batch.size() + 1);
+            lists.addAll(top);
+            lists.addAll(batch);
+            top.set(0, comparator == null ? concat(lists, maxSize) : merge(lists, comparator, maxSize));
+            // without sort, any documents are acceptable. stop fanning out once enough are found
+            return comparator != null || top.get(0).size() < maxSize;
+        });
+
+        var merged = top.get(0);
+        return offset >= merged.size() ? List.of() : new ArrayList<>(merged.subList(offset, merged.size()));
+    }
+
+    /**
+     * Count documents in all partitions
+     *
+     * @param partitions  partitions to query
+     * @param concurrency max partitions queried at the same time
+     * @param query       count query of a partition
+     * @return sum of counts
+     * @throws Exception the first exception thrown by a partition query
+     */
+    public static long count(List<String> partitions, int concurrency, PartitionQuery<? extends Number> query) throws Exception {
+        var sum = new long[]{0};
+        fanOut(partitions, concurrency, query, batch -> {
+            for (var count : batch) {
+                sum[0] += count == null ? 0 : count.longValue();
+            }
+            return true;
+        });
+        return sum[0];
+    }
+
+    /**
+     * Execute a query for every partition, with at most concurrency queries running at the same time.
+     *
+     * <p>
+     * Results are passed to the consumer in the calling thread, in batches of the results arrived so far.
+     * Workers wait when the consumer is slower than the queries, so at most concurrency results are held besides the ones being consumed.
+     * </p>
+     *
+     * @param partitions  partitions to query
+     * @param concurrency max partitions queried at the same time
+     * @param query       query of a partition
+     * @param consumer    consumer of a batch of results. return false to skip the remaining partitions
+     * @throws Exception the first exception thrown by a partition query
+     */
+    public static <T> void fanOut(List<String> partitions, int concurrency, PartitionQuery<? extends T> query, BatchConsumer<T> consumer) throws Exception {
+
+        Checker.checkNotNull(query, "query");
+        Checker.checkNotNull(consumer, "consumer");
+        Checker.check(concurrency > 0, "concurrency should be > 0");
+
+        if (CollectionUtils.isEmpty(partitions)) {
+            return;
+        }
+
+        var workers = Math.min(concurrency, partitions.size());
+        BlockingQueue<PartitionResult<T>> results = new ArrayBlockingQueue<>(workers);
+        var next = new AtomicInteger();
+        var cancelled = new AtomicBoolean();
+
+        for (int i = 0; i < workers; i++) {
+            // retries and bytes recorded by the workers are attributed to the operation of the calling thread
+            DefaultExecutorHolder.EXECUTOR.execute(OperationContext.wrap(() -> {
+                int index;
+                while (!cancelled.get() && (index = next.getAndIncrement()) < partitions.size()) {
+                    PartitionResult<T> result;
+                    try {
+                        result = new PartitionResult<>(query.apply(partitions.get(index)), null);
+                    } catch (Exception e) {
+                        result = new PartitionResult<>(null, e);
+                    }
+                    if (!offer(results, result, cancelled)) {
+                        return;
+                    }
+                }
+            }));
+        }
+
+        try {
+            var received = 0;
+            var batch = new ArrayList<PartitionResult<T>>(workers);
+            var values = new ArrayList<T>(workers);
+            while (received < partitions.size()) {
+                batch.clear();
+                batch.add(results.take());
+                results.drainTo(batch);
+                received += batch.size();
+
+                values.clear();
+                for (var result : batch) {
+                    if (result.error() != null) {
+                        throw result.error();
+                    }
+                    values.add(result.value());
+                }
+                if (!consumer.accept(values)) {
+                    return;
+                }
+            }
+        } finally {
+            cancelled.set(true);
+        }
+    }
+
+    /**
+     * Consumer of a batch of partition results
+     *
+     * @param <T> type of result
+     */
+    @FunctionalInterface
+    public interface BatchConsumer<T> {
+        /**
+         * @param batch results arrived
+         * @return true to continue, false to skip the remaining partitions
+         */
+        boolean accept(List<T> batch);
+    }
+
+    static <T> boolean offer(BlockingQueue<PartitionResult<T>> results, PartitionResult<T> result, AtomicBoolean cancelled) {
+        try {
+            while (!results.offer(result, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelled.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Merge sorted lists into one sorted list by a k-way heap, keeping at most maxSize elements.
+     * Elements comparing equal keep the order of the lists.
+     *
+     * @param lists      lists sorted by comparator
+     * @param comparator comparator
+     * @param maxSize    max size of the result
+     * @return merged list
+     */
+    public static <T> List<T> merge(List<? extends List<T>> lists, Comparator<? super T> comparator, int maxSize) {
+
+        // heap entry: [listIndex, elementIndex]
+        var heap = new PriorityQueue<int[]>(Math.max(1, lists.size()), (a, b) -> {
+            var ret = comparator.compare(lists.get(a[0]).get(a[1]), lists.get(b[0]).get(b[1]));
+            return ret != 0 ? ret : Integer.compare(a[0], b[0]);
+        });
+
+        var total = 0L;
+        for (int i = 0; i < lists.size(); i++) {
+            var list = lists.get(i);
+            if (CollectionUtils.isNotEmpty(list)) {
+                heap.add(new int[]{i, 0});
+                total += list.size();
+            }
+        }
+
+        var ret = new ArrayList<T>((int) Math.min(total, maxSize));
+        while (!heap.isEmpty() && ret.size() < maxSize) {
+            var entry = heap.poll();
+            var list = lists.get(entry[0]);
+            ret.add(list.get(entry[1]));
+            if (entry[1] + 1 < list.size()) {
+                heap.add(new int[]{entry[0], entry[1] + 1});
+            }
+        }
+        return ret;
+    }
+
+    static <T> List<T> concat(List<? extends List<T>> lists, int maxSize) {
+        var ret = new ArrayList<T>();
+        for (var list : lists) {
+            for (var element : list) {
+                if (ret.size() >= maxSize) {
+                    return ret;
+                }
+                ret.add(element);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get a comparator of documents by sort, in order to merge the sorted results of partitions
+     *
+     * <p>
+     * Values are compared in the order of null &lt; booleans &lt; numbers &lt; strings &lt; arrays &lt; objects, the same as jsonb(see docs/postgres-sort-order.md).
+     * The type suffix of a sort key("age::int") is ignored, so this is used for mongodb.
+     * Postgres uses PGSortUtil.getComparator4Merge instead, which follows the casts and text keys of ORDER BY.
+     * </p>
+     *
+     * @param sort             sort keys and orders. e.g. ["name", "ASC", "_ts", "DESC"]
+     * @param nullsGreatest    true if a missing value is greater than any value(postgres), false if smaller(mongodb)
+     * @param stringComparator comparator of string values
+     * @return comparator, or null if sort is empty
+     */
+    public static Comparator<Map<String, Object>> comparator(List<String> sort, boolean nullsGreatest, Comparator<String> stringComparator) {
+
+        if (CollectionUtils.isEmpty(sort)) {
+            return null;
+        }
+
+        Comparator<Map<String, Object>> ret = null;
+        for (int i = 0; i + 1 < sort.size(); i += 2) {
+            var key = sort.get(i);
+            var desc = "DESC".equalsIgnoreCase(sort.get(i + 1));
+
+            Comparator<Map<String, Object>> keyComparator = (a, b) -> {
+                var va = KeysetUtil.getValue(a, key);
+                var vb = KeysetUtil.getValue(b, key);
+                int cmp;
+                if (va == null || vb == null) {
+                    // a missing value is the greatest value in postgres(ASC NULLS LAST / DESC NULLS FIRST), and the smallest in mongodb
+                    cmp = va == null ? (vb == null ? 0 : 1) : -1;
+                    cmp = nullsGreatest ? cmp : -cmp;
+                } else {
+                    cmp = compareValues(va, vb, stringComparator);
+                }
+                return desc ? -cmp : cmp;
+            };
+            ret = ret == null ? keyComparator : ret.thenComparing(keyComparator);
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object a, Object b, Comparator<String> stringComparator) {
+        var typeA = typeOrder(a);
+        var typeB = typeOrder(b);
+        if (typeA != typeB) {
+            return Integer.compare(typeA, typeB);
+        }
+        if (a instanceof Number na && b instanceof Number nb) {
+            if (isIntegral(na) && isIntegral(nb)) {
+                return Long.compare(na.longValue(), nb.longValue());
+            }
+            return Double.compare(na.doubleValue(), nb.doubleValue());
+        }
+        if (a instanceof String sa && b instanceof String sb) {
+            return stringComparator.compare(sa, sb);
+        }
+        if (a instanceof Comparable ca && a.getClass().isInstance(b)) {
+            return ca.compareTo(b);
+        }
+        return 0;
+    }
+
+    static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    static int typeOrder(Object value) {
+        if (value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof Number) {
+            return 2;
+        }
+        if (value instanceof String) {
+            return 3;
+        }
+        if (value instanceof List<?>) {
+            return 4;
+        }
+        if (value instanceof Map<?, ?>) {
+            return 5;
+        }
+        return 6;
+    }
+}
@@ -0,0 +1,167 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A util for keyset(seek) pagination, used by Condition.after(continuationToken) for postgres and mongodb.
+ *
+ * <p>
+ * The continuation token is an opaque base64url string encoding the sort keys and the values of the sort keys of the last document in a page.
+ * The next page is fetched by a seek predicate like {@code (sortKey, id) > (?, ?)} instead of OFFSET, so page N costs the same as page 1.
+ * </p>
+ */
+public class KeysetUtil {
+
+    /**
+     * Normalize the sort for keyset pagination. "_ts" and "id" are added as tie-breakers(using the first sort order) if not present,
+     * in the same way as the default sort of postgres. Empty sort is treated as ["id", "ASC"].
+     *
+     * <p>
+     * {@code
+     * // input: ["name", "DESC"]
+     * // output: ["name", "DESC", "_ts", "DESC", "id", "DESC"]
+     * }
+     * </p>
+     *
+     * @param sort list of sort key and orders
+     * @return normalized sort pairs, which always ends with "id"
+     */
+    public static List<String> normalizeSort(List<String> sort) {
+
+        var sortMap = new LinkedHashMap<String, String>();
+        if (CollectionUtils.isNotEmpty(sort)) {
+            for (int i = 0; i + 1 < sort.size(); i += 2) {
+                if (StringUtils.isBlank(sort.get(i))) {
+                    continue;
+                }
+                sortMap.put(sort.get(i), sort.get(i + 1).toUpperCase());
+                if ("id".equals(sort.get(i))) {
+                    // id is unique, so sort keys after id have no effect
+                    break;
+                }
+            }
+        }
+
+        var firstOrder = sortMap.isEmpty() ? "ASC" : sortMap.values().iterator().next();
+
+        if (!sortMap.containsKey("id")) {
+            // id is always the last tie-breaker, so that the seek predicate is definite
+            if (!sortMap.isEmpty() && !sortMap.containsKey("_ts")) {
+                sortMap.put("_ts", firstOrder);
+            }
+            sortMap.put("id", firstOrder);
+        }
+
+        var ret = new ArrayList<String>();
+        sortMap.forEach((key, order) -> {
+            ret.add(key);
+            ret.add(order);
+        });
+        return ret;
+    }
+
+    /**
+     * Prepare a copy of the condition for a keyset pagination query.
+     * limit is increased by 1 in order to know whether there is a next page,
+     * and the sort keys are added to fields(if specified) in order to encode the continuation token.
+     *
+     * @param cond condition using keyset pagination
+     * @return a copy of the condition
+     */
+    public static Condition prepareCondition(Condition cond) {
+        var ret = cond.copy();
+        ret.limit = cond.limit + 1;
+        if (CollectionUtils.isNotEmpty(ret.fields)) {
+            var sort = normalizeSort(cond.sort);
+            for (int i = 0; i < sort.size(); i += 2) {
+                ret.fields.add(StringUtils.substringBefore(sort.get(i), "::"));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Encode a continuation token from the last document of a page
+     *
+     * @param sort normalized sort pairs
+     * @param lastDoc the raw last document of the page(before timestamp precision is processed)
+     * @return continuation token
+     */
+    public static String encode(List<String> sort, Map<String, Object> lastDoc) {
+        Checker.checkNotEmpty(sort, "sort");
+        Checker.checkNotNull(lastDoc, "lastDoc");
+
+        var values = new ArrayList<Object>();
+        for (int i = 0; i < sort.size(); i += 2) {
+            values.add(getValue(lastDoc, sort.get(i)));
+        }
+
+        var token = new LinkedHashMap<String, Object>();
+        token.put("sort", sort);
+        token.put("values", values);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonUtil.toJsonNoIndent(token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token to the values of the sort keys. The sort of the token should be the same as the current sort.
+     *
+     * @param token continuation token
+     * @param sort normalized sort pairs
+     * @return values of the sort keys, in the same order as the sort keys
+     */
+    public static List<Object> decode(String token, List<String> sort) {
+        Checker.checkNotBlank(token, "token");
+        Checker.checkNotEmpty(sort, "sort");
+
+        Map<String, Object> map;
+        try {
+            map = JsonUtil.toMap(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid continuationToken: " + token, e);
+        }
+
+        var tokenSort = map.get("sort");
+        var values = map.get("values");
+
+        if (!Objects.equals(tokenSort, sort)) {
+            throw new IllegalArgumentException("continuationToken does not match the sort of condition. token sort: %s, condition sort: %s".formatted(tokenSort, sort));
+        }
+        if (!(values instanceof List<?> valueList) || valueList.size() * 2 != sort.size()) {
+            throw new IllegalArgumentException("Invalid continuationToken values: " + values);
+        }
+
+        return new ArrayList<>(valueList);
+    }
+
+    /**
+     * get the value in a nested map by a dot key. the type suffix("::int") will be removed.
+     *
+     * @param map document
+     * @param key "address.city" or "age::int"
+     * @return value or null if not exist
+     */
+    static Object getValue(Map<String, Object> map, String key) {
+        var path = StringUtils.substringBefore(key, "::");
+
+        Object current = map;
+        for (var part : path.split("\\.")) {
+            if (!(current instanceof Map<?, ?> currentMap)) {
+                return null;
+            }
+            current = currentMap.get(part);
+        }
+        return current;
+    }
+
+}
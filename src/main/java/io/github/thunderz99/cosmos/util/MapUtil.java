@@ -1,5 +1,6 @@
 package io.github.thunderz99.cosmos.util;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -166,6 +167,56 @@ public class MapUtil {
         return m1;
     }
 
+    /**
+     * Extract the fields from a map, like SELECT VALUE {"name": c.name, "address": {"city": c.address.city}} in Cosmos DB.
+     *
+     * <p>
+     * Nested fields are separated by "." (e.g. "address.city"). Fields not existing in the map are omitted.
+     * </p>
+     *
+     * @param map    map to extract from
+     * @param fields fields to extract
+     * @return a new map containing the fields only
+     */
+    public static Map<String, Object> project(Map<String, ?> map, Collection<String> fields) {
+        var ret = new LinkedHashMap<String, Object>();
+        if (map == null) {
+            return ret;
+        }
+
+        for (var field : fields) {
+            if (StringUtils.isEmpty(field)) {
+                continue;
+            }
+            var keys = StringUtils.split(field, '.');
+
+            // find the value in the source map
+            Object value = map;
+            for (var key : keys) {
+                value = value instanceof Map<?, ?> m ? m.get(key) : null;
+                if (value == null) {
+                    break;
+                }
+            }
+            if (value == null) {
+                continue;
+            }
+
+            // put the value into the nested maps of the result
+            Map<String, Object> target = ret;
+            for (int i = 0; i < keys.length - 1; i++) {
+                var child = target.get(keys[i]);
+                if (!(child instanceof Map<?, ?>)) {
+                    child = new LinkedHashMap<String, Object>();
+                    target.put(keys[i], child);
+                }
+                target = (Map<String, Object>) child;
+            }
+            target.put(keys[keys.length - 1], value);
+        }
+        return ret;
+    }
+
     /**
      * Check if a map is immutable.
      *
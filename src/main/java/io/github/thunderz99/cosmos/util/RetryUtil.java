@@ -13,7 +13,9 @@ import io.github.thunderz99.cosmos.CosmosException;
 import io.github.thunderz99.cosmos.dto.CosmosBatchResponseWrapper;
 import io.github.thunderz99.cosmos.dto.CosmosBulkResult;
 import io.github.thunderz99.cosmos.impl.cosmosdb.CosmosDatabaseImpl;
+import io.github.thunderz99.cosmos.metrics.OperationContext;
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.postgresql.util.PSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,12 +90,50 @@ public class RetryUtil {
     }
 
     public static <T> T executeWithRetry(Callable<T> func, long defaultWaitTime, int maxRetries) throws Exception {
+        return executeWithRetry(func, defaultWaitTime, maxRetries, null);
+    }
+
+    /**
+     * execute with retry, admitted by an adaptive rate limiter before each attempt
+     *
+     * @param limiter rate limiter of the container. null to disable
+     * @param func    function to execute
+     * @return result of func
+     * @throws Exception 429 without calling func if the limiter rejects the request
+     */
+    public static <T> T executeWithRetry(AdaptiveRateLimiter limiter, Callable<T> func) throws Exception {
+        return executeWithRetry(func, SINGLE_EXECUTION_DEFAULT_WAIT_TIME, SINGLE_EXECUTION_MAX_RETRIES, limiter);
+    }
+
+    /**
+     * execute with retry. When a limiter is given, each attempt waits to be admitted by the limiter, the limiter learns from the 429s,
+     * and a random jitter is added to the backoff.
+     *
+     * @param func            function to execute
+     * @param defaultWaitTime wait time of the first retry if the exception has no retryAfter
+     * @param maxRetries      max retries
+     * @param limiter         rate limiter of the container. null to disable
+     * @return result of func
+     * @throws Exception
+     */
+    public static <T> T executeWithRetry(Callable<T> func, long defaultWaitTime, int maxRetries, AdaptiveRateLimiter limiter) throws Exception {
         var i = 0;
         while (true) {
             CosmosException cosmosException = null;
+            if (limiter != null) {
+                // outside the try block. a request rejected by the limiter is not retried, so the load is shed
+                var waited = limiter.acquire(1);
+                if (waited > 0) {
+                    OperationContext.recordThrottleWait(waited);
+                }
+            }
             try {
                 i++;
-                return func.call();
+                var ret = func.call();
+                if (limiter != null) {
+                    limiter.onResponse();
+                }
+                return ret;
             } catch (com.azure.cosmos.CosmosException ce) {
                 // deal with sdkv4's CosmosException
                 cosmosException = new CosmosException(ce);
@@ -113,6 +153,14 @@ public class RetryUtil {
                 }
             }
 
+            if (limiter != null) {
+                if (isThrottled(cosmosException)) {
+                    limiter.onThrottled(cosmosException.getRetryAfterInMilliseconds());
+                } else {
+                    limiter.onResponse();
+                }
+            }
+
             if (shouldRetry(cosmosException)) {
                 if (i > maxRetries) {
                     log.warn("RetryUtil exceeded max retries. statusCode:{}, code:{}, retryAfter:{} ms, maxRetries:{}, message:{}", cosmosException.getStatusCode(), cosmosException.getCode(), cosmosException.getRetryAfterInMilliseconds(), maxRetries, cosmosException.getMessage());
@@ -126,7 +174,11 @@ public class RetryUtil {
                         log.warn("retryAfterInMilliseconds < 0. Will retry by time({} ms)", wait, cosmosException);
                     }
                 }
+                if (limiter != null) {
+                    wait = limiter.withJitter(wait);
+                }
                 log.warn("RetryUtil 429 occurred. statusCode:{}, wait:{} ms, message:{}", cosmosException.getStatusCode(), wait, cosmosException.getMessage());
+                OperationContext.recordRetry(wait);
                 Thread.sleep(wait);
             } else {
                 if(cosmosException.getStatusCode() != 404) {
@@ -180,6 +232,30 @@ public class RetryUtil {
      * @throws Exception
      */
     public static CosmosBatchResponseWrapper executeBatchWithRetry(Callable<CosmosBatchResponseWrapper> func, long defaultWaitTime, int maxRetries) throws Exception {
+        return executeBatchWithRetry(func, defaultWaitTime, maxRetries, null);
+    }
+
+    /**
+     * execute batch with retry, admitted by an adaptive rate limiter. used for cosmosdb only
+     * @param limiter rate limiter of the container. null to disable
+     * @param func
+     * @return
+     * @throws Exception
+     */
+    public static CosmosBatchResponseWrapper executeBatchWithRetry(AdaptiveRateLimiter limiter, Callable<CosmosBatchResponseWrapper> func) throws Exception {
+        return executeBatchWithRetry(func, BATCH_EXECUTION_DEFAULT_WAIT_TIME, BATCH_EXECUTION_MAX_RETRIES, limiter);
+    }
+
+    /**
+     * execute batch with retry. used for cosmosdb only
+     * @param func
+     * @param defaultWaitTime
+     * @param maxRetries
+     * @param limiter rate limiter of the container. null to disable
+     * @return
+     * @throws Exception
+     */
+    public static CosmosBatchResponseWrapper executeBatchWithRetry(Callable<CosmosBatchResponseWrapper> func, long defaultWaitTime, int maxRetries, AdaptiveRateLimiter limiter) throws Exception {
         return executeWithRetry(() -> {
             var response = func.call();
             if (!response.isSuccessStatusCode()) {
@@ -191,7 +267,7 @@ public class RetryUtil {
                         response.getErrorMessage(), response.getRetryAfterDuration().toMillis());
             }
             return response;
-        }, defaultWaitTime, maxRetries);
+        }, defaultWaitTime, maxRetries, limiter);
     }
 
     /**
@@ -207,6 +283,25 @@ public class RetryUtil {
         return executeBulkWithRetry(coll, operations,operationFunc, 10);
     }
 
+    /**
+     * do common bulk operation(create, upsert, delete) with retry, admitted by an adaptive rate limiter. used in cosmosdb only
+     *
+     * <p>
+     * The operations are sent in chunks of the limiter's burst size, each waiting to be admitted,
+     * so that a large bulk is spread at the permitted rate instead of being sent at once.
+     * </p>
+     *
+     * @param coll           collection name
+     * @param operations     operations to be executed
+     * @param operationFunc  function to execute the operation
+     * @param limiter        rate limiter of the container. null to disable
+     * @return CosmosBulkResult
+     * @throws Exception
+     */
+    public static CosmosBulkResult executeBulkWithRetry(String coll, List<CosmosItemOperation> operations, CosmosDatabaseImpl.BulkOperationable operationFunc, AdaptiveRateLimiter limiter) throws Exception {
+        return executeBulkWithRetry(coll, operations, operationFunc, 10, limiter);
+    }
+
     /**
      * do common bulk operation(create, upsert, delete) with retry. number of maxRetries if a param, which is more testable for unit test
      *
@@ -218,6 +313,21 @@ public class RetryUtil {
      * @throws Exception
      */
     static CosmosBulkResult executeBulkWithRetry(String coll, List<CosmosItemOperation> operations, CosmosDatabaseImpl.BulkOperationable operationFunc, int maxRetries) throws Exception {
+        return executeBulkWithRetry(coll, operations, operationFunc, maxRetries, null);
+    }
+
+    /**
+     * do common bulk operation(create, upsert, delete) with retry and an optional adaptive rate limiter
+     *
+     * @param coll           collection name
+     * @param operations     operations to be executed
+     * @param operationFunc  function to execute the operation
+     * @param maxRetries     max retry times
+     * @param limiter        rate limiter of the container. null to disable
+     * @return CosmosBulkResult
+     * @throws Exception
+     */
+    static CosmosBulkResult executeBulkWithRetry(String coll, List<CosmosItemOperation> operations, CosmosDatabaseImpl.BulkOperationable operationFunc, int maxRetries, AdaptiveRateLimiter limiter) throws Exception {
         var bulkResult = new CosmosBulkResult();
         long delay = 0;
         long maxDelay = 16000;
@@ -227,7 +337,9 @@ public class RetryUtil {
         for (int attempt = 0; attempt < maxRetries; attempt++) {
 
             var retryTasks = new ArrayList<CosmosItemOperation>();
-            var execResult = operationFunc.execute(operations);
+            var notSent = new ArrayList<CosmosItemOperation>();
+            var execResult = executeBulkOperations(operations, operationFunc, limiter, notSent);
+            var throttledInAttempt = false;
 
             for (CosmosBulkOperationResponse<?> result : execResult) {
                 var operation = result.getOperation();
@@ -237,12 +349,16 @@ public class RetryUtil {
                 }
                 log.info("Document bulk operation: operation type:{}, request charge:{}, coll:{}, partition:{}",
                         operation.getOperationType().name(), response.getRequestCharge(), coll, operation.getPartitionKeyValue().toString());
+                OperationContext.recordRequestCharge(response.getRequestCharge());
 
                 if (RetryUtil.shouldRetry(response.getStatusCode())) {
                     delay = Math.max(delay, response.getRetryAfterDuration().toMillis());
                     log.warn("doBulkWithRetry 429 occurred. Code:{}, coll:{}, partition:{}. operationType:{}, Wait:{} ms",
                             response.getStatusCode(), coll, operation.getPartitionKeyValue().toString(), operation.getOperationType(), delay);
                     retryTasks.add(operation);
+                    if (limiter != null && response.getStatusCode() == 429) {
+                        throttledInAttempt = true;
+                    }
                 } else if (response.isSuccessStatusCode()) {
                     var item = response.getItem(mapInstance.getClass());
                     if (item == null) continue;
@@ -262,6 +378,23 @@ public class RetryUtil {
                 }
             }
 
+            if (limiter != null) {
+                // the 429s of an attempt are the same congestion, so the limiter learns from them once
+                if (throttledInAttempt) {
+                    limiter.onThrottled(delay);
+                } else {
+                    limiter.onResponse();
+                }
+            }
+
+            if (!notSent.isEmpty()) {
+                // rejected by the limiter. the operations sent so far are applied, so return them as a partial result instead of throwing
+                log.warn("doBulkWithRetry rejected by the rate limiter. coll:{}, notSent:{}, toRetry:{}", coll, notSent.size(), retryTasks.size());
+                retryTasks.addAll(notSent);
+                operations = retryTasks;
+                break;
+            }
+
             if (retryTasks.isEmpty()) {
                 operations.clear();
                 break;
@@ -269,8 +402,10 @@ public class RetryUtil {
                 operations = retryTasks;
             }
 
+            var wait = limiter != null ? limiter.withJitter(delay) : delay;
+            OperationContext.recordRetry(wait);
             try {
-                Thread.sleep(delay);
+                Thread.sleep(wait);
             } catch (InterruptedException ignored) {
             }
             // Exponential Backoff
@@ -283,6 +418,50 @@ public class RetryUtil {
     }
 
 
+    /**
+     * execute the bulk operations. When a limiter is given, the operations are executed in chunks of the limiter's burst size,
+     * each waiting to be admitted. If a chunk is rejected by the limiter, it and the following chunks are not sent, and added to notSent.
+     */
+    static List<CosmosBulkOperationResponse<?>> executeBulkOperations(List<CosmosItemOperation> operations, CosmosDatabaseImpl.BulkOperationable operationFunc,
+                                                                     AdaptiveRateLimiter limiter, List<CosmosItemOperation> notSent) throws Exception {
+        var ret = new ArrayList<CosmosBulkOperationResponse<?>>();
+        if (limiter == null) {
+            operationFunc.execute(operations).forEach(ret::add);
+            return ret;
+        }
+
+        for (var start = 0; start < operations.size(); ) {
+            var end = Math.min(operations.size(), start + limiter.getMaxBurstPermits());
+            var chunk = operations.subList(start, end);
+            long waited;
+            try {
+                waited = limiter.acquire(chunk.size());
+            } catch (CosmosException e) {
+                if (!AdaptiveRateLimiter.CODE_RATE_LIMITED.equals(e.getCode())) {
+                    throw e;
+                }
+                notSent.addAll(operations.subList(start, operations.size()));
+                break;
+            }
+            if (waited > 0) {
+                OperationContext.recordThrottleWait(waited);
+            }
+            operationFunc.execute(new ArrayList<>(chunk)).forEach(ret::add);
+            start = end;
+        }
+        return ret;
+    }
+
+    /**
+     * Judge whether the exception is a throttling(429) by the server
+     *
+     * @param cosmosException cosmosException
+     * @return true/false
+     */
+    static boolean isThrottled(CosmosException cosmosException) {
+        return cosmosException.getStatusCode() == 429 || StringUtils.contains(cosmosException.getMessage(), "Request rate is large");
+    }
+
     /**
      * Judge whether we should retry for this cosmos exception. Currently, we will retry for 429/449/408
      *
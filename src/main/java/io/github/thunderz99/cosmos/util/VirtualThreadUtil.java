@@ -0,0 +1,36 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Util to create virtual thread executors.
+ *
+ * <p>
+ * This is the JDK 17 version, virtual threads are not supported. The JDK 21 version is in src/main/java21, packaged into META-INF/versions/21 of the multi-release jar.
+ * </p>
+ */
+public class VirtualThreadUtil {
+
+    VirtualThreadUtil() {
+    }
+
+    /**
+     * Whether virtual threads are supported in the running JDK
+     *
+     * @return false for JDK 17
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task
+     *
+     * @param namePrefix prefix of thread names
+     * @return executor
+     * @throws UnsupportedOperationException always for JDK 17
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("virtual threads require JDK 21 or later. java.version:" + System.getProperty("java.version"));
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Util to create virtual thread executors.
+ *
+ * <p>
+ * This is the JDK 21 version, packaged into META-INF/versions/21 of the multi-release jar.
+ * </p>
+ */
+public class VirtualThreadUtil {
+
+    VirtualThreadUtil() {
+    }
+
+    /**
+     * Whether virtual threads are supported in the running JDK
+     *
+     * @return true for JDK 21 or later
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task
+     *
+     * @param namePrefix prefix of thread names
+     * @return executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}
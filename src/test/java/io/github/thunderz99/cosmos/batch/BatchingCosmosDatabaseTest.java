@@ -0,0 +1,154 @@
+package io.github.thunderz99.cosmos.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosBuilder;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.CosmosDocument;
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.WriteBatchOption;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresImplTest;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchingCosmosDatabaseTest {
+
+    static Cosmos cosmos;
+
+    static CosmosDatabase db;
+
+    static final String dbName = "java_cosmos";
+    static final String coll = "write_batch_test_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        cosmos = new CosmosBuilder().withDatabaseType("postgres")
+                .withConnectionString(EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", PostgresImplTest.LOCAL_CONNECTION_STRING))
+                .build();
+        db = cosmos.createIfNotExist(dbName, coll);
+        for (var partition : List.of("Events", "Events2", "Users")) {
+            ((PostgresDatabaseImpl) db).createTableIfNotExists(coll, partition);
+        }
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        if (cosmos != null) {
+            cosmos.deleteCollection(dbName, coll);
+            cosmos.closeClient();
+        }
+    }
+
+    @Test
+    void createAsync_should_be_coalesced_into_batches() throws Exception {
+        var partition = "Events";
+        var size = 250;
+
+        try (var batching = new BatchingCosmosDatabase(db, new WriteBatchOption().maxBatchSize(100).maxDelayMillis(50))) {
+            var futures = IntStream.range(0, size)
+                    .mapToObj(i -> batching.createAsync(coll, Map.of("id", "event_" + i, "value", i), partition))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            // each caller gets its own document
+            for (var i = 0; i < size; i++) {
+                var doc = futures.get(i).join().toMap();
+                assertThat(doc.get("id")).isEqualTo("event_" + i);
+                assertThat(doc.get("value")).isEqualTo(i);
+            }
+
+            var stats = batching.getStats();
+            assertThat(stats.submittedCount).isEqualTo(size);
+            assertThat(stats.batchedDocumentCount).isEqualTo(size);
+            assertThat(stats.batchCount).isBetween(3L, 10L);
+            assertThat(stats.fallbackCount).isZero();
+            assertThat(stats.pendingCount).isZero();
+
+            assertThat(db.count(coll, Condition.filter(), partition)).isEqualTo(size);
+
+            // a document without id is given one
+            var created = batching.create(coll, Map.of("value", -1), partition);
+            assertThat(created.toMap().get("id")).isNotNull();
+        }
+    }
+
+    @Test
+    void each_caller_should_get_its_own_exception() throws Exception {
+        var partition = "Users";
+        db.create(coll, Map.of("id", "existing", "name", "existing"), partition);
+
+        try (var batching = new BatchingCosmosDatabase(db, new WriteBatchOption().maxBatchSize(10).maxDelayMillis(50))) {
+            var ok1 = batching.createAsync(coll, Map.of("id", "new_1", "name", "new1"), partition);
+            var conflict = batching.createAsync(coll, Map.of("id", "existing", "name", "conflict"), partition);
+            var ok2 = batching.createAsync(coll, Map.of("id", "new_2", "name", "new2"), partition);
+
+            assertThat(ok1.join().toMap().get("name")).isEqualTo("new1");
+            assertThat(ok2.join().toMap().get("name")).isEqualTo("new2");
+            assertThatThrownBy(conflict::join).isInstanceOf(CompletionException.class)
+                    .cause().isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(409));
+
+            // the sync api throws the exception itself
+            assertThatThrownBy(() -> batching.create(coll, Map.of("id", "existing"), partition))
+                    .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(409));
+
+            assertThat(db.read(coll, "existing", partition).toMap().get("name")).isEqualTo("existing");
+        }
+    }
+
+    @Test
+    void upserts_of_the_same_id_should_be_applied_in_order() throws Exception {
+        var partition = "Users";
+
+        try (var batching = new BatchingCosmosDatabase(db, new WriteBatchOption().maxBatchSize(100).maxDelayMillis(50))) {
+            var futures = new ArrayList<CompletableFuture<CosmosDocument>>();
+            for (var i = 0; i < 5; i++) {
+                futures.add(batching.upsertAsync(coll, Map.of("id", "upsert_same_id", "version", i), partition));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            assertThat(db.read(coll, "upsert_same_id", partition).toMap().get("version")).isEqualTo(4);
+            // a batch contains at most one write of an id
+            assertThat(batching.getStats().batchCount).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void callers_should_be_blocked_when_the_buffer_is_full() throws Exception {
+        var option = new WriteBatchOption().maxBatchSize(10).maxPendingDocuments(10).maxDelayMillis(60_000).maxBlockMillis(100);
+
+        try (var batching = new BatchingCosmosDatabase(db, option)) {
+            // two lanes, neither is full, so nothing is flushed until maxDelayMillis
+            var futures = new ArrayList<CompletableFuture<CosmosDocument>>();
+            for (var i = 0; i < 5; i++) {
+                futures.add(batching.createAsync(coll, Map.of("id", "blocked_" + i), "Events2"));
+                futures.add(batching.createAsync(coll, Map.of("id", "blocked_" + i), "Users"));
+            }
+            assertThat(batching.getStats().pendingCount).isEqualTo(10);
+
+            var start = System.currentTimeMillis();
+            assertThatThrownBy(() -> batching.createAsync(coll, Map.of("id", "blocked_rejected"), "Users"))
+                    .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(429));
+            assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(100);
+            assertThat(batching.getStats().rejectedCount).isEqualTo(1);
+
+            batching.flush();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            assertThat(batching.getStats().pendingCount).isZero();
+        }
+    }
+}
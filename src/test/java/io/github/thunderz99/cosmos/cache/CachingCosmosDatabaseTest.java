@@ -0,0 +1,140 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.List;
+import java.util.Map;
+
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosBuilder;
+import io.github.thunderz99.cosmos.CosmosDatabase;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresImpl;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresImplTest;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingCosmosDatabaseTest {
+
+    static Cosmos cosmos;
+
+    static CosmosDatabase db;
+
+    static final String dbName = "java_cosmos";
+    static final String coll = "document_cache_test_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+    static final String partition = "Users";
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        cosmos = new CosmosBuilder().withDatabaseType("postgres")
+                .withEtagEnabled(true)
+                .withConnectionString(EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", PostgresImplTest.LOCAL_CONNECTION_STRING))
+                .withDocumentCache(new DocumentCacheOption().ttlMillis(60_000).collectionTtlMillis("no_cache_coll", 0))
+                .build();
+        db = cosmos.createIfNotExist(dbName, coll);
+        ((PostgresDatabaseImpl) ((CachingCosmosDatabase) db).getDelegate()).createTableIfNotExists(coll, partition);
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        if (cosmos != null) {
+            cosmos.deleteCollection(dbName, coll);
+            cosmos.closeClient();
+        }
+    }
+
+    @Test
+    void read_should_be_cached_and_invalidated_by_writes() throws Exception {
+        assertThat(db).isInstanceOf(CachingCosmosDatabase.class);
+        var cached = (CachingCosmosDatabase) db;
+        var cache = cached.getCache();
+        var raw = cached.getDelegate();
+        var id = "read_should_be_cached_1";
+
+        try {
+            db.upsert(coll, Map.of("id", id, "firstName", "firstName1"), partition);
+            var before = cache.getStats();
+
+            // miss, then hit
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName1");
+            var read = db.read(coll, id, partition);
+            assertThat(read.toMap().get("firstName")).isEqualTo("firstName1");
+            assertThat(cache.getStats().missCount - before.missCount).isEqualTo(1);
+            assertThat(cache.getStats().hitCount - before.hitCount).isEqualTo(1);
+
+            // modifying a returned document does not affect the cache
+            read.toMap().put("firstName", "modifiedByCaller");
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName1");
+
+            // a write through the cached database invalidates the document
+            db.patch(coll, id, PatchOperations.create().set("/firstName", "firstName2"), partition);
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName2");
+            assertThat(cache.getStats().missCount - before.missCount).isEqualTo(2);
+
+            // a write bypassing the cache is not visible until the ttl expires
+            raw.patch(coll, id, PatchOperations.create().set("/firstName", "firstName3"), partition);
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName2");
+
+            // revalidated by etag after the ttl expires
+            var key = new DocumentCache.Key(dbName, coll, partition, id);
+            cache.get(key).expiresAt = 0;
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName3");
+            assertThat(cache.getStats().modifiedCount - before.modifiedCount).isEqualTo(1);
+
+            cache.get(key).expiresAt = 0;
+            assertThat(db.read(coll, id, partition).toMap().get("firstName")).isEqualTo("firstName3");
+            assertThat(cache.getStats().notModifiedCount - before.notModifiedCount).isEqualTo(1);
+            assertThat(cache.get(key).expiresAt).isGreaterThan(System.currentTimeMillis());
+
+            // delete invalidates the document
+            db.delete(coll, id, partition);
+            assertThat(cache.get(key)).isNull();
+            assertThat(db.readSuppressing404(coll, id, partition)).isNull();
+        } finally {
+            raw.delete(coll, id, partition);
+        }
+    }
+
+    @Test
+    void bulk_writes_should_invalidate_documents() throws Exception {
+        var cache = ((CachingCosmosDatabase) db).getCache();
+        var ids = List.of("bulk_writes_should_invalidate_1", "bulk_writes_should_invalidate_2");
+
+        try {
+            db.bulkUpsert(coll, ids.stream().map(id -> Map.of("id", id, "age", 1)).toList(), partition);
+            for (var id : ids) {
+                db.read(coll, id, partition);
+                assertThat(cache.get(new DocumentCache.Key(dbName, coll, partition, id))).isNotNull();
+            }
+
+            db.bulkPatch(coll, ids, PatchOperations.create().increment("/age", 1), partition);
+            for (var id : ids) {
+                assertThat(cache.get(new DocumentCache.Key(dbName, coll, partition, id))).isNull();
+                assertThat(db.read(coll, id, partition).toMap().get("age")).isEqualTo(2);
+            }
+        } finally {
+            db.bulkDelete(coll, ids, partition);
+        }
+    }
+
+    @Test
+    void wrap_should_return_db_itself_when_disabled() {
+        var raw = ((CachingCosmosDatabase) db).getDelegate();
+        assertThat(CachingCosmosDatabase.wrap(raw, null)).isSameAs(raw);
+        assertThat(((PostgresImpl) cosmos).documentCache).isNotNull();
+    }
+
+    @Test
+    void getId_should_work() {
+        assertThat(CachingCosmosDatabase.getId("id1")).isEqualTo("id1");
+        assertThat(CachingCosmosDatabase.getId(Map.of("id", "id2"))).isEqualTo("id2");
+        assertThat(CachingCosmosDatabase.getId(Map.of("name", "noId"))).isNull();
+        assertThat(CachingCosmosDatabase.getId(null)).isNull();
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentCacheTest {
+
+    static DocumentCache.Key key(String id) {
+        return new DocumentCache.Key("db1", "coll1", "Users", id);
+    }
+
+    static Map<String, Object> doc(String id, int payloadLength) {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("id", id);
+        map.put("payload", "x".repeat(payloadLength));
+        map.put("_etag", "etag_" + id);
+        return map;
+    }
+
+    @Test
+    void put_and_get_should_work() {
+        var cache = new DocumentCache(new DocumentCacheOption());
+        var key = key("id1");
+
+        assertThat(cache.get(key)).isNull();
+        cache.put(key, doc("id1", 10), cache.version(key), 60_000);
+
+        var entry = cache.get(key);
+        assertThat(entry.data).containsEntry("id", "id1");
+        assertThat(entry.etag).isEqualTo("etag_id1");
+        assertThat(entry.expiresAt).isGreaterThan(System.currentTimeMillis());
+        assertThat(cache.getStats().size).isEqualTo(1);
+    }
+
+    @Test
+    void put_should_be_ignored_after_invalidation() {
+        var cache = new DocumentCache(new DocumentCacheOption());
+        var key = key("id1");
+
+        // a read started before a write, and finished after the write's invalidation
+        var version = cache.version(key);
+        cache.invalidate(key);
+        cache.put(key, doc("id1", 10), version, 60_000);
+        assertThat(cache.get(key)).isNull();
+
+        cache.put(key, doc("id1", 10), cache.version(key), 60_000);
+        assertThat(cache.get(key)).isNotNull();
+        assertThat(cache.getStats().invalidationCount).isEqualTo(1);
+    }
+
+    @Test
+    void cache_should_be_bounded_by_entries_and_bytes() {
+        // bounded by entries
+        var byEntries = new DocumentCache(new DocumentCacheOption().maxEntries(10).maxBytes(1024 * 1024));
+        for (int i = 0; i < 100; i++) {
+            var key = key("id" + i);
+            byEntries.put(key, doc("id" + i, 10), byEntries.version(key), 60_000);
+        }
+        assertThat(byEntries.getStats().size).isLessThanOrEqualTo(10);
+        assertThat(byEntries.getStats().evictionCount).isGreaterThanOrEqualTo(90);
+
+        // bounded by bytes
+        var byBytes = new DocumentCache(new DocumentCacheOption().maxEntries(10_000).maxBytes(100 * 1024));
+        for (int i = 0; i < 100; i++) {
+            var key = key("id" + i);
+            byBytes.put(key, doc("id" + i, 5 * 1024), byBytes.version(key), 60_000);
+        }
+        // about 10KB per document
+        assertThat(byBytes.getStats().size).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void invalidateAll_should_work() {
+        var cache = new DocumentCache(new DocumentCacheOption());
+        var key1 = key("id1");
+        var key2 = new DocumentCache.Key("db1", "coll2", "Users", "id2");
+        cache.put(key1, doc("id1", 10), cache.version(key1), 60_000);
+        cache.put(key2, doc("id2", 10), cache.version(key2), 60_000);
+
+        cache.invalidateAll("db1", "coll1");
+        assertThat(cache.get(key1)).isNull();
+        assertThat(cache.get(key2)).isNotNull();
+
+        cache.invalidateAll();
+        assertThat(cache.get(key2)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deepCopy_should_isolate_nested_maps_and_lists() {
+        var nested = new LinkedHashMap<String, Object>();
+        nested.put("tags", new ArrayList<>(List.of("a", "b")));
+        var map = new LinkedHashMap<String, Object>();
+        map.put("nested", nested);
+
+        var copied = DocumentCache.deepCopy(map);
+        nested.put("added", 1);
+        ((List<Object>) nested.get("tags")).add("c");
+
+        var copiedNested = (Map<String, Object>) copied.get("nested");
+        assertThat(copiedNested).doesNotContainKey("added");
+        assertThat((List<?>) copiedNested.get("tags")).containsExactly("a", "b");
+    }
+
+    @Test
+    void invalidate_by_events_should_work() {
+        var cache = new DocumentCache(new DocumentCacheOption());
+        var key1 = key("id1");
+        var key2 = key("id2");
+        var key3 = new DocumentCache.Key("db1", "coll2", "Users", "id3");
+        cache.put(key1, doc("id1", 10), cache.version(key1), 60_000);
+        cache.put(key2, doc("id2", 10), cache.version(key2), 60_000);
+        cache.put(key3, doc("id3", 10), cache.version(key3), 60_000);
+
+        var version2 = cache.version(key2);
+        cache.invalidate(List.of(
+                // db is unknown(postgres / mongodb), so matches any db
+                new InvalidationEvent(null, "coll1", "Users", "id1", "etag_changed"),
+                // already the latest one
+                new InvalidationEvent("db1", "coll1", "Users", "id2", "etag_id2"),
+                // whole partition changed
+                new InvalidationEvent(null, "coll2", "Users", null, null)));
+
+        assertThat(cache.get(key1)).isNull();
+        assertThat(cache.get(key2)).isNotNull();
+        assertThat(cache.version(key2)).isGreaterThan(version2);
+        assertThat(cache.get(key3)).isNull();
+    }
+
+    @Test
+    void estimateBytes_should_work() {
+        assertThat(DocumentCache.estimateBytes(null)).isEqualTo(0);
+        assertThat(DocumentCache.estimateBytes("abc")).isEqualTo(DocumentCache.OBJECT_OVERHEAD + 6);
+        assertThat(DocumentCache.estimateBytes(doc("id1", 1024))).isGreaterThan(2048);
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.thunderz99.cosmos.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidationBusTest {
+
+    static InvalidationEvent event(String id, String etag) {
+        return new InvalidationEvent(null, "coll1", "Users", id, etag);
+    }
+
+    /**
+     * wait until the condition is met, at most 5 seconds
+     */
+    static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void publish_should_be_coalesced_by_document() throws Exception {
+        try (var bus = new InvalidationBus(100)) {
+            var received = new CopyOnWriteArrayList<InvalidationEvent>();
+
+            // publish while the dispatcher is not delivering, so that all the events are pending
+            synchronized (bus) {
+                bus.addListener(received::addAll);
+                bus.publish(event("id1", "etag1"));
+                bus.publish(event("id2", "etag1"));
+                bus.publish(event("id1", "etag2"));
+                bus.publish(event("id1", "etag3"));
+                assertThat(bus.pending).hasSize(2);
+            }
+
+            waitUntil(() -> received.size() == 2);
+            assertThat(received).extracting(e -> e.id + ":" + e.etag).containsExactly("id1:etag3", "id2:etag1");
+
+            var stats = bus.getStats();
+            assertThat(stats.publishedCount).isEqualTo(4);
+            assertThat(stats.coalescedCount).isEqualTo(2);
+            assertThat(stats.dispatchedCount).isEqualTo(2);
+            assertThat(stats.queueDepth).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void overflow_should_resync() throws Exception {
+        try (var bus = new InvalidationBus(3)) {
+            var resyncs = new AtomicInteger();
+            var received = new CopyOnWriteArrayList<InvalidationEvent>();
+            bus.addListener(new InvalidationListener() {
+                @Override
+                public void onEvents(List<InvalidationEvent> events) {
+                    received.addAll(events);
+                }
+
+                @Override
+                public void onResync() {
+                    resyncs.incrementAndGet();
+                }
+            });
+
+            var cache = new DocumentCache(new DocumentCacheOption());
+            var key = new DocumentCache.Key("db1", "coll2", "Users", "id1");
+            cache.put(key, new HashMap<>(Map.of("id", "id1")), cache.version(key), 60_000);
+            bus.addCache(cache);
+
+            synchronized (bus) {
+                for (int i = 0; i < 5; i++) {
+                    bus.publish(event("id" + i, null));
+                }
+                assertThat(bus.pending).isEmpty();
+                assertThat(bus.resyncPending).isTrue();
+            }
+
+            waitUntil(() -> resyncs.get() == 1);
+            assertThat(received).isEmpty();
+            // everything is invalidated, even the documents not in the events
+            assertThat(cache.get(key)).isNull();
+            assertThat(bus.getStats().droppedCount).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void a_failing_listener_should_not_affect_others() throws Exception {
+        try (var bus = new InvalidationBus(100)) {
+            var received = new ArrayList<InvalidationEvent>();
+            bus.addListener(events -> {
+                throw new IllegalStateException("failing listener");
+            });
+            bus.addListener(events -> {
+                synchronized (received) {
+                    received.addAll(events);
+                }
+            });
+
+            bus.publish(event("id1", null));
+            waitUntil(() -> {
+                synchronized (received) {
+                    return received.size() == 1;
+                }
+            });
+        }
+    }
+}
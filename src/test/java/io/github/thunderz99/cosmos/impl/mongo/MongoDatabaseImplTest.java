@@ -23,6 +23,7 @@ import io.github.thunderz99.cosmos.dto.CheckBox;
 import io.github.thunderz99.cosmos.dto.EvalSkip;
 import io.github.thunderz99.cosmos.dto.FullNameUser;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
 import io.github.thunderz99.cosmos.impl.cosmosdb.CosmosImpl;
 import io.github.thunderz99.cosmos.util.EnvUtil;
 import io.github.thunderz99.cosmos.util.JsonUtil;
@@ -112,6 +113,98 @@ class MongoDatabaseImplTest {
         assertThat(db.ping(host)).isTrue();
     }
 
+    @Test
+    void find_and_count_crossPartition_should_work() throws Exception {
+
+        var user1 = new User("unittest_crossPartition_01", "first01", "last01");
+        var user2 = new User("unittest_crossPartition_02", "first02", "last02");
+        var user3 = new User("unittest_crossPartition_03", "first03", "last03");
+
+        try {
+            db.upsert(host, user1, "Users");
+            db.upsert(host, user3, "Users");
+            db.upsert(host, user2, "Users2");
+
+            // sorted across partitions, with global offset / limit
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("id", "DESC").crossPartition(true);
+                var docs = db.find(host, cond, "Users").toList(User.class);
+                assertThat(docs.stream().map(u -> u.id).toList()).containsExactly(user3.id, user2.id, user1.id);
+
+                cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("firstName", "ASC").offset(1).limit(1).crossPartition(true);
+                docs = db.find(host, cond, "Users").toList(User.class);
+                assertThat(docs.stream().map(u -> u.id).toList()).containsExactly(user2.id);
+            }
+
+            // findToIterator
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("id", "ASC").crossPartition(true);
+                var ids = new ArrayList<String>();
+                try (var iterator = db.findToIterator(host, cond, "Users")) {
+                    iterator.forEachRemaining(doc -> ids.add(doc.toMap().get("id").toString()));
+                }
+                assertThat(ids).containsExactly(user1.id, user2.id, user3.id);
+            }
+
+            // count
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").crossPartition(true);
+                assertThat(db.count(host, cond, "Users")).isEqualTo(3);
+            }
+
+        } finally {
+            db.delete(host, user1.id, "Users");
+            db.delete(host, user3.id, "Users");
+            db.delete(host, user2.id, "Users2");
+        }
+    }
+
+    @Test
+    void readMany_should_work() throws Exception {
+
+        var user1 = new User("unittest_readMany_01", "first01", "last01");
+        var user2 = new User("unittest_readMany_02", "first02", "last02");
+        var user3 = new User("unittest_readMany_03", "first03", "last03");
+
+        try {
+            db.upsert(host, user1, "Users");
+            db.upsert(host, user2, "Users");
+            db.upsert(host, user3, "Users2");
+
+            // in one partition. input order is preserved and missing ids are reported
+            {
+                var result = db.readMany(host, List.of(user2.id, "notExistId", user1.id, user2.id), "Users");
+                assertThat(result.documents).hasSize(2);
+                assertThat(result.documents.get(0).toObject(User.class).firstName).isEqualTo(user2.firstName);
+                assertThat(result.documents.get(1).toObject(User.class).firstName).isEqualTo(user1.firstName);
+                assertThat(result.getMissingIds()).containsExactly("notExistId");
+            }
+
+            // across partitions
+            {
+                var result = db.readMany(host, List.of(ReadManyItem.of(user3.id, "Users2"), ReadManyItem.of(user1.id, "Users"), ReadManyItem.of(user3.id, "Users")));
+                assertThat(result.documents.stream().map(doc -> doc.toMap().get("id")).toList()).containsExactly(user3.id, user1.id);
+                assertThat(result.missingList).containsExactly(ReadManyItem.of(user3.id, "Users"));
+            }
+
+            // fields
+            {
+                var result = db.readMany(host, List.of(user1.id), "Users", "firstName");
+                assertThat(result.documents).hasSize(1);
+                var map = result.documents.get(0).toMap();
+                assertThat(map).containsEntry("id", user1.id).containsEntry("firstName", user1.firstName).doesNotContainKey("lastName");
+            }
+
+            // empty
+            assertThat(db.readMany(host, List.<String>of(), "Users").documents).isEmpty();
+
+        } finally {
+            db.delete(host, user1.id, "Users");
+            db.delete(host, user2.id, "Users");
+            db.delete(host, user3.id, "Users2");
+        }
+    }
+
     @Test
     void create_and_read_should_work() throws Exception {
 
@@ -3541,6 +3634,39 @@ class MongoDatabaseImplTest {
         }
     }
 
+    @Test
+    void find_should_work_with_keyset_pagination() throws Exception {
+        var partition = "Users";
+
+        var users = new ArrayList<User>();
+        for (int i = 0; i < 25; i++) {
+            users.add(new User(String.format("keyset_%02d", i), "first" + (i % 3), "last" + i));
+        }
+
+        try {
+            db.bulkUpsert(host, users, partition);
+
+            var cond = Condition.filter("id STARTSWITH", "keyset_").sort("firstName", "ASC").limit(10).after(null);
+
+            var ids = new ArrayList<String>();
+            var pages = 0;
+            while (true) {
+                var page = db.find(host, cond, partition);
+                page.toMap().forEach(map -> ids.add(map.get("id").toString()));
+                pages++;
+                if (page.getContinuationToken() == null) {
+                    break;
+                }
+                cond = cond.after(page.getContinuationToken());
+            }
+
+            assertThat(pages).isEqualTo(3);
+            assertThat(ids).hasSize(25).doesNotHaveDuplicates();
+        } finally {
+            db.bulkDelete(host, users, partition);
+        }
+    }
+
     @Test
     void bulkUpsert_should_work() throws Exception {
         int size = 120;
@@ -0,0 +1,195 @@
+package io.github.thunderz99.cosmos.impl.postgres;
+
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.github.thunderz99.cosmos.Cosmos;
+import io.github.thunderz99.cosmos.CosmosBuilder;
+import io.github.thunderz99.cosmos.cache.CachingCosmosDatabase;
+import io.github.thunderz99.cosmos.cache.InvalidationEvent;
+import io.github.thunderz99.cosmos.dto.CacheInvalidationOption;
+import io.github.thunderz99.cosmos.dto.DocumentCacheOption;
+import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import io.github.thunderz99.cosmos.v4.PatchOperations;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PGChangeNotifySubscriberTest {
+
+    static final String connectionString = EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", PostgresImplTest.LOCAL_CONNECTION_STRING);
+
+    static final String dbName = "java_cosmos";
+    static final String coll = "change_notify_test_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+    static final String partition = "Users";
+
+    /**
+     * a node caching documents, with the cross-node invalidation enabled
+     */
+    static Cosmos cachingNode;
+
+    /**
+     * another node writing documents
+     */
+    static Cosmos writingNode;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        cachingNode = new CosmosBuilder().withDatabaseType("postgres")
+                .withEtagEnabled(true)
+                .withConnectionString(connectionString)
+                .withDocumentCache(new DocumentCacheOption().ttlMillis(60_000))
+                .withCacheInvalidation(new CacheInvalidationOption().pollIntervalMillis(100).watch(dbName, coll))
+                .build();
+        writingNode = new CosmosBuilder().withDatabaseType("postgres")
+                .withEtagEnabled(true)
+                .withConnectionString(connectionString)
+                .build();
+
+        var db = (CachingCosmosDatabase) cachingNode.createIfNotExist(dbName, coll);
+        // the trigger is installed because the invalidation is enabled
+        ((PostgresDatabaseImpl) db.getDelegate()).createTableIfNotExists(coll, partition);
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        if (cachingNode != null) {
+            cachingNode.deleteCollection(dbName, coll);
+            cachingNode.closeClient();
+        }
+        if (writingNode != null) {
+            writingNode.closeClient();
+        }
+    }
+
+    @Test
+    void writes_of_another_node_should_invalidate_the_cache() throws Exception {
+        var postgres = (PostgresImpl) cachingNode;
+        var received = new CopyOnWriteArrayList<InvalidationEvent>();
+        postgres.invalidationBus.addListener(received::addAll);
+
+        var cachingDb = cachingNode.getDatabase(dbName);
+        var writingDb = writingNode.getDatabase(dbName);
+        var id = "writes_of_another_node_1";
+
+        try {
+            writingDb.upsert(coll, Map.of("id", id, "name", "name1"), partition);
+            assertThat(cachingDb.read(coll, id, partition).toMap().get("name")).isEqualTo("name1");
+
+            writingDb.patch(coll, id, PatchOperations.create().set("/name", "name2"), partition);
+
+            // consistent within a second, without waiting for the ttl
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (!"name2".equals(cachingDb.read(coll, id, partition).toMap().get("name"))) {
+                assertThat(System.currentTimeMillis()).as("cache not invalidated in time").isLessThan(deadline);
+                Thread.sleep(50);
+            }
+
+            assertThat(received).anySatisfy(e -> {
+                assertThat(e.coll).isEqualTo(coll);
+                assertThat(e.partition).isEqualTo(partition);
+                assertThat(e.id).isEqualTo(id);
+                assertThat(e.etag).isNotEmpty();
+            });
+        } finally {
+            writingDb.delete(coll, id, partition);
+        }
+    }
+
+    @Test
+    void trigger_should_be_installed_by_installChangeNotifyTriggers() throws Exception {
+        var postgres = (PostgresImpl) cachingNode;
+        var received = new CopyOnWriteArrayList<InvalidationEvent>();
+        postgres.invalidationBus.addListener(received::addAll);
+
+        var cachingDb = cachingNode.getDatabase(dbName);
+        var writingDb = writingNode.getDatabase(dbName);
+        // the table is created without the trigger
+        var otherPartition = "Items";
+        var id = "first_cached_read_1";
+        try (var conn = ((PostgresImpl) writingNode).getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, coll, otherPartition);
+        }
+
+        try {
+            writingDb.upsert(coll, Map.of("id", id, "name", "name1"), otherPartition);
+            // a read does not install the trigger(no DDL on the read path)
+            assertThat(cachingDb.read(coll, id, otherPartition).toMap().get("name")).isEqualTo("name1");
+            assertThat(triggerExists(otherPartition)).isFalse();
+
+            postgres.installChangeNotifyTriggers(coll);
+            assertThat(triggerExists(otherPartition)).isTrue();
+
+            writingDb.patch(coll, id, PatchOperations.create().set("/name", "name2"), otherPartition);
+
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (!"name2".equals(cachingDb.read(coll, id, otherPartition).toMap().get("name"))) {
+                assertThat(System.currentTimeMillis()).as("cache not invalidated in time").isLessThan(deadline);
+                Thread.sleep(50);
+            }
+
+            // the partition is the logical partition name passed as the trigger argument
+            assertThat(received).anySatisfy(e -> {
+                assertThat(e.partition).isEqualTo(otherPartition);
+                assertThat(e.id).isEqualTo(id);
+            });
+        } finally {
+            writingDb.delete(coll, id, otherPartition);
+        }
+    }
+
+    @Test
+    void listen_should_not_hold_a_pooled_connection() throws Exception {
+        var pool = ((PostgresImpl) cachingNode).getDataSource();
+        // the subscriber is listening since beforeAll
+        assertThat(((PostgresImpl) cachingNode).changeSubscriber.dataSource).isNotSameAs(pool);
+        assertThat(pool.getHikariPoolMXBean().getActiveConnections()).isEqualTo(0);
+    }
+
+    static boolean triggerExists(String tableName) throws Exception {
+        try (var conn = ((PostgresImpl) writingNode).getDataSource().getConnection();
+             var stmt = conn.prepareStatement("SELECT 1 FROM pg_trigger WHERE tgname = 'java_cosmos_notify_change' AND tgrelid = to_regclass(?)")) {
+            stmt.setString(1, "%s.%s".formatted(coll, TableUtil.checkAndNormalizeValidEntityName(tableName)));
+            try (var rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @Test
+    void createChangeNotifyTriggerIfNotExists_should_be_idempotent() throws Exception {
+        try (var conn = ((PostgresImpl) writingNode).getDataSource().getConnection()) {
+            TableUtil.createChangeNotifyTriggerIfNotExists(conn, coll, partition);
+            TableUtil.createChangeNotifyTriggerIfNotExists(conn, coll, partition);
+            try (var pstmt = conn.prepareStatement("SELECT count(*) FROM pg_trigger WHERE tgname = 'java_cosmos_notify_change' AND tgrelid = to_regclass(?)")) {
+                pstmt.setString(1, "%s.%s".formatted(coll, TableUtil.checkAndNormalizeValidEntityName(partition)));
+                try (var rs = pstmt.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getInt(1)).isEqualTo(1);
+                }
+            }
+        }
+    }
+
+    @Test
+    void toEvent_should_work() {
+        var event = PGChangeNotifySubscriber.toEvent("{\"coll\":\"coll1\",\"partition\":\"Users\",\"id\":\"id1\",\"etag\":\"etag1\"}");
+        assertThat(event.db).isNull();
+        assertThat(event.coll).isEqualTo("coll1");
+        assertThat(event.partition).isEqualTo("Users");
+        assertThat(event.id).isEqualTo("id1");
+        assertThat(event.etag).isEqualTo("etag1");
+
+        // deleted
+        assertThat(PGChangeNotifySubscriber.toEvent("{\"coll\":\"coll1\",\"partition\":\"Users\",\"id\":\"id1\",\"etag\":null}").etag).isNull();
+
+        // invalid
+        assertThat(PGChangeNotifySubscriber.toEvent("not json")).isNull();
+        assertThat(PGChangeNotifySubscriber.toEvent("{}")).isNull();
+    }
+}
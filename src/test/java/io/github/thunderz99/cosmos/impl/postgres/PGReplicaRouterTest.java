@@ -0,0 +1,124 @@
+package io.github.thunderz99.cosmos.impl.postgres;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.dto.ReadOption;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PGReplicaRouterTest {
+
+    static final String connectionString = EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", PostgresImplTest.LOCAL_CONNECTION_STRING);
+
+    static PostgresImpl cosmos;
+
+    static final String dbName = "java_cosmos";
+    static final String coll = "replica_router_test_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        cosmos = new PostgresImpl(connectionString);
+        cosmos.createIfNotExist(dbName, coll);
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        if (cosmos != null) {
+            cosmos.deleteCollection(dbName, coll);
+            cosmos.closeClient();
+        }
+    }
+
+    static HikariDataSource newDataSource(String connectionString) {
+        var config = PostgresImpl.parseToHikariConfig(connectionString).getLeft();
+        // do not fail when the server is unreachable
+        config.setInitializationFailTimeout(-1);
+        config.setConnectionTimeout(250);
+        return new HikariDataSource(config);
+    }
+
+    @Test
+    void getReadDataSource_should_round_robin_healthy_replicas() {
+        var replica1 = newDataSource(connectionString);
+        var replica2 = newDataSource(connectionString);
+        var router = new PGReplicaRouter(cosmos.getDataSource(), List.of(replica1, replica2), 1000, 0);
+        try {
+            // a server not in recovery has no lag
+            assertThat(router.getReplicas()).allMatch(r -> r.healthy && r.lagMillis == 0);
+
+            var first = router.getReadDataSource();
+            var second = router.getReadDataSource();
+            assertThat(List.of(first, second)).containsExactlyInAnyOrder(replica1, replica2);
+            assertThat(router.getReadDataSource()).isSameAs(first);
+        } finally {
+            router.close();
+        }
+    }
+
+    @Test
+    void getReadDataSource_should_skip_unhealthy_replicas() {
+        var down = newDataSource("jdbc:postgresql://localhost:1/postgres?user=postgres&password=postgres");
+        var up = newDataSource(connectionString);
+        var router = new PGReplicaRouter(cosmos.getDataSource(), List.of(down, up), 1000, 0);
+        try {
+            assertThat(router.getReplicas().get(0).healthy).isFalse();
+            assertThat(router.getReplicas().get(0).lagMillis).isEqualTo(-1);
+            for (int i = 0; i < 4; i++) {
+                assertThat(router.getReadDataSource()).isSameAs(up);
+            }
+        } finally {
+            router.close();
+        }
+
+        // fall back to the primary
+        var down2 = newDataSource("jdbc:postgresql://localhost:1/postgres?user=postgres&password=postgres");
+        var router2 = new PGReplicaRouter(cosmos.getDataSource(), List.of(down2), 1000, 0);
+        try {
+            assertThat(router2.getReadDataSource()).isSameAs(cosmos.getDataSource());
+        } finally {
+            router2.close();
+        }
+    }
+
+    @Test
+    void toLagMillis_should_work() {
+        // not a replica
+        assertThat(PGReplicaRouter.toLagMillis(false, false, false, 10_000)).isEqualTo(0);
+        // streaming and all the received WAL is replayed
+        assertThat(PGReplicaRouter.toLagMillis(true, true, true, 10_000)).isEqualTo(0);
+        // streaming and replaying
+        assertThat(PGReplicaRouter.toLagMillis(true, true, false, 10_000)).isEqualTo(10_000);
+        // the WAL receiver is stopped. received WAL equals replayed WAL, but the replica is stale
+        assertThat(PGReplicaRouter.toLagMillis(true, false, true, 10_000)).isEqualTo(-1);
+        assertThat(PGReplicaRouter.toLagMillis(true, false, false, 0)).isEqualTo(-1);
+    }
+
+    @Test
+    void find_count_and_read_should_work_with_replicas() throws Exception {
+        var postgres = new PostgresImpl(connectionString).withReadReplicas(List.of(connectionString), 1000);
+        try {
+            var db = postgres.getDatabase(dbName);
+            var partition = "Users";
+            ((PostgresDatabaseImpl) db).createTableIfNotExists(coll, partition);
+            db.upsert(coll, Map.of("id", "replica_id1", "name", "Tom"), partition);
+
+            assertThat(db.find(coll, Condition.filter("name", "Tom"), partition).toMap()).hasSize(1);
+            assertThat(db.count(coll, Condition.filter("name", "Tom"), partition)).isEqualTo(1);
+            assertThat(db.read(coll, "replica_id1", partition, ReadOption.eventualConsistency(true)).toMap().get("name")).isEqualTo("Tom");
+            assertThat(db.readSuppressing404(coll, "not_exist", partition, ReadOption.eventualConsistency(true))).isNull();
+
+            assertThat(postgres.getReadDataSource()).isNotSameAs(postgres.getDataSource());
+        } finally {
+            postgres.closeClient();
+        }
+    }
+}
@@ -13,10 +13,17 @@ import io.github.thunderz99.cosmos.dto.CheckBox;
 import io.github.thunderz99.cosmos.dto.EvalSkip;
 import io.github.thunderz99.cosmos.dto.FullNameUser;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
+import io.github.thunderz99.cosmos.dto.ReadManyItem;
 import io.github.thunderz99.cosmos.impl.cosmosdb.CosmosImpl;
 import io.github.thunderz99.cosmos.impl.postgres.dto.QueryContext;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGChangeLogUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGCronUtil;
+import io.github.thunderz99.cosmos.impl.postgres.util.PGSortUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.TTLUtil;
 import io.github.thunderz99.cosmos.impl.postgres.util.TableUtil;
+import io.github.thunderz99.cosmos.metrics.InMemoryOperationListener;
+import io.github.thunderz99.cosmos.metrics.InstrumentedCosmosDatabase;
+import io.github.thunderz99.cosmos.metrics.OperationListener;
 import io.github.thunderz99.cosmos.util.EnvUtil;
 import io.github.thunderz99.cosmos.util.JsonUtil;
 import io.github.thunderz99.cosmos.v4.PatchOperations;
@@ -36,6 +43,8 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -120,6 +129,7 @@ public class PostgresDatabaseImplTest {
         db.createTableIfNotExists(host, "SheetContents2");
         db.createTableIfNotExists(host, "UserSorts");
         db.createTableIfNotExists(host, "SearchViews");
+        db.createTableIfNotExists(host, "ChangeFeedCheckpoints");
         db.createTableIfNotExists(host, longPartitionName);
 
         initFamiliesData();
@@ -144,6 +154,116 @@ public class PostgresDatabaseImplTest {
                 .hasMessageContaining("schema").hasMessageContaining("not found");
     }
 
+    @Test
+    void find_and_count_crossPartition_should_work() throws Exception {
+
+        var user1 = new User("unittest_crossPartition_01", "first01", "last01");
+        var user2 = new User("unittest_crossPartition_02", "first02", "last02");
+        var user3 = new User("unittest_crossPartition_03", "first03", "last03");
+
+        try {
+            db.upsert(host, user1, "Users");
+            db.upsert(host, user3, "Users");
+            db.upsert(host, user2, "Users2");
+
+            // sorted across partitions, with global offset / limit
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("id", "DESC").crossPartition(true);
+                var docs = db.find(host, cond, "Users").toList(User.class);
+                assertThat(docs.stream().map(u -> u.id).toList()).containsExactly(user3.id, user2.id, user1.id);
+
+                cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("firstName", "ASC").offset(1).limit(1).crossPartition(true);
+                docs = db.find(host, cond, "Users").toList(User.class);
+                assertThat(docs.stream().map(u -> u.id).toList()).containsExactly(user2.id);
+            }
+
+            // findToIterator
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("id", "ASC").crossPartition(true);
+                var ids = new ArrayList<String>();
+                try (var iterator = db.findToIterator(host, cond, "Users")) {
+                    iterator.forEachRemaining(doc -> ids.add(doc.toMap().get("id").toString()));
+                }
+                assertThat(ids).containsExactly(user1.id, user2.id, user3.id);
+            }
+
+            // count
+            {
+                var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").crossPartition(true);
+                assertThat(db.count(host, cond, "Users")).isEqualTo(3);
+            }
+
+            // strings are sorted with collate "C" even if en_US is specified, so that keyset pagination does not skip records
+            {
+                db.updatePartial(host, user1.id, Map.of("firstName", "b"), "Users");
+                db.updatePartial(host, user2.id, Map.of("firstName", "B"), "Users2");
+                db.updatePartial(host, user3.id, Map.of("firstName", "a"), "Users");
+
+                var ids = new ArrayList<String>();
+                String token = null;
+                do {
+                    var cond = Condition.filter("id STARTSWITH", "unittest_crossPartition_").sort("firstName", "ASC").limit(1)
+                            .collate(PGSortUtil.COLLATE_EN_US).after(token).crossPartition(true);
+                    var docs = db.find(host, cond, "Users");
+                    docs.toList(User.class).forEach(u -> ids.add(u.id));
+                    token = docs.getContinuationToken();
+                } while (token != null);
+                assertThat(ids).containsExactly(user2.id, user3.id, user1.id);
+            }
+
+        } finally {
+            db.delete(host, user1.id, "Users");
+            db.delete(host, user3.id, "Users");
+            db.delete(host, user2.id, "Users2");
+        }
+    }
+
+    @Test
+    void readMany_should_work() throws Exception {
+
+        var user1 = new User("unittest_readMany_01", "first01", "last01");
+        var user2 = new User("unittest_readMany_02", "first02", "last02");
+        var user3 = new User("unittest_readMany_03", "first03", "last03");
+
+        try {
+            db.upsert(host, user1, "Users");
+            db.upsert(host, user2, "Users");
+            db.upsert(host, user3, "Users2");
+
+            // in one partition. input order is preserved and missing ids are reported
+            {
+                var result = db.readMany(host, List.of(user2.id, "notExistId", user1.id, user2.id), "Users");
+                assertThat(result.documents).hasSize(2);
+                assertThat(result.documents.get(0).toObject(User.class).firstName).isEqualTo(user2.firstName);
+                assertThat(result.documents.get(1).toObject(User.class).firstName).isEqualTo(user1.firstName);
+                assertThat(result.getMissingIds()).containsExactly("notExistId");
+            }
+
+            // across partitions
+            {
+                var result = db.readMany(host, List.of(ReadManyItem.of(user3.id, "Users2"), ReadManyItem.of(user1.id, "Users"), ReadManyItem.of(user3.id, "Users")));
+                assertThat(result.documents.stream().map(doc -> doc.toMap().get("id")).toList()).containsExactly(user3.id, user1.id);
+                assertThat(result.missingList).containsExactly(ReadManyItem.of(user3.id, "Users"));
+            }
+
+            // fields
+            {
+                var result = db.readMany(host, List.of(user1.id), "Users", "firstName");
+                assertThat(result.documents).hasSize(1);
+                var map = result.documents.get(0).toMap();
+                assertThat(map).containsEntry("id", user1.id).containsEntry("firstName", user1.firstName).doesNotContainKey("lastName");
+            }
+
+            // empty
+            assertThat(db.readMany(host, List.<String>of(), "Users").documents).isEmpty();
+
+        } finally {
+            db.delete(host, user1.id, "Users");
+            db.delete(host, user2.id, "Users");
+            db.delete(host, user3.id, "Users2");
+        }
+    }
+
     @Test
     void create_and_read_should_work() throws Exception {
 
@@ -582,6 +702,58 @@ public class PostgresDatabaseImplTest {
 
     }
 
+    @Test
+    void updatePartial_should_work_with_server_side_merge() throws Exception {
+        var partition = "SheetContents";
+
+        var id = "updatePartial_should_work_with_server_side_merge_001";
+        var data = Map.of("id", id, "age", 20, "name", "Tom", "form", Map.of("name", "Tom", "address", Map.of("city", "NY", "zip", "10001")),
+                "tags", List.of("a", "b"));
+
+        var option = PartialUpdateOption.serverSideMerge(true);
+
+        try {
+            var upserted = db.upsert(host, data, partition).toMap();
+
+            {
+                // nested merge, array replaced, other fields retained
+                var partialMap = new HashMap<String, Object>();
+                partialMap.put("name", "Jim");
+                partialMap.put("form", Map.of("address", Map.of("city", "Tokyo")));
+                partialMap.put("tags", List.of("c"));
+
+                var patched = db.updatePartial(host, id, partialMap, partition, option).toMap();
+                assertThat(patched).containsEntry("name", "Jim").containsEntry("age", 20)
+                        .containsEntry("tags", List.of("c"))
+                        .containsEntry("_partition", partition).containsKey("_ts");
+                assertThat((Map<String, Object>) patched.get("form")).containsEntry("name", "Tom")
+                        .containsEntry("address", Map.of("city", "Tokyo", "zip", "10001"));
+                assertThat(patched.get("_etag")).isNotEqualTo(upserted.get("_etag"));
+            }
+
+            {
+                // checkETag semantics are the same as the default mode
+                var etag = db.read(host, id, partition).toMap().get("_etag").toString();
+                var checkETagOption = PartialUpdateOption.serverSideMerge(true).withCheckETag(true);
+
+                var patched = db.updatePartial(host, id, Map.of("sort", "001", CosmosImpl.ETAG, etag), partition, checkETagOption).toMap();
+                assertThat(patched).containsEntry("sort", "001");
+
+                assertThatThrownBy(() -> db.updatePartial(host, id, Map.of("sort", "002", CosmosImpl.ETAG, etag), partition, checkETagOption))
+                        .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(412));
+            }
+
+            {
+                // not found
+                assertThatThrownBy(() -> db.updatePartial(host, "not_exist_" + id, Map.of("name", "Kate"), partition, option))
+                        .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(404));
+            }
+
+        } finally {
+            db.delete(host, id, partition);
+        }
+    }
+
     @Test
     void updatePartial_should_work_for_empty_key() throws Exception {
         var id1 = "empty_key_updatePartial_01" + RandomStringUtils.randomAlphanumeric(6);
@@ -1730,6 +1902,84 @@ public class PostgresDatabaseImplTest {
         }
     }
 
+    @Test
+    void find_to_iterator_should_fetch_by_cursor_and_release_connection() throws Exception {
+        var partition = "CursorTests";
+        db.createTableIfNotExists(host, partition);
+
+        var postgres = (PostgresImpl) cosmos;
+        var originalFetchSize = postgres.fetchSize;
+        try {
+            var users = new ArrayList<User>();
+            for (int i = 0; i < 25; i++) {
+                users.add(new User(String.format("cursor_%02d", i), "first" + i, "last" + i));
+            }
+            db.bulkUpsert(host, users, partition);
+
+            // fetchSize smaller than the total count, so rows are fetched in several round trips
+            postgres.withFetchSize(10);
+            var activeBefore = postgres.getDataSource().getHikariPoolMXBean().getActiveConnections();
+
+            {
+                var iterator = db.findToIterator(host, Condition.filter().sort("id", "ASC"), partition);
+                var ids = new ArrayList<String>();
+                while (iterator.hasNext()) {
+                    ids.add(iterator.next().toMap().get("id").toString());
+                }
+                assertThat(ids).hasSize(25);
+                assertThat(ids.get(0)).isEqualTo("cursor_00");
+                assertThat(ids.get(24)).isEqualTo("cursor_24");
+
+                // connection is released when the cursor is exhausted
+                assertThat(postgres.getDataSource().getHikariPoolMXBean().getActiveConnections()).isEqualTo(activeBefore);
+            }
+
+            {
+                // connection is released when closed before exhausted
+                try (var iterator = db.findToIterator(host, Condition.filter().sort("id", "ASC"), partition)) {
+                    assertThat(iterator.next().toMap().get("id")).isEqualTo("cursor_00");
+                    assertThat(postgres.getDataSource().getHikariPoolMXBean().getActiveConnections()).isEqualTo(activeBefore + 1);
+                }
+                assertThat(postgres.getDataSource().getHikariPoolMXBean().getActiveConnections()).isEqualTo(activeBefore);
+            }
+        } finally {
+            postgres.withFetchSize(originalFetchSize);
+        }
+    }
+
+    @Test
+    void find_should_work_with_keyset_pagination() throws Exception {
+        var partition = "KeysetTests";
+        db.createTableIfNotExists(host, partition);
+
+        var users = new ArrayList<User>();
+        for (int i = 0; i < 25; i++) {
+            users.add(new User(String.format("keyset_%02d", i), "first" + (i % 3), "last" + i));
+        }
+        db.bulkUpsert(host, users, partition);
+
+        var cond = Condition.filter("id STARTSWITH", "keyset_").sort("firstName", "ASC").limit(10).after(null);
+
+        var ids = new ArrayList<String>();
+        var pages = 0;
+        while (true) {
+            var page = db.find(host, cond, partition);
+            page.toMap().forEach(map -> ids.add(map.get("id").toString()));
+            pages++;
+            if (page.getContinuationToken() == null) {
+                break;
+            }
+            cond = cond.after(page.getContinuationToken());
+        }
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(ids).hasSize(25).doesNotHaveDuplicates();
+
+        var expected = db.find(host, Condition.filter("id STARTSWITH", "keyset_").sort("firstName", "ASC").limit(100), partition)
+                .toMap().stream().map(map -> map.get("id").toString()).toList();
+        assertThat(ids).isEqualTo(expected);
+    }
+
     @Test
     void fields_with_empty_field_should_work() throws Exception {
         // test fields with fields ["id", ""]
@@ -4203,6 +4453,260 @@ public class PostgresDatabaseImplTest {
         }
     }
 
+    @Test
+    void bulkCreate_bulkUpsert_should_work_with_copy() throws Exception {
+
+        var partition = "Users";
+        int size = 120;
+        var userList = new ArrayList<User>(size);
+        for (int i = 0; i < size; i++) {
+            userList.add(new User("bulkCopy_should_work_" + i, "testFirstName" + i, "testLastName \"quoted\", comma" + i));
+        }
+
+        var postgres = (PostgresImpl) cosmos;
+        postgres.withBulkCopyEnabled(true);
+        try {
+            // create userList[0] beforehand, so it conflicts
+            db.create(host, userList.get(0), partition);
+
+            var createResult = db.bulkCreate(host, userList, partition);
+            assertThat(createResult.retryList).hasSize(0);
+            assertThat(createResult.successList).hasSize(size - 1);
+            assertThat(createResult.fatalList).hasSize(1);
+            assertThat(createResult.fatalList.get(0).getStatusCode()).isEqualTo(409);
+
+            var read = db.read(host, userList.get(1).id, partition).toObject(User.class);
+            assertThat(read.lastName).isEqualTo("testLastName \"quoted\", comma1");
+
+            // modify and add a new one, so this contains both update and create
+            for (var user : userList) {
+                user.firstName = user.firstName.replace("testFirstName", "modifiedFirstName");
+            }
+            userList.add(new User("bulkCopy_should_work_" + size, "modifiedFirstName" + size, "testLastName" + size));
+
+            var upsertResult = db.bulkUpsert(host, userList, partition);
+            assertThat(upsertResult.fatalList).hasSize(0);
+            assertThat(upsertResult.retryList).hasSize(0);
+            assertThat(upsertResult.successList).hasSize(size + 1);
+
+            var docs = db.find(host, Condition.filter("id STARTSWITH", "bulkCopy_should_work_").limit(size + 10), partition).toList(User.class);
+            assertThat(docs).hasSize(size + 1);
+            assertThat(docs).allMatch(u -> u.firstName.startsWith("modifiedFirstName"));
+
+        } finally {
+            postgres.withBulkCopyEnabled(false);
+            db.bulkDelete(host, userList, partition);
+        }
+    }
+
+    @Test
+    void operationListener_should_work() throws Exception {
+
+        var partition = "Users";
+        var user = new User("operationListener_should_work_1", "firstName1", "lastName1");
+
+        var postgres = (PostgresImpl) cosmos;
+        var listener = new InMemoryOperationListener();
+        postgres.withOperationListener(listener);
+        try {
+            var instrumented = cosmos.getDatabase(dbName);
+            assertThat(instrumented).isInstanceOf(InstrumentedCosmosDatabase.class);
+
+            instrumented.upsert(host, user, partition);
+            instrumented.read(host, user.id, partition);
+            instrumented.find(host, Condition.filter("id", user.id), partition);
+            assertThatThrownBy(() -> instrumented.read(host, "not_exist_id", partition))
+                    .isInstanceOf(CosmosException.class);
+
+            var events = listener.getEvents();
+            assertThat(events).extracting(e -> e.operation).containsExactly("upsert", "read", "find", "read");
+            assertThat(events).allMatch(e -> e.backend.equals(CosmosBuilder.POSTGRES) && e.coll.equals(host) && e.partition.equals(partition));
+            assertThat(events).allMatch(e -> e.latencyNanos > 0);
+
+            // serialized json is measured for writes
+            assertThat(events.get(0).bytesSerialized).isGreaterThan(0);
+            assertThat(events.get(0).rows).isEqualTo(1);
+            assertThat(events.get(2).rows).isEqualTo(1);
+            assertThat(events.get(3).success).isFalse();
+            assertThat(events.get(3).statusCode).isEqualTo(404);
+
+            var readStats = listener.getStats(CosmosBuilder.POSTGRES, host, partition, "read");
+            assertThat(readStats.getCount()).isEqualTo(2);
+            assertThat(readStats.getErrorCount()).isEqualTo(1);
+            assertThat(readStats.getLatencyPercentileMillis(0.99)).isGreaterThan(0);
+
+            // not instrumented by default
+            postgres.withOperationListener(OperationListener.NOOP);
+            assertThat(cosmos.getDatabase(dbName)).isInstanceOf(PostgresDatabaseImpl.class);
+        } finally {
+            postgres.withOperationListener(OperationListener.NOOP);
+            db.delete(host, user.id, partition);
+        }
+    }
+
+    @Test
+    void readIfNoneMatch_should_work() throws Exception {
+
+        var partition = "Users";
+        var user = new User("readIfNoneMatch_should_work_1", "firstName1", "lastName1");
+
+        try {
+            var upserted = db.upsert(host, user, partition).toMap();
+            var etag = upserted.get(TableUtil.ETAG).toString();
+
+            // not modified
+            assertThat(db.readIfNoneMatch(host, user.id, partition, etag)).isNull();
+
+            // modified
+            var modified = db.readIfNoneMatch(host, user.id, partition, "not_matched_etag");
+            assertThat(modified.toMap().get("firstName")).isEqualTo("firstName1");
+            assertThat(modified.toMap().get(TableUtil.ETAG)).isEqualTo(etag);
+
+            // full read when etag is empty
+            assertThat(db.readIfNoneMatch(host, user.id, partition, "")).isNotNull();
+
+            // 404
+            assertThatThrownBy(() -> db.readIfNoneMatch(host, "not_exist_id", partition, etag))
+                    .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(404));
+        } finally {
+            db.delete(host, user.id, partition);
+        }
+    }
+
+    @Test
+    void changeFeed_should_work() throws Exception {
+
+        var partition = "ChangeFeedTests";
+        var user1 = new User("changeFeed_should_work_1", "firstName1", "lastName1");
+        var user2 = new User("changeFeed_should_work_2", "firstName2", "lastName2");
+        var user3 = new User("changeFeed_should_work_3", "firstName3", "lastName3");
+
+        var store = new ChangeFeedCheckpointStore(db, host, "ChangeFeedCheckpoints");
+
+        try {
+            // start from now
+            String checkpoint;
+            try (var feed = db.changeFeed(host, partition, null)) {
+                assertThat(feed.hasNext()).isFalse();
+                checkpoint = feed.getCheckpoint();
+                assertThat(checkpoint).isNotEmpty();
+            }
+
+            db.upsert(host, user1, partition);
+            db.upsert(host, user2, partition);
+            user1.lastName = "lastName1_updated";
+            db.upsert(host, user1, partition);
+            db.delete(host, user2.id, partition);
+
+            // changes in order. the latest state of a document is returned
+            try (var feed = db.changeFeed(host, partition, checkpoint)) {
+                var changes = readChanges(feed, 4);
+                assertThat(changes).hasSize(4);
+                assertThat(changes.stream().map(c -> c.toMap().get("id")).toList())
+                        .containsExactly(user1.id, user2.id, user1.id, user2.id);
+                assertThat(changes.get(0).toMap().get("lastName")).isEqualTo("lastName1_updated");
+                assertThat(changes.get(1).toMap()).containsEntry(ChangeFeedIterator.DELETED, true);
+                assertThat(changes.get(3).toMap()).containsEntry(ChangeFeedIterator.DELETED, true);
+
+                store.save("changeFeed_should_work", feed.getCheckpoint());
+            }
+
+            db.upsert(host, user3, partition);
+
+            // resume from the stored checkpoint. only newer changes are returned
+            assertThat(store.load("not_exist_consumer")).isNull();
+            try (var feed = db.changeFeed(host, partition, store.load("changeFeed_should_work"))) {
+                var changes = readChanges(feed, 1);
+                assertThat(changes).hasSize(1);
+                assertThat(changes.get(0).toMap().get("id")).isEqualTo(user3.id);
+                assertThat(feed.hasNext()).isFalse();
+            }
+
+            // invalid checkpoint
+            assertThatThrownBy(() -> db.changeFeed(host, partition, "invalid"))
+                    .isInstanceOfSatisfying(CosmosException.class, e -> assertThat(e.getStatusCode()).isEqualTo(400));
+        } finally {
+            db.delete(host, user1.id, partition);
+            db.delete(host, user3.id, partition);
+            db.delete(host, "changeFeed_should_work", "ChangeFeedCheckpoints");
+        }
+    }
+
+    @Test
+    void changeFeed_should_schedule_purge_job_with_retention() throws Exception {
+
+        var postgres = (PostgresImpl) cosmos;
+        var partition = "ChangeFeedRetentionTests";
+        try {
+            postgres.withChangeLogRetentionMinutes(60);
+            try (var feed = db.changeFeed(host, partition, null)) {
+                assertThat(feed.hasNext()).isFalse();
+            }
+
+            try (var conn = postgres.getDataSource().getConnection()) {
+                var job = PGCronUtil.findJobByName(conn, PGChangeLogUtil.getPurgeJobName(host));
+                assertThat(job).isNotNull();
+                assertThat(job.schedule.trim()).isEqualTo("0 * * * *");
+                assertThat(job.command).contains("DELETE FROM %s.%s WHERE ts < now() - interval '60 minutes'".formatted(host, PGChangeLogUtil.CHANGE_LOG_TABLE));
+            }
+        } finally {
+            postgres.withChangeLogRetentionMinutes(0);
+            try (var conn = postgres.getDataSource().getConnection()) {
+                PGChangeLogUtil.unSchedulePurgeJob(conn, host);
+            }
+        }
+    }
+
+    /**
+     * read changes until the expected number is reached(or timeout). changes are available after the transactions before them complete
+     */
+    static List<CosmosDocument> readChanges(ChangeFeedIterator feed, int expected) throws InterruptedException {
+        var ret = new ArrayList<CosmosDocument>();
+        var deadline = System.currentTimeMillis() + 10_000;
+        while (ret.size() < expected && System.currentTimeMillis() < deadline) {
+            while (feed.hasNext()) {
+                ret.add(feed.next());
+            }
+            if (ret.size() < expected) {
+                Thread.sleep(100);
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    void asyncDatabase_should_work() throws Exception {
+
+        var partition = "Users";
+        var userList = new ArrayList<User>();
+        for (int i = 0; i < 20; i++) {
+            userList.add(new User("asyncDatabase_should_work_" + i, "firstName" + i, "lastName" + i));
+        }
+
+        var asyncDb = cosmos.getAsyncDatabase(dbName);
+        try {
+            asyncDb.bulkUpsertAsync(host, userList, partition).join();
+
+            // read concurrently
+            var futures = userList.stream().map(u -> asyncDb.readAsync(host, u.id, partition)).toList();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            assertThat(futures.stream().map(f -> f.join().toObject(User.class).firstName).toList())
+                    .isEqualTo(userList.stream().map(u -> u.firstName).toList());
+
+            var count = asyncDb.countAsync(host, Condition.filter("id STARTSWITH", "asyncDatabase_should_work_"), partition).join();
+            assertThat(count).isEqualTo(20);
+
+            // 404 is passed as the cause of CompletionException
+            assertThatThrownBy(() -> asyncDb.readAsync(host, "not_exist_id", partition).join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(CosmosException.class);
+            assertThat(asyncDb.readSuppressing404Async(host, "not_exist_id", partition).join()).isNull();
+
+        } finally {
+            asyncDb.bulkDeleteAsync(host, userList, partition).join();
+        }
+    }
+
     @Test
     void addExpireAt_addEtag_should_work() {
         var mdb = (PostgresDatabaseImpl) db;
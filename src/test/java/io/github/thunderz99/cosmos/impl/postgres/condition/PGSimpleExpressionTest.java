@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -73,7 +74,7 @@ class PGSimpleExpressionTest {
             var expr = new PGSimpleExpression("name", list);
             var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
             var expected = new CosmosSqlQuerySpec();
-            expected.setQueryText(" (data->>'name' = ANY(@param000_name))");
+            expected.setQueryText(" (data->>'name' = ANY(@param000_name::text[]))");
             expected.addParameter(new CosmosSqlParameter("@param000_name", list));
             assertThat(actual).isEqualTo(expected);
         }
@@ -84,7 +85,7 @@ class PGSimpleExpressionTest {
             var expr = new PGSimpleExpression("name", list);
             var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
             var expected = new CosmosSqlQuerySpec();
-            expected.setQueryText(" (NULLIF(data->>'name','')::numeric = ANY(@param000_name))");
+            expected.setQueryText(" (NULLIF(data->>'name','')::numeric = ANY(@param000_name::numeric[]))");
             expected.addParameter(new CosmosSqlParameter("@param000_name", list));
             assertThat(actual).isEqualTo(expected);
         }
@@ -95,13 +96,88 @@ class PGSimpleExpressionTest {
             var expr = new PGSimpleExpression("name", list);
             var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
             var expected = new CosmosSqlQuerySpec();
-            expected.setQueryText(" (NULLIF(data->>'name','')::numeric = ANY(@param000_name))");
+            expected.setQueryText(" (NULLIF(data->>'name','')::numeric = ANY(@param000_name::numeric[]))");
             expected.addParameter(new CosmosSqlParameter("@param000_name", list));
             assertThat(actual).isEqualTo(expected);
         }
 
     }
 
+    @Test
+    void toQuerySpec_should_work_for_containment() {
+        {
+            // nested key and enum value
+            var expr = new PGSimpleExpression("address.city", Status.ACTIVE);
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).isEqualTo(" (data @> @param000_address__city::jsonb)");
+            assertThat(actual.getParameters().get(0).getValue()).isEqualTo("{\"address\":{\"city\":\"ACTIVE\"}}");
+        }
+
+        {
+            // ARRAY_CONTAINS with a scalar value
+            var expr = new PGSimpleExpression("tags", "A", "ARRAY_CONTAINS");
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).isEqualTo(" (data @> @param000_tags::jsonb)");
+            assertThat(actual.getParameters().get(0).getValue()).isEqualTo("{\"tags\":[\"A\"]}");
+        }
+
+        {
+            // id is a column, not in data
+            var expr = new PGSimpleExpression("id", "id1");
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).isEqualTo(" (id = @param000_id)");
+        }
+
+        {
+            // IN with too many values falls back to ANY
+            var list = IntStream.range(0, PGSimpleExpression.CONTAINMENT_IN_LIST_LIMIT + 1).mapToObj(i -> "v" + i).toList();
+            var expr = new PGSimpleExpression("name", list);
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).isEqualTo(" (data->>'name' = ANY(@param000_name::text[]))");
+        }
+
+        {
+            // mixed types in IN falls back to ANY
+            var list = List.of("a", List.of("b"));
+            var expr = new PGSimpleExpression("name", list);
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).doesNotContain("@>");
+        }
+
+        {
+            // IN with containment
+            var expr = new PGSimpleExpression("name", List.of("Hanks", "Tom"));
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).isEqualTo(" (data @> ANY(@param000_name::jsonb[]))");
+            assertThat(actual.getParameters().get(0).getValue()).isEqualTo(List.of("{\"name\":\"Hanks\"}", "{\"name\":\"Tom\"}"));
+        }
+
+        {
+            // not using containment for alias other than data
+            var expr = new PGSimpleExpression("name", "Hanks");
+            expr.containmentEnabled = true;
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "j1");
+            assertThat(actual.getQueryText()).isEqualTo(" (j1->>'name' = @param000_name)");
+        }
+
+        {
+            // not using containment by default
+            var expr = new PGSimpleExpression("tags", "A", "ARRAY_CONTAINS");
+            var actual = expr.toQuerySpec(new AtomicInteger(0), "data");
+            assertThat(actual.getQueryText()).doesNotContain("@>");
+        }
+    }
+
+    enum Status {
+        ACTIVE
+    }
+
     @Test
     void getTypicalValue_should_work() {
         {
@@ -7,7 +7,6 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,72 +21,73 @@ class PGSubQueryExpressionTest {
             /**
              * INPUT: "items", "", "@items_009", ["id001", "id002", "id005"], params
              * OUTPUT:
-             * " (data->'items' ??| @items_009)"
-             *
-             *
-             *
+             * " (data->'items' @> ANY(@items_009::jsonb[]))"
              */
             var params = new ArrayList<CosmosSqlParameter>();
             var ret = PGSubQueryExpression.buildArrayContainsAny("items", "", "@items_009", List.of("id001", "id002", "id005"), params, "data");
-            assertThat(ret).isEqualTo(" (data->'items' @> @items_009__0::jsonb OR data->'items' @> @items_009__1::jsonb OR data->'items' @> @items_009__2::jsonb)");
-            assertThat(params).hasSize(3);
-            var param = params.stream().collect(Collectors.toList()).get(2);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009__2", "\"id005\"").toJson());
+            assertThat(ret).isEqualTo(" (data->'items' @> ANY(@items_009::jsonb[]))");
+            assertThat(params).hasSize(1);
+            var param = params.get(0);
+            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009", List.of("[\"id001\"]", "[\"id002\"]", "[\"id005\"]")).toJson());
         }
 
         {
             /**
-             * INPUT: "items", "", "@items_009", ["id001"], params
+             * INPUT: "items", "", "@items_009", "id001", params
              * OUTPUT:
-             * " (data->'items' ?? @items_009)"
-             *
-             *
-             *
+             * " (data->'items' @> ANY(@items_009::jsonb[]))"
              */
             var params = new ArrayList<CosmosSqlParameter>();
             var ret = PGSubQueryExpression.buildArrayContainsAny("items", "", "@items_009", "id001", params, "data");
-            assertThat(ret).isEqualTo(" (data->'items' @> @items_009__0::jsonb)");
+            assertThat(ret).isEqualTo(" (data->'items' @> ANY(@items_009::jsonb[]))");
             assertThat(params).hasSize(1);
-            var param = params.stream().collect(Collectors.toList()).get(0);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009__0", "\"id001\"").toJson());
+            var param = params.get(0);
+            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009", List.of("[\"id001\"]")).toJson());
         }
 
+        {
+            // numbers are kept as json numbers, and strings are escaped
+            var params = new ArrayList<CosmosSqlParameter>();
+            var ret = PGSubQueryExpression.buildArrayContainsAny("items", "", "@items_009", List.of(1, 2L, "a\"b"), params, "data");
+            assertThat(ret).isEqualTo(" (data->'items' @> ANY(@items_009::jsonb[]))");
+            assertThat(params.get(0).getValue()).isEqualTo(List.of("[1]", "[2]", "[\"a\\\"b\"]"));
+        }
 
         {
             /**
              * INPUT: "items", "id", "@items_id_010", ["id001", "id002", "id005"], params
              * OUTPUT:
-             * " (data->'items' @> '[{"id": @items_id_010__0}]' OR data->'items' @> '[{"id": @items_id_010__1}]' OR data->'items' @> '[{"id": @items_id_010__2}]')"
+             * " (data->'items' @> ANY(@items_id_010::jsonb[]))"
              */
 
             var params = new ArrayList<CosmosSqlParameter>();
             var ids = List.of("id001", "id002", "id005");
             var ret = PGSubQueryExpression.buildArrayContainsAny("items", "id", "@items_id_010", ids, params, "data");
 
-            assertThat(ret).isEqualTo(" (data->'items' @> jsonb_build_array(jsonb_build_object('id', @items_id_010__0)) OR data->'items' @> jsonb_build_array(jsonb_build_object('id', @items_id_010__1)) OR data->'items' @> jsonb_build_array(jsonb_build_object('id', @items_id_010__2)))");
-            assertThat(params).hasSize(3);
-
-            for(var i=0; i<ids.size(); i++) {
-                var param = params.stream().collect(Collectors.toList()).get(i);
-                assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_id_010__%d".formatted(i), ids.get(i)).toJson());
-            }
-
-
+            assertThat(ret).isEqualTo(" (data->'items' @> ANY(@items_id_010::jsonb[]))");
+            assertThat(params).hasSize(1);
+            assertThat(params.get(0).getValue()).isEqualTo(ids.stream().map(id -> "[{\"id\":\"%s\"}]".formatted(id)).toList());
         }
 
         {
             /**
-             * INPUT: "items", "name", "@items_name_010", "react", params
+             * INPUT: "items", "school.grade", "@items_school__grade_010", "react", params
              */
 
             var params = new ArrayList<CosmosSqlParameter>();
-            var ret = PGSubQueryExpression.buildArrayContainsAny("items", "name", "@items_name_010", "react", params, "data");
+            var ret = PGSubQueryExpression.buildArrayContainsAny("items", "school.grade", "@items_school__grade_010", 3, params, "j0");
 
-            assertThat(ret).isEqualTo(" (data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_name_010__0)))");
+            assertThat(ret).isEqualTo(" (j0->'items' @> ANY(@items_school__grade_010::jsonb[]))");
             assertThat(params).hasSize(1);
-            var param = params.stream().collect(Collectors.toList()).get(0);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_name_010__0", "react").toJson());
+            assertThat(params.get(0).getValue()).isEqualTo(List.of("[{\"school\":{\"grade\":3}}]"));
+        }
 
+        {
+            // empty list
+            var params = new ArrayList<CosmosSqlParameter>();
+            var ret = PGSubQueryExpression.buildArrayContainsAny("items", "", "@items_009", List.of(), params, "data");
+            assertThat(ret).isEqualTo("(1=0)");
+            assertThat(params).isEmpty();
         }
     }
 
@@ -100,50 +100,30 @@ class PGSubQueryExpressionTest {
             /**
              * INPUT: "items", "", "@items_009", ["id001", "id002"], params
              * OUTPUT:
-             * "  (data->'items' @> @items_009::jsonb)"
+             * " (data->'items' @> ALL(@items_009::jsonb[]))"
              */
 
             var params = new ArrayList<CosmosSqlParameter>();
             var ret = PGSubQueryExpression.buildArrayContainsAll("items", "", "@items_009", List.of("id001", "id002"), params, "data");
-            assertThat(ret).isEqualTo(" (data->'items' @> @items_009__0::jsonb AND data->'items' @> @items_009__1::jsonb)");
-            assertThat(params).hasSize(2);
-            var param = params.stream().collect(Collectors.toList()).get(0);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009__0", "\"id001\"").toJson());
-        }
-
-        {
-            /**
-             * INPUT: "items", "", "@items_009", ["id001"], params
-             * OUTPUT:
-             * " data->'items' ?? 'id001'
-             */
-
-            var params = new ArrayList<CosmosSqlParameter>();
-            var ret = PGSubQueryExpression.buildArrayContainsAll("items", "", "@items_009", List.of("id001"), params, "data");
-            assertThat(ret).isEqualTo(" (data->'items' @> @items_009__0::jsonb)");
+            assertThat(ret).isEqualTo(" (data->'items' @> ALL(@items_009::jsonb[]))");
             assertThat(params).hasSize(1);
-            var param = params.stream().collect(Collectors.toList()).get(0);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009__0", "\"id001\"").toJson());
+            var param = params.get(0);
+            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_009", List.of("[\"id001\"]", "[\"id002\"]")).toJson());
         }
 
-
         {
             /**
              * INPUT: "tags", "name", "@tags_name_010", ["react", "java"], params
              * OUTPUT:
-             * "  (data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__0)
-             * AND data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__1)
+             * " (data->'tags' @> ALL(@tags_name_010::jsonb[]))"
              */
 
             var params = new ArrayList<CosmosSqlParameter>();
             var ret = PGSubQueryExpression.buildArrayContainsAll("tags", "name", "@tags_name_010", List.of("react", "java"), params, "data");
 
-            assertThat(ret).isEqualTo(" (data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__0)) AND data->'tags' @> jsonb_build_array(jsonb_build_object('name', @tags_name_010__1)))");
-            assertThat(params).hasSize(2);
-            var ps = List.copyOf(params);
-            assertThat(ps.get(0).toJson()).isEqualTo(new CosmosSqlParameter("@tags_name_010__0", "react").toJson());
-            assertThat(ps.get(1).toJson()).isEqualTo(new CosmosSqlParameter("@tags_name_010__1", "java").toJson());
-
+            assertThat(ret).isEqualTo(" (data->'tags' @> ALL(@tags_name_010::jsonb[]))");
+            assertThat(params).hasSize(1);
+            assertThat(params.get(0).getValue()).isEqualTo(List.of("[{\"name\":\"react\"}]", "[{\"name\":\"java\"}]"));
         }
 
         {
@@ -154,15 +134,12 @@ class PGSubQueryExpressionTest {
             var params = new ArrayList<CosmosSqlParameter>();
             var ret = PGSubQueryExpression.buildArrayContainsAll("items", "name", "@items_name_010", "react", params, "data");
 
-            assertThat(ret).isEqualTo(" (data->'items' @> jsonb_build_array(jsonb_build_object('name', @items_name_010__0)))");
+            assertThat(ret).isEqualTo(" (data->'items' @> ALL(@items_name_010::jsonb[]))");
             assertThat(params).hasSize(1);
-            var param = params.stream().collect(Collectors.toList()).get(0);
-            assertThat(param.toJson()).isEqualTo(new CosmosSqlParameter("@items_name_010__0", "react").toJson());
-
+            assertThat(params.get(0).getValue()).isEqualTo(List.of("[{\"name\":\"react\"}]"));
         }
     }
 
-
     @Test
     void buildNestedJsonbExpression_should_work() {
         {
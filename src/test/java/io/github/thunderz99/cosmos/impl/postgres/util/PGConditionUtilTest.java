@@ -7,13 +7,16 @@ import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImplTest;
 import io.github.thunderz99.cosmos.impl.postgres.dto.QueryContext;
+import io.github.thunderz99.cosmos.util.CompiledQueryCache;
 import io.github.thunderz99.cosmos.util.JsonUtil;
+import io.github.thunderz99.cosmos.util.KeysetUtil;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -123,7 +126,7 @@ class PGConditionUtilTest {
         var expectedSQL = """
                 SELECT COUNT(1) AS "facetCount", data->>'formId' AS "formId"
                  FROM schema1.table1
-                 WHERE (data->>'formId' = ANY(@param000_formId))
+                 WHERE (data->>'formId' = ANY(@param000_formId::text[]))
                  GROUP BY data->>'formId'
                 """;
         assertThat(querySpec.getQueryText()).isEqualTo(expectedSQL.trim());
@@ -263,19 +266,17 @@ class PGConditionUtilTest {
         assertThat(querySpec.getQueryText())
                 .contains("FROM jsonb_array_elements(data->'monthWarningList') AS j2")
                 .contains("(NULLIF(j2->>'month','')::numeric = @param002_month)")
-                .contains("j2->'monthWarningTypes' @> @param003_monthWarningTypes__0::jsonb")
-                .contains("j2->'monthWarningTypes' @> @param003_monthWarningTypes__1::jsonb")
-                .contains("(data->'overtimeHours'->>'warningType' = ANY(@param004_overtimeHours__warningType))")
-                .contains("(data->'exceedingCount'->>'warningType' = ANY(@param005_exceedingCount__warningType))")
+                .contains("(j2->'monthWarningTypes' @> ANY(@param003_monthWarningTypes::jsonb[]))")
+                .contains("(data->'overtimeHours'->>'warningType' = ANY(@param004_overtimeHours__warningType::text[]))")
+                .contains("(data->'exceedingCount'->>'warningType' = ANY(@param005_exceedingCount__warningType::text[]))")
                 .doesNotContain("data->'$ELEM_MATCH'");
-        assertThat(querySpec.getParameters()).hasSize(7);
+        assertThat(querySpec.getParameters()).hasSize(6);
         assertThat(querySpec.getParameters().get(0).getName()).isEqualTo("@param000_memberId");
         assertThat(querySpec.getParameters().get(1).getName()).isEqualTo("@param001_year");
         assertThat(querySpec.getParameters().get(2).getName()).isEqualTo("@param002_month");
-        assertThat(querySpec.getParameters().get(3).getName()).isEqualTo("@param003_monthWarningTypes__0");
-        assertThat(querySpec.getParameters().get(4).getName()).isEqualTo("@param003_monthWarningTypes__1");
-        assertThat(querySpec.getParameters().get(5).getName()).isEqualTo("@param004_overtimeHours__warningType");
-        assertThat(querySpec.getParameters().get(6).getName()).isEqualTo("@param005_exceedingCount__warningType");
+        assertThat(querySpec.getParameters().get(3).getName()).isEqualTo("@param003_monthWarningTypes");
+        assertThat(querySpec.getParameters().get(4).getName()).isEqualTo("@param004_overtimeHours__warningType");
+        assertThat(querySpec.getParameters().get(5).getName()).isEqualTo("@param005_exceedingCount__warningType");
         assertThat(monthCondition.join).containsExactly("monthWarningList");
     }
 
@@ -295,6 +296,90 @@ class PGConditionUtilTest {
         );
     }
 
+    @Test
+    void buildQuerySpec_should_work_for_containment() {
+        var queryContext = QueryContext.create().containmentEnabled(true);
+
+        {
+            // equality / IN / ARRAY_CONTAINS are translated to containment
+            var cond = Condition.filter("address.city", "Tokyo", "age", 18, "status IN", List.of("A", "B"), "targetIdList ARRAY_CONTAINS", "a");
+            var querySpec = PGConditionUtil.toQuerySpec(coll, cond, partition, queryContext);
+
+            var expectedSQL = """
+                    SELECT *
+                     FROM schema1.table1
+                     WHERE (data @> @param000_address__city::jsonb) AND (data @> @param001_age::jsonb) AND (data @> ANY(@param002_status::jsonb[])) AND (data @> @param003_targetIdList::jsonb) OFFSET 0 LIMIT 100
+                    """;
+            assertThat(querySpec.getQueryText().trim()).isEqualTo(expectedSQL.trim());
+            assertThat(querySpec.getParameters()).containsExactly(
+                    new CosmosSqlParameter("@param000_address__city", "{\"address\":{\"city\":\"Tokyo\"}}"),
+                    new CosmosSqlParameter("@param001_age", "{\"age\":18}"),
+                    new CosmosSqlParameter("@param002_status", List.of("{\"status\":\"A\"}", "{\"status\":\"B\"}")),
+                    new CosmosSqlParameter("@param003_targetIdList", "{\"targetIdList\":[\"a\"]}")
+            );
+
+            var countSpec = PGConditionUtil.toQuerySpecForCount(coll, Condition.filter("age", 18), partition, queryContext);
+            assertThat(countSpec.getQueryText()).isEqualTo("SELECT COUNT(*) FROM schema1.table1 WHERE (data @> @param000_age::jsonb)");
+        }
+
+        {
+            // not translated under NOT, because NOT(data @> ...) matches documents without the field
+            var cond = Condition.filter("status", "A").not();
+            var querySpec = PGConditionUtil.toQuerySpec(coll, cond, partition, queryContext);
+            assertThat(querySpec.getQueryText()).isEqualTo("SELECT *\n FROM schema1.table1\n WHERE NOT( (data->>'status' = @param000_status)) OFFSET 0 LIMIT 100");
+        }
+
+        {
+            // not translated under $NOT, but translated outside of it
+            var cond = Condition.filter("age", 18, SubConditionType.NOT, Condition.filter("status", "A"));
+            var querySpec = PGConditionUtil.toQuerySpec(coll, cond, partition, queryContext);
+            assertThat(querySpec.getQueryText())
+                    .contains("(data @> @param000_age::jsonb)", "NOT(", "(data->>'status' = @param001_status)")
+                    .doesNotContain("@param001_status::jsonb");
+        }
+    }
+
+    @Test
+    void toQuerySpec_should_share_cached_template_across_partitions() {
+        var queryCache = new CompiledQueryCache(10);
+        var queryContext = QueryContext.create().queryCache(queryCache);
+
+        var partitions = List.of("table1", "Table-2", "table3", "table4", "table5");
+        for (int i = 0; i < partitions.size(); i++) {
+            var cond = Condition.filter("name", "Tom" + i, "age >", i).sort("id", "ASC");
+            var expected = PGConditionUtil.toQuerySpec(coll, cond, partitions.get(i));
+            var actual = PGConditionUtil.toQuerySpec(coll, cond, partitions.get(i), queryContext);
+            assertThat(actual.getQueryText()).isEqualTo(expected.getQueryText());
+            assertThat(actual.getParameters()).isEqualTo(expected.getParameters());
+
+            var expectedCount = PGConditionUtil.toQuerySpecForCount(coll, cond, partitions.get(i));
+            var actualCount = PGConditionUtil.toQuerySpecForCount(coll, cond, partitions.get(i), queryContext);
+            assertThat(actualCount.getQueryText()).isEqualTo(expectedCount.getQueryText());
+        }
+
+        // one template for find and one for count, regardless of partitions
+        assertThat(queryCache.getStats().size).isEqualTo(2);
+        assertThat(PGConditionUtil.toQuerySpec(coll, Condition.filter("name", "Jim", "age >", 9).sort("id", "ASC"), "Table-2", queryContext).getQueryText())
+                .contains(" FROM schema1.\"Table-2\"\n")
+                .doesNotContain(PGConditionUtil.TABLE_PLACEHOLDER);
+    }
+
+    @Test
+    void bindTable_should_work() {
+        var template = PGConditionUtil.toQuerySpecTemplate(coll, Condition.filter("name", "Tom"), QueryContext.create());
+        assertThat(template.getQueryText()).contains(" FROM schema1.(table)\n");
+
+        var spec1 = PGConditionUtil.bindTable(template, coll, "table1");
+        var spec2 = PGConditionUtil.bindTable(template, coll, "table2");
+        assertThat(spec1.getQueryText()).isEqualTo(PGConditionUtil.toQuerySpec(coll, Condition.filter("name", "Tom"), "table1").getQueryText());
+        assertThat(spec2.getQueryText()).contains(" FROM schema1.table2\n");
+        assertThat(spec2.getParameters()).isEqualTo(spec1.getParameters());
+
+        // raw sql has no placeholder
+        var raw = new CosmosSqlQuerySpec("SELECT * FROM schema1.table1");
+        assertThat(PGConditionUtil.bindTable(raw, coll, "table2")).isSameAs(raw);
+    }
+
     @Test
     void buildQuerySpec_should_work_for_target_id_list_array_contains_any() {
         var cond = Condition.filter("targetIdList ARRAY_CONTAINS_ANY", List.of("a", "b"));
@@ -303,12 +388,11 @@ class PGConditionUtilTest {
         var expectedSQL = """
                 SELECT *
                  FROM schema1.table1
-                 WHERE (data->'targetIdList' @> @param000_targetIdList__0::jsonb OR data->'targetIdList' @> @param000_targetIdList__1::jsonb) OFFSET 0 LIMIT 100
+                 WHERE (data->'targetIdList' @> ANY(@param000_targetIdList::jsonb[])) OFFSET 0 LIMIT 100
                 """;
         assertThat(querySpec.getQueryText().trim()).isEqualTo(expectedSQL.trim());
         assertThat(querySpec.getParameters()).containsExactly(
-                new CosmosSqlParameter("@param000_targetIdList__0", "\"a\""),
-                new CosmosSqlParameter("@param000_targetIdList__1", "\"b\"")
+                new CosmosSqlParameter("@param000_targetIdList", List.of("[\"a\"]", "[\"b\"]"))
         );
     }
 
@@ -806,12 +890,12 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT *
                      FROM schema1.table1
-                     WHERE (data->'rooms' @> @param000_rooms__0::jsonb OR data->'rooms' @> @param000_rooms__1::jsonb) OFFSET 0 LIMIT 100
+                     WHERE (data->'rooms' @> ANY(@param000_rooms::jsonb[])) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("\"003\"");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[\"003\"]", "[\"009\"]"));
 
         }
 
@@ -823,12 +907,12 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT *
                      FROM schema1.table1
-                     WHERE (data->'rooms' @> @param000_rooms__0::jsonb OR data->'rooms' @> @param000_rooms__1::jsonb) OFFSET 0 LIMIT 100
+                     WHERE (data->'rooms' @> ANY(@param000_rooms::jsonb[])) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("3");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[3]", "[9]"));
 
         }
 
@@ -841,12 +925,12 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT *
                      FROM schema1.table1
-                     WHERE (data->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param000_rooms__no__0)) OR data->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param000_rooms__no__1))) OFFSET 0 LIMIT 100
+                     WHERE (data->'rooms' @> ANY(@param000_rooms__no::jsonb[])) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__no__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("003");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__no");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"no\":\"003\"}]", "[{\"no\":\"009\"}]"));
 
         }
 
@@ -864,12 +948,12 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT *
                      FROM schema1.table1
-                     WHERE (data->'rooms' @> @param000_rooms__0::jsonb AND data->'rooms' @> @param000_rooms__1::jsonb) OFFSET 0 LIMIT 100
+                     WHERE (data->'rooms' @> ALL(@param000_rooms::jsonb[])) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("\"009\"");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[\"003\"]", "[\"009\"]"));
 
         }
 
@@ -881,12 +965,12 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT *
                      FROM schema1.table1
-                     WHERE (data->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param000_rooms__no__0)) AND data->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param000_rooms__no__1))) OFFSET 0 LIMIT 100
+                     WHERE (data->'rooms' @> ALL(@param000_rooms__no::jsonb[])) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__no__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("009");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__no");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"no\":\"003\"}]", "[{\"no\":\"009\"}]"));
 
         }
 
@@ -916,8 +1000,8 @@ class PGConditionUtilTest {
                          (
                        SELECT jsonb_agg(s2)
                        FROM jsonb_array_elements(data->'floors') AS s2
-                       WHERE ( (s2->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param002_rooms__name__0__for_select)) OR s2->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param002_rooms__name__1__for_select)))
-                       AND (s2->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param003_rooms__no__0__for_select)) OR s2->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param003_rooms__no__1__for_select))))
+                       WHERE ( (s2->'rooms' @> ANY(@param002_rooms__name__for_select::jsonb[]))
+                       AND (s2->'rooms' @> ANY(@param003_rooms__no__for_select::jsonb[])))
                      ),
                         data->'floors'
                       )
@@ -927,40 +1011,32 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) OR j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ANY(@param000_rooms__name::jsonb[]))
                      ) AND EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j1
-                       WHERE (j1->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param001_rooms__no__0)) OR j1->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param001_rooms__no__1)))
+                       WHERE (j1->'rooms' @> ANY(@param001_rooms__no::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
 
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(8);
+            assertThat(q.getParameters()).hasSize(4);
 
             // for "name" contains ["r1", "r2"]
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__name__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
             // for "no" contains ["001", "002"]
-            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param001_rooms__no__0");
-            assertThat(q.getParameters().get(2).getValue()).isEqualTo("001");
-            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param001_rooms__no__1");
-            assertThat(q.getParameters().get(3).getValue()).isEqualTo("002");
+            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__no");
+            assertThat(q.getParameters().get(1).getValue()).isEqualTo(List.of("[{\"no\":\"001\"}]", "[{\"no\":\"002\"}]"));
 
             // for "name" contains ["r1", "r2"] in SELECT
-            assertThat(q.getParameters().get(4).getName()).isEqualTo("@param002_rooms__name__0__for_select");
-            assertThat(q.getParameters().get(4).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(5).getName()).isEqualTo("@param002_rooms__name__1__for_select");
-            assertThat(q.getParameters().get(5).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param002_rooms__name__for_select");
+            assertThat(q.getParameters().get(2).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
             // for "no" contains ["001", "002"] in SELECT
-            assertThat(q.getParameters().get(6).getName()).isEqualTo("@param003_rooms__no__0__for_select");
-            assertThat(q.getParameters().get(6).getValue()).isEqualTo("001");
-            assertThat(q.getParameters().get(7).getName()).isEqualTo("@param003_rooms__no__1__for_select");
-            assertThat(q.getParameters().get(7).getValue()).isEqualTo("002");
+            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param003_rooms__no__for_select");
+            assertThat(q.getParameters().get(3).getValue()).isEqualTo(List.of("[{\"no\":\"001\"}]", "[{\"no\":\"002\"}]"));
 
         }
 
@@ -994,8 +1070,8 @@ class PGConditionUtilTest {
                          (
                        SELECT jsonb_agg(s2)
                        FROM jsonb_array_elements(data->'floors') AS s2
-                       WHERE ( (s2->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param002_rooms__name__0__for_select)) AND s2->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param002_rooms__name__1__for_select)))
-                       AND (s2->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param003_rooms__no__0__for_select)) AND s2->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param003_rooms__no__1__for_select))))
+                       WHERE ( (s2->'rooms' @> ALL(@param002_rooms__name__for_select::jsonb[]))
+                       AND (s2->'rooms' @> ALL(@param003_rooms__no__for_select::jsonb[])))
                      ),
                         data->'floors'
                       )
@@ -1005,11 +1081,11 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) AND j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ALL(@param000_rooms__name::jsonb[]))
                      ) AND EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j1
-                       WHERE (j1->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param001_rooms__no__0)) AND j1->'rooms' @> jsonb_build_array(jsonb_build_object('no', @param001_rooms__no__1)))
+                       WHERE (j1->'rooms' @> ALL(@param001_rooms__no::jsonb[]))
                      )
                     )
                     SELECT
@@ -1021,31 +1097,23 @@ class PGConditionUtilTest {
                     """;
 
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(8);
+            assertThat(q.getParameters()).hasSize(4);
 
             // for "name" contains ["r1", "r2"]
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__name__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
             // for "no" contains ["001", "002"]
-            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param001_rooms__no__0");
-            assertThat(q.getParameters().get(2).getValue()).isEqualTo("001");
-            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param001_rooms__no__1");
-            assertThat(q.getParameters().get(3).getValue()).isEqualTo("002");
+            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__no");
+            assertThat(q.getParameters().get(1).getValue()).isEqualTo(List.of("[{\"no\":\"001\"}]", "[{\"no\":\"002\"}]"));
 
             // for "name" contains ["r1", "r2"] in SELECT
-            assertThat(q.getParameters().get(4).getName()).isEqualTo("@param002_rooms__name__0__for_select");
-            assertThat(q.getParameters().get(4).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(5).getName()).isEqualTo("@param002_rooms__name__1__for_select");
-            assertThat(q.getParameters().get(5).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param002_rooms__name__for_select");
+            assertThat(q.getParameters().get(2).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
             // for "no" contains ["001", "002"] in SELECT
-            assertThat(q.getParameters().get(6).getName()).isEqualTo("@param003_rooms__no__0__for_select");
-            assertThat(q.getParameters().get(6).getValue()).isEqualTo("001");
-            assertThat(q.getParameters().get(7).getName()).isEqualTo("@param003_rooms__no__1__for_select");
-            assertThat(q.getParameters().get(7).getValue()).isEqualTo("002");
+            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param003_rooms__no__for_select");
+            assertThat(q.getParameters().get(3).getValue()).isEqualTo(List.of("[{\"no\":\"001\"}]", "[{\"no\":\"002\"}]"));
 
         }
 
@@ -1066,12 +1134,13 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'rooms') AS j0
-                       WHERE (j0->'no' @> @param000_no__0::jsonb OR j0->'no' @> @param000_no__1::jsonb)
+                       WHERE (j0->'no' @> ANY(@param000_no::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_no__0");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_no");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[\"003\"]", "[\"009\"]"));
             assertThat(q.getParameters().get(0).getValue()).isEqualTo("\"003\"");
 
         }
@@ -1087,13 +1156,13 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) OR j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ANY(@param000_rooms__name::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
         }
 
@@ -1114,7 +1183,7 @@ class PGConditionUtilTest {
                          (
                        SELECT jsonb_agg(s1)
                        FROM jsonb_array_elements(data->'floors') AS s1
-                       WHERE ( (s1->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param001_rooms__name__0__for_select)) OR s1->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param001_rooms__name__1__for_select))))
+                       WHERE ( (s1->'rooms' @> ANY(@param001_rooms__name__for_select::jsonb[])))
                      ),
                         data->'floors'
                       )
@@ -1124,20 +1193,16 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) OR j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ANY(@param000_rooms__name::jsonb[]))
                      ) OFFSET 0 LIMIT 10
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(4);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__name__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters()).hasSize(2);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
-            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param001_rooms__name__0__for_select");
-            assertThat(q.getParameters().get(2).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param001_rooms__name__1__for_select");
-            assertThat(q.getParameters().get(3).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__name__for_select");
+            assertThat(q.getParameters().get(1).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
         }
 
@@ -1163,7 +1228,7 @@ class PGConditionUtilTest {
                          (
                        SELECT jsonb_agg(s1)
                        FROM jsonb_array_elements(data->'floors') AS s1
-                       WHERE ( (s1->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param001_rooms__name__0__for_select)) OR s1->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param001_rooms__name__1__for_select))))
+                       WHERE ( (s1->'rooms' @> ANY(@param001_rooms__name__for_select::jsonb[])))
                      ),
                         data->'floors'
                       )
@@ -1173,7 +1238,7 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) OR j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ANY(@param000_rooms__name::jsonb[]))
                      )
                     )
                     SELECT
@@ -1184,16 +1249,12 @@ class PGConditionUtilTest {
                      ORDER BY data->>'_ts' DESC,  data->'address'->'street' ASC, id DESC OFFSET 0 LIMIT 10
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(4);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__name__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters()).hasSize(2);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
-            assertThat(q.getParameters().get(2).getName()).isEqualTo("@param001_rooms__name__0__for_select");
-            assertThat(q.getParameters().get(2).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(3).getName()).isEqualTo("@param001_rooms__name__1__for_select");
-            assertThat(q.getParameters().get(3).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__name__for_select");
+            assertThat(q.getParameters().get(1).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
         }
 
@@ -1214,12 +1275,13 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'rooms') AS j0
-                       WHERE (j0->'no' @> @param000_no__0::jsonb AND j0->'no' @> @param000_no__1::jsonb)
+                       WHERE (j0->'no' @> ALL(@param000_no::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_no__0");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_no");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[\"003\"]", "[\"009\"]"));
 
         }
 
@@ -1234,15 +1296,13 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)) AND j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__1)))
+                       WHERE (j0->'rooms' @> ALL(@param000_rooms__name::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
-            assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param000_rooms__name__1");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r2");
+            assertThat(q.getParameters()).hasSize(1);
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]", "[{\"name\":\"r2\"}]"));
 
         }
 
@@ -1262,7 +1322,7 @@ class PGConditionUtilTest {
                          (
                        SELECT jsonb_agg(s1)
                        FROM jsonb_array_elements(data->'floors') AS s1
-                       WHERE ( (s1->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param001_rooms__name__0__for_select))))
+                       WHERE ( (s1->'rooms' @> ALL(@param001_rooms__name__for_select::jsonb[])))
                      ),
                         data->'floors'
                       )
@@ -1272,15 +1332,15 @@ class PGConditionUtilTest {
                      WHERE EXISTS (
                        SELECT 1
                        FROM jsonb_array_elements(data->'floors') AS j0
-                       WHERE (j0->'rooms' @> jsonb_build_array(jsonb_build_object('name', @param000_rooms__name__0)))
+                       WHERE (j0->'rooms' @> ALL(@param000_rooms__name::jsonb[]))
                      ) OFFSET 0 LIMIT 100
                     """;
             assertThat(q.getQueryText().trim()).isEqualTo(expected.trim());
             assertThat(q.getParameters()).hasSize(2);
-            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name__0");
-            assertThat(q.getParameters().get(0).getValue()).isEqualTo("r1");
-            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__name__0__for_select");
-            assertThat(q.getParameters().get(1).getValue()).isEqualTo("r1");
+            assertThat(q.getParameters().get(0).getName()).isEqualTo("@param000_rooms__name");
+            assertThat(q.getParameters().get(0).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]"));
+            assertThat(q.getParameters().get(1).getName()).isEqualTo("@param001_rooms__name__for_select");
+            assertThat(q.getParameters().get(1).getValue()).isEqualTo(List.of("[{\"name\":\"r1\"}]"));
 
         }
 
@@ -1317,7 +1377,7 @@ class PGConditionUtilTest {
             var expected = """
                     SELECT COUNT(1) AS "facetCount", data->>'formId' AS "formId"
                      FROM schema1.table1
-                     WHERE (data->>'formId' = ANY(@param000_formId))
+                     WHERE (data->>'formId' = ANY(@param000_formId::text[]))
                      GROUP BY data->>'formId'
                     """;
             assertThat(querySpec.queryText.trim()).isEqualTo(expected.trim());
@@ -1334,7 +1394,7 @@ class PGConditionUtilTest {
             var expectedWithInnerSort = """
                     SELECT COUNT(1) AS "facetCount", data->>'formId' AS "formId"
                      FROM schema1.table1
-                     WHERE (data->>'formId' = ANY(@param000_formId))
+                     WHERE (data->>'formId' = ANY(@param000_formId::text[]))
                      GROUP BY data->>'formId'
                      ORDER BY "formId" ASC NULLS FIRST
                     """;
@@ -1348,7 +1408,7 @@ class PGConditionUtilTest {
             var expectedWithOuterOffsetLimit = String.join("\n",
                     "SELECT * FROM (SELECT COUNT(1) AS \"facetCount\", data->>'formId' AS \"formId\"",
                     " FROM schema1.table1",
-                    " WHERE (data->>'formId' = ANY(@param000_formId))",
+                    " WHERE (data->>'formId' = ANY(@param000_formId::text[]))",
                     " GROUP BY data->>'formId') agg",
                     "",
                     " ORDER BY \"formId\" ASC NULLS FIRST",
@@ -1359,4 +1419,47 @@ class PGConditionUtilTest {
 
     }
 
+    @Test
+    void toQuerySpec_should_work_with_keyset_pagination() {
+
+        {
+            // first page. no seek predicate, and offset is ignored
+            var cond = Condition.filter("age", 18).sort("name", "ASC").collate("C").offset(100).limit(10).after(null);
+            var spec = PGConditionUtil.toQuerySpec(coll, cond, partition);
+            assertThat(spec.getQueryText()).isEqualTo("SELECT *\n FROM schema1.table1\n WHERE (NULLIF(data->>'age','')::numeric = @param000_age)" +
+                    "\n ORDER BY data->>'name' COLLATE \"C\" ASC, data->>'_ts' ASC, id COLLATE \"C\" ASC OFFSET 0 LIMIT 10");
+        }
+
+        {
+            // next page. use a row comparison when all the orders are the same
+            var sort = KeysetUtil.normalizeSort(List.of("name", "ASC"));
+            var token = KeysetUtil.encode(sort, Map.of("id", "id001", "_ts", 1714546148.123, "name", "Tom"));
+
+            var cond = Condition.filter("age", 18).sort("name", "ASC").collate("C").limit(10).after(token);
+            var spec = PGConditionUtil.toQuerySpec(coll, cond, partition);
+            assertThat(spec.getQueryText()).isEqualTo("SELECT *\n FROM schema1.table1\n WHERE (NULLIF(data->>'age','')::numeric = @param000_age)" +
+                    " AND (data->>'name' COLLATE \"C\", data->>'_ts', id COLLATE \"C\") > (@keyset001, @keyset002, @keyset003)" +
+                    "\n ORDER BY data->>'name' COLLATE \"C\" ASC, data->>'_ts' ASC, id COLLATE \"C\" ASC OFFSET 0 LIMIT 10");
+            assertThat(spec.getParameters()).containsExactly(
+                    new CosmosSqlParameter("@param000_age", 18),
+                    new CosmosSqlParameter("@keyset001", "Tom"),
+                    new CosmosSqlParameter("@keyset002", "1714546148.123"),
+                    new CosmosSqlParameter("@keyset003", "id001"));
+        }
+
+        {
+            // next page. use an expanded form when the orders are different
+            var sort = KeysetUtil.normalizeSort(List.of("age::int", "DESC", "id", "ASC"));
+            var token = KeysetUtil.encode(sort, Map.of("id", "id001", "age", 20));
+
+            var cond = Condition.filter().sort("age::int", "DESC", "id", "ASC").after(token);
+            var spec = PGConditionUtil.toQuerySpec(coll, cond, partition);
+            assertThat(spec.getQueryText()).contains(" WHERE (((data->>'age')::int < (@keyset000)::int)" +
+                    " OR ((data->>'age')::int = (@keyset000)::int AND id > @keyset001))");
+            assertThat(spec.getParameters()).containsExactly(
+                    new CosmosSqlParameter("@keyset000", "20"),
+                    new CosmosSqlParameter("@keyset001", "id001"));
+        }
+    }
+
 }
@@ -56,6 +56,12 @@ class PGCronUtilTest {
             assertThat(job.schedule.trim()).isEqualTo(cronExpression);
             assertThat(job.command.trim()).isEqualTo(sql);
 
+            // run metrics of a job not run yet
+            assertThat(job.lastRunStatus).isNull();
+            assertThat(job.lastRunStartTime).isNull();
+            assertThat(job.succeededRuns).isEqualTo(0);
+            assertThat(job.failedRuns).isEqualTo(0);
+
             // un-schedule job
             var unScheduled = PGCronUtil.unScheduleJob(conn, jobName);
             assertThat(unScheduled).isTrue();
@@ -0,0 +1,102 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.condition.SubConditionType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PGIndexAdvisorTest {
+
+    @Test
+    void getFilterIndexElements_should_work() {
+
+        {
+            // filters use the same expression as the query. id is the primary key
+            var cond = Condition.filter("age >", 20, "status", "A", "id", "id001", "name STARTSWITH", "T", "address.city <=", "Tokyo");
+            assertThat(PGIndexAdvisor.getFilterIndexElements(cond))
+                    .containsExactly("(NULLIF(data->>'age','')::numeric)", "(data->>'status')", "(data->'address'->>'city')");
+        }
+
+        {
+            // equality uses containment(GIN) when containment is enabled
+            var cond = Condition.filter("age >", 20, "status", "A");
+            assertThat(PGIndexAdvisor.getFilterIndexElements(cond, true)).containsExactly("(NULLIF(data->>'age','')::numeric)");
+        }
+
+        {
+            // IN over the containment limit uses = ANY(@param)
+            var cond = Condition.filter("code", IntStream.range(0, 200).boxed().toList());
+            assertThat(PGIndexAdvisor.getFilterIndexElements(cond, true)).containsExactly("(NULLIF(data->>'code','')::numeric)");
+        }
+
+        {
+            // sub conditions are not collected
+            var cond = Condition.filter(SubConditionType.OR, List.of(Condition.filter("age >", 20), Condition.filter("age <", 10)));
+            assertThat(PGIndexAdvisor.getFilterIndexElements(cond)).isEmpty();
+        }
+    }
+
+    @Test
+    void getSortIndexElements_should_work() {
+
+        assertThat(PGIndexAdvisor.getSortIndexElements(Condition.filter().sort("name", "ASC").collate("C")))
+                .isEqualTo("(data->>'name') COLLATE \"C\" ASC, (data->>'_ts') ASC, id COLLATE \"C\" ASC");
+
+        assertThat(PGIndexAdvisor.getSortIndexElements(Condition.filter().sort("age::int", "DESC")))
+                .isEqualTo("((data->>'age')::int) DESC, (data->>'_ts') DESC, id DESC");
+
+        // jsonb sort with COLLATE "C" cannot be indexed
+        assertThat(PGIndexAdvisor.getSortIndexElements(Condition.filter().sort("address.city", "ASC").collate("C"))).isEmpty();
+
+        assertThat(PGIndexAdvisor.getSortIndexElements(Condition.filter())).isEmpty();
+    }
+
+    @Test
+    void getRecommendations_should_rank_by_total_latency() {
+        var advisor = new PGIndexAdvisor();
+
+        for (int i = 0; i < 10; i++) {
+            advisor.record("schema1", "table1", Condition.filter("age >", i).sort("name", "ASC").collate("C"), true, 1_000_000);
+        }
+        advisor.record("schema1", "table1", Condition.filter("score <", 0.5), false, 50_000_000);
+        // sort is not recorded for count
+        advisor.record("schema1", "table2", Condition.filter().sort("name", "DESC"), false, 1_000_000);
+
+        var recommendations = advisor.getRecommendations(10);
+        assertThat(recommendations).hasSize(3);
+
+        var first = recommendations.get(0);
+        assertThat(first.kind).isEqualTo(PGIndexAdvisor.Kind.FILTER);
+        assertThat(first.indexElements).isEqualTo("(NULLIF(data->>'score','')::numeric)");
+        assertThat(first.count).isEqualTo(1);
+        assertThat(first.getMeanLatencyMillis()).isEqualTo(50.0);
+        assertThat(first.toCreateIndexSQL(true))
+                .isEqualTo("CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON schema1.table1 ((NULLIF(data->>'score','')::numeric));".formatted(first.indexName));
+        assertThat(first.indexName).startsWith("idx_table1_adv_");
+
+        assertThat(recommendations.subList(1, 3)).allMatch(r -> r.count == 10);
+        assertThat(recommendations.stream().map(r -> r.kind).toList()).contains(PGIndexAdvisor.Kind.SORT);
+
+        // minCount
+        assertThat(advisor.getRecommendations(10, 2)).hasSize(2);
+
+        advisor.reset();
+        assertThat(advisor.getRecommendations(10)).isEmpty();
+    }
+
+    @Test
+    void record_should_ignore_new_candidates_over_maxCandidates() {
+        var advisor = new PGIndexAdvisor(1);
+        advisor.record("schema1", "table1", Condition.filter("age >", 1), false, 1);
+        advisor.record("schema1", "table1", Condition.filter("score >", 1), false, 1);
+        advisor.record("schema1", "table1", Condition.filter("age >", 2), false, 1);
+
+        assertThat(advisor.getRecommendations(10)).hasSize(1);
+        assertThat(advisor.getRecommendations(10).get(0).count).isEqualTo(2);
+        assertThat(advisor.getDroppedCount()).isEqualTo(1);
+    }
+}
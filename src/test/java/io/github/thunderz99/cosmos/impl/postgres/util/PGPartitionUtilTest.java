@@ -0,0 +1,128 @@
+package io.github.thunderz99.cosmos.impl.postgres.util;
+
+import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresImpl;
+import io.github.thunderz99.cosmos.impl.postgres.PostgresImplTest;
+import io.github.thunderz99.cosmos.impl.postgres.dto.PGTimePartitionOption;
+import io.github.thunderz99.cosmos.util.EnvUtil;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PGPartitionUtilTest {
+
+    static PostgresImpl cosmos;
+
+    static final String dbName = "java_cosmos";
+    static final String schemaName = "partition_util_test_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        cosmos = new PostgresImpl(EnvUtil.getOrDefault("POSTGRES_CONNECTION_STRING", PostgresImplTest.LOCAL_CONNECTION_STRING));
+        cosmos.createIfNotExist(dbName, schemaName);
+    }
+
+    @AfterAll
+    static void afterAll() throws Exception {
+        if (cosmos != null) {
+            cosmos.deleteCollection(dbName, schemaName);
+            cosmos.closeClient();
+        }
+    }
+
+    @Test
+    void getPartitionKeyExpression_should_work() {
+        assertThat(PGPartitionUtil.getPartitionKeyExpression("_ts")).isEqualTo("NULLIF(data->>'_ts','')::numeric");
+        assertThat(PGPartitionUtil.getPartitionKeyExpression("_expireAt")).isEqualTo("NULLIF(data->>'_expireAt','')::numeric");
+        assertThatThrownBy(() -> PGPartitionUtil.getPartitionKeyExpression("")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void buildMaintenanceSQL_should_work() {
+        {
+            var sql = PGPartitionUtil.buildMaintenanceSQL("schema1", "Events", new PGTimePartitionOption().partitionDays(7).premakePartitions(2).retentionDays(10));
+            assertThat(sql).startsWith("DO $partition$").contains("$partition$;");
+            assertThat(sql).contains("step numeric := 604800;");
+            assertThat(sql).contains("FOR i IN 0..2 LOOP");
+            assertThat(sql).contains("part_name := 'Events_p' || to_char(");
+            assertThat(sql).contains("PARTITION OF %I.%I FOR VALUES FROM (%s) TO (%s)");
+            assertThat(sql).contains("to_regclass('schema1.\"Events\"')");
+            assertThat(sql).contains("r.upper_bound <= now_epoch - 864000");
+            assertThat(sql).contains("EXECUTE format('DROP TABLE %I.%I', 'schema1', r.relname);");
+            assertThat(sql).contains("RAISE LOG 'expired partition %.% is dropped'");
+        }
+        {
+            var sql = PGPartitionUtil.buildMaintenanceSQL("schema1", "events", new PGTimePartitionOption().detachOnly(true));
+            assertThat(sql).contains("EXECUTE format('ALTER TABLE %I.%I DETACH PARTITION %I.%I', 'schema1', 'events', 'schema1', r.relname);");
+            assertThat(sql).doesNotContain("DROP TABLE");
+        }
+        {
+            // irregular
+            assertThatThrownBy(() -> PGPartitionUtil.buildMaintenanceSQL("schema1", "events", new PGTimePartitionOption().partitionDays(0)))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("partitionDays must > 0");
+            assertThatThrownBy(() -> PGPartitionUtil.buildMaintenanceSQL("schema1", StringUtils.repeat("a", 60), new PGTimePartitionOption()))
+                    .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("tableName is too long");
+        }
+    }
+
+    @Test
+    void getJobName_should_work() {
+        assertThat(PGPartitionUtil.getJobName("Schema", "Events")).isEqualTo("Schema_partition_job_Events");
+    }
+
+    @Test
+    void partitioned_table_should_work() throws Exception {
+        var tableName = "events_" + StringUtils.lowerCase(RandomStringUtils.randomAlphanumeric(4));
+        var option = new PGTimePartitionOption().premakePartitions(1).retentionDays(1);
+
+        try (var conn = cosmos.getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName, false, option);
+
+            assertThat(TableUtil.tableExist(conn, schemaName, tableName)).isTrue();
+            assertThat(PGPartitionUtil.isPartitionedTable(conn, schemaName, tableName)).isTrue();
+
+            // children are not listed
+            assertThat(TableUtil.listTables(conn, schemaName)).contains(tableName).noneMatch(t -> t.startsWith(tableName + "_"));
+
+            var now = System.currentTimeMillis() / 1000.0;
+            var twoDaysAgo = now - 2 * 86400;
+            try (var stmt = conn.createStatement()) {
+                // an old partition which is expired
+                var oldLower = Math.floor(twoDaysAgo / 86400) * 86400;
+                stmt.execute("CREATE TABLE %s.%s_old PARTITION OF %s.%s FOR VALUES FROM (%d) TO (%d)".formatted(
+                        schemaName, tableName, schemaName, tableName, (long) oldLower, (long) oldLower + 86400));
+                stmt.execute("INSERT INTO %s.%s (id, data) VALUES ('old', '{\"_ts\": %s}')".formatted(schemaName, tableName, twoDaysAgo));
+                stmt.execute("INSERT INTO %s.%s (id, data) VALUES ('new', '{\"_ts\": %s}')".formatted(schemaName, tableName, now));
+                stmt.execute("INSERT INTO %s.%s (id, data) VALUES ('no_ts', '{}')".formatted(schemaName, tableName));
+            }
+
+            // find with _ts condition
+            var querySpec = new CosmosSqlQuerySpec("SELECT * FROM %s.%s WHERE NULLIF(data->>'_ts','')::numeric >= @ts".formatted(schemaName, tableName),
+                    List.of(new CosmosSqlParameter("@ts", now - 60)));
+            assertThat(TableUtil.findRecords(conn, schemaName, tableName, querySpec)).extracting(r -> r.id).containsExactly("new");
+
+            // the old partition is dropped
+            PGPartitionUtil.runMaintenance(conn, schemaName, tableName, option);
+            try (var stmt = conn.createStatement(); var rs = stmt.executeQuery("SELECT id FROM %s.%s ORDER BY id".formatted(schemaName, tableName))) {
+                var ids = new ArrayList<String>();
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+                assertThat(ids).containsExactly("new", "no_ts");
+            }
+        } finally {
+            try (var conn = cosmos.getDataSource().getConnection()) {
+                TableUtil.dropTableIfExists(conn, schemaName, tableName);
+            }
+        }
+    }
+}
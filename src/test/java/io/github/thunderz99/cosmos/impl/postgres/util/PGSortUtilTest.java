@@ -1,7 +1,13 @@
 package io.github.thunderz99.cosmos.impl.postgres.util;
 
+import io.github.thunderz99.cosmos.impl.postgres.PostgresRecord;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,4 +34,70 @@ class PGSortUtilTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void getComparator4Merge_should_work() {
+
+        {
+            // ::int compares the numbers cast from text, even if stored as strings
+            var comparator = PGSortUtil.getComparator4Merge(List.of("age::int", "ASC"));
+            assertThat(comparator.compare(toRecord("1", Map.of("age", "10")), toRecord("2", Map.of("age", "9")))).isGreaterThan(0);
+            assertThat(comparator.compare(toRecord("1", Map.of("age", 10)), toRecord("2", Map.of("age", "9")))).isGreaterThan(0);
+        }
+
+        {
+            // ::text and textKeys compare the text of "->>", even if stored as numbers
+            assertThat(PGSortUtil.getComparator4Merge(List.of("age::text", "ASC"))
+                    .compare(toRecord("1", Map.of("age", 10)), toRecord("2", Map.of("age", 9)))).isLessThan(0);
+            assertThat(PGSortUtil.getComparator4Merge(List.of("name", "ASC"))
+                    .compare(toRecord("1", Map.of("name", 10)), toRecord("2", Map.of("name", "9")))).isLessThan(0);
+        }
+
+        {
+            // jsonb compares by type rank first: null < numbers < strings < missing
+            var comparator = PGSortUtil.getComparator4Merge(List.of("score", "ASC"));
+            var nullScore = new HashMap<String, Object>();
+            nullScore.put("score", null);
+            var list = new ArrayList<>(List.of(toRecord("1", Map.of()), toRecord("2", Map.of("score", "10")), toRecord("3", Map.of("score", 9)), toRecord("4", nullScore)));
+            list.sort(comparator);
+            assertThat(list.stream().map(r -> r.id).toList()).containsExactly("4", "3", "2", "1");
+        }
+
+        {
+            // a missing value comes last in ASC, and first in DESC
+            var asc = PGSortUtil.getComparator4Merge(List.of("address.city", "ASC"));
+            var desc = PGSortUtil.getComparator4Merge(List.of("address.city", "DESC"));
+            var tokyo = toRecord("1", Map.of("address", Map.of("city", "Tokyo")));
+            var missing = toRecord("2", Map.of("address", Map.of()));
+            assertThat(asc.compare(missing, tokyo)).isGreaterThan(0);
+            assertThat(desc.compare(missing, tokyo)).isLessThan(0);
+        }
+
+        {
+            // id is the id column, and the tie-breaker
+            var comparator = PGSortUtil.getComparator4Merge(List.of("age::int", "DESC", "id", "DESC"));
+            var a = toRecord("a", Map.of("age", 20));
+            var b = toRecord("b", Map.of("age", 20));
+            a.data.put("id", "z");
+            assertThat(comparator.compare(a, b)).isGreaterThan(0);
+        }
+
+        // empty sort
+        assertThat(PGSortUtil.getComparator4Merge(List.of())).isNull();
+    }
+
+    @Test
+    void compareCollateC_should_work() {
+        // upper case is smaller than lower case, the same as collate "C"
+        assertThat(PGSortUtil.compareCollateC("B", "a")).isLessThan(0);
+        assertThat(PGSortUtil.compareCollateC("ab", "abc")).isLessThan(0);
+        assertThat(PGSortUtil.compareCollateC("abc", "abc")).isEqualTo(0);
+        // code point order(the byte order of utf-8), which differs from String.compareTo for surrogate pairs
+        assertThat(PGSortUtil.compareCollateC("\uFF21", "\uD83D\uDE00")).isLessThan(0);
+        assertThat("\uFF21".compareTo("\uD83D\uDE00")).isGreaterThan(0);
+    }
+
+    static PostgresRecord toRecord(String id, Map<String, Object> data) {
+        return new PostgresRecord(id, new HashMap<>(data));
+    }
+}
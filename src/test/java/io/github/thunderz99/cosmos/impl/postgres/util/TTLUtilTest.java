@@ -3,6 +3,7 @@ package io.github.thunderz99.cosmos.impl.postgres.util;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresDatabaseImpl;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresImpl;
 import io.github.thunderz99.cosmos.impl.postgres.PostgresImplTest;
+import io.github.thunderz99.cosmos.impl.postgres.dto.TTLOption;
 import io.github.thunderz99.cosmos.util.EnvUtil;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -63,10 +64,7 @@ class TTLUtilTest {
                 assertThat(TTLUtil.jobExists(conn, schemaName, tableName)).isTrue();
 
                 // check that the command(text) is correct
-                var expectedCmd = """                        
-                        DELETE FROM %s.%s
-                        WHERE (data->>'_expireAt')::bigint < extract(epoch from now())::bigint;
-                        """.trim().formatted(schemaName, formattedTableName);
+                var expectedCmd = TTLUtil.buildDeleteSQL(formattedSchemaName, formattedTableName, new TTLOption()).trim();
                 var job = TTLUtil.findJobByName(conn, schemaName, tableName);
                 assertThat(job.command).contains(schemaName).contains(tableName);
                 assertThat(job.command.trim()).isEqualTo(expectedCmd);
@@ -130,10 +128,7 @@ class TTLUtilTest {
                 assertThat(TTLUtil.jobExists(conn, schemaName, tableName)).isTrue();
 
                 // check that the command(text) is correct
-                var expectedCmd = """                        
-                        DELETE FROM %s.%s
-                        WHERE (data->>'_expireAt')::bigint < extract(epoch from now())::bigint;
-                        """.trim().formatted(schemaName, formattedTableName);
+                var expectedCmd = TTLUtil.buildDeleteSQL(formattedSchemaName, formattedTableName, new TTLOption()).trim();
                 var job = TTLUtil.findJobByName(conn, schemaName, tableName);
                 assertThat(job.command).contains(schemaName).contains(tableName);
                 assertThat(job.command.trim()).isEqualTo(expectedCmd);
@@ -170,10 +165,7 @@ class TTLUtilTest {
                 assertThat(TTLUtil.jobExists(conn, schemaName, tableName)).isTrue();
 
                 // check that the command(text) is correct
-                var expectedCmd = """                        
-                        DELETE FROM %s.%s
-                        WHERE (data->>'_expireAt')::bigint < extract(epoch from now())::bigint;
-                        """.trim().formatted(schemaName, formattedTableName);
+                var expectedCmd = TTLUtil.buildDeleteSQL(formattedSchemaName, formattedTableName, new TTLOption()).trim();
                 var job = TTLUtil.findJobByName(conn, schemaName, tableName);
                 assertThat(job.command).contains(schemaName).contains(tableName);
                 assertThat(job.command.trim()).isEqualTo(expectedCmd);
@@ -193,6 +185,84 @@ class TTLUtilTest {
         }
     }
 
+    @Test
+    void buildDeleteSQL_should_work() throws Exception {
+        var sql = TTLUtil.buildDeleteSQL("schema1", "\"Table1\"", new TTLOption().batchSize(500).pauseMillis(50).maxBatchesPerRun(10));
+
+        assertThat(sql).startsWith("DO $ttl$").contains("$ttl$;");
+        assertThat(sql).contains("DELETE FROM schema1.\"Table1\"");
+        assertThat(sql).contains("WHERE (data->>'_expireAt')::bigint < now_epoch");
+        assertThat(sql).contains("LIMIT 500").contains("FOR UPDATE SKIP LOCKED");
+        assertThat(sql).contains("COMMIT;");
+        assertThat(sql).contains("EXIT WHEN deleted < 500 OR batches >= 10;");
+        assertThat(sql).contains("PERFORM pg_sleep(0.050);");
+        assertThat(sql).contains("RAISE LOG 'ttl job schema1.\"Table1\": deleted % rows in % batches'");
+
+        // no pause
+        assertThat(TTLUtil.buildDeleteSQL("schema1", "table1", new TTLOption().pauseMillis(0))).doesNotContain("pg_sleep");
+
+        // irregular
+        assertThatThrownBy(() -> TTLUtil.buildDeleteSQL("schema1", "table1", new TTLOption().batchSize(0)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("batchSize must > 0");
+        assertThatThrownBy(() -> TTLUtil.buildDeleteSQL("schema1", "table1", new TTLOption().maxBatchesPerRun(0)))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("maxBatchesPerRun must > 0");
+    }
+
+    @Test
+    void batched_job_should_delete_expired_records_and_create_index() throws Exception {
+        var tableName = "batched_job_test_" + RandomStringUtils.randomAlphanumeric(4);
+        var formattedTableName = TableUtil.checkAndNormalizeValidEntityName(tableName);
+
+        try (var conn = cosmos.getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName);
+
+            // index on _expireAt
+            var indexName = TTLUtil.createExpireAtIndexIfNotExist(conn, schemaName, tableName);
+            assertThat(indexName).contains("_expireAt");
+            assertThat(TTLUtil.createExpireAtIndexIfNotExist(conn, schemaName, tableName)).isEmpty();
+
+            // 5 expired records, 1 not expired
+            var now = System.currentTimeMillis() / 1000;
+            try (var stmt = conn.createStatement()) {
+                for (int i = 0; i < 5; i++) {
+                    stmt.execute("INSERT INTO %s.%s (id, data) VALUES ('expired%d', '{\"_expireAt\": %d}')".formatted(formattedSchemaName, formattedTableName, i, now - 60));
+                }
+                stmt.execute("INSERT INTO %s.%s (id, data) VALUES ('alive', '{\"_expireAt\": %d}')".formatted(formattedSchemaName, formattedTableName, now + 3600));
+            }
+
+            // run the command of the job directly, in batches of 2
+            try (var stmt = conn.createStatement()) {
+                stmt.execute(TTLUtil.buildDeleteSQL(formattedSchemaName, formattedTableName, new TTLOption().batchSize(2).pauseMillis(0)));
+            }
+
+            try (var stmt = conn.createStatement(); var rs = stmt.executeQuery("SELECT id FROM %s.%s".formatted(formattedSchemaName, formattedTableName))) {
+                var ids = new ArrayList<String>();
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+                assertThat(ids).containsExactly("alive");
+            }
+
+            // jobUpToDate
+            assertThat(TTLUtil.jobUpToDate(conn, schemaName, tableName, new TTLOption())).isFalse();
+            TTLUtil.scheduleJob(conn, schemaName, tableName, 1, new TTLOption());
+            assertThat(TTLUtil.jobUpToDate(conn, schemaName, tableName, new TTLOption())).isTrue();
+            assertThat(TTLUtil.jobUpToDate(conn, schemaName, tableName, new TTLOption().batchSize(10))).isFalse();
+
+            // metrics of a job not run yet
+            var job = TTLUtil.findJobByName(conn, schemaName, tableName);
+            assertThat(job.lastRunStatus).isNull();
+            assertThat(job.succeededRuns).isEqualTo(0);
+            assertThat(job.failedRuns).isEqualTo(0);
+
+        } finally {
+            try (var conn = cosmos.getDataSource().getConnection()) {
+                TTLUtil.unScheduleJob(conn, schemaName, tableName);
+                TableUtil.dropTableIfExists(conn, schemaName, tableName);
+            }
+        }
+    }
+
     @Test
     void getJobName_should_work() throws Exception {
         assertThat(TTLUtil.getJobName("Schema", "Tables")).isEqualTo("Schema_ttl_job_Tables");
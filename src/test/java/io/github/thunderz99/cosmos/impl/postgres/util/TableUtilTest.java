@@ -2,6 +2,7 @@ package io.github.thunderz99.cosmos.impl.postgres.util;
 
 import com.google.common.collect.Maps;
 import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.dto.BulkPatchOperation;
 import io.github.thunderz99.cosmos.dto.CosmosSqlParameter;
 import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
 import io.github.thunderz99.cosmos.dto.PartialUpdateOption;
@@ -516,6 +517,120 @@ public class TableUtilTest {
         }
     }
 
+    @Test
+    void bulkPatchRecords_with_per_id_operations_should_work() throws Exception {
+
+        var tableName = "bulkPatchRecords_test_" + RandomStringUtils.randomAlphanumeric(6);
+
+        try (var conn = cosmos.getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName);
+
+            var records = IntStream.range(0, 5).mapToObj(i -> new PostgresRecord("id" + i, Maps.newHashMap(Map.of("id", "id" + i, "name", "name" + i, "age", i)))).toList();
+            TableUtil.batchInsertRecords(conn, schemaName, tableName, records);
+
+            var data = List.of(
+                    // the same patch expression with different values(one group)
+                    BulkPatchOperation.of("id0", PatchOperations.create().set("/name", "Tom").increment("/age", 10)),
+                    BulkPatchOperation.of("id1", PatchOperations.create().set("/name", "Jane").increment("/age", 20)),
+                    // a different patch expression
+                    BulkPatchOperation.of("id2", PatchOperations.create().remove("/name").set("/address/city", "NY")),
+                    // the same id twice, applied in order
+                    BulkPatchOperation.of("id3", PatchOperations.create().increment("/age", 1)),
+                    BulkPatchOperation.of("id3", PatchOperations.create().increment("/age", 1)),
+                    // not found
+                    BulkPatchOperation.of("not_exist", PatchOperations.create().set("/name", "Ghost")),
+                    // empty operations
+                    BulkPatchOperation.of("id4", PatchOperations.create())
+            );
+
+            // chunkSize 1 to test chunking
+            var ret = TableUtil.bulkPatchRecords(conn, schemaName, tableName, data, 1);
+
+            assertThat(ret.successList).extracting(doc -> doc.toMap().get("id")).containsExactly("id0", "id1", "id2", "id3", "id3", "id4");
+            assertThat(ret.fatalList).hasSize(1);
+            assertThat(ret.fatalList.get(0).getStatusCode()).isEqualTo(404);
+            assertThat(ret.fatalList.get(0).getMessage()).contains("not_exist");
+
+            assertThat(ret.successList.get(0).toMap()).containsEntry("name", "Tom").containsEntry("age", 10);
+            assertThat(ret.successList.get(1).toMap()).containsEntry("name", "Jane").containsEntry("age", 21);
+            assertThat(ret.successList.get(2).toMap()).doesNotContainKey("name");
+            assertThat((Map<String, Object>) ret.successList.get(2).toMap().get("address")).containsEntry("city", "NY");
+            assertThat(ret.successList.get(4).toMap()).containsEntry("age", 5);
+
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id3").data).containsEntry("age", 5);
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id4").data).containsEntry("name", "name4");
+
+            // irregular
+            assertThatThrownBy(() -> TableUtil.bulkPatchRecords(conn, schemaName, tableName, (List<BulkPatchOperation>) null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("data should not be null");
+            assertThat(TableUtil.bulkPatchRecords(conn, schemaName, tableName, List.<BulkPatchOperation>of()).successList).isEmpty();
+        } finally {
+            try (var conn = cosmos.getDataSource().getConnection()) {
+                TableUtil.dropTableIfExists(conn, schemaName, tableName);
+            }
+        }
+    }
+
+    @Test
+    void bulkPatchRecords_should_fail_only_the_offending_id() throws Exception {
+
+        var tableName = "bulkPatchRecords_offending_" + RandomStringUtils.randomAlphanumeric(6);
+
+        try (var conn = cosmos.getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName);
+
+            TableUtil.batchInsertRecords(conn, schemaName, tableName, List.of(
+                    new PostgresRecord("id0", Maps.newHashMap(Map.of("id", "id0", "age", 0))),
+                    new PostgresRecord("id1", Maps.newHashMap(Map.of("id", "id1", "age", Long.MAX_VALUE))),
+                    new PostgresRecord("id2", Maps.newHashMap(Map.of("id", "id2", "age", 2)))));
+
+            // one group in one chunk. the increment overflowing bigint fails the whole statement
+            var data = List.of(
+                    BulkPatchOperation.of("id0", PatchOperations.create().increment("/age", 10)),
+                    BulkPatchOperation.of("id1", PatchOperations.create().increment("/age", 10)),
+                    BulkPatchOperation.of("id2", PatchOperations.create().increment("/age", 10)));
+
+            var ret = TableUtil.bulkPatchRecords(conn, schemaName, tableName, data);
+
+            assertThat(ret.successList).extracting(doc -> doc.toMap().get("id")).containsExactly("id0", "id2");
+            assertThat(ret.fatalList).hasSize(1);
+            assertThat(ret.fatalList.get(0).getMessage()).contains("id1");
+
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id0").data).containsEntry("age", 10);
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id1").data).containsEntry("age", Long.MAX_VALUE);
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id2").data).containsEntry("age", 12);
+        } finally {
+            try (var conn = cosmos.getDataSource().getConnection()) {
+                TableUtil.dropTableIfExists(conn, schemaName, tableName);
+            }
+        }
+    }
+
+    @Test
+    void bulkDeleteRecords_should_work() throws Exception {
+        var tableName = "bulkDeleteRecords_test_" + RandomStringUtils.randomAlphanumeric(6);
+        try (var conn = cosmos.getDataSource().getConnection()) {
+            TableUtil.createTableIfNotExists(conn, schemaName, tableName);
+
+            var records = IntStream.range(0, 10).mapToObj(i -> new PostgresRecord("id" + i, Maps.newHashMap(Map.of("id", "id" + i)))).toList();
+            TableUtil.batchInsertRecords(conn, schemaName, tableName, records);
+
+            // not existing ids are treated as success
+            var ids = List.of("id1", "id2", "not_exist");
+            var ret = TableUtil.bulkDeleteRecords(conn, schemaName, tableName, ids);
+            assertThat(ret.fatalList).isEmpty();
+            assertThat(ret.successList).extracting(doc -> doc.toMap().get("id")).containsExactlyElementsOf(ids);
+
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id1")).isNull();
+            assertThat(TableUtil.readRecord(conn, schemaName, tableName, "id3")).isNotNull();
+        } finally {
+            try (var conn = cosmos.getDataSource().getConnection()) {
+                TableUtil.dropTableIfExists(conn, schemaName, tableName);
+            }
+        }
+    }
+
     @Test
     void batchInsertRecords_should_work() throws Exception {
         var tableName = "batchInsertRecords_test_" + RandomStringUtils.randomAlphanumeric(6);
@@ -1493,4 +1608,22 @@ public class TableUtilTest {
             }
         }
     }
+
+    @Test
+    void toRecordJson_should_work() throws Exception {
+        var data = new java.util.LinkedHashMap<String, Object>();
+        data.put("name", "Tom");
+        data.put("address", Map.of("city", "Tokyo"));
+
+        var json = TableUtil.toRecordJson(new PostgresRecord("id1", data));
+
+        // compact json without indent, and id is added
+        assertThat(json).doesNotContain("\n").doesNotContain(": ");
+        assertThat(json).startsWith("{\"id\":\"id1\"");
+        assertThat(json).contains("\"name\":\"Tom\"").contains("\"address\":{\"city\":\"Tokyo\"}");
+
+        // id in data is not duplicated
+        var view = new TableUtil.RecordDataView("id2", Map.of("id", "id2", "name", "Jane"));
+        assertThat(view).hasSize(2).containsEntry("id", "id2").containsEntry("name", "Jane");
+    }
 }
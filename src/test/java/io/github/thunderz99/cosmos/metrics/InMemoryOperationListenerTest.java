@@ -0,0 +1,104 @@
+package io.github.thunderz99.cosmos.metrics;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryOperationListenerTest {
+
+    static OperationEvent newEvent(String operation, long latencyMillis, boolean success) {
+        var event = new OperationEvent("postgres", "db1", "coll1", "Users", operation);
+        event.latencyNanos = latencyMillis * 1_000_000;
+        event.rows = 2;
+        event.retryCount = 1;
+        event.throttleWaitMillis = 100;
+        event.success = success;
+        return event;
+    }
+
+    @Test
+    void onOperation_should_aggregate_by_tags() {
+        var listener = new InMemoryOperationListener();
+
+        for (int i = 1; i <= 100; i++) {
+            listener.onOperation(newEvent("find", i, i % 10 != 0));
+        }
+        listener.onOperation(newEvent("read", 1, true));
+
+        assertThat(listener.getEvents()).hasSize(101);
+        assertThat(listener.getStats()).hasSize(2);
+
+        var stats = listener.getStats("postgres", "coll1", "Users", "find");
+        assertThat(stats.getCount()).isEqualTo(100);
+        assertThat(stats.getErrorCount()).isEqualTo(10);
+        assertThat(stats.getTotalRows()).isEqualTo(200);
+        assertThat(stats.getTotalRetryCount()).isEqualTo(100);
+        assertThat(stats.getTotalThrottleWaitMillis()).isEqualTo(10_000);
+        assertThat(stats.getMeanLatencyMillis()).isEqualTo(50.5);
+        assertThat(stats.getMaxLatencyMillis()).isEqualTo(100);
+
+        // percentiles are accurate within a factor of 2
+        assertThat(stats.getLatencyPercentileMillis(0.5)).isBetween(50.0, 100.0);
+        assertThat(stats.getLatencyPercentileMillis(0.99)).isBetween(99.0, 100.0);
+
+        assertThat(listener.getStats("postgres", "coll1", "Users", "upsert")).isNull();
+
+        listener.reset();
+        assertThat(listener.getEvents()).isEmpty();
+        assertThat(listener.getStats()).isEmpty();
+    }
+
+    @Test
+    void onOperation_should_keep_latest_events_only() {
+        var listener = new InMemoryOperationListener(3);
+        for (int i = 1; i <= 5; i++) {
+            listener.onOperation(newEvent("op" + i, i, true));
+        }
+        assertThat(listener.getEvents()).extracting(e -> e.operation).containsExactly("op3", "op4", "op5");
+        assertThat(listener.getStats()).hasSize(5);
+    }
+
+    @Test
+    void operationContext_should_only_record_in_outermost_operation() {
+        assertThat(OperationContext.current.get()).isNull();
+
+        // no-op when no context is active
+        OperationContext.recordRetry(100);
+
+        var context = OperationContext.begin();
+        assertThat(context).isNotNull();
+        try {
+            // nested operation does not start a new context
+            assertThat(OperationContext.begin()).isNull();
+
+            OperationContext.recordRetry(100);
+            OperationContext.recordRetry(200);
+            OperationContext.recordRequestCharge(2.5);
+            OperationContext.recordBytesSerialized(1024);
+        } finally {
+            context.end();
+        }
+
+        assertThat(context.retryCount).isEqualTo(2);
+        assertThat(context.throttleWaitMillis).isEqualTo(300);
+        assertThat(context.requestCharge).isEqualTo(2.5);
+        assertThat(context.bytesSerialized).isEqualTo(1024);
+        assertThat(OperationContext.current.get()).isNull();
+    }
+
+    @Test
+    void recordBytesSerialized_should_count_utf8_bytes() {
+        var json = "{\"name\":\"日本語 é 😀\"}";
+        assertThat(OperationContext.utf8Length(json)).isEqualTo(json.getBytes(StandardCharsets.UTF_8).length);
+
+        var context = OperationContext.begin();
+        try {
+            OperationContext.recordBytesSerialized(json);
+        } finally {
+            context.end();
+        }
+        assertThat(context.bytesSerialized).isEqualTo(json.getBytes(StandardCharsets.UTF_8).length);
+    }
+}
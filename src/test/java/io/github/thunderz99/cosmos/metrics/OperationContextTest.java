@@ -0,0 +1,64 @@
+package io.github.thunderz99.cosmos.metrics;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.thunderz99.cosmos.util.CrossPartitionUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OperationContextTest {
+
+    @Test
+    void wrap_should_attribute_the_fan_out_workers_to_the_operation() throws Exception {
+        var partitions = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            partitions.add("p" + i);
+        }
+
+        var context = OperationContext.begin();
+        try {
+            var count = CrossPartitionUtil.count(partitions, 4, partition -> {
+                OperationContext.recordRetry(10);
+                OperationContext.recordBytesSerialized(5);
+                return 1;
+            });
+            assertThat(count).isEqualTo(20);
+        } finally {
+            context.end();
+        }
+
+        synchronized (context) {
+            assertThat(context.retryCount).isEqualTo(20);
+            assertThat(context.throttleWaitMillis).isEqualTo(200);
+            assertThat(context.bytesSerialized).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void wrap_should_restore_the_context_of_the_worker() throws Exception {
+        // no context is active. the task itself is returned
+        Runnable task = () -> {
+        };
+        assertThat(OperationContext.wrap(task)).isSameAs(task);
+
+        var context = OperationContext.begin();
+        var inWorker = new AtomicReference<OperationContext>();
+        var afterWorker = new AtomicReference<OperationContext>();
+        try {
+            var wrapped = OperationContext.wrap(() -> inWorker.set(OperationContext.current.get()));
+            var thread = new Thread(() -> {
+                wrapped.run();
+                afterWorker.set(OperationContext.current.get());
+            });
+            thread.start();
+            thread.join();
+        } finally {
+            context.end();
+        }
+
+        assertThat(inWorker.get()).isSameAs(context);
+        assertThat(afterWorker.get()).isNull();
+    }
+}
@@ -0,0 +1,182 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.thunderz99.cosmos.CosmosException;
+import io.github.thunderz99.cosmos.dto.RateLimitOption;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveRateLimiterTest {
+
+    static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    AtomicLong clock = new AtomicLong(1_000_000 * MS);
+
+    AdaptiveRateLimiter newLimiter(RateLimitOption option) {
+        return new AdaptiveRateLimiter("db/coll", option, clock::get);
+    }
+
+    @Test
+    void reserve_should_space_requests_at_the_permitted_rate() {
+        // 10 requests per second, burst of 2 requests
+        var limiter = newLimiter(new RateLimitOption().initialRate(10).burstSeconds(0.2));
+
+        // the burst is admitted immediately
+        assertThat(limiter.reserve(1)).isZero();
+        assertThat(limiter.reserve(1)).isZero();
+
+        // then spaced by 100ms
+        assertThat(limiter.reserve(1)).isEqualTo(100 * MS);
+        assertThat(limiter.reserve(1)).isEqualTo(200 * MS);
+
+        // the bucket is refilled while idle
+        clock.addAndGet(1000 * MS);
+        assertThat(limiter.reserve(1)).isZero();
+
+        // permits more than the burst wait until the bucket is full
+        assertThat(limiter.reserve(5)).isEqualTo(100 * MS);
+    }
+
+    @Test
+    void onThrottled_should_decrease_the_rate_and_pause_until_retryAfter() {
+        var limiter = newLimiter(new RateLimitOption().initialRate(100).multiplicativeDecrease(0.5).decreaseIntervalMillis(1000).burstSeconds(0));
+
+        limiter.onThrottled(500);
+        assertThat(limiter.getPermittedRate()).isEqualTo(50);
+
+        // 429s of the same congestion do not decrease again
+        limiter.onThrottled(500);
+        assertThat(limiter.getPermittedRate()).isEqualTo(50);
+
+        // no request is admitted before retryAfter, then spaced at the new rate
+        assertThat(limiter.reserve(1)).isEqualTo(500 * MS);
+        assertThat(limiter.reserve(1)).isEqualTo(520 * MS);
+
+        clock.addAndGet(1000 * MS);
+        limiter.onThrottled(0);
+        assertThat(limiter.getPermittedRate()).isEqualTo(25);
+
+        // floored at minRate
+        for (var i = 0; i < 20; i++) {
+            clock.addAndGet(1000 * MS);
+            limiter.onThrottled(0);
+        }
+        assertThat(limiter.getPermittedRate()).isEqualTo(1);
+    }
+
+    @Test
+    void onResponse_should_increase_the_rate_only_when_saturated() {
+        var limiter = newLimiter(new RateLimitOption().initialRate(10).maxRate(30).additiveIncrease(10).increaseIntervalMillis(1000).burstSeconds(0.1));
+
+        // not saturated: requests are far below the rate
+        clock.addAndGet(2000 * MS);
+        limiter.reserve(1);
+        clock.addAndGet(500 * MS);
+        limiter.onResponse();
+        assertThat(limiter.getPermittedRate()).isEqualTo(10);
+
+        // saturated: requests are queued by the limiter
+        for (var i = 0; i < 3; i++) {
+            clock.addAndGet(1000 * MS);
+            for (var j = 0; j < 20; j++) {
+                limiter.reserve(1);
+            }
+            limiter.onResponse();
+        }
+        // capped at maxRate
+        assertThat(limiter.getPermittedRate()).isEqualTo(30);
+
+        // no increase within increaseIntervalMillis after a 429
+        limiter.onThrottled(0);
+        var decreased = limiter.getPermittedRate();
+        clock.addAndGet(500 * MS);
+        limiter.reserve(100);
+        limiter.onResponse();
+        assertThat(limiter.getPermittedRate()).isEqualTo(decreased);
+    }
+
+    @Test
+    void reserve_should_reject_when_the_wait_exceeds_maxWaitMillis() {
+        var limiter = newLimiter(new RateLimitOption().initialRate(10).burstSeconds(0).maxWaitMillis(300));
+
+        assertThat(limiter.reserve(1)).isZero();
+        assertThat(limiter.reserve(1)).isEqualTo(100 * MS);
+        assertThat(limiter.reserve(1)).isEqualTo(200 * MS);
+        assertThat(limiter.reserve(1)).isEqualTo(300 * MS);
+
+        assertThatThrownBy(() -> limiter.reserve(1)).isInstanceOfSatisfying(CosmosException.class, e -> {
+            assertThat(e.getStatusCode()).isEqualTo(429);
+            assertThat(e.getRetryAfterInMilliseconds()).isEqualTo(400);
+        });
+
+        // the rejected request does not consume permits
+        clock.addAndGet(100 * MS);
+        assertThat(limiter.reserve(1)).isEqualTo(300 * MS);
+
+        var stats = limiter.getStats();
+        assertThat(stats.admittedCount).isEqualTo(5);
+        assertThat(stats.rejectedCount).isEqualTo(1);
+    }
+
+    @Test
+    void withJitter_should_be_within_the_ratio() {
+        var limiter = newLimiter(new RateLimitOption().jitterRatio(0.5));
+        for (var i = 0; i < 100; i++) {
+            assertThat(limiter.withJitter(1000)).isBetween(1000L, 1500L);
+        }
+        assertThat(limiter.withJitter(0)).isZero();
+        assertThat(newLimiter(new RateLimitOption().jitterRatio(0)).withJitter(1000)).isEqualTo(1000);
+    }
+
+    @Test
+    void getStats_should_work() {
+        var limiter = newLimiter(new RateLimitOption().initialRate(100).multiplicativeDecrease(0.5));
+
+        for (var i = 0; i < 3; i++) {
+            limiter.onResponse();
+        }
+        limiter.onThrottled(0);
+
+        var stats = limiter.getStats();
+        assertThat(stats.permittedRate).isEqualTo(50);
+        assertThat(stats.throttledCount).isEqualTo(1);
+        assertThat(stats.throttleRatio).isEqualTo(0.25);
+        assertThat(stats.queueDepth).isZero();
+        assertThat(stats.toString()).contains("throttledCount=1", "rejectedCount=0");
+
+        // the ratio covers the recent 2 windows only
+        clock.addAndGet(AdaptiveRateLimiter.WINDOW_NANOS);
+        limiter.onResponse();
+        assertThat(limiter.getStats().throttleRatio).isEqualTo(0.2);
+
+        clock.addAndGet(AdaptiveRateLimiter.WINDOW_NANOS * 2);
+        assertThat(limiter.getStats().throttleRatio).isZero();
+    }
+
+    @Test
+    void executeWithRetry_should_work_with_limiter() throws Exception {
+        var limiter = new AdaptiveRateLimiter("db/coll", new RateLimitOption().initialRate(1000).multiplicativeDecrease(0.5));
+        var i = new AtomicInteger(0);
+
+        var ret = RetryUtil.executeWithRetry(limiter, () -> {
+            if (i.incrementAndGet() < 3) {
+                throw new CosmosException(429, "429", "Request rate is large", 5);
+            }
+            return "OK";
+        });
+
+        assertThat(ret).isEqualTo("OK");
+        assertThat(i.get()).isEqualTo(3);
+
+        var stats = limiter.getStats();
+        assertThat(stats.admittedCount).isEqualTo(3);
+        assertThat(stats.throttledCount).isEqualTo(2);
+        // the two 429s are the same congestion
+        assertThat(stats.permittedRate).isEqualTo(500);
+    }
+}
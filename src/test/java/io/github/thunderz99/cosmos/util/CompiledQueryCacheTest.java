@@ -0,0 +1,203 @@
+package io.github.thunderz99.cosmos.util;
+
+import io.github.thunderz99.cosmos.condition.Condition;
+import io.github.thunderz99.cosmos.condition.SubConditionType;
+import io.github.thunderz99.cosmos.dto.CosmosSqlQuerySpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledQueryCacheTest {
+
+    static final Function<Condition, CosmosSqlQuerySpec> generator = Condition::toQuerySpec;
+
+    @Test
+    void get_should_bind_values_to_cached_template() {
+        var cache = new CompiledQueryCache(10);
+        var generated = new AtomicInteger(0);
+
+        for (int i = 0; i < 10; i++) {
+            var cond = Condition.filter("name", "Tom" + i, "age >=", i, "address.city STARTSWITH", "T" + i,
+                            "id", List.of("id" + i, "id" + (i + 1)),
+                            SubConditionType.OR, List.of(Condition.filter("lastName CONTAINS", "B" + i), Condition.filter("deleted", false)))
+                    .sort("_ts", "DESC").limit(10);
+
+            var expected = generator.apply(cond);
+            var actual = cache.get("find", cond, c -> {
+                generated.incrementAndGet();
+                return generator.apply(c);
+            });
+
+            assertThat(actual.queryText).isEqualTo(expected.queryText);
+            assertThat(actual.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList())
+                    .isEqualTo(expected.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList());
+        }
+
+        // generated for the first time and the verification only
+        assertThat(generated.get()).isEqualTo(2);
+
+        var stats = cache.getStats();
+        assertThat(stats.hitCount).isEqualTo(8);
+        assertThat(stats.missCount).isEqualTo(2);
+        assertThat(stats.size).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.8);
+    }
+
+    @Test
+    void toShape_should_work() {
+        var shape1 = CompiledQueryCache.toShape("find", Condition.filter("name", "Tom", "age >", 20, "active", true).limit(10));
+        var shape2 = CompiledQueryCache.toShape("find", Condition.filter("name", "Jim", "age >", 30, "active", true).limit(10));
+
+        // same shape, different values
+        assertThat(shape1.key()).isEqualTo(shape2.key());
+        assertThat(shape1.values()).containsExactly("Tom", 20);
+        assertThat(shape2.values()).containsExactly("Jim", 30);
+
+        // booleans, value types, limit and prefix are part of shape
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("name", "Tom", "age >", 20, "active", false).limit(10)).key()).isNotEqualTo(shape1.key());
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("name", "Tom", "age >", 20.5, "active", true).limit(10)).key()).isNotEqualTo(shape1.key());
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("name", "Tom", "age >", 20, "active", true).limit(20)).key()).isNotEqualTo(shape1.key());
+        assertThat(CompiledQueryCache.toShape("count", Condition.filter("name", "Tom", "age >", 20, "active", true).limit(10)).key()).isNotEqualTo(shape1.key());
+
+        // collections share the shape in the same size bucket(a power of 2)
+        var inShape = CompiledQueryCache.toShape("find", Condition.filter("code", List.of("a", "b", "c")));
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("code", List.of("a", "b", "c", "d"))).key()).isEqualTo(inShape.key());
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("code", List.of("a", "b", "c", "d", "e"))).key()).isNotEqualTo(inShape.key());
+        assertThat(CompiledQueryCache.toShape("find", Condition.filter("code", List.of())).key()).isNotEqualTo(inShape.key());
+    }
+
+    @Test
+    void get_should_generate_normally_for_uncacheable_shape() {
+        var cache = new CompiledQueryCache(10);
+
+        // param value converted to json is not supported
+        Function<Condition, CosmosSqlQuerySpec> jsonGenerator = c -> new CosmosSqlQuerySpec("SELECT * FROM c WHERE c.name = @name",
+                List.of(Condition.createSqlParameter("@name", JsonUtil.toJson(c.filter.get("name")))));
+
+        for (int i = 0; i < 5; i++) {
+            var cond = Condition.filter("name", List.of("Tom" + i));
+            assertThat(cache.get("find", cond, jsonGenerator).params.get(0).getValue()).isEqualTo(JsonUtil.toJson(List.of("Tom" + i)));
+        }
+
+        var stats = cache.getStats();
+        assertThat(stats.hitCount).isEqualTo(0);
+        assertThat(stats.missCount).isEqualTo(1);
+        assertThat(stats.uncacheableCount).isEqualTo(4);
+    }
+
+    @Test
+    void get_should_bind_values_embedded_in_json() {
+        var cache = new CompiledQueryCache(10);
+
+        // containment params like postgres. e.g. data @> '{"name":"Tom"}'::jsonb
+        Function<Condition, CosmosSqlQuerySpec> jsonGenerator = c -> {
+            var codes = (List<?>) c.filter.get("code");
+            return new CosmosSqlQuerySpec("SELECT * FROM c WHERE data @> @name::jsonb AND data @> @age::jsonb AND (data @> @code__0::jsonb OR data @> @code__1::jsonb) AND data @> @active::jsonb",
+                    List.of(Condition.createSqlParameter("@name", "{\"name\":" + JsonUtil.toJsonNoIndent(c.filter.get("name")) + "}"),
+                            Condition.createSqlParameter("@age", "{\"age\":" + JsonUtil.toJsonNoIndent(c.filter.get("age")) + "}"),
+                            Condition.createSqlParameter("@code__0", "{\"code\":" + JsonUtil.toJsonNoIndent(codes.get(0)) + "}"),
+                            Condition.createSqlParameter("@code__1", "{\"code\":" + JsonUtil.toJsonNoIndent(codes.get(1)) + "}"),
+                            Condition.createSqlParameter("@active", "{\"active\":" + c.filter.get("active") + "}")));
+        };
+
+        // a value containing a quote is escaped when bound
+        var names = List.of("Tom", "Jim", "A\"B", "Ann", "Bob");
+        for (int i = 0; i < names.size(); i++) {
+            var cond = Condition.filter("name", names.get(i), "age", 20 + i, "code", List.of("x" + i, "y" + i), "active", true);
+            var expected = jsonGenerator.apply(cond);
+            var actual = cache.get("find", cond, jsonGenerator);
+            assertThat(actual.queryText).isEqualTo(expected.queryText);
+            assertThat(actual.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList())
+                    .isEqualTo(expected.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList());
+        }
+
+        assertThat(cache.getStats().hitCount).isEqualTo(3);
+        assertThat(cache.getStats().uncacheableCount).isEqualTo(0);
+    }
+
+    @Test
+    void get_should_bind_list_of_json_for_array_param() {
+        var cache = new CompiledQueryCache(10);
+
+        // a single array param like postgres. e.g. data @> ANY(@code::jsonb[])
+        Function<Condition, CosmosSqlQuerySpec> jsonArrayGenerator = c -> new CosmosSqlQuerySpec("SELECT * FROM c WHERE data @> ANY(@code::jsonb[])",
+                List.of(Condition.createSqlParameter("@code", ((List<?>) c.filter.get("code")).stream()
+                        .map(v -> "{\"code\":" + JsonUtil.toJsonNoIndent(v) + "}").toList())));
+
+        // lists of different sizes share the template
+        var lists = List.of(List.of("x0", "y0", "z0"), List.of("x1", "y1", "z1", "w1"), List.of("A\"B", "y2", "z2"), List.of("x3", "y3", "z3", "w3"));
+        for (var list : lists) {
+            var cond = Condition.filter("code", list);
+            var expected = jsonArrayGenerator.apply(cond);
+            var actual = cache.get("find", cond, jsonArrayGenerator);
+            assertThat(actual.queryText).isEqualTo(expected.queryText);
+            assertThat(actual.params.get(0).getValue()).isEqualTo(expected.params.get(0).getValue());
+        }
+
+        assertThat(cache.getStats().hitCount).isEqualTo(2);
+        assertThat(cache.getStats().uncacheableCount).isEqualTo(0);
+        assertThat(cache.getStats().size).isEqualTo(1);
+    }
+
+    @Test
+    void get_should_retry_inference_when_a_param_is_ambiguous() {
+        var cache = new CompiledQueryCache(10);
+
+        // "ab%" is the filter value of "prefix" as-is, or the filter value of "name" wrapped by "%"
+        Function<Condition, CosmosSqlQuerySpec> likeGenerator = c -> new CosmosSqlQuerySpec("SELECT * FROM c WHERE c.prefix = @prefix AND c.name LIKE @name",
+                List.of(Condition.createSqlParameter("@prefix", c.filter.get("prefix")),
+                        Condition.createSqlParameter("@name", c.filter.get("name STARTSWITH") + "%")));
+
+        var pairs = List.of(List.of("ab%", "ab"), List.of("cd%", "cd"), List.of("xy%", "ab"), List.of("ab%", "ab"), List.of("q%", "r"), List.of("ef%", "ef"));
+        for (var pair : pairs) {
+            var cond = Condition.filter("prefix", pair.get(0), "name STARTSWITH", pair.get(1));
+            var expected = likeGenerator.apply(cond);
+            var actual = cache.get("find", cond, likeGenerator);
+            assertThat(actual.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList())
+                    .isEqualTo(expected.params.stream().map(p -> p.getName() + "=" + p.getValue()).toList());
+        }
+
+        // inferred at the 3rd call, "name" confirmed at the 5th call(the 4th has the same value of "name")
+        assertThat(cache.getStats().hitCount).isEqualTo(1);
+        assertThat(cache.getStats().uncacheableCount).isEqualTo(0);
+    }
+
+    @Test
+    void get_should_not_use_template_until_every_param_is_confirmed_with_a_changed_value() {
+        var cache = new CompiledQueryCache(10);
+
+        // "status" is a constant which happens to be the same as the filter value
+        Function<Condition, CosmosSqlQuerySpec> constantGenerator = c -> new CosmosSqlQuerySpec("SELECT * FROM c WHERE c.name = @name AND c.status = @status",
+                List.of(Condition.createSqlParameter("@name", c.filter.get("name")),
+                        Condition.createSqlParameter("@status", "A")));
+
+        for (int i = 0; i < 5; i++) {
+            var cond = Condition.filter("name", "Tom" + i, "status", "A");
+            assertThat(cache.get("find", cond, constantGenerator).params.get(1).getValue()).isEqualTo("A");
+        }
+        assertThat(cache.getStats().hitCount).isEqualTo(0);
+
+        // the wrong template is detected, instead of binding "B"
+        var cond = Condition.filter("name", "Jim", "status", "B");
+        assertThat(cache.get("find", cond, constantGenerator).params.get(1).getValue()).isEqualTo("A");
+        assertThat(cache.get("find", cond, constantGenerator).params.get(1).getValue()).isEqualTo("A");
+        assertThat(cache.getStats().hitCount).isEqualTo(0);
+        assertThat(cache.getStats().uncacheableCount).isEqualTo(1);
+    }
+
+    @Test
+    void get_should_not_cache_when_disabled_or_raw_sql() {
+        var cache = new CompiledQueryCache(0);
+        cache.get("find", Condition.filter("name", "Tom"), generator);
+        assertThat(cache.getStats().size).isEqualTo(0);
+
+        var cache2 = new CompiledQueryCache(10);
+        cache2.get("find", Condition.rawSql("SELECT * FROM c"), generator);
+        cache2.get("find", Condition.filter("name", "Tom").after("token"), c -> new CosmosSqlQuerySpec("SELECT * FROM c", List.of()));
+        assertThat(cache2.getStats().size).isEqualTo(0);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.thunderz99.cosmos.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitedExecutorTest {
+
+    @Test
+    void execute_should_cap_in_flight_tasks() throws Exception {
+        var pool = Executors.newFixedThreadPool(20);
+        try {
+            var executor = new ConcurrencyLimitedExecutor(pool, 3);
+            var running = new AtomicInteger(0);
+            var maxRunning = new AtomicInteger(0);
+
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < 30; i++) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    var now = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(now, Math::max);
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+            assertThat(executor.getInFlight()).isEqualTo(0);
+            assertThat(executor.getMaxConcurrency()).isEqualTo(3);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void execute_should_release_permit_when_task_failed() {
+        var executor = new ConcurrencyLimitedExecutor(Runnable::run, 1);
+        assertThatThrownBy(() -> executor.execute(() -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(executor.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    void virtualThreadUtil_should_work() {
+        if (VirtualThreadUtil.isSupported()) {
+            var executor = VirtualThreadUtil.newVirtualThreadPerTaskExecutor("test-vt-");
+            try {
+                var threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor).join();
+                assertThat(threadName).startsWith("test-vt-");
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            assertThatThrownBy(() -> VirtualThreadUtil.newVirtualThreadPerTaskExecutor("test-vt-"))
+                    .isInstanceOf(UnsupportedOperationException.class);
+        }
+    }
+}
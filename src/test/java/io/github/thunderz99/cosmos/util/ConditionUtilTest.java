@@ -194,6 +194,18 @@ public class ConditionUtilTest {
 
     }
 
+    @Test
+    public void toBsonKeysetSeek_should_work() {
+        var sort = List.of("name", "DESC", "_ts", "DESC", "id", "DESC");
+        var seek = ConditionUtil.toBsonKeysetSeek(sort, List.of("Tom", 1714546148.123, "id001"));
+
+        assertThat(seek.toBsonDocument().toJson()).isEqualTo(Filters.or(
+                Filters.lt("name", "Tom"),
+                Filters.and(Filters.eq("name", "Tom"), Filters.lt("_ts", 1714546148.123)),
+                Filters.and(Filters.eq("name", "Tom"), Filters.eq("_ts", 1714546148.123), Filters.lt("id", "id001"))
+        ).toBsonDocument().toJson());
+    }
+
     @Test
     public void singleFieldDescendingSort_should_work() {
         List<String> sort = List.of("id", "DESC");
@@ -0,0 +1,118 @@
+package io.github.thunderz99.cosmos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CrossPartitionUtilTest {
+
+    @Test
+    void merge_should_work() {
+        var lists = List.of(List.of(1, 4, 7), List.<Integer>of(), List.of(2, 5, 8), List.of(3, 6, 9));
+
+        assertThat(CrossPartitionUtil.merge(lists, Comparator.<Integer>naturalOrder(), 100))
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+        // truncated to maxSize
+        assertThat(CrossPartitionUtil.merge(lists, Comparator.<Integer>naturalOrder(), 4))
+                .containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void find_should_apply_global_offset_and_limit() throws Exception {
+
+        // 50 partitions, partition i contains the values i, i + 50, i + 100, ...
+        var partitions = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            partitions.add(String.valueOf(i));
+        }
+
+        var comparator = CrossPartitionUtil.comparator(List.of("age", "ASC"), true, Comparator.naturalOrder());
+
+        var ret = CrossPartitionUtil.find(partitions, 4, comparator, 10, 5, partition -> {
+            var docs = new ArrayList<Map<String, Object>>();
+            // each partition returns its own top (offset + limit) documents
+            for (int i = 0; i < 15; i++) {
+                docs.add(Map.of("id", partition + "_" + i, "age", Integer.parseInt(partition) + i * 50));
+            }
+            return docs;
+        });
+
+        assertThat(ret.stream().map(doc -> doc.get("age")).toList()).containsExactly(10, 11, 12, 13, 14);
+    }
+
+    @Test
+    void find_without_sort_should_stop_when_enough() throws Exception {
+        var partitions = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            partitions.add(String.valueOf(i));
+        }
+
+        var queried = new AtomicInteger();
+        var ret = CrossPartitionUtil.find(partitions, 1, null, 0, 3, partition -> {
+            queried.incrementAndGet();
+            return List.of(partition);
+        });
+
+        assertThat(ret).hasSize(3);
+        assertThat(queried.get()).isLessThan(100);
+    }
+
+    @Test
+    void count_should_sum_partitions() throws Exception {
+        var partitions = List.of("a", "b", "c", "d");
+        assertThat(CrossPartitionUtil.count(partitions, 2, partition -> partition.charAt(0) - 'a' + 1)).isEqualTo(10L);
+        assertThat(CrossPartitionUtil.count(List.of(), 2, partition -> 1)).isEqualTo(0L);
+    }
+
+    @Test
+    void fanOut_should_throw_the_exception_of_partition() {
+        var partitions = List.of("a", "b", "c");
+        assertThatThrownBy(() -> CrossPartitionUtil.count(partitions, 2, partition -> {
+            if ("b".equals(partition)) {
+                throw new IllegalStateException("failed: " + partition);
+            }
+            return 1;
+        })).isInstanceOf(IllegalStateException.class).hasMessageContaining("failed: b");
+    }
+
+    @Test
+    void comparator_should_work() {
+        var a = new HashMap<String, Object>(Map.of("id", "1", "address", Map.of("city", "Osaka"), "age", 20));
+        var b = new HashMap<String, Object>(Map.of("id", "2", "address", Map.of("city", "Tokyo"), "age", 20.5));
+        var c = new HashMap<String, Object>(Map.of("id", "3"));
+
+        {
+            // nested key
+            var comparator = CrossPartitionUtil.comparator(List.of("address.city", "DESC"), true, Comparator.naturalOrder());
+            var list = new ArrayList<>(List.of(a, b));
+            list.sort(comparator);
+            assertThat(list).containsExactly(b, a);
+        }
+
+        {
+            // integer and double, type suffix ignored
+            var comparator = CrossPartitionUtil.comparator(List.of("age::numeric", "ASC"), true, Comparator.naturalOrder());
+            assertThat(comparator.compare(a, b)).isLessThan(0);
+        }
+
+        {
+            // missing value is the greatest for postgres, the smallest for mongodb
+            var pg = CrossPartitionUtil.comparator(List.of("age", "ASC"), true, Comparator.naturalOrder());
+            assertThat(pg.compare(c, a)).isGreaterThan(0);
+            var mongo = CrossPartitionUtil.comparator(List.of("age", "ASC"), false, Comparator.naturalOrder());
+            assertThat(mongo.compare(c, a)).isLessThan(0);
+        }
+
+        // empty sort
+        assertThat(CrossPartitionUtil.comparator(List.of(), true, Comparator.naturalOrder())).isNull();
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.thunderz99.cosmos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetUtilTest {
+
+    @Test
+    void normalizeSort_should_work() {
+        {
+            // empty sort
+            assertThat(KeysetUtil.normalizeSort(List.of())).containsExactly("id", "ASC");
+            assertThat(KeysetUtil.normalizeSort(null)).containsExactly("id", "ASC");
+        }
+
+        {
+            // _ts and id are added using the first order
+            assertThat(KeysetUtil.normalizeSort(List.of("name", "DESC", "age", "ASC")))
+                    .containsExactly("name", "DESC", "age", "ASC", "_ts", "DESC", "id", "DESC");
+        }
+
+        {
+            // sort keys after id are ignored
+            assertThat(KeysetUtil.normalizeSort(List.of("id", "asc", "name", "DESC")))
+                    .containsExactly("id", "ASC");
+        }
+
+        {
+            // _ts already exists
+            assertThat(KeysetUtil.normalizeSort(List.of("_ts", "DESC")))
+                    .containsExactly("_ts", "DESC", "id", "DESC");
+        }
+    }
+
+    @Test
+    void encode_and_decode_should_work() {
+        var sort = KeysetUtil.normalizeSort(List.of("address.city", "ASC"));
+        var doc = Map.<String, Object>of("id", "id001", "_ts", 1714546148.123, "address", Map.of("city", "Tokyo"));
+
+        var token = KeysetUtil.encode(sort, doc);
+        assertThat(token).isNotBlank().doesNotContain("=", "+", "/");
+
+        var values = KeysetUtil.decode(token, sort);
+        assertThat(values).containsExactly("Tokyo", 1714546148.123, "id001");
+    }
+
+    @Test
+    void decode_should_throw_when_sort_does_not_match() {
+        var sort = KeysetUtil.normalizeSort(List.of("name", "ASC"));
+        var token = KeysetUtil.encode(sort, Map.of("id", "id001", "_ts", 1, "name", "Tom"));
+
+        assertThatThrownBy(() -> KeysetUtil.decode(token, KeysetUtil.normalizeSort(List.of("name", "DESC"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("does not match");
+
+        assertThatThrownBy(() -> KeysetUtil.decode("invalid token", sort))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getValue_should_work() {
+        var doc = Map.<String, Object>of("age", 20, "address", Map.of("city", "Tokyo"));
+        assertThat(KeysetUtil.getValue(doc, "age::int")).isEqualTo(20);
+        assertThat(KeysetUtil.getValue(doc, "address.city")).isEqualTo("Tokyo");
+        assertThat(KeysetUtil.getValue(doc, "address.city.street")).isNull();
+        assertThat(KeysetUtil.getValue(doc, "notExist")).isNull();
+    }
+
+}
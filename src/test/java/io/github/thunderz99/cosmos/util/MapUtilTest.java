@@ -174,6 +174,24 @@ public class MapUtilTest {
     }
 
 
+    @Test
+    void project_should_work() {
+
+        var map = new LinkedHashMap<String, Object>();
+        map.put("id", "ID001");
+        map.put("name", "Tom");
+        map.put("age", 25);
+        map.put("address", new LinkedHashMap<>(Map.of("city", "Tokyo", "zip", "100-0001")));
+
+        assertThat(MapUtil.project(map, List.of("id", "name", "address.city", "notExist", "age.notExist", "")))
+                .isEqualTo(Map.of("id", "ID001", "name", "Tom", "address", Map.of("city", "Tokyo")));
+
+        assertThat(MapUtil.project(map, List.of("address.city", "address.zip")))
+                .isEqualTo(Map.of("address", Map.of("city", "Tokyo", "zip", "100-0001")));
+
+        assertThat(MapUtil.project(null, List.of("id"))).isEmpty();
+    }
+
     @Test
     void isImmutableMap_should_work() {
         assertThat(MapUtil.isImmutableMap(null)).isFalse();
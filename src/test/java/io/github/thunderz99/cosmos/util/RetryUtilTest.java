@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.thunderz99.cosmos.Cosmos;
 import io.github.thunderz99.cosmos.CosmosException;
 import io.github.thunderz99.cosmos.dto.CosmosBatchResponseWrapper;
+import io.github.thunderz99.cosmos.dto.RateLimitOption;
 import org.junit.jupiter.api.Test;
 
 import static com.azure.cosmos.implementation.HttpConstants.HttpHeaders.RETRY_AFTER_IN_MILLISECONDS;
@@ -412,6 +413,40 @@ class RetryUtilTest {
         assertThat(events.get(1).toString()).isEqualTo(String.format("[WARN] doBulkWithRetry 429 occurred. Code:429, coll:%s, partition:[\"%s\"]. operationType:CREATE, Wait:%d ms", coll, partition, wait * 2));
     }
 
+    @Test
+    void executeBulkWithRetry_should_return_partial_result_when_rejected_by_limiter() throws Exception {
+        var partition = "Users";
+        var coll = "coll_executeBulkWithRetry_rejected_by_limiter";
+
+        var partitionKey = new PartitionKey(partition);
+        var operations = new ArrayList<CosmosItemOperation>();
+        for (int i = 0; i < 5; i++) {
+            var map = JsonUtil.toMap(new User("rejected_by_limiter_" + i, "first" + i, "last" + i));
+            map.put(Cosmos.getDefaultPartitionKey(), partition);
+            operations.add(CosmosBulkOperations.getCreateItemOperation(map, partitionKey));
+        }
+
+        // 1 operation per second without waiting, so only the first chunk(1 operation) is admitted
+        var limiter = new AdaptiveRateLimiter("db/coll", new RateLimitOption().initialRate(1).burstSeconds(1).maxWaitMillis(0));
+        var sent = new ArrayList<CosmosItemOperation>();
+
+        var result = RetryUtil.executeBulkWithRetry(coll, operations, (ops) -> {
+            var responses = new ArrayList<CosmosBulkOperationResponse<Object>>();
+            for (var op : ops) {
+                sent.add(op);
+                responses.add(generateCosmosBulkOperationResponse(op, generateCosmosBulkItemResponse(201, 0), null));
+            }
+            return responses;
+        }, 10, limiter);
+
+        // the operation sent is in successList, and the rest are returned to retry instead of throwing
+        assertThat(sent).hasSize(1);
+        assertThat(result.successList).hasSize(1);
+        assertThat(result.fatalList).isEmpty();
+        assertThat(result.retryList).hasSize(4);
+        assertThat(limiter.getStats().rejectedCount).isEqualTo(1);
+    }
+
 
     /**
      * use reflect to generate CosmosBulkItemResponse for test(which is not accessible directly)